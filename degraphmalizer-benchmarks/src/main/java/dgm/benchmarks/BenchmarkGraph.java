@@ -0,0 +1,94 @@
+package dgm.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import dgm.EdgeID;
+import dgm.ID;
+import dgm.Subgraph;
+import dgm.SubgraphManager;
+import dgm.exceptions.DegraphmalizerException;
+import dgm.graphs.MutableSubgraph;
+import dgm.graphs.RandomizedGraphBuilder;
+import dgm.modules.BlueprintsSubgraphManagerModule;
+import dgm.modules.neo4j.CommonNeo4j;
+import dgm.modules.neo4j.EphemeralEmbeddedNeo4J;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An ephemeral Neo4j graph plus subgraph manager, filled with randomized documents.
+ *
+ * Shared by the benchmarks that need a populated graph.
+ */
+public class BenchmarkGraph
+{
+    @Inject
+    TransactionalGraph G;
+
+    @Inject
+    SubgraphManager sgm;
+
+    final ObjectMapper om = new ObjectMapper();
+
+    public static BenchmarkGraph create()
+    {
+        final Injector injector = Guice.createInjector(
+                new BlueprintsSubgraphManagerModule(),
+                new CommonNeo4j(),
+                new EphemeralEmbeddedNeo4J());
+
+        return injector.getInstance(BenchmarkGraph.class);
+    }
+
+    /**
+     * Commit a complete tree of documents, every document links to <code>fanOut</code> children with a
+     * <code>child</code> edge, up to the given depth.
+     *
+     * @return The ID's of all committed documents in BFS order, so the root comes first and the leaves last.
+     */
+    public List<ID> commitTree(int seed, int fanOut, int depth) throws DegraphmalizerException
+    {
+        // the builder only has a few hundred distinct words, so it provides the random base identifier
+        // and every document in the tree is numbered from there
+        final EdgeID base = new RandomizedGraphBuilder(seed).edge("(i,t,root,1) -- child --> (i,t,node,0)");
+        final ID root = base.tail();
+        final ID node = base.head();
+
+        final List<ID> ids = new ArrayList<ID>();
+        ids.add(root);
+
+        int next = 1;
+        for (int level = 0, begin = 0, end = 1; level < depth; level++)
+        {
+            for (int parent = begin; parent < end; parent++)
+            {
+                final MutableSubgraph sg = new MutableSubgraph();
+                for (int c = 0; c < fanOut; c++)
+                {
+                    final ID child = new ID(node.index(), node.type(), node.id() + "-" + next, 0);
+                    sg.beginEdge(base.label(), child, Subgraph.Direction.OUTWARDS);
+                    ids.add(new ID(child.index(), child.type(), child.id(), root.version()));
+                    next++;
+                }
+                sgm.commitSubgraph(ids.get(parent), sg);
+            }
+            begin = end;
+            end = next;
+        }
+
+        // leaves have no outgoing edges, but they do get a versioned vertex
+        for (int leaf = ids.size() - (int) Math.pow(fanOut, depth); leaf < ids.size(); leaf++)
+            sgm.commitSubgraph(ids.get(leaf), new MutableSubgraph());
+
+        return ids;
+    }
+
+    public void shutdown()
+    {
+        G.shutdown();
+    }
+}
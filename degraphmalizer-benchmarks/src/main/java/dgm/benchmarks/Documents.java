@@ -0,0 +1,33 @@
+package dgm.benchmarks;
+
+/**
+ * Synthetic source documents.
+ */
+final class Documents
+{
+    private Documents()
+    {}
+
+    /**
+     * A document with some scalar fields, a nested object and <code>children</code> references.
+     */
+    static String document(int n, int children)
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\"title\":\"Document ").append(n).append("\",")
+                .append("\"published\":true,")
+                .append("\"rating\":").append(n % 10).append(".5,")
+                .append("\"tags\":[\"alpha\",\"beta\",\"gamma\"],")
+                .append("\"meta\":{\"created\":1367312400000,\"author\":{\"name\":\"Some Author\",\"id\":").append(n).append("}},")
+                .append("\"children\":[");
+
+        for (int c = 0; c < children; c++)
+        {
+            if (c > 0)
+                sb.append(',');
+            sb.append("\"child-").append(n).append('-').append(c).append('"');
+        }
+
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,91 @@
+package dgm.benchmarks;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.EdgeID;
+import dgm.GraphUtilities;
+import dgm.ID;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vertex and edge lookups and ID decoding, which every commit, walk and recompute plan is built from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphUtilitiesBenchmark
+{
+    BenchmarkGraph graph;
+
+    ID id;
+    ID symbolicId;
+    EdgeID edgeId;
+
+    Vertex vertex;
+    Edge edge;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        graph = BenchmarkGraph.create();
+        final List<ID> ids = graph.commitTree(42, 8, 3);
+
+        id = ids.get(1);
+        symbolicId = GraphUtilities.getSymbolicID(id);
+        vertex = GraphUtilities.findVertex(graph.om, graph.G, id);
+        edge = vertex.getEdges(Direction.IN).iterator().next();
+        edgeId = GraphUtilities.getEdgeID(graph.om, edge);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        graph.shutdown();
+    }
+
+    @Benchmark
+    public ID getID()
+    {
+        return GraphUtilities.getID(graph.om, vertex);
+    }
+
+    @Benchmark
+    public EdgeID getEdgeID()
+    {
+        return GraphUtilities.getEdgeID(graph.om, edge);
+    }
+
+    @Benchmark
+    public Vertex findVertex()
+    {
+        return GraphUtilities.findVertex(graph.om, graph.G, id);
+    }
+
+    @Benchmark
+    public Vertex resolveVertex()
+    {
+        return GraphUtilities.resolveVertex(graph.om, graph.G, symbolicId);
+    }
+
+    @Benchmark
+    public Edge findEdge()
+    {
+        return GraphUtilities.findEdge(graph.om, graph.G, edgeId);
+    }
+
+    @Benchmark
+    public int findOwnedVertices()
+    {
+        int n = 0;
+        for (Vertex v : GraphUtilities.findOwnedVertices(graph.om, graph.G, id))
+            n++;
+        return n;
+    }
+}
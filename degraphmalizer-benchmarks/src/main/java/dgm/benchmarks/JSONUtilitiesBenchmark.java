@@ -0,0 +1,76 @@
+package dgm.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dgm.ID;
+import dgm.JSONUtilities;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions between Jackson trees and Rhino objects, done for every document passing through a configuration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONUtilitiesBenchmark
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    Context cx;
+    ScriptableObject scope;
+
+    String json;
+    JsonNode document;
+    Object jsDocument;
+    JsonNode idNode;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        cx = Context.enter();
+        scope = cx.initStandardObjects();
+
+        json = Documents.document(0, 16);
+        document = om.readTree(json);
+        jsDocument = JSONUtilities.toJSONObject(cx, scope, document);
+        idNode = om.readTree("[\"index\",\"type\",\"some-document-id\",12]");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        Context.exit();
+    }
+
+    @Benchmark
+    public Object jsonNodeToJavascript()
+    {
+        return JSONUtilities.toJSONObject(cx, scope, document);
+    }
+
+    @Benchmark
+    public Object stringToJavascript()
+    {
+        return JSONUtilities.toJSONObject(cx, scope, json);
+    }
+
+    @Benchmark
+    public JsonNode javascriptToJsonNode() throws IOException
+    {
+        return JSONUtilities.fromJSONObject(om, cx, scope, jsDocument);
+    }
+
+    @Benchmark
+    public ID jsonNodeToID()
+    {
+        return JSONUtilities.fromJSON(idNode);
+    }
+}
@@ -0,0 +1,124 @@
+package dgm.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+import dgm.Subgraph;
+import dgm.configuration.PropertyConfig;
+import dgm.configuration.TypeConfig;
+import dgm.configuration.javascript.JavascriptConfiguration;
+import dgm.modules.elasticsearch.ResolvedPathElement;
+import dgm.trees.ImmutableTree;
+import dgm.trees.Tree;
+import dgm.trees.TreeEntry;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.get.GetField;
+import org.elasticsearch.index.get.GetResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The javascript functions of a type configuration: filter, extract, transform and a walk reduce.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavascriptConfigBenchmark
+{
+    @Param({"16"})
+    int children;
+
+    final ObjectMapper om = new ObjectMapper();
+
+    File configDir;
+    TypeConfig typeConfig;
+    PropertyConfig reduceConfig;
+
+    JsonNode document;
+    Tree<ResolvedPathElement> walkTree;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        // the configuration loader wants a directory with a subdirectory per target index
+        configDir = Files.createTempDir();
+        final File indexDir = new File(configDir, "bench-target");
+        indexDir.mkdir();
+        Files.write(Resources.toByteArray(Resources.getResource("bench-target/node.conf.js")), new File(indexDir, "node.conf.js"));
+
+        final JavascriptConfiguration cfg = new JavascriptConfiguration(om, "file:" + configDir.getAbsolutePath());
+        typeConfig = cfg.indices().get("bench-target").types().get("node");
+        reduceConfig = typeConfig.walks().get("parents").properties().get("parent-titles");
+
+        document = om.readTree(Documents.document(0, children));
+        walkTree = walkTree(children);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        new File(new File(configDir, "bench-target"), "node.conf.js").delete();
+        new File(configDir, "bench-target").delete();
+        configDir.delete();
+    }
+
+    @Benchmark
+    public boolean filter()
+    {
+        return typeConfig.filter(document);
+    }
+
+    @Benchmark
+    public Subgraph extract()
+    {
+        return typeConfig.extract(document);
+    }
+
+    @Benchmark
+    public JsonNode transform()
+    {
+        return typeConfig.transform(document);
+    }
+
+    @Benchmark
+    public JsonNode reduce()
+    {
+        return reduceConfig.reduce(walkTree);
+    }
+
+    /**
+     * A walk result of one level: the root document and <code>n</code> fetched neighbours.
+     */
+    private Tree<ResolvedPathElement> walkTree(int n) throws Exception
+    {
+        final List<Tree<ResolvedPathElement>> leaves = new ArrayList<Tree<ResolvedPathElement>>();
+        for (int i = 1; i <= n; i++)
+            leaves.add(new ImmutableTree<ResolvedPathElement>(new TreeEntry<ResolvedPathElement>(element(i), 1)));
+
+        return new ImmutableTree<ResolvedPathElement>(new TreeEntry<ResolvedPathElement>(element(0), 0), leaves);
+    }
+
+    private static ResolvedPathElement element(int n) throws Exception
+    {
+        final GetResult result = new GetResult("bench", "node", "doc-" + n, 1, true,
+                new BytesArray(Documents.document(n, 4)), Collections.<String, GetField>emptyMap());
+
+        // GetResponse has no public constructor, the client normally creates these
+        final Constructor<GetResponse> c = GetResponse.class.getDeclaredConstructor(GetResult.class);
+        c.setAccessible(true);
+
+        return new ResolvedPathElement(Optional.of(c.newInstance(result)), null, null);
+    }
+}
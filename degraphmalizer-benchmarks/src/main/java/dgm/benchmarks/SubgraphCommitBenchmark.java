@@ -0,0 +1,64 @@
+package dgm.benchmarks;
+
+import dgm.ID;
+import dgm.Subgraph;
+import dgm.exceptions.DegraphmalizerException;
+import dgm.graphs.MutableSubgraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Committing the subgraph of a single document into an ephemeral Neo4j store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubgraphCommitBenchmark
+{
+    @Param({"1", "16", "128"})
+    int edges;
+
+    BenchmarkGraph graph;
+
+    MutableSubgraph subgraph;
+    long version = 0;
+    long documents = 0;
+
+    @Setup
+    public void setUp()
+    {
+        graph = BenchmarkGraph.create();
+
+        subgraph = new MutableSubgraph();
+        for (int i = 0; i < edges; i++)
+            subgraph.beginEdge("child", new ID("bench", "node", "target-" + i, 0), Subgraph.Direction.OUTWARDS);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        graph.shutdown();
+    }
+
+    /**
+     * A new version of the same document, with the same edges: the update path.
+     */
+    @Benchmark
+    public void commitNewVersion() throws DegraphmalizerException
+    {
+        graph.sgm.commitSubgraph(new ID("bench", "node", "center", ++version), subgraph);
+    }
+
+    /**
+     * A document which is not yet in the graph: the create path.
+     */
+    @Benchmark
+    public void commitNewDocument() throws DegraphmalizerException
+    {
+        graph.sgm.commitSubgraph(new ID("bench", "node", "document-" + (++documents), 1), subgraph);
+    }
+}
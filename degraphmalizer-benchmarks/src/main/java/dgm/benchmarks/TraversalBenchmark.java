@@ -0,0 +1,98 @@
+package dgm.benchmarks;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.trees.*;
+import dgm.trees2.Trees2;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BFS traversal of the graph, the way walks and the recompute planner see it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark
+{
+    @Param({"4", "16"})
+    int fanOut;
+
+    @Param({"3"})
+    int depth;
+
+    BenchmarkGraph graph;
+    Vertex root;
+    Vertex leaf;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        graph = BenchmarkGraph.create();
+        final List<ID> ids = graph.commitTree(42, fanOut, depth);
+
+        root = GraphUtilities.findVertex(graph.om, graph.G, ids.get(0));
+        leaf = GraphUtilities.findVertex(graph.om, graph.G, ids.get(ids.size() - 1));
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        graph.shutdown();
+    }
+
+    @Benchmark
+    public Tree<Pair<Edge, Vertex>> childrenFromRootOut()
+    {
+        return GraphUtilities.childrenFrom(root, Direction.OUT);
+    }
+
+    @Benchmark
+    public Tree<Pair<Edge, Vertex>> childrenFromLeafIn()
+    {
+        return GraphUtilities.childrenFrom(leaf, Direction.IN);
+    }
+
+    /**
+     * Only the visit, without building a tree, to separate traversal cost from tree construction.
+     */
+    @Benchmark
+    public int bfsVisitRootOut()
+    {
+        final CountingVisitor counter = new CountingVisitor();
+        final CycleKiller<Pair<Edge, Vertex>> visitor =
+                new CycleKiller<Pair<Edge, Vertex>>(counter, new NodeAlreadyVisitedTracker());
+
+        Trees2.bfsVisit(new Pair<Edge, Vertex>(null, root), new GraphTreeViewer(Direction.OUT), visitor);
+
+        return counter.nodes;
+    }
+
+    static class CountingVisitor implements TreeVisitor<Pair<Edge, Vertex>>
+    {
+        int nodes = 0;
+
+        @Override
+        public boolean visitNode(Pair<Edge, Vertex> node, TreeViewer<Pair<Edge, Vertex>> viewer)
+        {
+            nodes++;
+            return false;
+        }
+
+        @Override
+        public void beginChildren(Pair<Edge, Vertex> node, TreeViewer<Pair<Edge, Vertex>> viewer)
+        {}
+
+        @Override
+        public void endChildren(Pair<Edge, Vertex> node, TreeViewer<Pair<Edge, Vertex>> viewer)
+        {}
+    }
+}
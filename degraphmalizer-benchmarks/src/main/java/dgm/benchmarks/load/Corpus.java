@@ -0,0 +1,109 @@
+package dgm.benchmarks.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Random;
+
+/**
+ * A synthetic corpus of linked source documents.
+ * <p/>
+ * The documents are spread over <code>depth</code> levels, every document links to <code>fanOut</code> documents
+ * in the next level, except for a fraction <code>hubRatio</code> of the links, which point to one of the
+ * <code>hubs</code> first documents. Documents in the last level have no links. So paths through the corpus are
+ * about <code>depth</code> long, and the hubs get a very high in-degree.
+ */
+public class Corpus
+{
+    public static final String INDEX = "load";
+    public static final String TYPE = "doc";
+
+    final int documents;
+    final int fanOut;
+    final int depth;
+    final int hubs;
+    final double hubRatio;
+
+    final int[][] links;
+    final int[] revisions;
+
+    private final Random random;
+
+    public Corpus(LoadOptions opt)
+    {
+        this.documents = opt.documents;
+        this.fanOut = opt.fanOut;
+        this.depth = Math.max(1, opt.depth);
+        this.hubs = Math.min(opt.hubs, opt.documents);
+        this.hubRatio = opt.hubRatio;
+        this.random = new Random(opt.seed);
+
+        links = new int[documents][];
+        revisions = new int[documents];
+
+        for (int d = 0; d < documents; d++)
+        {
+            links[d] = new int[level(d) < depth - 1 ? fanOut : 0];
+            for (int l = 0; l < links[d].length; l++)
+                links[d][l] = randomTarget(d);
+        }
+    }
+
+    public int size()
+    {
+        return documents;
+    }
+
+    public static String id(int document)
+    {
+        return "doc-" + document;
+    }
+
+    /**
+     * Bump the revision of a document, and sometimes replace one of its links.
+     */
+    public synchronized void mutate(int document, Random r, double rewire)
+    {
+        revisions[document]++;
+
+        if (links[document].length > 0 && r.nextDouble() < rewire)
+            links[document][r.nextInt(links[document].length)] = randomTarget(document);
+    }
+
+    public synchronized ObjectNode source(ObjectMapper om, int document)
+    {
+        final ObjectNode doc = om.createObjectNode();
+        doc.put("title", "Document " + document + " revision " + revisions[document]);
+        doc.put("revision", revisions[document]);
+
+        final ArrayNode l = doc.putArray("links");
+        for (int target : links[document])
+            l.add(id(target));
+
+        return doc;
+    }
+
+    private int randomTarget(int document)
+    {
+        if (hubs > 0 && random.nextDouble() < hubRatio)
+            return random.nextInt(hubs);
+
+        // a document in the next level
+        final int next = level(document) + 1;
+        final int begin = next * perLevel();
+        final int end = next == depth - 1 ? documents : Math.min(documents, begin + perLevel());
+
+        return Math.min(documents - 1, begin + random.nextInt(Math.max(1, end - begin)));
+    }
+
+    private int perLevel()
+    {
+        return Math.max(1, documents / depth);
+    }
+
+    private int level(int document)
+    {
+        return Math.min(document / perLevel(), depth - 1);
+    }
+}
@@ -0,0 +1,55 @@
+package dgm.benchmarks.load;
+
+import java.util.Arrays;
+
+/**
+ * Records every latency of a phase, so percentiles are exact instead of estimated.
+ * <p/>
+ * Not thread safe, every client has its own instance which are merged when the phase is done.
+ */
+class Latencies
+{
+    private long[] nanos = new long[1024];
+    private int size = 0;
+
+    void add(long latencyNanos)
+    {
+        if (size == nanos.length)
+            nanos = Arrays.copyOf(nanos, size * 2);
+
+        nanos[size++] = latencyNanos;
+    }
+
+    void addAll(Latencies other)
+    {
+        for (int i = 0; i < other.size; i++)
+            add(other.nanos[i]);
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return Sorted copy of the recorded latencies
+     */
+    long[] sorted()
+    {
+        final long[] copy = Arrays.copyOf(nanos, size);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * Nearest rank percentile of a sorted array, in milliseconds.
+     */
+    static double percentile(long[] sorted, double p)
+    {
+        if (sorted.length == 0)
+            return 0;
+
+        final int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+    }
+}
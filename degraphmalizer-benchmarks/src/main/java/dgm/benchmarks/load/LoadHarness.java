@@ -0,0 +1,414 @@
+package dgm.benchmarks.load;
+
+import com.beust.jcommander.JCommander;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import dgm.driver.handler.HandlerModule;
+import dgm.driver.server.Server;
+import dgm.driver.server.ServerModule;
+import dgm.modules.BlueprintsSubgraphManagerModule;
+import dgm.modules.DegraphmalizerModule;
+import dgm.modules.ServiceRunner;
+import dgm.modules.ThreadpoolModule;
+import dgm.modules.elasticsearch.CommonElasticSearchModule;
+import dgm.modules.elasticsearch.nodes.EphemeralES;
+import dgm.modules.fsmon.StaticConfiguration;
+import dgm.modules.neo4j.CommonNeo4j;
+import dgm.modules.neo4j.EphemeralEmbeddedNeo4J;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.nnsoft.guice.sli4j.slf4j.Slf4jLoggingModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load generator.
+ * <p/>
+ * Runs the complete degraphmalizer in-process on an ephemeral elasticsearch and Neo4j, loads a synthetic
+ * {@link Corpus} and then replays update streams at one or more request rates through the HTTP interface.
+ * For every phase it reports throughput, latency percentiles and recompute amplification (the number of target
+ * documents recomputed per request) as CSV or JSON.
+ * <p/>
+ * Latencies are measured from the moment a request was scheduled to be sent, not from the moment a client got
+ * around to sending it, so a saturated service shows up as growing latency instead of a silently lower rate.
+ */
+public final class LoadHarness
+{
+    private static final Logger log = LoggerFactory.getLogger(LoadHarness.class);
+
+    private final LoadOptions opt;
+    private final ObjectMapper om = new ObjectMapper();
+
+    private final Corpus corpus;
+    private final long[] versions;
+
+    private Client client;
+
+    private LoadHarness(LoadOptions opt)
+    {
+        this.opt = opt;
+        this.corpus = new Corpus(opt);
+        this.versions = new long[corpus.size()];
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final LoadOptions opt = new LoadOptions();
+        final JCommander jcommander = new JCommander(opt, args);
+
+        if (opt.help)
+        {
+            jcommander.usage();
+            System.exit(1);
+        }
+
+        new LoadHarness(opt).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception
+    {
+        final Injector injector = Guice.createInjector(modules(writeConfiguration()));
+
+        final Server server = injector.getInstance(Server.class);
+        final ServiceRunner runner = injector.getInstance(ServiceRunner.class);
+        client = injector.getInstance(Client.class);
+
+        runner.startServices();
+        server.startAndWait();
+
+        try
+        {
+            final List<PhaseResult> results = new ArrayList<PhaseResult>();
+
+            log.info("Indexing {} source documents", corpus.size());
+            indexCorpus();
+
+            log.info("Degraphmalizing the corpus");
+            results.add(bootstrap());
+
+            for (double rate : opt.rates())
+            {
+                log.info("Replaying updates at {} requests/second for {} seconds", rate == 0 ? "unthrottled" : rate, opt.duration);
+                results.add(replay(rate));
+            }
+
+            report(results);
+        }
+        finally
+        {
+            server.stopAndWait();
+            runner.stopServices();
+        }
+    }
+
+    private List<Module> modules(File configDir) throws IOException
+    {
+        final List<Module> modules = new ArrayList<Module>();
+        modules.add(new BlueprintsSubgraphManagerModule());
+        modules.add(new Slf4jLoggingModule());
+        modules.add(new DegraphmalizerModule());
+        modules.add(new ThreadpoolModule());
+        modules.add(new ServerModule("localhost", opt.port));
+        modules.add(new HandlerModule());
+        modules.add(new CommonNeo4j());
+        modules.add(new EphemeralEmbeddedNeo4J());
+        modules.add(new CommonElasticSearchModule());
+        modules.add(new EphemeralES());
+        modules.add(new StaticConfiguration("file:" + configDir.getAbsolutePath()));
+        return modules;
+    }
+
+    /**
+     * Write the load configuration to a temporary configuration directory, with the walk depth filled in.
+     */
+    private File writeConfiguration() throws IOException
+    {
+        final String js = Resources.toString(Resources.getResource("load-target/doc.conf.js"), Charsets.UTF_8)
+                .replace("@WALK_DEPTH@", Integer.toString(opt.walkDepth));
+
+        final File dir = Files.createTempDir();
+        final File indexDir = new File(dir, "load-target");
+        if (!indexDir.mkdir())
+            throw new IOException("Cannot create configuration directory " + indexDir);
+
+        Files.write(js, new File(indexDir, "doc.conf.js"), Charsets.UTF_8);
+        return dir;
+    }
+
+    private void indexCorpus()
+    {
+        final int batch = 1000;
+        for (int begin = 0; begin < corpus.size(); begin += batch)
+        {
+            final BulkRequestBuilder bulk = client.prepareBulk();
+            for (int d = begin; d < Math.min(corpus.size(), begin + batch); d++)
+                bulk.add(client.prepareIndex(Corpus.INDEX, Corpus.TYPE, Corpus.id(d)).setSource(corpus.source(om, d).toString()));
+
+            for (BulkItemResponse item : bulk.execute().actionGet().items())
+            {
+                if (item.failed())
+                    throw new RuntimeException("Failed to index " + item.getId() + ": " + item.getFailureMessage());
+
+                versions[begin + item.itemId()] = item.version();
+            }
+        }
+    }
+
+    /**
+     * Degraphmalize every document once, unthrottled, which builds the graph and all target documents.
+     */
+    private PhaseResult bootstrap() throws InterruptedException
+    {
+        final AtomicLong next = new AtomicLong();
+        return runPhase("bootstrap", 0, Long.MAX_VALUE, new Work()
+        {
+            @Override
+            public int nextDocument(int client, Random random)
+            {
+                final long d = next.getAndIncrement();
+                return d < corpus.size() ? (int) d : -1;
+            }
+
+            @Override
+            public long prepare(int document, Random random)
+            {
+                return versions[document];
+            }
+        });
+    }
+
+    /**
+     * Update popular documents more often than others, every client only updates its "own" documents,
+     * so concurrent updates never race each other in elasticsearch.
+     */
+    private PhaseResult replay(double rate) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(opt.duration);
+        return runPhase("replay", rate, deadline, new Work()
+        {
+            @Override
+            public int nextDocument(int client, Random random)
+            {
+                final int n = corpus.size();
+                final int d = (int) (n * Math.pow(random.nextDouble(), opt.skew));
+                final int owned = d - (d % opt.concurrency) + client;
+                return owned < n ? owned : client % n;
+            }
+
+            @Override
+            public long prepare(int document, Random random)
+            {
+                corpus.mutate(document, random, opt.rewire);
+                final long version = client.prepareIndex(Corpus.INDEX, Corpus.TYPE, Corpus.id(document))
+                        .setSource(corpus.source(om, document).toString())
+                        .execute().actionGet().version();
+                versions[document] = version;
+                return version;
+            }
+        });
+    }
+
+    interface Work
+    {
+        /**
+         * @return The next document for this client, or -1 if the phase is done.
+         */
+        int nextDocument(int client, Random random);
+
+        /**
+         * Prepare the source document for the request.
+         *
+         * @return The version of the source document to degraphmalize
+         */
+        long prepare(int document, Random random);
+    }
+
+    private PhaseResult runPhase(String name, final double rate, final long deadline, final Work work) throws InterruptedException
+    {
+        final ExecutorService clients = Executors.newFixedThreadPool(opt.concurrency);
+        final List<Future<Latencies>> results = new ArrayList<Future<Latencies>>();
+
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong recomputes = new AtomicLong();
+        final AtomicLong sequence = new AtomicLong();
+        final long start = System.nanoTime();
+
+        for (int c = 0; c < opt.concurrency; c++)
+        {
+            final int clientNr = c;
+            results.add(clients.submit(new Callable<Latencies>()
+            {
+                @Override
+                public Latencies call() throws Exception
+                {
+                    final Random random = new Random(opt.seed * 31 + clientNr);
+                    final Latencies latencies = new Latencies();
+
+                    while (System.nanoTime() < deadline)
+                    {
+                        final int document = work.nextDocument(clientNr, random);
+                        if (document < 0)
+                            break;
+
+                        final long version = work.prepare(document, random);
+
+                        // with a target rate, the n-th request of the phase is due at start + n / rate
+                        long scheduled = System.nanoTime();
+                        if (rate > 0)
+                        {
+                            scheduled = start + (long) (sequence.getAndIncrement() * 1e9 / rate);
+                            final long wait = scheduled - System.nanoTime();
+                            if (wait > 0)
+                                TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+
+                        final int recomputed = degraphmalize(document, version);
+                        latencies.add(System.nanoTime() - scheduled);
+
+                        if (recomputed < 0)
+                            errors.incrementAndGet();
+                        else
+                            recomputes.addAndGet(recomputed);
+                    }
+
+                    return latencies;
+                }
+            }));
+        }
+
+        final Latencies all = new Latencies();
+        for (Future<Latencies> f : results)
+        {
+            try
+            {
+                all.addAll(f.get());
+            }
+            catch (ExecutionException e)
+            {
+                log.error("Load client failed", e.getCause());
+            }
+        }
+        clients.shutdown();
+
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        return new PhaseResult(name, rate, all, errors.get(), recomputes.get(), seconds);
+    }
+
+    /**
+     * Send a degraphmalize request through the HTTP interface.
+     *
+     * @return The number of recomputed target documents, or -1 if the request failed
+     */
+    private int degraphmalize(int document, long version)
+    {
+        HttpURLConnection c = null;
+        try
+        {
+            final URL url = new URL("http", "localhost", opt.port,
+                    "/" + Corpus.INDEX + "/" + Corpus.TYPE + "/" + Corpus.id(document) + "/" + version);
+
+            c = (HttpURLConnection) url.openConnection();
+            c.setRequestMethod("POST");
+            c.setDoOutput(true);
+            c.setFixedLengthStreamingMode(0);
+            c.getOutputStream().close();
+
+            if (c.getResponseCode() != HttpURLConnection.HTTP_OK)
+            {
+                drain(c.getErrorStream());
+                return -1;
+            }
+
+            final InputStream in = c.getInputStream();
+            try
+            {
+                final JsonNode response = om.readTree(in);
+                return response.path("recomputes").asInt();
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            log.debug("Request for document {} failed: {}", document, e.getMessage());
+            return -1;
+        }
+        finally
+        {
+            if (c != null)
+                c.disconnect();
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException
+    {
+        if (in == null)
+            return;
+
+        try
+        {
+            ByteStreams.toByteArray(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private void report(List<PhaseResult> results) throws IOException
+    {
+        final Writer out = opt.output == null
+                ? new OutputStreamWriter(System.out, Charsets.UTF_8)
+                : Files.newWriter(new File(opt.output), Charsets.UTF_8);
+
+        try
+        {
+            if ("json".equalsIgnoreCase(opt.format))
+            {
+                final ArrayNode phases = om.createArrayNode();
+                for (PhaseResult r : results)
+                    phases.add(r.toJson(om));
+
+                om.writerWithDefaultPrettyPrinter().writeValue(out, phases);
+            }
+            else
+            {
+                out.write(PhaseResult.CSV_HEADER);
+                out.write('\n');
+                for (PhaseResult r : results)
+                {
+                    out.write(r.toCsv());
+                    out.write('\n');
+                }
+            }
+        }
+        finally
+        {
+            if (opt.output == null)
+                out.flush();
+            else
+                out.close();
+        }
+    }
+}
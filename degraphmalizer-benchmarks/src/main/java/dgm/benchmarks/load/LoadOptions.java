@@ -0,0 +1,69 @@
+package dgm.benchmarks.load;
+
+import com.beust.jcommander.Parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line options of the {@link LoadHarness}.
+ */
+public class LoadOptions
+{
+    @Parameter(names = {"-n", "--documents"}, description = "Number of source documents in the synthetic corpus")
+    int documents = 10000;
+
+    @Parameter(names = {"--fanout"}, description = "Number of links per document")
+    int fanOut = 4;
+
+    @Parameter(names = {"--depth"}, description = "Number of levels in the corpus, links point to the next level")
+    int depth = 4;
+
+    @Parameter(names = {"--hubs"}, description = "Number of hub documents")
+    int hubs = 10;
+
+    @Parameter(names = {"--hub-ratio"}, description = "Fraction of the links that point to a hub document")
+    double hubRatio = 0.05;
+
+    @Parameter(names = {"--walk-depth"}, description = "Maximal distance of the walk in the generated configuration")
+    int walkDepth = 2;
+
+    @Parameter(names = {"--skew"}, description = "Update popularity skew, 1 is uniform, higher values concentrate updates on few documents")
+    double skew = 2.0;
+
+    @Parameter(names = {"--rewire"}, description = "Probability that an update also replaces one of the links of the document")
+    double rewire = 0.1;
+
+    @Parameter(names = {"-r", "--rates"}, description = "Comma separated list of request rates (requests/second) to run a phase for, 0 means unthrottled")
+    String rates = "0";
+
+    @Parameter(names = {"-t", "--duration"}, description = "Duration of every phase in seconds")
+    int duration = 60;
+
+    @Parameter(names = {"-c", "--concurrency"}, description = "Number of concurrent HTTP clients")
+    int concurrency = 8;
+
+    @Parameter(names = {"-p", "--port"}, description = "Port of the in-process degraphmalizer")
+    int port = 9831;
+
+    @Parameter(names = {"-s", "--seed"}, description = "Random seed, for repeatable corpora and update streams")
+    long seed = 1;
+
+    @Parameter(names = {"-f", "--format"}, description = "Report format, csv or json")
+    String format = "csv";
+
+    @Parameter(names = {"-o", "--output"}, description = "Write the report to this file instead of stdout")
+    String output;
+
+    @Parameter(names = {"-?", "--help"}, description = "Show command line options", help = true)
+    boolean help;
+
+    List<Double> rates()
+    {
+        final List<Double> result = new ArrayList<Double>();
+        for (String r : Arrays.asList(rates.split(",")))
+            result.add(Double.parseDouble(r.trim()));
+        return result;
+    }
+}
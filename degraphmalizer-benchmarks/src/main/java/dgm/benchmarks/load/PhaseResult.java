@@ -0,0 +1,85 @@
+package dgm.benchmarks.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Outcome of running one phase of the load harness.
+ */
+class PhaseResult
+{
+    static final String CSV_HEADER = "phase,target_rate,requests,errors,seconds,throughput,mean_ms,p50_ms,p99_ms,p999_ms,max_ms,recomputes,amplification";
+
+    final String phase;
+    final double targetRate;
+    final long requests;
+    final long errors;
+    final double seconds;
+    final long recomputes;
+
+    final double mean;
+    final double p50;
+    final double p99;
+    final double p999;
+    final double max;
+
+    PhaseResult(String phase, double targetRate, Latencies latencies, long errors, long recomputes, double seconds)
+    {
+        this.phase = phase;
+        this.targetRate = targetRate;
+        this.requests = latencies.size();
+        this.errors = errors;
+        this.recomputes = recomputes;
+        this.seconds = seconds;
+
+        final long[] sorted = latencies.sorted();
+        long total = 0;
+        for (long l : sorted)
+            total += l;
+
+        mean = sorted.length == 0 ? 0 : total / 1e6 / sorted.length;
+        p50 = Latencies.percentile(sorted, 50);
+        p99 = Latencies.percentile(sorted, 99);
+        p999 = Latencies.percentile(sorted, 99.9);
+        max = Latencies.percentile(sorted, 100);
+    }
+
+    double throughput()
+    {
+        return seconds == 0 ? 0 : requests / seconds;
+    }
+
+    /**
+     * Average number of target documents recomputed per successful request.
+     */
+    double amplification()
+    {
+        final long ok = requests - errors;
+        return ok == 0 ? 0 : (double) recomputes / ok;
+    }
+
+    String toCsv()
+    {
+        return String.format(java.util.Locale.ROOT, "%s,%.1f,%d,%d,%.3f,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%.3f",
+                phase, targetRate, requests, errors, seconds, throughput(), mean, p50, p99, p999, max, recomputes, amplification());
+    }
+
+    ObjectNode toJson(ObjectMapper om)
+    {
+        final ObjectNode n = om.createObjectNode();
+        n.put("phase", phase);
+        n.put("targetRate", targetRate);
+        n.put("requests", requests);
+        n.put("errors", errors);
+        n.put("seconds", seconds);
+        n.put("throughput", throughput());
+        n.put("meanMs", mean);
+        n.put("p50Ms", p50);
+        n.put("p99Ms", p99);
+        n.put("p999Ms", p999);
+        n.put("maxMs", max);
+        n.put("recomputes", recomputes);
+        n.put("amplification", amplification());
+        return n;
+    }
+}
@@ -0,0 +1,48 @@
+({
+    sourceIndex: "bench",
+    sourceType: "node",
+
+    filter: (function(doc) {
+        return doc.published;
+    }),
+
+    extract: (function(doc, subgraph)
+    {
+        if (doc.children && doc.children.length)
+        {
+            doc.children.forEach(function(n) {
+                subgraph.addEdge("child", "bench", "node", n, false, {});
+            });
+        }
+
+        subgraph.setProperty("rating", doc.rating);
+    }),
+
+    transform: (function(doc) {
+        return {
+            "title": doc.title,
+            "author": doc.meta.author.name,
+            "tags": doc.tags.map(function(t) { return t.toUpperCase(); }),
+            "childCount": doc.children ? doc.children.length : 0
+        };
+    }),
+
+    walks: {
+        "parents": {
+            direction: "IN",
+            properties: {
+                "parent-titles": {
+                    nested: false,
+                    reduce: (function(tree) {
+                        var titles = [];
+                        for (var child in Iterator(tree.children())) {
+                            if (child.value().exists)
+                                titles.push(child.value().document.title);
+                        }
+                        return titles;
+                    })
+                }
+            }
+        }
+    }
+})
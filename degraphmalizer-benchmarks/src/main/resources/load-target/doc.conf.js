@@ -0,0 +1,42 @@
+({
+    sourceIndex: "load",
+    sourceType: "doc",
+
+    extract: (function(doc, subgraph)
+    {
+        if (doc.links && doc.links.length)
+        {
+            doc.links.forEach(function(n) {
+                subgraph.addEdge("link", "load", "doc", n, false, {});
+            });
+        }
+    }),
+
+    transform: (function(doc) {
+        return {
+            "title": doc.title,
+            "revision": doc.revision,
+            "outDegree": doc.links ? doc.links.length : 0
+        };
+    }),
+
+    walks: {
+        "linkedFrom": {
+            direction: "IN",
+            maxDistance: @WALK_DEPTH@,
+            properties: {
+                "linkedFromTitles": {
+                    nested: false,
+                    reduce: (function(tree) {
+                        var titles = [];
+                        for (var child in Iterator(tree.children())) {
+                            if (child.value().exists)
+                                titles.push(child.value().document.title);
+                        }
+                        return titles;
+                    })
+                }
+            }
+        }
+    }
+})
@@ -6,8 +6,15 @@ import dgm.degraphmalizr.degraphmalize.DegraphmalizeCallback;
 import dgm.degraphmalizr.degraphmalize.DegraphmalizeResult;
 import dgm.exceptions.DegraphmalizerException;
 
+import java.util.List;
 import java.util.concurrent.Future;
 
 public interface Degraphmalizr {
     Future<DegraphmalizeResult> degraphmalize(DegraphmalizeRequestType requestType, DegraphmalizeRequestScope requestScope, ID id, DegraphmalizeCallback callback) throws DegraphmalizerException;
+
+    /**
+     * Update many documents without waiting for each of them, to rebuild their targets in bulk. The callback is called
+     * for each document when it is done.
+     */
+    void degraphmalizeAll(List<ID> ids, DegraphmalizeCallback callback);
 }
@@ -4,11 +4,15 @@ import dgm.trees.*;
 import dgm.trees2.Trees2;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.AutoIndexer;
 import org.neo4j.graphdb.index.ReadableIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,9 +21,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
 import com.tinkerpop.blueprints.*;
-import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
-import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertexIterable;
 
 public final class GraphUtilities {
     private static final Logger log = LoggerFactory.getLogger(GraphUtilities.class);
@@ -29,13 +32,32 @@ public final class GraphUtilities {
     public static final String SYMBOLIC_IDENTIFER = PREFIX + "symbolic";
     public static final String OWNER = PREFIX + "owner";
     public static final String SYMBOLIC_OWNER = PREFIX + "symbolicOwner";
+    public static final String PROPERTY_CODEC = PREFIX + "codec";
 
     public static final String KEY_INDEX = PREFIX + "index";
     public static final String KEY_TYPE = PREFIX + "type";
     public static final String KEY_ID = PREFIX + "id";
     public static final String KEY_VERSION = PREFIX + "version";
+    public static final String KEY_INDEX_TYPE = PREFIX + "indexType";
 
-    public static final int RESERVED_COUNT = 8;
+    public static final int RESERVED_COUNT = 10;
+
+    /**
+     * The keys vertices are looked up by, only these need a key index. The other keys are only read from a vertex.
+     */
+    public static final Set<String> VERTEX_KEYS = ImmutableSet.of(
+            IDENTIFIER, SYMBOLIC_IDENTIFER, SYMBOLIC_OWNER, KEY_INDEX, KEY_INDEX_TYPE);
+
+    /**
+     * The keys edges are looked up by, only these need a key index.
+     */
+    public static final Set<String> EDGE_KEYS = ImmutableSet.of(IDENTIFIER, SYMBOLIC_OWNER);
+
+    // lucene allows 1024 clauses in a boolean query
+    private static final int RESOLVE_BATCH_SIZE = 512;
+
+    // only reads the old JSON text form of properties, thread safe once configured
+    private static final ObjectMapper TEXT = new ObjectMapper();
 
     private GraphUtilities() {
     }
@@ -49,8 +71,17 @@ public final class GraphUtilities {
      */
     public static Tree<Pair<Edge, Vertex>> childrenFrom(Vertex s, Direction d) {
         // view the graph as a tree
-        final TreeViewer<Pair<Edge, Vertex>> tv = new GraphTreeViewer(d);
+        return childrenFrom(s, new GraphTreeViewer(d));
+    }
 
+    /**
+     * Compute the vertices reached from <code>s</code>, as seen through a tree viewer.
+     *
+     * @param s  Initial vertex
+     * @param tv Finds the children of a vertex, e.g. a {@link GraphTreeViewer} or a viewer on a projection of the graph
+     * @return Tree with value (null, s) and then all children as specified
+     */
+    public static Tree<Pair<Edge, Vertex>> childrenFrom(Vertex s, TreeViewer<Pair<Edge, Vertex>> tv) {
         // build a copy of that tree by BFS visiting it
         final TreeBuilder<Pair<Edge, Vertex>> tb = new TreeBuilder<Pair<Edge, Vertex>>();
 
@@ -69,69 +100,62 @@ public final class GraphUtilities {
 
 
     public static Iterable<Vertex> findVerticesInIndex(Graph graph, String index, String type) {
-        if (graph instanceof MetaGraph && graph instanceof Neo4jGraph) {
-            GraphDatabaseService graphDatabaseService = ((MetaGraph<GraphDatabaseService>) graph).getRawGraph();
-            ReadableIndex<Node> indexer = graphDatabaseService.index().getNodeAutoIndexer().getAutoIndex();
-            Iterable<Node> itty = indexer.query(KEY_INDEX + ":" + index + " AND " + KEY_TYPE + ":" + type);
-            // TODO check for transaction, this is done in Neo4jgraph normally but we can't access that method.
-            return new Neo4jVertexIterable(itty, (Neo4jGraph) graph, false);
-        }
-        return null;
+        return graph.getVertices(KEY_INDEX_TYPE, indexType(index, type));
+    }
+
+    /**
+     * The value of the {@link #KEY_INDEX_TYPE} key, so a single key index finds the vertices of a type in an index.
+     */
+    public static String indexType(String index, String type) {
+        // neither index nor type names can contain a slash
+        return index + "/" + type;
     }
 
     /**
      * Set the property of an element to a json value.
      * <p/>
-     * If the value is an object the property is set to the JSON string, otherwise the property is set to the native
-     * value represented by the JsonNode.
-     * <p/>
+     * Scalars are stored as native values and everything else in a binary form, see {@link PropertyCodec}.
      * <ul>
      * <li>So "'foo'" is stored as a String "foo"
-     * <li>A boolean "true" is stored as Boolean.TRUE, etc.
-     * <li>But "{'foo':123}" is stored as a String "{'foo':123}"
+     * <li>A boolean "true" is stored as Boolean.TRUE, a number "3" as Integer 3, etc.
+     * <li>But "{'foo':123}" is stored as Smile encoded bytes
      * </ul>
      * <p/>
-     * Normally you would just store (JSON) values, not objects or arrays.
+     * If the element still has properties in the old JSON text form they are converted first, because the
+     * {@link #PROPERTY_CODEC} marker applies to all properties of an element.
      *
      * @param elt      The node or edge of which to set the property
      * @param property Property name
      * @param value    Property value
      */
     public static void setProperty(Element elt, String property, JsonNode value) {
-        // TODO use com.tinkerpop.blueprints.Features , supportsBooleanProperty, etc...
         checkPropertyName(property);
 
-        // values are directly inserted as strings
-        if (value.isValueNode()) {
-            elt.setProperty(property, value.asText());
-            return;
+        if (elt.getProperty(PROPERTY_CODEC) == null) {
+            for (String key : elt.getPropertyKeys()) {
+                if (!key.startsWith(PREFIX))
+                    elt.setProperty(key, PropertyCodec.encode(PropertyCodec.decodeText(TEXT, key, elt.getProperty(key))));
+            }
+            elt.setProperty(PROPERTY_CODEC, PropertyCodec.VERSION);
         }
 
-        // objects are inserted as json strings
-        elt.setProperty(property, value.toString());
+        elt.setProperty(property, PropertyCodec.encode(value));
     }
 
+    /**
+     * @return The value of the property, or null if the element doesn't have it
+     */
     public static JsonNode getProperty(ObjectMapper om, Element elt, String property) {
         checkPropertyName(property);
 
         final Object obj = elt.getProperty(property);
+        if (obj == null)
+            return null;
 
-        if (!(obj instanceof String))
-            throw new RuntimeException("Property " + property + " is not in the expected format (String), it's a "
-                    + obj.getClass().getSimpleName());
-
-        final String s = String.valueOf(obj);
+        if (elt.getProperty(PROPERTY_CODEC) == null)
+            return PropertyCodec.decodeText(om, property, obj);
 
-        try {
-            return om.readTree(s);
-        } catch (IOException z) {
-            try {
-                // TODO this is very shady.. anything that doesn't parse as JSON is read as string...
-                return om.readTree("\"" + s + "\"");
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to parse property " + property + " from '" + s + "'", z);
-            }
-        }
+        return PropertyCodec.decode(obj);
     }
 
     /**
@@ -143,12 +167,16 @@ public final class GraphUtilities {
                 element.removeProperty(key);
         }
 
+        // nothing is left in the old form
+        element.setProperty(PROPERTY_CODEC, PropertyCodec.VERSION);
+
         for (Map.Entry<String, JsonNode> e : properties.entrySet())
             setProperty(element, e.getKey(), e.getValue());
     }
 
     public static void checkPropertyName(String name) {
-        if (name.equals(IDENTIFIER) || name.equals(OWNER) || name.equals(SYMBOLIC_IDENTIFER) || name.equals(SYMBOLIC_OWNER))
+        if (name.equals(IDENTIFIER) || name.equals(OWNER) || name.equals(SYMBOLIC_IDENTIFER) || name.equals(SYMBOLIC_OWNER)
+                || name.equals(PROPERTY_CODEC))
             throw new IllegalArgumentException("Property name '" + name + "' is a reserved name");
     }
 
@@ -167,8 +195,13 @@ public final class GraphUtilities {
         return e;
     }
 
-    private static String getStringRepresentation(ObjectMapper om, final EdgeID edgeID) {
-        return toJSON(om, edgeID.tail()).toString() + "--" + edgeID.label() + "->" + toJSON(om, edgeID.head()).toString();
+    /**
+     * The identifier of an edge only contains the symbolic ids of its endpoints, so it doesn't change when a new version
+     * of either endpoint is committed. The versions are read from the vertices, see {@link #getEdgeID}.
+     */
+    public static String getStringRepresentation(ObjectMapper om, final EdgeID edgeID) {
+        return toJSON(om, getSymbolicID(edgeID.tail())).toString() + "--" + edgeID.label() + "->"
+                + toJSON(om, getSymbolicID(edgeID.head())).toString();
     }
 
 
@@ -212,6 +245,63 @@ public final class GraphUtilities {
         return findVertexOnProperty(om, G, getSymbolicID(id), SYMBOLIC_IDENTIFER);
     }
 
+    /**
+     * Find the vertices of many ids without considering their versions, in one query per batch of ids when the graph
+     * can search its index for many values at once, see {@link #batchIndexOf}.
+     *
+     * @return The vertices found, keyed by the symbolic id
+     */
+    public static Map<ID, Vertex> resolveVertices(ObjectMapper om, Graph G, Collection<ID> ids) {
+        final Map<String, ID> byIdentifier = new HashMap<String, ID>();
+        for (ID id : ids) {
+            final ID symbolic = getSymbolicID(id);
+            byIdentifier.put(toJSON(om, symbolic).toString(), symbolic);
+        }
+
+        final Map<ID, Vertex> vertices = new HashMap<ID, Vertex>();
+        final ReadableIndex<Node> index = batchIndexOf(G, SYMBOLIC_IDENTIFER);
+        if (index == null) {
+            for (ID id : byIdentifier.values()) {
+                final Vertex v = resolveVertex(om, G, id);
+                if (v != null)
+                    vertices.put(id, v);
+            }
+            return vertices;
+        }
+
+        final List<String> identifiers = new ArrayList<String>(byIdentifier.keySet());
+        for (int from = 0; from < identifiers.size(); from += RESOLVE_BATCH_SIZE) {
+            final BooleanQuery query = new BooleanQuery();
+            for (String identifier : identifiers.subList(from, Math.min(identifiers.size(), from + RESOLVE_BATCH_SIZE)))
+                query.add(new TermQuery(new Term(SYMBOLIC_IDENTIFER, identifier)), BooleanClause.Occur.SHOULD);
+
+            for (Node node : index.query(query)) {
+                final Vertex v = G.getVertex(node.getId());
+                final ID id = byIdentifier.get(String.valueOf(v.getProperty(SYMBOLIC_IDENTIFER)));
+                if (id != null && vertices.put(id, v) != null)
+                    throw new RuntimeException("Graph inconsistency! More than one vertex with identifier " + id);
+            }
+        }
+
+        return vertices;
+    }
+
+    /**
+     * The index to look up many vertices on {@code key} at once: the neo4j node auto index, when {@code G} exposes a
+     * neo4j database that automatically indexes {@code key}. Null when the graph can't do that.
+     */
+    @SuppressWarnings("unchecked")
+    public static ReadableIndex<Node> batchIndexOf(Graph G, String key) {
+        if (!(G instanceof MetaGraph) || !(((MetaGraph<?>) G).getRawGraph() instanceof GraphDatabaseService))
+            return null;
+
+        final AutoIndexer<Node> indexer = ((MetaGraph<GraphDatabaseService>) G).getRawGraph().index().getNodeAutoIndexer();
+        if (!indexer.isEnabled() || !indexer.getAutoIndexedProperties().contains(key))
+            return null;
+
+        return indexer.getAutoIndex();
+    }
+
     public static EdgeID getEdgeID(ObjectMapper om, Edge edge) {
         final Vertex tail = edge.getVertex(Direction.OUT);
         final Vertex head = edge.getVertex(Direction.IN);
@@ -259,6 +349,7 @@ public final class GraphUtilities {
         element.setProperty(KEY_TYPE, id.type());
         element.setProperty(KEY_ID, id.id());
         element.setProperty(KEY_VERSION, id.version());
+        element.setProperty(KEY_INDEX_TYPE, indexType(id.index(), id.type()));
     }
 
     public static ID getSymbolicID(ID id) {
@@ -297,7 +388,14 @@ public final class GraphUtilities {
         if (tv == null || hv == null)
             throw new RuntimeException("Head or tail of edge doesn't exist!");
 
-        final Edge e = G.addEdge(null, tv, hv, edgeID.label());
+        return createEdge(om, G, tv, edgeID, hv);
+    }
+
+    /**
+     * Create an edge between vertices that were already looked up, and set its identifier.
+     */
+    public static Edge createEdge(ObjectMapper om, Graph G, Vertex tail, EdgeID edgeID, Vertex head) {
+        final Edge e = G.addEdge(null, tail, head, edgeID.label());
 
         setEdgeId(om, edgeID, e);
         return e;
@@ -390,17 +488,7 @@ public final class GraphUtilities {
         setID(om, vertex, symbolicID);
         setOwner(om, vertex, symbolicID);
 
-        for (Edge edge : vertex.getEdges(Direction.IN)) {
-            EdgeID id = getEdgeID(om, edge);
-            EdgeID idWithSymbolicHead = new EdgeID(id.tail(), id.label(), symbolicID);
-            setEdgeId(om, idWithSymbolicHead, edge);
-        }
-
-        for (Edge edge : vertex.getEdges(Direction.OUT)) {
-            EdgeID id = getEdgeID(om, edge);
-            EdgeID idWithSymbolicHead = new EdgeID(symbolicID, id.label(), id.head());
-            setEdgeId(om, idWithSymbolicHead, edge);
-        }
+        // the identifiers of the edges don't contain versions, so they need no update
     }
 
     public static ArrayNode toJSON(ObjectMapper om, ID id) {
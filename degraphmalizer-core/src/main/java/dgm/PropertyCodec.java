@@ -0,0 +1,148 @@
+package dgm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.*;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+
+/**
+ * Converts between {@link JsonNode} values and what is stored in a graph property.
+ * <p/>
+ * Booleans, ints, longs, doubles and strings are stored as native property values, so they keep their type and can be
+ * read without parsing. Everything else (arrays, objects, big numbers, null) is stored as Smile encoded bytes.
+ * <p/>
+ * Elements written before this codec existed have every property as JSON text, those are recognized by the absence
+ * of the {@link GraphUtilities#PROPERTY_CODEC} marker and parsed the old way.
+ */
+public final class PropertyCodec
+{
+    public static final int VERSION = 1;
+
+    private static final ObjectMapper SMILE = new ObjectMapper(new SmileFactory());
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private PropertyCodec()
+    {
+    }
+
+    /**
+     * The value to store in a property for {@code value}.
+     */
+    public static Object encode(JsonNode value)
+    {
+        if (value.isTextual())
+            return value.textValue();
+
+        if (value.isBoolean())
+            return value.booleanValue();
+
+        if (value.isInt())
+            return value.intValue();
+
+        if (value.isLong())
+            return value.longValue();
+
+        if (value.isDouble() || value.isFloatingPointNumber() && !value.isBigDecimal())
+            return value.doubleValue();
+
+        try
+        {
+            return SMILE.writeValueAsBytes(value);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to encode property value " + value, e);
+        }
+    }
+
+    /**
+     * The value of a property written by {@link #encode}.
+     */
+    public static JsonNode decode(Object stored)
+    {
+        if (stored == null)
+            return null;
+
+        if (stored instanceof String)
+            return NODES.textNode((String) stored);
+
+        if (stored instanceof Boolean)
+            return NODES.booleanNode((Boolean) stored);
+
+        if (stored instanceof Integer)
+            return NODES.numberNode((Integer) stored);
+
+        if (stored instanceof Long)
+            return NODES.numberNode((Long) stored);
+
+        if (stored instanceof Double)
+            return NODES.numberNode((Double) stored);
+
+        if (stored instanceof byte[])
+        {
+            try
+            {
+                return SMILE.readTree((byte[]) stored);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Failed to decode property value of " + ((byte[]) stored).length + " bytes", e);
+            }
+        }
+
+        throw new RuntimeException("Property is not in the expected format, it's a " + stored.getClass().getSimpleName());
+    }
+
+    /**
+     * The value of a property written before this codec existed, as JSON text or as a plain string.
+     */
+    public static JsonNode decodeText(ObjectMapper om, String property, Object stored)
+    {
+        if (!(stored instanceof String))
+            throw new RuntimeException("Property " + property + " is not in the expected format (String), it's a "
+                    + stored.getClass().getSimpleName());
+
+        final String s = (String) stored;
+
+        try
+        {
+            return om.readTree(s);
+        }
+        catch (IOException z)
+        {
+            // anything that doesn't parse as JSON is a string
+            return NODES.textNode(s);
+        }
+    }
+
+    /**
+     * The plain java value of a property: a {@link Boolean}, {@link Number} or {@link String} for scalars, and a
+     * {@link JsonNode} for anything else. Scalars written by {@link #encode} are returned as they are stored.
+     */
+    public static Object scalar(Object stored)
+    {
+        if (stored == null || stored instanceof String || stored instanceof Boolean || stored instanceof Number)
+            return stored;
+
+        return unwrap(decode(stored));
+    }
+
+    static Object unwrap(JsonNode node)
+    {
+        if (node.isTextual())
+            return node.textValue();
+
+        if (node.isBoolean())
+            return node.booleanValue();
+
+        if (node.isNumber())
+            return node.numberValue();
+
+        if (node.isNull())
+            return null;
+
+        return node;
+    }
+}
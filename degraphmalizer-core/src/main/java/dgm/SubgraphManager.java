@@ -2,9 +2,14 @@ package dgm;
 
 import dgm.exceptions.DegraphmalizerException;
 
+import java.util.List;
+
 public interface SubgraphManager
 {
     void commitSubgraph(ID id, Subgraph subgraph) throws DegraphmalizerException;
 
-    void deleteSubgraph(ID id) throws DegraphmalizerException;
+    /**
+     * @return The ids of the vertices that were removed, or made symbolic because other subgraphs still point to them
+     */
+    List<ID> deleteSubgraph(ID id) throws DegraphmalizerException;
 }
\ No newline at end of file
@@ -10,4 +10,9 @@ public interface Configuration {
      */
     public Map<String, ? extends IndexConfig> indices();
 
+    /**
+     * Lookup of the type configs per source index and type, built once for this configuration.
+     */
+    public RoutingTable routing();
+
 }
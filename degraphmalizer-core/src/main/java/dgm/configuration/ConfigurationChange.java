@@ -4,8 +4,7 @@
  */
 package dgm.configuration;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * User: rico
@@ -16,10 +15,67 @@ public class ConfigurationChange
     private final List<String> indexesAdded = new ArrayList<String>();
     private final List<String> indexesRemoved = new ArrayList<String>();
     private final List<String> indexesChanged = new ArrayList<String>();
+    private final Map<TypeConfig, Set<TypeFingerprint.Part>> typesChanged = new LinkedHashMap<TypeConfig, Set<TypeFingerprint.Part>>();
+    private final List<TypeConfig> typesRemoved = new ArrayList<TypeConfig>();
 
     public ConfigurationChange()
     {}
 
+    /**
+     * Compare two configurations by the {@link TypeFingerprint}s of their types. Types are matched on target index and
+     * target type, a type that is new in the current configuration has all its parts changed.
+     */
+    public static ConfigurationChange between(Configuration previous, Configuration current)
+    {
+        final ConfigurationChange change = new ConfigurationChange();
+
+        for (IndexConfig index : current.indices().values())
+        {
+            final IndexConfig before = previous.indices().get(index.name());
+            if (before == null)
+                change.indexAdded(index.name());
+
+            boolean changed = false;
+            for (TypeConfig type : index.types().values())
+            {
+                final TypeConfig old = before == null ? null : before.types().get(type.name());
+                final Set<TypeFingerprint.Part> parts = type.fingerprint().changedSince(old == null ? null : old.fingerprint());
+                if (!parts.isEmpty())
+                {
+                    change.typeChanged(type, parts);
+                    changed = true;
+                }
+            }
+
+            if (before == null)
+                continue;
+
+            for (TypeConfig old : before.types().values())
+            {
+                if (!index.types().containsKey(old.name()))
+                {
+                    change.typeRemoved(old);
+                    changed = true;
+                }
+            }
+
+            if (changed)
+                change.indexChanged(index.name());
+        }
+
+        for (IndexConfig index : previous.indices().values())
+        {
+            if (!current.indices().containsKey(index.name()))
+            {
+                change.indexRemoved(index.name());
+                for (TypeConfig old : index.types().values())
+                    change.typeRemoved(old);
+            }
+        }
+
+        return change;
+    }
+
     public void indexAdded(String index)
     {
         indexesAdded.add(index);
@@ -50,6 +106,32 @@ public class ConfigurationChange
         return indexesChanged;
     }
 
+    public void typeChanged(TypeConfig type, Set<TypeFingerprint.Part> parts)
+    {
+        typesChanged.put(type, parts);
+    }
+
+    public void typeRemoved(TypeConfig type)
+    {
+        typesRemoved.add(type);
+    }
+
+    /**
+     * Types of the current configuration that are new or changed, with the parts that changed.
+     */
+    public Map<TypeConfig, Set<TypeFingerprint.Part>> typesChanged()
+    {
+        return typesChanged;
+    }
+
+    /**
+     * Types of the previous configuration that no longer exist.
+     */
+    public Iterable<TypeConfig> typesRemoved()
+    {
+        return typesRemoved;
+    }
+
     public boolean hasChanges()
     {
         return 0 != (indexesAdded.size() + indexesChanged.size() + indexesRemoved.size());
@@ -0,0 +1,12 @@
+package dgm.configuration;
+
+/**
+ * Monitor what changed when the configuration is reloaded
+ */
+public interface ConfigurationChangeMonitor
+{
+    /**
+     * This method is called after a new configuration was loaded, with the differences to the previous one
+     */
+    void configurationChanged(ConfigurationChange change);
+}
@@ -16,35 +16,28 @@ import com.google.common.base.Predicate;
 public class Configurations {
     final static private Logger LOG = LoggerFactory.getLogger(Configurations.class);
 
+    /**
+     * The walk dependencies of this configuration, computed once per configuration instance.
+     */
+    public static WalkDependencies dependencies(Configuration cfg) {
+        return cfg.routing().dependencies();
+    }
+
     /**
      * Find all TypeConfigs with specified source index and source type
      */
     public static Iterable<TypeConfig> configsFor(Configuration cfg, String srcIndex, String srcType) {
-        StringBuilder logMessage = null;
+        final List<TypeConfig> configs = cfg.routing().configsFor(srcIndex, srcType);
 
         if (LOG.isDebugEnabled()) {
-            logMessage = new StringBuilder("Matching request for /");
+            final StringBuilder logMessage = new StringBuilder("Matching request for /");
             logMessage.append(srcIndex).append("/").append(srcType);
             logMessage.append(" to [");
-        }
-
-        final List<TypeConfig> configs = new ArrayList<TypeConfig>();
-
-        // find all matching configs
-        for (IndexConfig i : cfg.indices().values()) {
-            for (TypeConfig t : i.types().values()) {
-                if (srcIndex.equals(t.sourceIndex()) && (srcType == null || srcType.equals(t.sourceType()))) {
-                    if (logMessage != null) {
-                        logMessage.append(" /").append(t.targetIndex());
-                        logMessage.append("/").append(t.targetType());
-                        logMessage.append(", ");
-                    }
-
-                    configs.add(t);
-                }
+            for (TypeConfig t : configs) {
+                logMessage.append(" /").append(t.targetIndex());
+                logMessage.append("/").append(t.targetType());
+                logMessage.append(", ");
             }
-        }
-        if (logMessage != null) {
             LOG.debug(logMessage.append("]").toString());
         }
 
@@ -0,0 +1,94 @@
+package dgm.configuration;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.*;
+
+/**
+ * Which type configurations handle the documents of a source index and type, for one {@link Configuration}.
+ * <p/>
+ * This is looked up for every request and for every vertex a change reaches, so all answers are computed when the
+ * configuration is loaded: the configurations per source index and type, per source index for any type, and the
+ * maximal walk depth of each configuration. A reload creates a new configuration with a new table, so the table never
+ * changes.
+ */
+public final class RoutingTable {
+    private final ImmutableMap<String, ImmutableMap<String, ImmutableList<TypeConfig>>> byType;
+    private final ImmutableMap<String, ImmutableList<TypeConfig>> byIndex;
+    private final Map<TypeConfig, Integer> walkDepths = new IdentityHashMap<TypeConfig, Integer>();
+    private final WalkDependencies dependencies;
+
+    public RoutingTable(Configuration cfg) {
+        final Map<String, Map<String, List<TypeConfig>>> types = new LinkedHashMap<String, Map<String, List<TypeConfig>>>();
+        final Map<String, List<TypeConfig>> indices = new LinkedHashMap<String, List<TypeConfig>>();
+
+        for (IndexConfig i : cfg.indices().values()) {
+            for (TypeConfig t : i.types().values()) {
+                Map<String, List<TypeConfig>> indexTypes = types.get(t.sourceIndex());
+                if (indexTypes == null) {
+                    indexTypes = new LinkedHashMap<String, List<TypeConfig>>();
+                    types.put(t.sourceIndex(), indexTypes);
+                }
+                add(indexTypes, t.sourceType(), t);
+                add(indices, t.sourceIndex(), t);
+
+                walkDepths.put(t, t.maximalWalkDepth());
+            }
+        }
+
+        final ImmutableMap.Builder<String, ImmutableMap<String, ImmutableList<TypeConfig>>> byType = ImmutableMap.builder();
+        for (Map.Entry<String, Map<String, List<TypeConfig>>> e : types.entrySet()) {
+            byType.put(e.getKey(), immutable(e.getValue()));
+        }
+        this.byType = byType.build();
+        this.byIndex = immutable(indices);
+
+        dependencies = new WalkDependencies(cfg);
+    }
+
+    private static void add(Map<String, List<TypeConfig>> configs, String key, TypeConfig t) {
+        List<TypeConfig> list = configs.get(key);
+        if (list == null) {
+            list = new ArrayList<TypeConfig>();
+            configs.put(key, list);
+        }
+        list.add(t);
+    }
+
+    private static ImmutableMap<String, ImmutableList<TypeConfig>> immutable(Map<String, List<TypeConfig>> configs) {
+        final ImmutableMap.Builder<String, ImmutableList<TypeConfig>> builder = ImmutableMap.builder();
+        for (Map.Entry<String, List<TypeConfig>> e : configs.entrySet()) {
+            builder.put(e.getKey(), ImmutableList.copyOf(e.getValue()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * The type configs with this source index and type.
+     *
+     * @param sourceType null for the configs of all types in the source index
+     */
+    public List<TypeConfig> configsFor(String sourceIndex, String sourceType) {
+        final List<TypeConfig> configs;
+        if (sourceType == null) {
+            configs = byIndex.get(sourceIndex);
+        } else {
+            final ImmutableMap<String, ImmutableList<TypeConfig>> indexTypes = byType.get(sourceIndex);
+            configs = indexTypes == null ? null : indexTypes.get(sourceType);
+        }
+        return configs == null ? ImmutableList.<TypeConfig>of() : configs;
+    }
+
+    /**
+     * The longest walk of a type config of this configuration.
+     */
+    public int maximalWalkDepth(TypeConfig config) {
+        final Integer depth = walkDepths.get(config);
+        return depth == null ? config.maximalWalkDepth() : depth;
+    }
+
+    public WalkDependencies dependencies() {
+        return dependencies;
+    }
+}
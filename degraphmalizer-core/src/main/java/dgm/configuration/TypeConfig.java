@@ -55,4 +55,11 @@ public interface TypeConfig {
 
     Integer maximalWalkDepth();
 
+    /**
+     * Identifies the code of this configuration, including the libraries it uses, per part. A part's fingerprint changes
+     * whenever that part could behave differently, so for instance results of {@link #transform} can be reused as long
+     * as the {@link TypeFingerprint.Part#TRANSFORM} fingerprint stays the same.
+     */
+    TypeFingerprint fingerprint();
+
 }
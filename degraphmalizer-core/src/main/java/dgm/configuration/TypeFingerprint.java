@@ -0,0 +1,71 @@
+package dgm.configuration;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fingerprint of the code of a {@link TypeConfig}, per part of the configuration.
+ * <p/>
+ * Everything that isn't one of the {@link Part}s (libraries, source index and type, helper functions) is hashed into
+ * the common fingerprint. Each part is hashed together with the common fingerprint, so a part fingerprint changes
+ * whenever that part could behave differently.
+ */
+public final class TypeFingerprint {
+    public enum Part {
+        FILTER, EXTRACT, TRANSFORM, WALKS
+    }
+
+    private final String common;
+    private final Map<Part, String> parts = new EnumMap<Part, String>(Part.class);
+
+    public TypeFingerprint(String common, String filter, String extract, String transform, String walks) {
+        this.common = common;
+        parts.put(Part.FILTER, filter);
+        parts.put(Part.EXTRACT, extract);
+        parts.put(Part.TRANSFORM, transform);
+        parts.put(Part.WALKS, walks);
+    }
+
+    public String get(Part part) {
+        return parts.get(part);
+    }
+
+    /**
+     * @return the parts that differ from the previous fingerprint, all of them if there is none or if something outside
+     *         the parts changed
+     */
+    public Set<Part> changedSince(TypeFingerprint previous) {
+        if (previous == null || !common.equals(previous.common)) {
+            return EnumSet.allOf(Part.class);
+        }
+
+        final Set<Part> changed = EnumSet.noneOf(Part.class);
+        for (Part p : Part.values()) {
+            if (!get(p).equals(previous.get(p))) {
+                changed.add(p);
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TypeFingerprint)) return false;
+
+        final TypeFingerprint other = (TypeFingerprint) o;
+        return common.equals(other.common) && parts.equals(other.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * common.hashCode() + parts.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TypeFingerprint(" + common + ", " + parts + ")";
+    }
+}
@@ -0,0 +1,108 @@
+package dgm.configuration;
+
+import com.tinkerpop.blueprints.Direction;
+
+import java.util.*;
+
+/**
+ * Which documents depend on a changed document, derived from the walks in a {@link Configuration}.
+ * <p/>
+ * A walk in direction <i>d</i> from document <i>X</i> sees every vertex it reaches within {@link WalkConfig#maxDistance()}
+ * steps. So when document <i>R</i> changes, the documents that must be recomputed are found by traversing from <i>R</i>
+ * in the opposite direction: an OUT walk can only see <i>R</i> if <i>X</i> is reached by an IN traversal from <i>R</i>,
+ * and vice versa. Walks are not restricted in the types they pass, so the only thing that limits the traversal is the
+ * type of the vertex it ends on, and the distance.
+ * <p/>
+ * For each traversal direction this keeps the maximal depth any walk needs, and per source index and type which
+ * configurations have a walk reaching that far.
+ */
+public final class WalkDependencies {
+    /**
+     * A type config that has walks in some direction, and the longest of those walks.
+     */
+    private static final class Dependent {
+        final TypeConfig config;
+        final int depth;
+
+        Dependent(TypeConfig config, int depth) {
+            this.config = config;
+            this.depth = depth;
+        }
+    }
+
+    private final Map<String, List<Dependent>> inTraversal = new HashMap<String, List<Dependent>>();
+    private final Map<String, List<Dependent>> outTraversal = new HashMap<String, List<Dependent>>();
+
+    private int inDepth = -1;
+    private int outDepth = -1;
+
+    public WalkDependencies(Configuration cfg) {
+        for (IndexConfig i : cfg.indices().values()) {
+            for (TypeConfig t : i.types().values()) {
+                int in = -1;
+                int out = -1;
+                for (WalkConfig w : t.walks().values()) {
+                    final int depth = w.maxDistance() == null ? Integer.MAX_VALUE : w.maxDistance();
+                    if (w.direction() == Direction.OUT) {
+                        out = Math.max(out, depth);
+                    } else {
+                        in = Math.max(in, depth);
+                    }
+                }
+
+                // documents with an OUT walk are found by traversing IN from the changed document
+                if (out >= 0) {
+                    add(inTraversal, t, out);
+                    inDepth = Math.max(inDepth, out);
+                }
+
+                if (in >= 0) {
+                    add(outTraversal, t, in);
+                    outDepth = Math.max(outDepth, in);
+                }
+            }
+        }
+    }
+
+    private static void add(Map<String, List<Dependent>> dependents, TypeConfig t, int depth) {
+        final String key = key(t.sourceIndex(), t.sourceType());
+        List<Dependent> list = dependents.get(key);
+        if (list == null) {
+            list = new ArrayList<Dependent>();
+            dependents.put(key, list);
+        }
+        list.add(new Dependent(t, depth));
+    }
+
+    private static String key(String index, String type) {
+        return index + '/' + type;
+    }
+
+    /**
+     * How far to traverse from a changed document in direction {@code traversal}.
+     *
+     * @return -1 if no walk depends on documents in that direction, {@link Integer#MAX_VALUE} if unlimited
+     */
+    public int depth(Direction traversal) {
+        return traversal == Direction.IN ? inDepth : outDepth;
+    }
+
+    /**
+     * The type configs for documents of this index and type, reached by traversing {@code distance} steps in direction
+     * {@code traversal} from a changed document, that have a walk that includes the changed document.
+     */
+    public List<TypeConfig> dependents(String index, String type, Direction traversal, int distance) {
+        final List<Dependent> candidates = (traversal == Direction.IN ? inTraversal : outTraversal).get(key(index, type));
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        final List<TypeConfig> configs = new ArrayList<TypeConfig>(candidates.size());
+        for (Dependent d : candidates) {
+            if (distance <= d.depth) {
+                configs.add(d.config);
+            }
+        }
+        return configs;
+    }
+}
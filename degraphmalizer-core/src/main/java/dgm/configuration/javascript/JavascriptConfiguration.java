@@ -3,7 +3,12 @@ package dgm.configuration.javascript;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
 import com.google.common.base.Predicate;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Resources;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.tinkerpop.blueprints.Direction;
 import dgm.JSONUtilities;
 import dgm.Subgraph;
@@ -20,13 +25,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.net.URL;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Load configuration from javascript files in a directory
@@ -37,6 +41,10 @@ public class JavascriptConfiguration implements Configuration {
 
     private final Map<String, JavascriptIndexConfig> indices = new HashMap<String, JavascriptIndexConfig>();
 
+    private final ScriptCache cache;
+    private final JavascriptLibraries libraries;
+    private final RoutingTable routing;
+
     //private JavascriptFixtureConfiguration fixtureConfig;
 
     static {
@@ -44,27 +52,134 @@ public class JavascriptConfiguration implements Configuration {
     }
 
     public JavascriptConfiguration(ObjectMapper om, String directory, URL... libraries) throws IOException {
+        this(om, directory, ScriptCache.NONE, libraries);
+    }
+
+    /**
+     * Compile the libraries once, and all index directories in parallel.
+     *
+     * @param cache Where to keep compiled scripts between restarts
+     */
+    public JavascriptConfiguration(final ObjectMapper om, String directory, final ScriptCache cache, URL... libraries) throws IOException {
         LOG.info("Reading {} with libraries {}", directory, Arrays.asList(libraries));
         final List<String> directories = Configurations.listDirectories(directory);
         if (directories == null) {
             throw new ConfigurationException("Configuration directory " + directory + " does not exist");
         }
+
+        this.cache = cache;
+        this.libraries = new JavascriptLibraries(cache, libraries);
+
+        // each subdirectory encodes an index
+        final Map<String, String> indexDirectories = new LinkedHashMap<String, String>();
+        for (String dir : directories) {
+            String[] dirArray = dir.split("/");
+            indexDirectories.put(dirArray[dirArray.length - 1], dir);
+        }
+        final ExecutorService compilers = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(indexDirectories.size(), Runtime.getRuntime().availableProcessors())),
+                new ThreadFactoryBuilder().setNameFormat("config-compiler-%d").setDaemon(true).build());
+        try {
+            final Map<String, Future<JavascriptIndexConfig>> compiled = new HashMap<String, Future<JavascriptIndexConfig>>();
+            for (final Map.Entry<String, String> e : indexDirectories.entrySet()) {
+                LOG.info("Reading {} ({})", e.getValue(), e.getKey());
+                compiled.put(e.getKey(), compilers.submit(new java.util.concurrent.Callable<JavascriptIndexConfig>() {
+                    @Override
+                    public JavascriptIndexConfig call() throws IOException {
+                        return new JavascriptIndexConfig(om, e.getKey(), e.getValue(), JavascriptConfiguration.this.libraries, cache);
+                    }
+                }));
+            }
+
+            for (Map.Entry<String, Future<JavascriptIndexConfig>> e : compiled.entrySet()) {
+                indices.put(e.getKey(), get(e.getValue()));
+            }
+        } finally {
+            compilers.shutdownNow();
+        }
+
+        routing = new RoutingTable(this);
+    }
+
+    private JavascriptConfiguration(Map<String, JavascriptIndexConfig> indices, ScriptCache cache, JavascriptLibraries libraries) {
+        this.indices.putAll(indices);
+        this.cache = cache;
+        this.libraries = libraries;
+        this.routing = new RoutingTable(this);
+    }
+
+    /**
+     * Read a single index again.
+     * <p/>
+     * Returns a new configuration in which only the index is compiled again, all other indices are shared with this
+     * configuration. If the index directory no longer exists the index is left out, and if the libraries changed all
+     * indices are read again. This configuration is not changed, so requests that are using it finish with the
+     * configuration they started with.
+     *
+     * @param directory The configuration directory, containing a subdirectory per index
+     * @param index     Name of the index subdirectory that changed
+     */
+    public JavascriptConfiguration reload(ObjectMapper om, String directory, String index, URL... libraries) throws IOException {
+        if (!JavascriptLibraries.fingerprint(libraries).equals(this.libraries.fingerprint)) {
+            LOG.info("Libraries changed, reading all indices again");
+            return new JavascriptConfiguration(om, directory, cache, libraries);
+        }
+
+        final List<String> directories = Configurations.listDirectories(directory);
+        if (directories == null) {
+            throw new ConfigurationException("Configuration directory " + directory + " does not exist");
+        }
+
+        final Map<String, JavascriptIndexConfig> reloaded = new HashMap<String, JavascriptIndexConfig>(indices);
+        reloaded.remove(index);
+
         for (String dir : directories) {
-            // each subdirectory encodes an index
             String[] dirArray = dir.split("/");
-            String dirname = dirArray[dirArray.length -1];
-            LOG.info("Reading {} ({})", dir, dirname);
+            if (dirArray[dirArray.length - 1].equals(index)) {
+                LOG.info("Reading {} ({}) again", dir, index);
+                reloaded.put(index, new JavascriptIndexConfig(om, index, dir, this.libraries, cache));
+                break;
+            }
+        }
 
-            indices.put(dirname, new JavascriptIndexConfig(om, dirname, dir, libraries));
+        if (!reloaded.containsKey(index)) {
+            LOG.info("Index {} is no longer in {}", index, directory);
         }
+
+        return new JavascriptConfiguration(reloaded, cache, this.libraries);
     }
 
+    private static JavascriptIndexConfig get(Future<JavascriptIndexConfig> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConfigurationException("Interrupted while reading the configuration");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
 
     @Override
     public Map<String, ? extends IndexConfig> indices() {
         return indices;
     }
 
+    @Override
+    public RoutingTable routing() {
+        return routing;
+    }
+
     private static class JavascriptContextFactory extends ContextFactory {
         @Override
         public boolean hasFeature(Context context, int featureIndex) {
@@ -82,6 +197,65 @@ public class JavascriptConfiguration implements Configuration {
 }
 
 
+/**
+ * The libraries every index is compiled with.
+ * <p/>
+ * They are compiled once into a sealed scope, which is the prototype of the scope of each index. So an index sees the
+ * libraries, but can't change them.
+ */
+class JavascriptLibraries {
+    private static final Logger LOG = LoggerFactory.getLogger(JavascriptLibraries.class);
+
+    final ScriptableObject scope;
+
+    // hash of the sources of all libraries, part of the fingerprint of every type
+    final String fingerprint;
+
+    JavascriptLibraries(ScriptCache cache, URL... libraries) throws IOException {
+        final List<String> sources = read(libraries);
+        fingerprint = fingerprint(libraries, sources);
+
+        try {
+            final Context cx = Context.enter();
+
+            // create standard ECMA scope (org.mozilla.javascript.ImporterTopLevel) including some rhino utilities from Global
+            scope = new Global(cx); //cx.initStandardObjects(null, true);
+
+            for (int i = 0; i < libraries.length; i++) {
+                cache.compile(cx, sources.get(i), libraries[i].getFile()).exec(cx, scope);
+                LOG.info("Loaded {}", libraries[i]);
+            }
+
+            final Object jsLogger = Context.javaToJS(new JSLogger(), scope);
+            ScriptableObject.putProperty(scope, "LOG", jsLogger);
+            // seal the libraries and the loggers so configurations can't overwrite them.
+            scope.sealObject();
+        } finally {
+            Context.exit();
+        }
+    }
+
+    static String fingerprint(URL... libraries) throws IOException {
+        return fingerprint(libraries, read(libraries));
+    }
+
+    private static String fingerprint(URL[] libraries, List<String> sources) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (int i = 0; i < libraries.length; i++) {
+            hasher.putString(libraries[i].toString()).putString(sources.get(i));
+        }
+        return hasher.hash().toString();
+    }
+
+    private static List<String> read(URL... libraries) throws IOException {
+        final List<String> sources = new ArrayList<String>(libraries.length);
+        for (URL f : libraries) {
+            sources.add(Resources.toString(f, Charsets.UTF_8));
+        }
+        return sources;
+    }
+}
+
 class JavascriptIndexConfig implements IndexConfig {
     private static final Logger LOG = LoggerFactory.getLogger(JavascriptIndexConfig.class);
 
@@ -89,31 +263,26 @@ class JavascriptIndexConfig implements IndexConfig {
     final Scriptable scope;
     final Map<String, JavascriptTypeConfig> types = new HashMap<String, JavascriptTypeConfig>();
 
-
     /**
      * Scan, filter and watch a directory for correct javascript files.
      *
      * @param index     The elastic search index to write to
      * @param directory Directory to watch for files
+     * @param libraries Compiled libraries, shared with the other indices
      */
-    public JavascriptIndexConfig(ObjectMapper om, String index, String directory, URL... libraries) throws IOException {
+    public JavascriptIndexConfig(ObjectMapper om, String index, String directory, JavascriptLibraries libraries, ScriptCache cache) throws IOException {
 
-        LOG.info("ES: {}, directory: {}, libraries {}", new Object[]{index, directory, Arrays.asList(libraries)});
+        LOG.info("ES: {}, directory: {}", index, directory);
         this.index = index;
-        ScriptableObject buildScope;
+        final ScriptableObject buildScope;
 
         try {
             final Context cx = Context.enter();
 
-            // create standard ECMA scope (org.mozilla.javascript.ImporterTopLevel) including some rhino utilities from Global
-            buildScope = new Global(cx); //cx.initStandardObjects(null, true);
-
-            loadLibs(cx, buildScope, libraries);
-
-            final Object jsLogger = Context.javaToJS(new JSLogger(), buildScope);
-            ScriptableObject.putProperty(buildScope, "LOG", jsLogger);
-            // seal the libraries and the loggers so configurations can't overwrite them.
-            buildScope.sealObject();
+            // the configurations of this index live in their own scope, on top of the libraries
+            buildScope = (ScriptableObject) cx.newObject(libraries.scope);
+            buildScope.setPrototype(libraries.scope);
+            buildScope.setParentScope(null);
 
             // non recursively load all configuration files
             final Predicate<URL> filenameFilter = new Predicate<URL>() {
@@ -130,15 +299,17 @@ class JavascriptIndexConfig implements IndexConfig {
             }
             LOG.info("{}: Found config files  for index [{}]", directory, configFiles);
             for (URL file : configFiles) {
-                final Reader reader = new InputStreamReader(file.openStream(), "UTF-8");
+                final String source = Resources.toString(file, Charsets.UTF_8);
                 final String fn = file.toString();
                 final String type = file.getFile().replaceFirst(".conf.js", "").replaceFirst(".*/", "");
 
                 LOG.info("Found config file [{}] for index [{}] and type [{}]", new Object[] {file, index, type});
 
-                final Scriptable typeConfig = (Scriptable) compile(cx, buildScope, reader, fn);
+                final Scriptable typeConfig = (Scriptable) cache.compile(cx, source, fn).exec(cx, buildScope);
+
+                final TypeFingerprint fingerprint = JavascriptFingerprints.of(libraries.fingerprint, index, type, source, fn);
 
-                types.put(type, new JavascriptTypeConfig(om, type, buildScope, typeConfig, this));
+                types.put(type, new JavascriptTypeConfig(om, type, buildScope, typeConfig, this, fingerprint));
             }
 
             // Seal the configuration.
@@ -161,25 +332,6 @@ class JavascriptIndexConfig implements IndexConfig {
         return types;
     }
 
-    private Object compile(Context cx, Scriptable scope, Reader reader, String fn) throws IOException {
-        // compile and execute into the scope
-        return cx.compileReader(reader, fn, 0, null).exec(cx, scope);
-    }
-
-
-    private void loadLibs(Context cx, Scriptable scope, URL... urls) throws IOException {
-        for (URL f : urls) {
-            loadLib(cx, scope, f);
-        }
-    }
-
-    private Object loadLib(Context cx, Scriptable scope, URL f) throws IOException {
-        final Reader reader = new InputStreamReader(f.openStream(), "UTF-8");
-        Object object = compile(cx, scope, reader, f.getFile());
-        LOG.info("Loaded {}", f);
-        return object;
-    }
-
     @Override
     public String toString() {
         return "JavascriptIndexConfig(index=" + index + ")";
@@ -202,11 +354,14 @@ class JavascriptTypeConfig implements TypeConfig {
 
     final ObjectMapper objectMapper;
 
+    final TypeFingerprint fingerprint;
+
 
     final Map<String, WalkConfig> walks = new HashMap<String, WalkConfig>();
 
-    public JavascriptTypeConfig(ObjectMapper objectMapper, String type, Scriptable scope, Scriptable script, IndexConfig indexConfig) {
+    public JavascriptTypeConfig(ObjectMapper objectMapper, String type, Scriptable scope, Scriptable script, IndexConfig indexConfig, TypeFingerprint fingerprint) {
         this.objectMapper = objectMapper;
+        this.fingerprint = fingerprint;
         this.type = type;
         this.scope = scope;
         this.script = script;
@@ -378,6 +533,11 @@ class JavascriptTypeConfig implements TypeConfig {
         return walks;
     }
 
+    @Override
+    public TypeFingerprint fingerprint() {
+        return fingerprint;
+    }
+
     @Override
     public Integer maximalWalkDepth() {
         int result = 0;
@@ -0,0 +1,130 @@
+package dgm.configuration.javascript;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import dgm.configuration.TypeFingerprint;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.*;
+
+import java.util.*;
+
+/**
+ * Computes the {@link TypeFingerprint} of a type configuration from its source.
+ * <p/>
+ * The source is parsed and the text of the {@code filter}, {@code extract}, {@code transform} and {@code walks}
+ * properties of the configuration object is hashed per part. Everything else in the file, including comments and
+ * helper functions, ends up in the common fingerprint. If the configuration object can't be found, the whole file is
+ * common and every change affects every part.
+ */
+final class JavascriptFingerprints {
+    private static final Map<String, TypeFingerprint.Part> PARTS = new HashMap<String, TypeFingerprint.Part>();
+
+    static {
+        PARTS.put("filter", TypeFingerprint.Part.FILTER);
+        PARTS.put("extract", TypeFingerprint.Part.EXTRACT);
+        PARTS.put("transform", TypeFingerprint.Part.TRANSFORM);
+        PARTS.put("walks", TypeFingerprint.Part.WALKS);
+    }
+
+    private JavascriptFingerprints() {
+    }
+
+    /**
+     * @param libraries Fingerprint of the libraries the configuration is compiled with
+     * @param source    Source of the configuration file
+     */
+    static TypeFingerprint of(String libraries, String index, String type, String source, String filename) {
+        final Map<TypeFingerprint.Part, String> partSources = new EnumMap<TypeFingerprint.Part, String>(TypeFingerprint.Part.class);
+        final StringBuilder rest = new StringBuilder();
+
+        // cut the parts out of the source, in order of their position in the file
+        int position = 0;
+        for (ObjectProperty p : configurationProperties(source, filename)) {
+            final TypeFingerprint.Part part = PARTS.get(propertyName(p));
+            if (part == null) {
+                continue;
+            }
+
+            final int start = p.getAbsolutePosition();
+            final int end = start + p.getLength();
+            rest.append(source, position, start);
+            partSources.put(part, source.substring(start, end));
+            position = end;
+        }
+        rest.append(source.substring(position));
+
+        final String common = hash(libraries, index, type, rest.toString());
+        final Map<TypeFingerprint.Part, String> parts = new EnumMap<TypeFingerprint.Part, String>(TypeFingerprint.Part.class);
+        for (TypeFingerprint.Part part : TypeFingerprint.Part.values()) {
+            final String partSource = partSources.get(part);
+            parts.put(part, hash(common, part.name(), partSource == null ? "" : partSource));
+        }
+
+        return new TypeFingerprint(common, parts.get(TypeFingerprint.Part.FILTER), parts.get(TypeFingerprint.Part.EXTRACT),
+                parts.get(TypeFingerprint.Part.TRANSFORM), parts.get(TypeFingerprint.Part.WALKS));
+    }
+
+    /**
+     * The properties of the first object literal in the file that has a {@code sourceType}, sorted by position.
+     */
+    private static List<ObjectProperty> configurationProperties(String source, String filename) {
+        final AstRoot root = new Parser(new CompilerEnvirons()).parse(source, filename, 1);
+
+        final ObjectLiteral[] configuration = new ObjectLiteral[1];
+        root.visit(new NodeVisitor() {
+            @Override
+            public boolean visit(AstNode node) {
+                if (configuration[0] != null) {
+                    return false;
+                }
+                if (node instanceof ObjectLiteral && isConfiguration((ObjectLiteral) node)) {
+                    configuration[0] = (ObjectLiteral) node;
+                    return false;
+                }
+                return true;
+            }
+        });
+
+        if (configuration[0] == null) {
+            return Collections.emptyList();
+        }
+
+        final List<ObjectProperty> properties = new ArrayList<ObjectProperty>(configuration[0].getElements());
+        Collections.sort(properties, new Comparator<ObjectProperty>() {
+            @Override
+            public int compare(ObjectProperty a, ObjectProperty b) {
+                return Integer.compare(a.getAbsolutePosition(), b.getAbsolutePosition());
+            }
+        });
+        return properties;
+    }
+
+    private static boolean isConfiguration(ObjectLiteral object) {
+        for (ObjectProperty p : object.getElements()) {
+            if ("sourceType".equals(propertyName(p))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String propertyName(ObjectProperty p) {
+        final AstNode key = p.getLeft();
+        if (key instanceof Name) {
+            return ((Name) key).getIdentifier();
+        }
+        if (key instanceof StringLiteral) {
+            return ((StringLiteral) key).getValue();
+        }
+        return null;
+    }
+
+    private static String hash(String... values) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String v : values) {
+            hasher.putInt(v.length()).putString(v);
+        }
+        return hasher.hash().toString();
+    }
+}
@@ -0,0 +1,165 @@
+package dgm.configuration.javascript;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+
+/**
+ * Compiles javascript sources to script classes, and keeps the class files on disk.
+ * <p/>
+ * Class files are stored under the hash of the source, its file name and the Rhino version and settings, so a restart
+ * with unchanged sources loads the classes instead of compiling them. Unreadable cache files are ignored and written
+ * again. When the context is interpreting instead of compiling, or without a directory, nothing is cached.
+ */
+public final class ScriptCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ScriptCache.class);
+
+    private static final String CLASS_PREFIX = "dgm.configuration.javascript.compiled.Script_";
+
+    // start of every cache file, change it when the format changes
+    private static final int MAGIC = 0x64676d31;
+
+    public static final ScriptCache NONE = new ScriptCache(null);
+
+    private final File directory;
+
+    /**
+     * @param directory Directory to keep the class files in, it is created if it doesn't exist
+     */
+    public ScriptCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Compile a source, or load the classes it was compiled to before.
+     */
+    Script compile(Context cx, String source, String filename) throws IOException {
+        if (directory == null || cx.getOptimizationLevel() < 0) {
+            return cx.compileString(source, filename, 0, null);
+        }
+
+        final String key = key(cx, source, filename);
+        final File file = new File(directory, key + ".classes");
+
+        if (file.exists()) {
+            try {
+                final Script script = define(cx, read(file));
+                LOG.debug("Loaded compiled {} from {}", filename, file);
+                return script;
+            } catch (IOException e) {
+                LOG.warn("Ignoring unreadable compiled script {}: {}", file, e.getMessage());
+            } catch (LinkageError e) {
+                LOG.warn("Ignoring invalid compiled script {}: {}", file, e.getMessage());
+            }
+        }
+
+        final CompilerEnvirons env = new CompilerEnvirons();
+        env.initFromContext(cx);
+        final Object[] classes = new ClassCompiler(env).compileToClassFiles(source, filename, 0, CLASS_PREFIX + key);
+        write(file, classes);
+
+        return define(cx, classes);
+    }
+
+    private static String key(Context cx, String source, String filename) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String v : new String[]{cx.getImplementationVersion(), filename, source}) {
+            hasher.putInt(v.length()).putString(v);
+        }
+        hasher.putInt(cx.getOptimizationLevel()).putInt(cx.getLanguageVersion());
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Define the classes in a fresh class loader, the first one is the script.
+     */
+    private static Script define(Context cx, Object[] classes) {
+        final GeneratedClassLoader loader = cx.createClassLoader(cx.getApplicationClassLoader());
+
+        Class<?> script = null;
+        for (int i = 0; i < classes.length; i += 2) {
+            final Class<?> c = loader.defineClass((String) classes[i], (byte[]) classes[i + 1]);
+            if (script == null) {
+                script = c;
+            }
+        }
+        loader.linkClass(script);
+
+        try {
+            return (Script) script.newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Can't create compiled script " + script.getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Can't create compiled script " + script.getName(), e);
+        }
+    }
+
+    private static Object[] read(File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a compiled script");
+            }
+
+            final int count = in.readInt();
+            if (count <= 0 || count > file.length()) {
+                throw new IOException("Invalid number of classes " + count);
+            }
+
+            final Object[] classes = new Object[count * 2];
+            for (int i = 0; i < classes.length; i += 2) {
+                classes[i] = in.readUTF();
+                final int length = in.readInt();
+                if (length <= 0 || length > file.length()) {
+                    throw new IOException("Invalid class length " + length);
+                }
+                final byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                classes[i + 1] = bytes;
+            }
+            return classes;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void write(File file, Object[] classes) {
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Can't create " + directory);
+            }
+
+            // write to a temporary file first, indices are compiled at the same time and may share a source
+            final File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(classes.length / 2);
+                for (int i = 0; i < classes.length; i += 2) {
+                    final byte[] bytes = (byte[]) classes[i + 1];
+                    out.writeUTF((String) classes[i]);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            } finally {
+                out.close();
+            }
+
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Can't rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            // only a slower next start
+            LOG.warn("Could not store compiled script {}: {}", file, e.getMessage());
+        }
+    }
+}
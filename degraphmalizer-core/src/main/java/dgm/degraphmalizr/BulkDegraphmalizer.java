@@ -0,0 +1,333 @@
+package dgm.degraphmalizr;
+
+import dgm.Degraphmalizr;
+import dgm.ID;
+import dgm.Service;
+import dgm.configuration.Configuration;
+import dgm.configuration.IndexConfig;
+import dgm.configuration.TypeConfig;
+import dgm.degraphmalizr.degraphmalize.*;
+import dgm.degraphmalizr.recompute.TargetFingerprints;
+import dgm.exceptions.DegraphmalizerException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Degraphmalizes all documents of some source indices again.
+ * <p/>
+ * The documents are read with a scan and scroll, so they are never all in memory, and submitted to
+ * {@link Degraphmalizr#degraphmalizeAll} in batches. The source documents of a batch are fetched concurrently and the
+ * recomputes of many documents run at the same time, only the changes to the graph are made one document at a time. At
+ * most {@code inFlight} documents are being fetched, degraphmalized or recomputed, so reading the indices doesn't run
+ * ahead of the degraphmalizer. Progress is logged while running and can be followed through the returned
+ * {@link Progress}.
+ * <p/>
+ * A bulk degraphmalize is used to rebuild targets that were lost, so the {@link TargetFingerprints} of the target
+ * indices are forgotten first and every target is written.
+ */
+@Singleton
+public class BulkDegraphmalizer implements Service {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkDegraphmalizer.class);
+
+    public static final int DEFAULT_IN_FLIGHT = 4 * Runtime.getRuntime().availableProcessors();
+
+    static final int SCROLL_SIZE = 500;
+    static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(5);
+    static final long PROGRESS_INTERVAL_MS = 10000;
+
+    private final Client client;
+    private final Degraphmalizr degraphmalizr;
+    private final Provider<Configuration> cfgProvider;
+    private final TargetFingerprints fingerprints;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("bulk-degraphmalizer").setDaemon(true).build());
+
+    // the last job started in the background
+    private Progress current;
+
+    /**
+     * Counts of a bulk degraphmalize, updated while it runs.
+     */
+    public static final class Progress {
+        private final String[] indices;
+        private final String type;
+        private final long started = System.currentTimeMillis();
+
+        private final AtomicLong total = new AtomicLong(-1);
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private volatile boolean finished;
+        private volatile String error;
+
+        Progress(String[] indices, String type) {
+            this.indices = indices;
+            this.type = type;
+        }
+
+        public String[] indices() {
+            return indices.clone();
+        }
+
+        /**
+         * @return null for all types
+         */
+        public String type() {
+            return type;
+        }
+
+        /**
+         * @return number of documents in the indices, -1 while unknown
+         */
+        public long total() {
+            return total.get();
+        }
+
+        public long submitted() {
+            return submitted.get();
+        }
+
+        public long completed() {
+            return completed.get();
+        }
+
+        public long failed() {
+            return failed.get();
+        }
+
+        public long elapsedMillis() {
+            return System.currentTimeMillis() - started;
+        }
+
+        public boolean finished() {
+            return finished;
+        }
+
+        /**
+         * @return why reading the indices stopped, null if it didn't fail
+         */
+        public String error() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(indices) + (type == null ? "" : "/" + type) + ": " + completed() + " completed, " + failed()
+                    + " failed of " + total() + " in " + elapsedMillis() / 1000 + "s" + (finished ? ", finished" : "");
+        }
+    }
+
+    @Inject
+    public BulkDegraphmalizer(Client client, Degraphmalizr degraphmalizr, Provider<Configuration> cfgProvider,
+                              TargetFingerprints fingerprints) {
+        this.client = client;
+        this.degraphmalizr = degraphmalizr;
+        this.cfgProvider = cfgProvider;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Degraphmalize all documents in the background, unless a previous job is still running.
+     *
+     * @param type null for all types
+     * @return the progress of the new job, null if the previous job is still running
+     */
+    public synchronized Progress submit(final String[] indices, final String type) {
+        if (current != null && !current.finished()) {
+            return null;
+        }
+
+        final Progress progress = new Progress(indices, type);
+        current = progress;
+        runner.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    degraphmalizeAll(progress, DEFAULT_IN_FLIGHT, new LoggingDegraphmalizeCallback());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return progress;
+    }
+
+    /**
+     * @return the last job started with {@link #submit}, null if there was none
+     */
+    public synchronized Progress current() {
+        return current;
+    }
+
+    /**
+     * Degraphmalize all documents and wait until they are done.
+     *
+     * @param type     null for all types
+     * @param callback called for every document
+     */
+    public Progress run(String[] indices, String type, int inFlight, DegraphmalizeCallback callback) throws InterruptedException {
+        final Progress progress = new Progress(indices, type);
+        degraphmalizeAll(progress, inFlight, callback);
+        return progress;
+    }
+
+    private void degraphmalizeAll(final Progress progress, int inFlight, final DegraphmalizeCallback callback) throws InterruptedException {
+        LOG.info("Degraphmalizing all documents in {}", progress);
+        final Semaphore permits = new Semaphore(inFlight);
+
+        // releases a permit for every document that is done
+        final DegraphmalizeCallback counting = new DegraphmalizeCallback() {
+            @Override
+            public void started(DegraphmalizeRequest request) {
+                callback.started(request);
+            }
+
+            @Override
+            public void complete(DegraphmalizeResult result) {
+                progress.completed.incrementAndGet();
+                permits.release();
+                callback.complete(result);
+            }
+
+            @Override
+            public void failed(DegraphmalizerException exception) {
+                progress.failed.incrementAndGet();
+                permits.release();
+                callback.failed(exception);
+            }
+        };
+
+        try {
+            invalidateTargets(progress.indices, progress.type);
+            final Iterator<List<ID>> pages = scroll(progress);
+
+            long lastReport = System.currentTimeMillis();
+            while (pages.hasNext()) {
+                // half of the documents in flight, so one batch is fetched while the other is recomputed
+                for (List<ID> batch : Lists.partition(pages.next(), Math.max(1, inFlight / 2))) {
+                    permits.acquire(batch.size());
+                    progress.submitted.addAndGet(batch.size());
+                    degraphmalizr.degraphmalizeAll(batch, counting);
+                }
+
+                if (System.currentTimeMillis() - lastReport > PROGRESS_INTERVAL_MS) {
+                    lastReport = System.currentTimeMillis();
+                    LOG.info("Degraphmalizing {}", progress);
+                }
+            }
+
+            // wait for the documents still in flight
+            permits.acquire(inFlight);
+            permits.release(inFlight);
+        } catch (RuntimeException e) {
+            progress.error = e.getMessage();
+            LOG.error("Reading documents to degraphmalize failed, {}", progress, e);
+
+            // don't report finished while documents are still being degraphmalized
+            permits.tryAcquire(inFlight, 1, TimeUnit.MINUTES);
+        } finally {
+            progress.finished = true;
+        }
+
+        LOG.info("Degraphmalized {}", progress);
+    }
+
+    /**
+     * Forget the fingerprints of the target indices of these sources, the targets may be gone.
+     */
+    private void invalidateTargets(String[] indices, String type) {
+        final Set<String> sources = new HashSet<String>(Arrays.asList(indices));
+        final Set<String> targets = new HashSet<String>();
+        for (IndexConfig index : cfgProvider.get().indices().values()) {
+            for (TypeConfig config : index.types().values()) {
+                if (sources.contains(config.sourceIndex()) && (type == null || type.equals(config.sourceType()))) {
+                    targets.add(config.targetIndex());
+                }
+            }
+        }
+
+        for (String target : targets) {
+            fingerprints.invalidateIndex(target);
+        }
+    }
+
+    /**
+     * The documents to degraphmalize, a scroll page at a time. Sets the total of {@code progress} as soon as it is
+     * known.
+     */
+    Iterator<List<ID>> scroll(Progress progress) {
+        final SearchRequestBuilder search = client.prepareSearch(progress.indices)
+                .setSearchType(SearchType.SCAN)
+                .setScroll(SCROLL_KEEP_ALIVE)
+                .setQuery(QueryBuilders.matchAllQuery())
+                .setSize(SCROLL_SIZE)
+                .setNoFields()
+                .setVersion(true);
+        if (progress.type != null) {
+            search.setTypes(progress.type);
+        }
+
+        final SearchResponse scan = search.execute().actionGet();
+        progress.total.set(scan.getHits().getTotalHits());
+
+        return new AbstractIterator<List<ID>>() {
+            private String scrollId = scan.getScrollId();
+
+            @Override
+            protected List<ID> computeNext() {
+                final SearchResponse response = client.prepareSearchScroll(scrollId).setScroll(SCROLL_KEEP_ALIVE).execute().actionGet();
+                scrollId = response.getScrollId();
+
+                final SearchHit[] hits = response.getHits().getHits();
+                if (hits.length == 0) {
+                    return endOfData();
+                }
+
+                final List<ID> ids = new ArrayList<ID>(hits.length);
+                for (SearchHit hit : hits) {
+                    ids.add(new ID(hit.getIndex(), hit.getType(), hit.getId(), hit.version()));
+                }
+                return ids;
+            }
+        };
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        runner.shutdownNow();
+    }
+}
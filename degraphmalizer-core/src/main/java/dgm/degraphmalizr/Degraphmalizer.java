@@ -4,22 +4,22 @@ import dgm.*;
 import dgm.configuration.Configuration;
 import dgm.configuration.Configurations;
 import dgm.configuration.TypeConfig;
+import dgm.configuration.WalkDependencies;
 import dgm.degraphmalizr.degraphmalize.*;
 import dgm.degraphmalizr.recompute.RecomputeCallback;
 import dgm.degraphmalizr.recompute.RecomputeRequest;
 import dgm.degraphmalizr.recompute.RecomputeResult;
 import dgm.degraphmalizr.recompute.Recomputer;
+import dgm.degraphmalizr.recompute.TargetFingerprints;
 import dgm.exceptions.*;
-import dgm.graphs.BlueprintsSubgraphManager;
+import dgm.graphs.AdjacencyProjection;
 import dgm.graphs.Subgraphs;
+import dgm.graphs.VertexPartitions;
 import dgm.modules.bindingannotations.Degraphmalizes;
 import dgm.modules.bindingannotations.Fetches;
 import dgm.modules.bindingannotations.Recomputes;
 import dgm.modules.elasticsearch.QueryFunction;
 import dgm.trees.Pair;
-import dgm.trees.Tree;
-import dgm.trees.TreeEntry;
-import dgm.trees.Trees;
 
 import java.io.IOException;
 import java.util.*;
@@ -39,9 +39,14 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Provider;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
@@ -51,6 +56,16 @@ import com.tinkerpop.blueprints.Vertex;
 import static dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestScope.DOCUMENT;
 
 public class Degraphmalizer implements Degraphmalizr {
+    /**
+     * Number of partitions the documents of an index or type are processed in.
+     */
+    public static final int SCAN_PARTITIONS = 4;
+
+    /**
+     * Number of documents of a partition that are fetched at once.
+     */
+    static final int SCAN_CHUNK = 100;
+
     @InjectLogger
     Logger log;
 
@@ -63,11 +78,17 @@ public class Degraphmalizer implements Degraphmalizr {
     protected final ExecutorService recomputeQueue;
     protected final ExecutorService fetchQueue;
 
+    // the recompute queue, with futures that can tell when they are done
+    private final ListeningExecutorService recomputes;
+
     protected final QueryFunction queryFn;
     protected final Recomputer recomputer;
 
     protected final Provider<Configuration> cfgProvider;
 
+    protected final Optional<AdjacencyProjection> projection;
+    protected final TargetFingerprints fingerprints;
+
     final ObjectMapper objectMapper;
 
     @Inject
@@ -78,9 +99,12 @@ public class Degraphmalizer implements Degraphmalizr {
                           QueryFunction queryFunction,
                           ObjectMapper objectMapper,
                           Recomputer recomputer,
-                          Provider<Configuration> configProvider) {
+                          Provider<Configuration> configProvider,
+                          Optional<AdjacencyProjection> projection,
+                          TargetFingerprints fingerprints) {
         this.fetchQueue = fetchQueue;
         this.recomputeQueue = recomputeQueue;
+        this.recomputes = MoreExecutors.listeningDecorator(recomputeQueue);
         this.degraphmalizeQueue = degraphmalizeQueue;
         this.graph = graph;
         this.subgraphmanager = subgraphmanager;
@@ -89,6 +113,8 @@ public class Degraphmalizer implements Degraphmalizr {
         this.cfgProvider = configProvider;
         this.queryFn = queryFunction;
         this.objectMapper = objectMapper;
+        this.projection = projection;
+        this.fingerprints = fingerprints;
     }
 
     @Override
@@ -130,20 +156,7 @@ public class Degraphmalizer implements Degraphmalizr {
                             throw new UnreachableCodeReachedException();
                     }
                     // collect all recompute states.
-                    for (Future<RecomputeResult> recomputeResultFuture : result.results()) {
-                        try {
-                            recomputeResultFuture.get();
-                        } catch (ExecutionException e) {
-                            if (e.getCause() instanceof DegraphmalizerException) {
-                                DegraphmalizerException de = (DegraphmalizerException) (e.getCause());
-                                if (de.severity() == DegraphmalizerException.Severity.ERROR) {
-                                    throw (de);
-                                }
-                            } else {
-                                throw e;
-                            }
-                        }
-                    }
+                    checkRecomputes(result.results());
                     callback.complete(result);
                     return result;
                 } catch (final DegraphmalizerException e) {
@@ -158,17 +171,96 @@ public class Degraphmalizer implements Degraphmalizr {
         };
     }
 
-    // TODO: how about implementing equals() of RecomputeRequest and simply using rs.contains()?
-    private boolean inList(RecomputeRequest r, List<RecomputeRequest> rs) {
-        for (RecomputeRequest q : rs) {
+    /**
+     * Wait for the recomputes, a recompute that failed with an error fails the document.
+     */
+    private static void checkRecomputes(List<Future<RecomputeResult>> results) throws DegraphmalizerException, ExecutionException, InterruptedException {
+        for (Future<RecomputeResult> recomputeResultFuture : results) {
+            try {
+                recomputeResultFuture.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof DegraphmalizerException) {
+                    DegraphmalizerException de = (DegraphmalizerException) (e.getCause());
+                    if (de.severity() == DegraphmalizerException.Severity.ERROR) {
+                        throw (de);
+                    }
+                } else {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Degraphmalizes the documents in order on the degraphmalize queue, like {@link #degraphmalize} does, but the source
+     * documents are fetched on the fetch queue before they are needed, and the queue doesn't wait for the recomputes of a
+     * document before it changes the graph for the next one. The callback is called when the recomputes of a document
+     * are done, so it can bound the number of documents in flight.
+     */
+    @Override
+    public final void degraphmalizeAll(final List<ID> ids, final DegraphmalizeCallback callback) {
+        final List<Future<JsonNode>> documents = new ArrayList<Future<JsonNode>>(ids.size());
+        for (final ID id : ids) {
+            documents.add(fetchQueue.submit(new Callable<JsonNode>() {
+                @Override
+                public JsonNode call() throws Exception {
+                    return getDocument(id);
+                }
+            }));
+        }
+
+        degraphmalizeQueue.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ids.size(); i++) {
+                    updateWithoutWaiting(createDocumentRequest(DegraphmalizeRequestType.UPDATE, ids.get(i)), documents.get(i), callback);
+                }
+            }
+        });
+    }
+
+    private void updateWithoutWaiting(final DegraphmalizeRequest action, Future<JsonNode> document, final DegraphmalizeCallback callback) {
+        final List<ListenableFuture<RecomputeResult>> pending;
+        try {
+            callback.started(action);
+            pending = recomputeWithoutWaiting(determineAndUpdate(action, getUnwrapped(document)));
+        } catch (DegraphmalizerException e) {
+            callback.failed(e);
+            return;
+        } catch (Exception e) {
+            callback.failed(new WrappedException(e));
+            return;
+        }
+
+        // report when all recomputes are done, on the thread of the last one
+        final List<Future<RecomputeResult>> results = new ArrayList<Future<RecomputeResult>>(pending);
+        Futures.successfulAsList(pending).addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkRecomputes(results);
+                    callback.complete(new DegraphmalizeResult(action.id(), results));
+                } catch (DegraphmalizerException e) {
+                    callback.failed(e);
+                } catch (Exception e) {
+                    callback.failed(new WrappedException(e));
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    // TODO: how about implementing equals() of RecomputeRequest and simply using rs.indexOf()?
+    private int indexOf(RecomputeRequest r, List<RecomputeRequest> rs) {
+        for (int i = 0; i < rs.size(); i++) {
+            final RecomputeRequest q = rs.get(i);
             final boolean equalId = q.root.id().equals(r.root.id());
             final boolean equalIndexConfig = q.config.targetIndex().equals(r.config.targetIndex());
             final boolean equalTypeConfig = q.config.targetType().equals(r.config.targetType());
             if (equalId && equalIndexConfig && equalTypeConfig)
-                return true;
+                return i;
         }
 
-        return false;
+        return -1;
     }
 
     private List<RecomputeRequest> determineRecomputeActionsOrEmpty(DegraphmalizeRequest action) {
@@ -186,12 +278,10 @@ public class Degraphmalizer implements Degraphmalizr {
         final List<Future<RecomputeResult>> results;
         switch (action.scope()) {
             case INDEX:
-                Iterable<Vertex> vertexIterator = GraphUtilities.findVerticesInIndex(graph, action.id().index());
-                results = updateDocuments(vertexIterator, action);
+                results = updateDocuments(VertexPartitions.inIndex(objectMapper, graph, action.id().index(), SCAN_PARTITIONS), action);
                 break;
             case TYPE_IN_INDEX:
-                Iterable<Vertex> vertexIterator2 = GraphUtilities.findVerticesInIndex(graph, action.id().index(), action.id().type());
-                results = updateDocuments(vertexIterator2, action);
+                results = updateDocuments(VertexPartitions.inIndex(objectMapper, graph, action.id().index(), action.id().type(), SCAN_PARTITIONS), action);
                 break;
             case DOCUMENT_ANY_VERSION:
                 Vertex vertex = GraphUtilities.resolveVertex(objectMapper, graph, action.id());
@@ -206,22 +296,92 @@ public class Degraphmalizer implements Degraphmalizr {
         return new DegraphmalizeResult(action.id(), results);
     }
 
-    private List<Future<RecomputeResult>> updateDocuments(Iterable<Vertex> iterator, DegraphmalizeRequest action) throws ExecutionException, InterruptedException, IOException {
+    /**
+     * The source documents are fetched by the partitions concurrently, a chunk of each partition at a time. The graph
+     * is only changed on this thread, in the order the chunks arrive.
+     */
+    private List<Future<RecomputeResult>> updateDocuments(VertexPartitions partitions, DegraphmalizeRequest action) throws ExecutionException, InterruptedException, IOException {
+        log.debug("Updating {} documents in {} partitions", partitions.size(), partitions.count());
+
+        final List<Iterator<List<ID>>> chunks = new ArrayList<Iterator<List<ID>>>();
+        final Queue<Pair<Integer, Future<Map<ID, JsonNode>>>> fetching = new ArrayDeque<Pair<Integer, Future<Map<ID, JsonNode>>>>();
+        for (List<ID> partition : partitions.partitions()) {
+            chunks.add(Lists.partition(partition, SCAN_CHUNK).iterator());
+            fetchNextChunk(chunks, chunks.size() - 1, fetching);
+        }
+
         final List<Future<RecomputeResult>> results = new ArrayList<Future<RecomputeResult>>();
-        for (Vertex vertex : iterator) {
-            results.addAll(updateDocument(createDocumentRequestForVertex(action.type(), vertex)));
+        try {
+            while (!fetching.isEmpty()) {
+                final Pair<Integer, Future<Map<ID, JsonNode>>> chunk = fetching.remove();
+                final Map<ID, JsonNode> documents = getUnwrapped(chunk.b);
+
+                // fetch ahead while we change the graph
+                fetchNextChunk(chunks, chunk.a, fetching);
+
+                for (Map.Entry<ID, JsonNode> document : documents.entrySet()) {
+                    results.addAll(updateDocument(createDocumentRequest(action.type(), document.getKey()), document.getValue()));
+                }
+            }
+        } finally {
+            for (Pair<Integer, Future<Map<ID, JsonNode>>> chunk : fetching) {
+                chunk.b.cancel(true);
+            }
         }
         return results;
     }
 
+    private void fetchNextChunk(List<Iterator<List<ID>>> chunks, int partition, Queue<Pair<Integer, Future<Map<ID, JsonNode>>>> fetching) {
+        if (!chunks.get(partition).hasNext()) {
+            return;
+        }
+
+        final List<ID> ids = chunks.get(partition).next();
+        fetching.add(new Pair<Integer, Future<Map<ID, JsonNode>>>(partition, fetchQueue.submit(new Callable<Map<ID, JsonNode>>() {
+            @Override
+            public Map<ID, JsonNode> call() throws Exception {
+                final Map<ID, JsonNode> documents = new LinkedHashMap<ID, JsonNode>();
+                for (ID id : ids) {
+                    documents.put(id, getDocument(id));
+                }
+                return documents;
+            }
+        })));
+    }
+
+    /**
+     * Get the result of {@code future}, runtime exceptions of the job are thrown as they are.
+     */
+    private static <T> T getUnwrapped(Future<T> future) throws ExecutionException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private List<Future<RecomputeResult>> updateDocument(DegraphmalizeRequest action) throws IOException, ExecutionException, InterruptedException {
         if (!action.scope().equals(DOCUMENT)) {
             throw new InvalidRequest("Action : " + action.type() + " is not valid for a scope of " + action.scope());
         }
 
         // Get document from elasticsearch
-        final JsonNode jsonNode = getDocument(action.id());
+        return updateDocument(action, getDocument(action.id()));
+    }
 
+    private List<Future<RecomputeResult>> updateDocument(DegraphmalizeRequest action, JsonNode jsonNode) throws IOException, ExecutionException, InterruptedException {
+        return recomputeAffectedDocuments(determineAndUpdate(action, jsonNode));
+    }
+
+    /**
+     * Change the graph for a new version of the document.
+     *
+     * @return The documents to recompute
+     */
+    private List<RecomputeRequest> determineAndUpdate(DegraphmalizeRequest action, JsonNode jsonNode) {
         // couldn't find source document, so we are done
         if (jsonNode == null) {
             return Collections.emptyList();
@@ -234,15 +394,18 @@ public class Degraphmalizer implements Degraphmalizr {
 
             final List<RecomputeRequest> post = determineRecomputeActions(action);
 
-            // add all the missing requests from pre to post
+            // add all the missing requests from pre to post, merge the walks of requests in both
             for (RecomputeRequest r : pre) {
-                if (!inList(r, post)) {
+                final int i = indexOf(r, post);
+                if (i < 0) {
                     post.add(r);
+                } else {
+                    post.set(i, post.get(i).merge(r));
                 }
             }
 
             logRecomputes(action.id(), post);
-            return recomputeAffectedDocuments(post);
+            return post;
         }
     }
 
@@ -266,7 +429,10 @@ public class Degraphmalizer implements Degraphmalizr {
     }
 
     private DegraphmalizeRequest createDocumentRequestForVertex(DegraphmalizeRequestType degraphmalizeRequestType, Vertex vertex) {
-        ID id = GraphUtilities.getID(objectMapper, vertex);
+        return createDocumentRequest(degraphmalizeRequestType, GraphUtilities.getID(objectMapper, vertex));
+    }
+
+    private DegraphmalizeRequest createDocumentRequest(DegraphmalizeRequestType degraphmalizeRequestType, ID id) {
         Iterable<TypeConfig> typeConfigs = Configurations.configsFor(cfgProvider.get(), id.index(), id.type());
         return new DegraphmalizeRequest(degraphmalizeRequestType, DOCUMENT, id, typeConfigs);
     }
@@ -278,12 +444,10 @@ public class Degraphmalizer implements Degraphmalizr {
         List<Future<RecomputeResult>> results;
         switch (action.scope()) {
             case INDEX:
-                Iterable<Vertex> vertexIterator = GraphUtilities.findVerticesInIndex(graph, action.id().index());
-                results = deleteDocuments(vertexIterator, action);
+                results = deleteDocuments(VertexPartitions.inIndex(objectMapper, graph, action.id().index(), SCAN_PARTITIONS), action);
                 break;
             case TYPE_IN_INDEX:
-                Iterable<Vertex> vertexIterator2 = GraphUtilities.findVerticesInIndex(graph, action.id().index(), action.id().type());
-                results = deleteDocuments(vertexIterator2, action);
+                results = deleteDocuments(VertexPartitions.inIndex(objectMapper, graph, action.id().index(), action.id().type(), SCAN_PARTITIONS), action);
                 break;
             case DOCUMENT_ANY_VERSION:
                 Vertex vertex = GraphUtilities.resolveVertex(objectMapper, graph, action.id());
@@ -298,10 +462,37 @@ public class Degraphmalizer implements Degraphmalizr {
         return new DegraphmalizeResult(action.id(), results);
     }
 
-    private List<Future<RecomputeResult>> deleteDocuments(Iterable<Vertex> iterator, DegraphmalizeRequest action) throws InterruptedException {
+    /**
+     * The target documents are deleted by the partitions concurrently, the graph is only changed on this thread.
+     */
+    private List<Future<RecomputeResult>> deleteDocuments(VertexPartitions partitions, final DegraphmalizeRequest action) throws InterruptedException, ExecutionException {
+        log.debug("Deleting {} documents in {} partitions", partitions.size(), partitions.count());
+
+        final List<Future<Void>> deletes = new ArrayList<Future<Void>>();
         final List<Future<RecomputeResult>> results = new ArrayList<Future<RecomputeResult>>();
-        for (Vertex vertex : iterator) {
-            results.addAll(deleteDocument(createDocumentRequestForVertex(action.type(), vertex)));
+        for (final List<ID> partition : partitions.partitions()) {
+            final List<DegraphmalizeRequest> requests = new ArrayList<DegraphmalizeRequest>(partition.size());
+            for (ID id : partition) {
+                requests.add(createDocumentRequest(action.type(), id));
+            }
+
+            for (DegraphmalizeRequest request : requests) {
+                results.addAll(deleteFromGraph(request));
+            }
+
+            deletes.add(fetchQueue.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (DegraphmalizeRequest request : requests) {
+                        deleteTargetDocuments(request);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> delete : deletes) {
+            getUnwrapped(delete);
         }
         return results;
     }
@@ -311,15 +502,25 @@ public class Degraphmalizer implements Degraphmalizr {
             throw new InvalidRequest("Delete a document is not valid for a scope of " + action.scope());
         }
 
-        List<RecomputeRequest> recomputeRequests = determineRecomputeActions(action);
-        // TODO refactor refactor!
-        List<ID> verticesDeleted = ((BlueprintsSubgraphManager) subgraphmanager).findVertexIDsAffectedByDelete(action.id());
+        final List<Future<RecomputeResult>> results = deleteFromGraph(action);
+        deleteTargetDocuments(action);
+        return results;
+    }
 
-        subgraphmanager.deleteSubgraph(action.id());
+    private void deleteTargetDocuments(DegraphmalizeRequest action) {
         for (TypeConfig config : action.configs()) {
+            fingerprints.invalidate(new ID(config.targetIndex(), config.targetType(), action.id().id(), 0));
             DeleteRequest request = new DeleteRequest(config.targetIndex(), config.targetType(), action.id().id());
             client.delete(request).actionGet();
         }
+    }
+
+    /**
+     * Remove the subgraph of a document and recompute the documents that depended on it.
+     */
+    private List<Future<RecomputeResult>> deleteFromGraph(DegraphmalizeRequest action) throws InterruptedException {
+        List<RecomputeRequest> recomputeRequests = determineRecomputeActions(action);
+        final List<ID> verticesDeleted = subgraphmanager.deleteSubgraph(action.id());
 
         recomputeRequests = removeDeletedVerticesFromRequest(verticesDeleted, recomputeRequests);
 
@@ -396,6 +597,14 @@ public class Degraphmalizer implements Degraphmalizr {
         return recomputeQueue.invokeAll(jobs);
     }
 
+    private List<ListenableFuture<RecomputeResult>> recomputeWithoutWaiting(List<RecomputeRequest> recomputeRequests) {
+        final List<ListenableFuture<RecomputeResult>> results = new ArrayList<ListenableFuture<RecomputeResult>>();
+        for (RecomputeRequest r : recomputeRequests) {
+            results.add(recomputes.submit(recomputeDocument(r)));
+        }
+        return results;
+    }
+
     private List<RecomputeRequest> determineRecomputeActions(DegraphmalizeRequest action) {
         final ID id = action.id();
 
@@ -416,53 +625,106 @@ public class Degraphmalizer implements Degraphmalizr {
             recomputeRequests.add(new RecomputeRequest(vid, c, 0));
         }
 
-        // traverse graph in both direction, starting at the root
-        log.debug("Computing tree in direction IN, starting at {}", root);
-        final Tree<Pair<Edge, Vertex>> up = GraphUtilities.childrenFrom(root, Direction.IN);
+        // only traverse as far as some walk could reach back to us
+        final WalkDependencies dependencies = Configurations.dependencies(cfgProvider.get());
 
-        log.debug("Computing tree in direction OUT, starting at {}", root);
-        final Tree<Pair<Edge, Vertex>> down = GraphUtilities.childrenFrom(root, Direction.OUT);
+        for (Direction traversal : new Direction[]{Direction.IN, Direction.OUT}) {
+            final int depth = dependencies.depth(traversal);
+            if (depth < 0) {
+                log.debug("No walks depend on direction {}, skipping traversal", traversal);
+                continue;
+            }
 
-        if (log.isDebugEnabled()) {
-            final int up_size = Iterables.size(Trees.bfsWalk(up));
-            final int down_size = Iterables.size(Trees.bfsWalk(down));
-            log.debug("Found tree of size {} for IN direction and size {} for OUT direction", up_size, down_size);
-        }
+            // walk the in-memory projection if we have one, it only touches the graph for the affected vertices
+            if (projection.isPresent()) {
+                final int slot = projection.get().slotOf(root);
+                if (slot >= 0) {
+                    addRecomputeRequests(recomputeRequests, dependencies, projection.get(), slot, traversal, depth);
+                    continue;
+                }
+                log.warn("Vertex {} is missing from the graph projection, traversing the graph", id);
+            }
+
+            log.debug("Computing tree in direction {} up to depth {}, starting at {}", new Object[]{traversal, depth, root});
+            final Map<Vertex, Integer> reached = traverse(root, traversal, depth);
+            log.debug("Found {} vertices in direction {}", reached.size(), traversal);
 
-        // create "dirty document" messages for each node in the tree
-        for (TreeEntry<Pair<Edge, Vertex>> pathElement : Iterables.concat(Trees.bfsWalk(up), Trees.bfsWalk(down))) {
-            addRecomputeRequests(recomputeRequests, pathElement.getValue(), pathElement.getDistance());
+            // create "dirty document" messages for each node in the tree
+            for (Map.Entry<Vertex, Integer> e : reached.entrySet()) {
+                final Vertex v = e.getKey();
+                final ID vertexId = GraphUtilities.getID(objectMapper, v);
+                addRecomputeRequests(recomputeRequests, dependencies.dependents(vertexId.index(), vertexId.type(), traversal, e.getValue()),
+                        vertexId, v, e.getValue(), traversal);
+            }
         }
 
         return recomputeRequests;
     }
 
-    protected void addRecomputeRequests(List<RecomputeRequest> recomputeRequests, Pair<Edge, Vertex> pathElement, int distance) {
-
-        // skip the root of the tree, ie. ourselves:
-        if (distance == 0) {
-            return;
+    /**
+     * Breadth first traversal from {@code root}, returns all vertices at most {@code maxDepth} steps away, except the
+     * root itself, with their distance.
+     */
+    private Map<Vertex, Integer> traverse(Vertex root, Direction d, int maxDepth) {
+        final Map<Vertex, Integer> reached = new LinkedHashMap<Vertex, Integer>();
+        final Set<Vertex> visited = new HashSet<Vertex>();
+        visited.add(root);
+
+        List<Vertex> level = Collections.singletonList(root);
+        for (int distance = 1; distance <= maxDepth && !level.isEmpty(); distance++) {
+            final List<Vertex> next = new ArrayList<Vertex>();
+            for (Vertex v : level) {
+                for (Edge e : v.getEdges(d)) {
+                    final Vertex other = e.getVertex(d.opposite());
+                    if (visited.add(other)) {
+                        reached.put(other, distance);
+                        next.add(other);
+                    }
+                }
+            }
+            level = next;
         }
 
-        final Vertex v = pathElement.b;
-
-
-        final VID v_id = new VID(objectMapper, v);
+        return reached;
+    }
 
+    private void addRecomputeRequests(List<RecomputeRequest> recomputeRequests, List<TypeConfig> configs, ID vertexId, Vertex v, int distance, Direction traversal) {
         // we already know this document does not exist in ES, skip
-        if (v_id.id().version() == 0) {
+        if (configs.isEmpty() || vertexId == null || vertexId.version() == 0) {
             return;
         }
 
         // alright, mark for computation
-        for (TypeConfig c : Configurations.configsFor(cfgProvider.get(), v_id.id().index(), v_id.id().type())) {
-            if (distance <= c.maximalWalkDepth()) {
-                recomputeRequests.add(new RecomputeRequest(v_id, c, distance));
-            } else {
-                log.debug("Ignoring recompute request for {} because {} has maximal distance smaller than {}", new Object[] {v_id, c, distance});
-            }
+        final VID v_id = new VID(objectMapper, v, vertexId);
+        for (TypeConfig c : configs) {
+            recomputeRequests.add(new RecomputeRequest(v_id, c, distance, traversal));
         }
+    }
+
+    private void addRecomputeRequests(final List<RecomputeRequest> recomputeRequests, final WalkDependencies dependencies,
+                                      final AdjacencyProjection p, int root, final Direction traversal, int depth) {
+        p.bfs(root, traversal, depth, new AdjacencyProjection.Visitor() {
+            @Override
+            public boolean visit(int slot, int distance) {
+                // skip the root of the tree, ie. ourselves:
+                final ID vertexId = p.id(slot);
+                if (distance == 0 || vertexId == null || vertexId.version() == 0) {
+                    return true;
+                }
+
+                final List<TypeConfig> configs = dependencies.dependents(vertexId.index(), vertexId.type(), traversal, distance);
+                if (configs.isEmpty()) {
+                    return true;
+                }
 
+                // only now do we need the actual vertex
+                final Vertex v = p.vertex(graph, slot);
+                if (v != null) {
+                    addRecomputeRequests(recomputeRequests, configs, vertexId, v, distance, traversal);
+                }
+                return true;
+            }
+        });
     }
 
     /**
@@ -0,0 +1,200 @@
+package dgm.degraphmalizr;
+
+import dgm.Degraphmalizr;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.Service;
+import dgm.configuration.*;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestScope;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestType;
+import dgm.degraphmalizr.degraphmalize.LoggingDegraphmalizeCallback;
+import dgm.degraphmalizr.recompute.RecomputeCallback;
+import dgm.degraphmalizr.recompute.RecomputeRequest;
+import dgm.degraphmalizr.recompute.Recomputer;
+import dgm.exceptions.DegraphmalizerException;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.nnsoft.guice.sli4j.core.InjectLogger;
+import org.slf4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Recomputes the target documents of the types that changed when the configuration is reloaded.
+ * <p/>
+ * For each changed type all source documents known in the graph are processed in the background, at most
+ * {@code rate} documents per second. When the {@code extract} function changed the source documents are
+ * degraphmalized again, so the graph follows the new configuration. Otherwise only the target documents of that type are
+ * recomputed. Source documents that were never degraphmalized are not in the graph, so a new source type still needs to
+ * be degraphmalized by hand.
+ */
+@Singleton
+public class SelectiveReindexer implements ConfigurationChangeMonitor, Service {
+    @InjectLogger
+    Logger log;
+
+    private final Graph graph;
+    private final ObjectMapper objectMapper;
+    private final Degraphmalizr degraphmalizr;
+    private final Recomputer recomputer;
+    private final Provider<Configuration> cfgProvider;
+
+    private final RateLimiter limiter;
+
+    // target types still to do, "index/type" -> re-extract
+    private final Map<String, Boolean> pending = new LinkedHashMap<String, Boolean>();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("reindexer").setDaemon(true).build());
+
+    @Inject
+    public SelectiveReindexer(Graph graph, ObjectMapper objectMapper, Degraphmalizr degraphmalizr, Recomputer recomputer,
+                              Provider<Configuration> cfgProvider, @Named("reindexRate") double rate) {
+        this.graph = graph;
+        this.objectMapper = objectMapper;
+        this.degraphmalizr = degraphmalizr;
+        this.recomputer = recomputer;
+        this.cfgProvider = cfgProvider;
+        this.limiter = rate > 0 ? RateLimiter.create(rate) : null;
+    }
+
+    @Override
+    public void configurationChanged(ConfigurationChange change) {
+        for (TypeConfig t : change.typesRemoved()) {
+            log.warn("Configuration for /{}/{} was removed, its target documents are left alone", t.targetIndex(), t.targetType());
+        }
+
+        if (limiter == null) {
+            log.info("Not recomputing {} changed types, selective reindexing is disabled", change.typesChanged().size());
+            return;
+        }
+
+        synchronized (pending) {
+            for (Map.Entry<TypeConfig, Set<TypeFingerprint.Part>> e : change.typesChanged().entrySet()) {
+                final TypeConfig t = e.getKey();
+                final String key = t.targetIndex() + '/' + t.targetType();
+                final boolean extract = e.getValue().contains(TypeFingerprint.Part.EXTRACT);
+
+                log.info("Configuration for /{}/{} changed {}, scheduling recompute", new Object[]{t.targetIndex(), t.targetType(), e.getValue()});
+
+                final Boolean previous = pending.put(key, extract);
+                if (previous != null && previous) {
+                    pending.put(key, true);
+                }
+            }
+        }
+
+        worker.submit(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final String key;
+            final boolean extract;
+            synchronized (pending) {
+                final Iterator<Map.Entry<String, Boolean>> i = pending.entrySet().iterator();
+                if (!i.hasNext()) {
+                    return;
+                }
+                final Map.Entry<String, Boolean> next = i.next();
+                key = next.getKey();
+                extract = next.getValue();
+                i.remove();
+            }
+
+            final String[] target = key.split("/", 2);
+            reindex(target[0], target[1], extract);
+        }
+    }
+
+    private void reindex(String targetIndex, String targetType, boolean extract) {
+        // always use the current configuration, it may have been reloaded again since this was scheduled
+        final IndexConfig index = cfgProvider.get().indices().get(targetIndex);
+        final TypeConfig config = index == null ? null : index.types().get(targetType);
+        if (config == null) {
+            log.info("Configuration for /{}/{} is gone, not recomputing", targetIndex, targetType);
+            return;
+        }
+
+        final List<ID> sources = sourceDocuments(config.sourceIndex(), config.sourceType());
+        log.info("Recomputing /{}/{} for {} source documents, extracting again: {}", new Object[]{targetIndex, targetType, sources.size(), extract});
+
+        final RecomputeCallback cb = new RecomputeCallback() {
+        };
+
+        int failed = 0;
+        for (ID id : sources) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            limiter.acquire();
+            try {
+                if (extract) {
+                    degraphmalizr.degraphmalize(DegraphmalizeRequestType.UPDATE, DegraphmalizeRequestScope.DOCUMENT, id,
+                            new LoggingDegraphmalizeCallback()).get();
+                } else {
+                    final Vertex v = GraphUtilities.findVertex(objectMapper, graph, id);
+                    if (v != null) {
+                        recomputer.recompute(new RecomputeRequest(new VID(objectMapper, v, id), config, 0), cb);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                failed++;
+                log.debug("Recompute of {} failed: {}", id, e.getCause().getMessage());
+            } catch (DegraphmalizerException e) {
+                failed++;
+                log.debug("Recompute of {} failed: {}", id, e.getMessage());
+            }
+        }
+
+        log.info("Recomputed /{}/{}, {} of {} failed", new Object[]{targetIndex, targetType, failed, sources.size()});
+    }
+
+    /**
+     * IDs of the source documents in the graph, symbolic vertices have no document.
+     */
+    private List<ID> sourceDocuments(String index, String type) {
+        final Iterable<Vertex> vertices = GraphUtilities.findVerticesInIndex(graph, index, type);
+
+        // collect first, extracting again changes the graph we are iterating
+        final List<ID> ids = new ArrayList<ID>();
+        for (Vertex v : vertices) {
+            final ID id = GraphUtilities.getID(objectMapper, v);
+            if (id != null && id.type().equals(type) && id.version() != 0) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        worker.shutdownNow();
+    }
+}
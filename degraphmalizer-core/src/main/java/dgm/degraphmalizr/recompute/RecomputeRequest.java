@@ -1,8 +1,13 @@
 package dgm.degraphmalizr.recompute;
 
+import com.tinkerpop.blueprints.Direction;
 import dgm.configuration.TypeConfig;
+import dgm.configuration.WalkConfig;
 import dgm.degraphmalizr.VID;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class RecomputeRequest {
     public final VID root;
 
@@ -10,13 +15,68 @@ public class RecomputeRequest {
 
     public final int distance;
 
+    /**
+     * Direction in which <i>root</i> was found, traversing from the changed document. Null if it is the changed document
+     * itself, {@link Direction#BOTH} if it was found in both directions.
+     */
+    public final Direction traversal;
+
     /**
      * Indicate that the document <i>root</i> has to be
      * recomputed because a parent or child node of <i>d</i> has changed.
      */
     public RecomputeRequest(VID root, TypeConfig config, int distance) {
+        this(root, config, distance, null);
+    }
+
+    public RecomputeRequest(VID root, TypeConfig config, int distance, Direction traversal) {
         this.root = root;
         this.config = config;
         this.distance = distance;
+        this.traversal = traversal;
+    }
+
+    /**
+     * Only the walks need to be recomputed, the document itself didn't change.
+     */
+    public boolean walkOnly() {
+        return distance > 0 && traversal != null;
+    }
+
+    /**
+     * The walks that can see the changed document, all walks if this is the changed document itself.
+     */
+    public Map<String, WalkConfig> affectedWalks() {
+        if (!walkOnly()) {
+            return config.walks();
+        }
+
+        final Map<String, WalkConfig> walks = new HashMap<String, WalkConfig>();
+        for (Map.Entry<String, WalkConfig> e : config.walks().entrySet()) {
+            final WalkConfig walk = e.getValue();
+            final boolean reachable = walk.maxDistance() == null || distance <= walk.maxDistance();
+            if (reachable && (traversal == Direction.BOTH || walk.direction() == traversal.opposite())) {
+                walks.put(e.getKey(), walk);
+            }
+        }
+        return walks;
+    }
+
+    /**
+     * A request for the same root and config, covering both this and the other request.
+     */
+    public RecomputeRequest merge(RecomputeRequest other) {
+        if (traversal == other.traversal && distance == other.distance) {
+            return this;
+        }
+
+        final Direction merged;
+        if (traversal == null || other.traversal == null) {
+            merged = null;
+        } else {
+            merged = (traversal == other.traversal) ? traversal : Direction.BOTH;
+        }
+
+        return new RecomputeRequest(root, config, Math.min(distance, other.distance), merged);
     }
 }
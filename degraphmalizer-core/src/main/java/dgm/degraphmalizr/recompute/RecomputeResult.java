@@ -3,6 +3,7 @@ package dgm.degraphmalizr.recompute;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.update.UpdateResponse;
 
 import java.util.Map;
 
@@ -12,20 +13,66 @@ public class RecomputeResult
     protected final JsonNode source;
     protected final ObjectNode result;
     protected final Map<String, JsonNode> properties;
+    protected final boolean unchanged;
+    protected final UpdateResponse ur;
 
     public RecomputeResult(IndexResponse ir, JsonNode source, ObjectNode result, Map<String, JsonNode> properties)
+    {
+        this(ir, source, result, properties, false);
+    }
+
+    /**
+     * @param unchanged The target already contained this document, so it wasn't written and {@code ir} is null
+     */
+    public RecomputeResult(IndexResponse ir, JsonNode source, ObjectNode result, Map<String, JsonNode> properties, boolean unchanged)
     {
         this.ir = ir;
         this.source = source;
         this.result = result;
         this.properties = properties;
+        this.unchanged = unchanged;
+        this.ur = null;
+    }
+
+    /**
+     * Result of a walk-only recompute, which only updated the walk properties of the target.
+     */
+    public RecomputeResult(UpdateResponse ur, Map<String, JsonNode> properties)
+    {
+        this.ir = null;
+        this.source = null;
+        this.result = null;
+        this.properties = properties;
+        this.unchanged = false;
+        this.ur = ur;
     }
 
+    /**
+     * The response of writing the target document, null if the document was {@link #unchanged()} or {@link #partial()}.
+     */
     public IndexResponse indexResponse()
     {
         return ir;
     }
 
+    public boolean unchanged()
+    {
+        return unchanged;
+    }
+
+    /**
+     * The response of the partial update of a walk-only recompute, null otherwise.
+     */
+    public UpdateResponse updateResponse()
+    {
+        return ur;
+    }
+
+    public boolean partial()
+    {
+        return ur != null;
+    }
+
     public JsonNode sourceDocument()
     {
         return source;
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
@@ -15,19 +16,24 @@ import dgm.configuration.PropertyConfig;
 import dgm.configuration.TypeConfig;
 import dgm.configuration.WalkConfig;
 import dgm.exceptions.*;
+import dgm.graphs.AdjacencyProjection;
 import dgm.modules.bindingannotations.Fetches;
 import dgm.modules.bindingannotations.Recomputes;
 import dgm.modules.elasticsearch.DocumentProvider;
 import dgm.modules.elasticsearch.QueryFunction;
 import dgm.modules.elasticsearch.ResolvedPathElement;
+import dgm.trees.GraphTreeViewer;
 import dgm.trees.Pair;
 import dgm.trees.Tree;
 import dgm.trees.TreeEntry;
 import dgm.trees.Trees;
 
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.index.engine.DocumentMissingException;
 import org.nnsoft.guice.sli4j.core.InjectLogger;
 import org.slf4j.Logger;
 
@@ -36,11 +42,16 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.Lock;
 
 import static dgm.GraphUtilities.toJSON;
 
 
 public class RecomputerFactoryImpl implements Recomputer {
+    // merges the changed walk properties into the target document
+    private static final String UPDATE_SCRIPT = "ctx._source.putAll(fields)";
+    private static final int UPDATE_RETRIES = 3;
+
     @InjectLogger
     Logger log;
 
@@ -51,13 +62,18 @@ public class RecomputerFactoryImpl implements Recomputer {
     protected final QueryFunction queryFn;
     protected final ObjectMapper objectMapper;
     protected final DocumentProvider documentProvider;
+    protected final Optional<AdjacencyProjection> projection;
+    protected final TargetFingerprints fingerprints;
+    protected final TransformCache transformCache;
 
     @Inject
     public RecomputerFactoryImpl(Client client, Graph graph,
                                  @Fetches ExecutorService fetchQueue,
                                  @Recomputes ExecutorService recomputeQueue,
                                  ObjectMapper objectMapper,
-                                 QueryFunction queryFunction, DocumentProvider documentProvider) {
+                                 QueryFunction queryFunction, DocumentProvider documentProvider,
+                                 Optional<AdjacencyProjection> projection, TargetFingerprints fingerprints,
+                                 TransformCache transformCache) {
         this.fetchQueue = fetchQueue;
         this.recomputeQueue = recomputeQueue;
         this.graph = graph;
@@ -65,6 +81,9 @@ public class RecomputerFactoryImpl implements Recomputer {
         this.queryFn = queryFunction;
         this.objectMapper = objectMapper;
         this.documentProvider = documentProvider;
+        this.projection = projection;
+        this.fingerprints = fingerprints;
+        this.transformCache = transformCache;
     }
 
     class Recomputer {
@@ -77,20 +96,21 @@ public class RecomputerFactoryImpl implements Recomputer {
             this.callback = callback;
         }
 
-        private Map<String, JsonNode> walkResults() throws ExecutionException, InterruptedException {
+        private Map<String, JsonNode> walkResults(Map<String, WalkConfig> walks) throws ExecutionException, InterruptedException {
             final Map<String, JsonNode> walkResults = new HashMap<String, JsonNode>();
 
-            if (request.config.walks().entrySet().isEmpty()) {
+            if (walks.isEmpty()) {
                 return walkResults;
             }
 
             boolean isAbsent = false;
             Tree<Pair<Edge, Vertex>> absentTree = null;
 
-            for (Map.Entry<String, WalkConfig> walkCfg : request.config.walks().entrySet()) {
+            for (Map.Entry<String, WalkConfig> walkCfg : walks.entrySet()) {
                 // walk graph, and fetch all the children in the opposite direction of the walk
-                final Tree<Pair<Edge, Vertex>> tree =
-                        GraphUtilities.childrenFrom(request.root.vertex(), walkCfg.getValue().direction());
+                final Direction direction = walkCfg.getValue().direction();
+                final Tree<Pair<Edge, Vertex>> tree = GraphUtilities.childrenFrom(request.root.vertex(),
+                        projection.isPresent() ? projection.get().treeViewer(graph, direction) : new GraphTreeViewer(direction));
 
                 // write size information to log
                 if (log.isDebugEnabled()) {
@@ -137,30 +157,125 @@ public class RecomputerFactoryImpl implements Recomputer {
             return walkResults;
         }
 
-        private IndexResponse writeToES(ObjectNode document) {
+        /**
+         * @return the response of ES, or absent if the target already contained this document
+         */
+        private Optional<IndexResponse> writeToES(ObjectNode document, Map<String, JsonNode> walkResults) {
             final TypeConfig conf = request.config;
             final ID sourceID = request.root.id();
             final ID targetID = getTargetID(sourceID, conf);
 
             // write the source version to the document
             document.put("_fromSource", toJSON(objectMapper, sourceID));
-            final String documentSource = document.toString();
+            final long fingerprint = TargetFingerprints.fingerprint(document);
+
+            final Lock lock = fingerprints.lock(targetID);
+            lock.lock();
+            try {
+                if (fingerprints.isUnchanged(targetID, fingerprint)) {
+                    log.debug("Skipped writing /{}/{}/{}, document is unchanged", new Object[]{targetID.index(), targetID.type(), targetID.id()});
+                    return Optional.absent();
+                }
 
-            // write document to Elasticsearch
-            final IndexResponse ir = client.prepareIndex(targetID.index(), targetID.type(), targetID.id())
-                    .setSource(documentSource).execute().actionGet();
+                final String documentSource = document.toString();
+
+                // write document to Elasticsearch
+                final IndexResponse ir;
+                try {
+                    ir = client.prepareIndex(targetID.index(), targetID.type(), targetID.id())
+                            .setSource(documentSource).execute().actionGet();
+                } catch (RuntimeException e) {
+                    // we don't know what is in the index now
+                    fingerprints.invalidate(targetID);
+                    throw e;
+                }
+                fingerprints.put(targetID, fingerprint, TargetFingerprints.fingerprints(walkResults));
 
-            // log some stuff
-            if (log.isDebugEnabled()) {
-                log.debug("Written /{}/{}/{}, version={}", new Object[]{targetID.index(), targetID.type(), targetID.id(), ir.version()});
-                log.debug("Content: {}", documentSource);
+                // log some stuff
+                if (log.isDebugEnabled()) {
+                    log.debug("Written /{}/{}/{}, version={}", new Object[]{targetID.index(), targetID.type(), targetID.id(), ir.version()});
+                    log.debug("Content: {}", documentSource);
+                }
+
+                return Optional.of(ir);
+            } finally {
+                lock.unlock();
             }
+        }
 
-            return ir;
+        /**
+         * Set the changed walk properties on the existing target document.
+         *
+         * @return the response of ES, or absent if the target document doesn't exist
+         */
+        private Optional<UpdateResponse> updateInES(Map<String, JsonNode> walkResults, Set<String> changed) {
+            final ID sourceID = request.root.id();
+            final ID targetID = getTargetID(sourceID, request.config);
+
+            // the script gets plain java maps and lists
+            final Map<String, Object> fields = new HashMap<String, Object>();
+            for (String property : changed) {
+                fields.put(property, objectMapper.convertValue(walkResults.get(property), Object.class));
+            }
+            fields.put("_fromSource", objectMapper.convertValue(toJSON(objectMapper, sourceID), Object.class));
+
+            try {
+                final UpdateResponse ur = client.prepareUpdate(targetID.index(), targetID.type(), targetID.id())
+                        .setScript(UPDATE_SCRIPT).addScriptParam("fields", fields)
+                        .setRetryOnConflict(UPDATE_RETRIES).execute().actionGet();
+
+                log.debug("Updated {} of /{}/{}/{}, version={}", new Object[]{changed, targetID.index(), targetID.type(), targetID.id(), ur.version()});
+                return Optional.of(ur);
+            } catch (RuntimeException e) {
+                if (ExceptionsHelper.unwrapCause(e) instanceof DocumentMissingException) {
+                    return Optional.absent();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Recompute only the walks that can see the changed document and update those properties in the target.
+         *
+         * @return absent if the target doesn't exist yet, so the whole document must be computed
+         */
+        private Optional<RecomputeResult> recomputeWalks() throws ExecutionException, InterruptedException {
+            final Map<String, JsonNode> walkResults = walkResults(request.affectedWalks());
+            final Map<String, Long> properties = TargetFingerprints.fingerprints(walkResults);
+            final ID targetID = getTargetID(request.root.id(), request.config);
+
+            final Lock lock = fingerprints.lock(targetID);
+            lock.lock();
+            try {
+                final Set<String> changed = fingerprints.changedProperties(targetID, properties);
+                if (changed.isEmpty()) {
+                    log.debug("Recompute completed for {}, walk results unchanged", request.root.id());
+                    return Optional.of(new RecomputeResult(null, null, null, walkResults, true));
+                }
+
+                final Optional<UpdateResponse> ur;
+                try {
+                    ur = updateInES(walkResults, changed);
+                } catch (RuntimeException e) {
+                    fingerprints.invalidate(targetID);
+                    throw e;
+                }
+
+                if (!ur.isPresent()) {
+                    fingerprints.invalidate(targetID);
+                    return Optional.absent();
+                }
+
+                fingerprints.putProperties(targetID, properties);
+                return Optional.of(new RecomputeResult(ur.get(), walkResults));
+            } finally {
+                lock.unlock();
+            }
         }
 
         private void deleteFromES(ID sourceID, TypeConfig config) {
             ID targetID = getTargetID(sourceID, config);
+            fingerprints.invalidate(targetID);
             client.prepareDelete(targetID.index(), targetID.type(), targetID.id()).execute().actionGet(); // Ignore response, we don't care whether targetID existed or not
         }
 
@@ -168,7 +283,7 @@ public class RecomputerFactoryImpl implements Recomputer {
             return sourceID.index(config.targetIndex()).type(config.targetType());
         }
 
-        private JsonNode getFromES() throws IOException {
+        private GetResponse getFromES() {
             // TODO oops this doesn't work at the moment, we have the REDUCE results in walkResults :(
             //            // we are always on the root node of a walk result, so use that if it's there
             //            if(walkResults != null && !walkResults.isEmpty())
@@ -185,15 +300,25 @@ public class RecomputerFactoryImpl implements Recomputer {
             if (!r.isPresent() || !r.get().getResponse().isPresent())
                 throw new SourceMissingException(request.root.id());
 
-            return objectMapper.readTree(r.get().getResponse().get().sourceAsString());
+            return r.get().getResponse().get();
         }
 
         public RecomputeResult recompute() throws IOException, ExecutionException, InterruptedException {
             log.debug("Recompute {} started", request.root.id().toString());
 
+            // a neighbour changed, so only walks can have a different result
+            if (request.walkOnly()) {
+                final Optional<RecomputeResult> result = recomputeWalks();
+                if (result.isPresent()) {
+                    return result.get();
+                }
+                log.debug("No target document for {} yet, recomputing it completely", request.root.id());
+            }
+
             // Now we are going to:
             // - fetch the current ElasticSearch document,
-            final JsonNode rawDocument = getFromES();
+            final GetResponse source = getFromES();
+            final JsonNode rawDocument = objectMapper.readTree(source.sourceAsString());
 
             // - Return when this document does not need to be processed.
             if (!request.config.filter(rawDocument)) {
@@ -207,7 +332,7 @@ public class RecomputerFactoryImpl implements Recomputer {
             // - We convert the tree of vertices to a tree of ElasticSearch documents
             // - We call the reduce() method for this walk, with the tree of documents as argument.
             // - We collect the result.
-            final Map<String, JsonNode> walkResults = walkResults();
+            final Map<String, JsonNode> walkResults = walkResults(request.config.walks());
             if (walkResults == null) {
                 log.info("Aborted recompute for {} because graph is expired for this node", request.root.id().toString());
                 throw new ExpiredException(Collections.<ID>emptyList());
@@ -219,8 +344,9 @@ public class RecomputerFactoryImpl implements Recomputer {
             // - Add a reference to the source document.
             // - And store it as target document type in target index.
 
-            // pre-process document using javascript
-            final JsonNode transformed = request.config.transform(rawDocument);
+            // pre-process document using javascript, unless this version of the source was transformed before
+            final ID sourceID = new ID(source.index(), source.type(), source.id(), source.version());
+            final JsonNode transformed = transformCache.transform(request.config, sourceID, rawDocument);
 
             if (!transformed.isObject()) {
                 log.info("Aborted recompute for {} because the source document is not a JSON object", request.root.id().toString());
@@ -235,12 +361,16 @@ public class RecomputerFactoryImpl implements Recomputer {
             }
 
             // write the result document to the target index
-            final IndexResponse ir = writeToES(document);
+            final Optional<IndexResponse> ir = writeToES(document, walkResults);
+            if (!ir.isPresent()) {
+                log.debug("Recompute completed for {}, target unchanged", request.root.id());
+                return new RecomputeResult(null, rawDocument, document, walkResults, true);
+            }
 
             log.debug("Recompute completed for {}, wrote /{}/{}/{}/{}",
-                    new Object[]{request.root.id().toString(), ir.index(), ir.type(), ir.id(), ir.version()});
+                    new Object[]{request.root.id().toString(), ir.get().index(), ir.get().type(), ir.get().id(), ir.get().version()});
 
-            return new RecomputeResult(ir, rawDocument, document, walkResults);
+            return new RecomputeResult(ir.get(), rawDocument, document, walkResults);
         }
     }
 
@@ -0,0 +1,216 @@
+package dgm.degraphmalizr.recompute;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import dgm.GraphUtilities;
+import dgm.ID;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Remembers a fingerprint of the last document written for each target ID, so writing the same document again can be
+ * skipped.
+ * <p/>
+ * The fingerprint is a hash of the document with the fields of each object in sorted order, so it doesn't depend on
+ * the order in which transform and walks produced the fields. Fingerprints are only kept in memory and only for
+ * documents written by this process, the first recompute after a start always writes. Whoever deletes target documents
+ * or indices must {@link #invalidate} them here. Targets deleted by someone else are written again at the latest when
+ * their fingerprint expires.
+ * <p/>
+ * Next to the whole document, the fingerprints of the walk properties are kept, so a walk-only recompute can update just
+ * the properties that changed.
+ */
+public class TargetFingerprints {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    public static final long DEFAULT_EXPIRY_MINUTES = 60;
+
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+    private static final byte TEXT = 3;
+    private static final byte VALUE = 4;
+
+    /**
+     * Fingerprint of the whole document (null after a partial update) and of each walk property.
+     */
+    private static final class Entry {
+        final Long document;
+        final Map<String, Long> properties;
+
+        Entry(Long document, Map<String, Long> properties) {
+            this.document = document;
+            this.properties = properties;
+        }
+    }
+
+    private final boolean enabled;
+    private final Cache<ID, Entry> fingerprints;
+    private final Striped<Lock> locks = Striped.lock(64);
+
+    /**
+     * @param maximumSize Number of target documents to remember, 0 disables fingerprinting
+     */
+    public TargetFingerprints(int maximumSize) {
+        this(maximumSize, DEFAULT_EXPIRY_MINUTES, TimeUnit.MINUTES, Ticker.systemTicker());
+    }
+
+    /**
+     * @param maximumSize Number of target documents to remember, 0 disables fingerprinting
+     * @param expiry      How long after writing a target its fingerprint is forgotten
+     */
+    public TargetFingerprints(int maximumSize, long expiry, TimeUnit unit, Ticker ticker) {
+        this.enabled = maximumSize > 0;
+        this.fingerprints = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0, maximumSize))
+                .expireAfterWrite(expiry, unit)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Stable hash of a JSON document.
+     */
+    public static long fingerprint(JsonNode document) {
+        final Hasher hasher = HASH.newHasher();
+        hash(document, hasher);
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * Fingerprint of each property.
+     */
+    public static Map<String, Long> fingerprints(Map<String, JsonNode> properties) {
+        final Map<String, Long> result = new HashMap<String, Long>();
+        for (Map.Entry<String, JsonNode> e : properties.entrySet()) {
+            result.put(e.getKey(), fingerprint(e.getValue()));
+        }
+        return result;
+    }
+
+    private static void hash(JsonNode node, Hasher hasher) {
+        if (node.isObject()) {
+            final List<String> names = new ArrayList<String>(node.size());
+            final Iterator<String> i = node.fieldNames();
+            while (i.hasNext()) {
+                names.add(i.next());
+            }
+            Collections.sort(names);
+
+            hasher.putByte(OBJECT).putInt(names.size());
+            for (String name : names) {
+                hasher.putInt(name.length()).putString(name);
+                hash(node.get(name), hasher);
+            }
+            return;
+        }
+
+        if (node.isArray()) {
+            hasher.putByte(ARRAY).putInt(node.size());
+            for (JsonNode element : node) {
+                hash(element, hasher);
+            }
+            return;
+        }
+
+        // numbers, booleans and null by their JSON representation, so 1 and 1.0 differ like they do in the document
+        final String text = node.isTextual() ? node.textValue() : node.toString();
+        hasher.putByte(node.isTextual() ? TEXT : VALUE).putInt(text.length()).putString(text);
+    }
+
+    /**
+     * Lock to hold while comparing, writing and remembering the document for this target, so concurrent recomputes of
+     * the same target can't leave a fingerprint behind that doesn't match the indexed document.
+     */
+    public Lock lock(ID target) {
+        return locks.get(key(target));
+    }
+
+    /**
+     * @return true if the last document written to this target had this fingerprint
+     */
+    public boolean isUnchanged(ID target, long fingerprint) {
+        if (!enabled) {
+            return false;
+        }
+
+        final Entry previous = fingerprints.getIfPresent(key(target));
+        return previous != null && previous.document != null && previous.document == fingerprint;
+    }
+
+    /**
+     * Remember the fingerprint of the document just written to this target, and of its walk properties.
+     */
+    public void put(ID target, long fingerprint, Map<String, Long> properties) {
+        if (enabled) {
+            fingerprints.put(key(target), new Entry(fingerprint, new HashMap<String, Long>(properties)));
+        }
+    }
+
+    /**
+     * @return the properties whose fingerprint differs from what was last written to this target, or all of them if
+     *         we don't know
+     */
+    public Set<String> changedProperties(ID target, Map<String, Long> properties) {
+        final Entry previous = enabled ? fingerprints.getIfPresent(key(target)) : null;
+        if (previous == null) {
+            return properties.keySet();
+        }
+
+        final Set<String> changed = new HashSet<String>();
+        for (Map.Entry<String, Long> e : properties.entrySet()) {
+            if (!e.getValue().equals(previous.properties.get(e.getKey()))) {
+                changed.add(e.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Remember the properties written by a partial update. The document as a whole is no longer known.
+     */
+    public void putProperties(ID target, Map<String, Long> properties) {
+        if (!enabled) {
+            return;
+        }
+
+        final Entry previous = fingerprints.getIfPresent(key(target));
+        final Map<String, Long> merged = new HashMap<String, Long>();
+        if (previous != null) {
+            merged.putAll(previous.properties);
+        }
+        merged.putAll(properties);
+        fingerprints.put(key(target), new Entry(null, merged));
+    }
+
+    /**
+     * Forget a target document, call this when it is deleted or the write failed.
+     */
+    public void invalidate(ID target) {
+        fingerprints.invalidate(key(target));
+    }
+
+    /**
+     * Forget all target documents in an index, call this when the index is deleted.
+     */
+    public void invalidateIndex(String index) {
+        final Iterator<ID> i = fingerprints.asMap().keySet().iterator();
+        while (i.hasNext()) {
+            if (i.next().index().equals(index)) {
+                i.remove();
+            }
+        }
+    }
+
+    // targets are always written without version
+    private static ID key(ID target) {
+        return GraphUtilities.getSymbolicID(target);
+    }
+}
@@ -0,0 +1,103 @@
+package dgm.degraphmalizr.recompute;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import dgm.ID;
+import dgm.configuration.ConfigurationMonitor;
+import dgm.configuration.TypeConfig;
+import dgm.configuration.TypeFingerprint;
+
+import java.io.IOException;
+
+/**
+ * Remembers the result of {@link TypeConfig#transform} for a version of a source document.
+ * <p/>
+ * The transform only depends on the source document and the code of the configuration, so the result is keyed by the
+ * source ID including its version and the transform fingerprint of the {@link TypeConfig}. Results are kept serialized,
+ * which keeps them immutable and lets the cache be bounded by the number of bytes it holds. Everything is dropped when
+ * the configuration is reloaded.
+ */
+public class TransformCache implements ConfigurationMonitor {
+    // rough overhead of an entry next to the serialized document
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final class Key {
+        final ID source;
+        final String fingerprint;
+
+        Key(ID source, String fingerprint) {
+            this.source = source;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key other = (Key) o;
+            return source.equals(other.source) && fingerprint.equals(other.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * source.hashCode() + fingerprint.hashCode();
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Cache<Key, byte[]> transformed;
+
+    /**
+     * @param maximumBytes Number of bytes of transformed documents to keep, 0 disables the cache
+     */
+    public TransformCache(ObjectMapper objectMapper, long maximumBytes) {
+        this.objectMapper = objectMapper;
+        this.enabled = maximumBytes > 0;
+        this.transformed = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(0, maximumBytes))
+                .weigher(new Weigher<Key, byte[]>() {
+                    @Override
+                    public int weigh(Key key, byte[] value) {
+                        return value.length + ENTRY_OVERHEAD;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Transform a document, or return the remembered result for this version of it.
+     *
+     * @param source ID of the source document, without a version the result is not remembered
+     * @return a transformed document the caller is free to modify
+     */
+    public JsonNode transform(TypeConfig config, ID source, JsonNode document) throws IOException {
+        if (!enabled || source.version() == 0) {
+            return config.transform(document);
+        }
+
+        final Key key = new Key(source, config.fingerprint().get(TypeFingerprint.Part.TRANSFORM));
+        final byte[] cached = transformed.getIfPresent(key);
+        if (cached != null) {
+            return objectMapper.readTree(cached);
+        }
+
+        final JsonNode result = config.transform(document);
+        transformed.put(key, objectMapper.writeValueAsBytes(result));
+        return result;
+    }
+
+    public long size() {
+        return transformed.size();
+    }
+
+    @Override
+    public void configurationChanged(String index) {
+        // fingerprints change with the configuration, but the old entries would only take up space
+        transformed.invalidateAll();
+    }
+}
@@ -1,15 +1,21 @@
 package dgm.driver;
 
+import dgm.configuration.javascript.ScriptCache;
+import dgm.driver.handler.AdmissionControl;
 import dgm.driver.handler.HandlerModule;
 import dgm.driver.server.Server;
 import dgm.driver.server.ServerModule;
 import dgm.fixtures.FixturesModule;
 import dgm.fixtures.FixturesRunner;
+import dgm.graphs.EdgeIdentifierMigration;
+import dgm.graphs.GraphFile;
+import dgm.graphs.KeyIndexMigration;
 import dgm.jmx.GraphBuilder;
 import dgm.modules.BlueprintsSubgraphManagerModule;
 import dgm.modules.DegraphmalizerModule;
 import dgm.modules.ServiceRunner;
 import dgm.modules.ThreadpoolModule;
+import dgm.modules.changefeed.ChangeFeedModule;
 import dgm.modules.elasticsearch.CommonElasticSearchModule;
 import dgm.modules.elasticsearch.nodes.LocalES;
 import dgm.modules.elasticsearch.nodes.NodeES;
@@ -17,9 +23,10 @@ import dgm.modules.fsmon.DynamicConfiguration;
 import dgm.modules.fsmon.StaticConfiguration;
 import dgm.modules.neo4j.CommonNeo4j;
 import dgm.modules.neo4j.EmbeddedNeo4J;
+import dgm.modules.neo4j.GraphImport;
+import dgm.modules.property.PropertiesModule;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +43,7 @@ import com.beust.jcommander.JCommander;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Module;
+import com.tinkerpop.blueprints.Graph;
 
 /* *
  * Run this with e.g
@@ -76,19 +84,29 @@ public final class Main {
         final List<Module> modules = new ArrayList<Module>();
 
         // some defaults
-        modules.add(new BlueprintsSubgraphManagerModule());
+        modules.add(new BlueprintsSubgraphManagerModule(opt.projection));
         modules.add(new Slf4jLoggingModule());
-        modules.add(new DegraphmalizerModule());
+        modules.add(new DegraphmalizerModule(opt.fingerprints, opt.transformCache, opt.reindexRate));
         modules.add(new ThreadpoolModule());
 
         // netty part
         modules.add(new ServerModule(opt.bindhost, opt.port));
-        modules.add(new HandlerModule());
+        modules.add(new HandlerModule(opt.admissionLimit));
+
+        // fill a new graph database from the copy of another node, before anything opens it
+        if (StringUtils.isNotEmpty(opt.importGraph)) {
+            importGraph(opt.importGraph, opt.graphdb);
+        }
 
         // we always run an embedded local graph database
         modules.add(new CommonNeo4j());
         modules.add(new EmbeddedNeo4J(opt.graphdb));
 
+        // tuning of the graph database
+        if (StringUtils.isNotEmpty(opt.propertiesFile)) {
+            modules.add(new PropertiesModule(opt.propertiesFile));
+        }
+
         // elasticsearch setup
         setupElasticsearch(opt, modules);
 
@@ -98,6 +116,11 @@ public final class Main {
         if (StringUtils.isNotEmpty(opt.fixtures)) {
             modules.add(new FixturesModule(opt.fixtures, opt.development, opt.reloading));
         }
+
+        // poll the source indices next to the HTTP interface
+        if (StringUtils.isNotEmpty(opt.changeFeed)) {
+            modules.add(new ChangeFeedModule(opt.changeFeed, opt.changeFeedCheckpoints));
+        }
         // the injector
         final Injector injector = Guice.createInjector(modules);
 
@@ -114,6 +137,10 @@ public final class Main {
                 final GraphBuilder gb = injector.getInstance(GraphBuilder.class);
                 mbs.registerMBean(gb, name);
                 log.info("JMX bean {} started", name);
+
+                final ObjectName admission = new ObjectName("graph.mbeans:type=AdmissionControl");
+                mbs.registerMBean(injector.getInstance(AdmissionControl.class), admission);
+                log.info("JMX bean {} started", admission);
             } catch (Exception e) {
                 // TODO log errors
                 e.printStackTrace();
@@ -134,6 +161,26 @@ public final class Main {
             }
         });
 
+        // bring the graph up to date before anything uses it, and don't use a graph that isn't
+        final EdgeIdentifierMigration edgeIds = injector.getInstance(EdgeIdentifierMigration.class);
+        if (opt.migrateEdgeIds) {
+            edgeIds.migrate();
+        } else if (edgeIds.isNeeded()) {
+            exit("The edges in graph " + opt.graphdb + " have identifiers of an older version, start once with --migrate-edge-ids to rewrite them");
+        }
+        final KeyIndexMigration keyIndices = injector.getInstance(KeyIndexMigration.class);
+        if (opt.migrateKeyIndices) {
+            keyIndices.migrate();
+        } else if (keyIndices.isNeeded()) {
+            exit("The vertices in graph " + opt.graphdb + " lack the keys they are searched by, start once with --migrate-key-indices to add them");
+        }
+
+        // only write a copy of the graph for another node
+        if (StringUtils.isNotEmpty(opt.exportGraph)) {
+            exportGraph(injector.getInstance(Graph.class), opt.exportGraph);
+            System.exit(0);
+        }
+
         // start services and then the main netty server
         runner.startServices();
 
@@ -178,10 +225,32 @@ public final class Main {
 
     private void setupConfiguration(Options opt,  List<Module> modules) throws IOException {
         // automatic reloading
+        final ScriptCache scriptCache = opt.jsCache == null || opt.jsCache.isEmpty() ? ScriptCache.NONE : new ScriptCache(new File(opt.jsCache));
         if (opt.reloading) {
-            modules.add(new DynamicConfiguration(opt.config, opt.libraries()));
+            modules.add(new DynamicConfiguration(opt.config, scriptCache, opt.libraries()));
         } else {
-            modules.add(new StaticConfiguration(opt.config, opt.libraries()));
+            modules.add(new StaticConfiguration(opt.config, scriptCache, opt.libraries()));
+        }
+    }
+
+    private static void importGraph(String file, String dataDir) throws IOException {
+        System.out.println("Importing graph from " + file + " into " + dataDir);
+        final InputStream in = new FileInputStream(file);
+        try {
+            GraphImport.load(in, dataDir);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void exportGraph(Graph graph, String file) throws IOException {
+        log.info("Exporting graph to {}", file);
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            final long[] counts = GraphFile.write(graph, out);
+            log.info("Exported {} vertices and {} edges", counts[0], counts[1]);
+        } finally {
+            out.close();
         }
     }
 
@@ -1,5 +1,9 @@
 package dgm.driver;
 
+import dgm.driver.handler.AdmissionControl;
+import dgm.modules.DegraphmalizerModule;
+import dgm.modules.changefeed.ChangeFeedModule;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -38,9 +42,48 @@ public class Options {
     @Parameter(names = {"-f", "--fixtures"}, description = "Load fixtures on startup")
     String fixtures;
 
+    @Parameter(names = {"--jscache"}, description = "Directory to keep compiled javascript in, so a restart doesn't compile unchanged configurations and libraries again. Empty disables")
+    String jsCache;
+
     @Parameter(names = {"-l", "--jslib"}, description = "Load Javascript library from this resource if its name ends with '.js'. If the resource is not on the class path, it will be interpreted as an URL. So to load a file it should start with file://.  If the name of the resource is  INDEX, it will interpret every line of the file as another library to load")
     List<String> libraries = new ArrayList<String>();
 
+    @Parameter(names = {"--projection"}, description = "Keep an in-memory projection of the graph for traversals")
+    boolean projection;
+
+    @Parameter(names = {"--fingerprints"}, description = "Number of target documents to remember a fingerprint for, unchanged documents are not written again. A fingerprint expires after an hour. 0 disables")
+    int fingerprints;
+
+    @Parameter(names = {"--transform-cache"}, description = "Megabytes of transformed source documents to remember, so recomputes of an unchanged source skip the transform. 0 disables")
+    int transformCache;
+
+    @Parameter(names = {"--reindex-rate"}, description = "Source documents per second to recompute in the background when the configuration of a type changed, needs --reload. 0 disables")
+    double reindexRate;
+
+    @Parameter(names = {"--changefeed"}, description = "Poll the source indices for changed documents, using this date field (e.g. _timestamp) to find them")
+    String changeFeed;
+
+    @Parameter(names = {"--changefeed-checkpoints"}, description = "File to keep the change feed position in each source index in")
+    String changeFeedCheckpoints;
+
+    @Parameter(names = {"--admission-limit"}, description = "Number of queued and running tasks in a stage at which new requests are refused with 503. 0 disables")
+    int admissionLimit;
+
+    @Parameter(names = {"--properties"}, description = "Properties file with settings of the graph store, like graphdb.cache_type, graphdb.nodes.mapped_memory and graphdb.warmup")
+    String propertiesFile;
+
+    @Parameter(names = {"--migrate-edge-ids"}, description = "Rewrite the identifiers of edges in the graph to the version independent form before starting, a graph that needs it is refused otherwise")
+    boolean migrateEdgeIds;
+
+    @Parameter(names = {"--migrate-key-indices"}, description = "Add the keys the graph is searched by to existing vertices and drop the key indices that are no longer used before starting, a graph that needs it is refused otherwise")
+    boolean migrateKeyIndices;
+
+    @Parameter(names = {"--export-graph"}, description = "Write a copy of the graph to this file and exit")
+    String exportGraph;
+
+    @Parameter(names = {"--import-graph"}, description = "Fill the (empty) graph database from a copy written with --export-graph before starting")
+    String importGraph;
+
     @Parameter(names = {"-?", "--help"}, description = "Show command line options", help = true)
     boolean help;
 
@@ -58,6 +101,17 @@ public class Options {
         jmx = Boolean.parseBoolean(properties.getProperty("degraphmalizer.jmx.enabled"));
         reloading = Boolean.parseBoolean(properties.getProperty("degraphmalizer.autoreload"));
         fixtures = properties.getProperty("degraphmalizer.fixtures");
+        jsCache = properties.getProperty("degraphmalizer.jscache", "data/jscache");
+        projection = Boolean.parseBoolean(properties.getProperty("degraphmalizer.projection"));
+        fingerprints = Integer.parseInt(properties.getProperty("degraphmalizer.fingerprints", String.valueOf(DegraphmalizerModule.DEFAULT_FINGERPRINTS)));
+        transformCache = Integer.parseInt(properties.getProperty("degraphmalizer.transformcache", String.valueOf(DegraphmalizerModule.DEFAULT_TRANSFORM_CACHE_MB)));
+        changeFeed = properties.getProperty("degraphmalizer.changefeed");
+        changeFeedCheckpoints = properties.getProperty("degraphmalizer.changefeed.checkpoints", ChangeFeedModule.DEFAULT_CHECKPOINTS);
+        admissionLimit = Integer.parseInt(properties.getProperty("degraphmalizer.admissionlimit", String.valueOf(AdmissionControl.DEFAULT_LIMIT)));
+        propertiesFile = properties.getProperty("degraphmalizer.properties");
+        migrateEdgeIds = Boolean.parseBoolean(properties.getProperty("degraphmalizer.migrateedgeids"));
+        migrateKeyIndices = Boolean.parseBoolean(properties.getProperty("degraphmalizer.migratekeyindices"));
+        reindexRate = Double.parseDouble(properties.getProperty("degraphmalizer.reindexrate", String.valueOf(DegraphmalizerModule.DEFAULT_REINDEX_RATE)));
 
         // try to set the defaults for a cluster
         transport.add(properties.getProperty("elasticsearch.host", "localhost"));
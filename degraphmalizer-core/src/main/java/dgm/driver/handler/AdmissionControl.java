@@ -0,0 +1,220 @@
+package dgm.driver.handler;
+
+import dgm.exceptions.ServiceOverloadedException;
+import dgm.modules.CountingForkJoinPool;
+import dgm.modules.bindingannotations.Degraphmalizes;
+import dgm.modules.bindingannotations.Fetches;
+import dgm.modules.bindingannotations.Recomputes;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import com.google.inject.Singleton;
+
+/**
+ * Refuses new requests while one of the stages of the degraphmalizer has too much work.
+ * <p/>
+ * The work of a stage is the number of tasks queued or running in its thread pool, and for the requests themselves the
+ * number accepted but not yet done. When any of them reaches the limit a request is refused with a
+ * {@link ServiceOverloadedException}, which tells the client when to try again based on how fast the full stage is
+ * completing tasks. This keeps the queues short, instead of letting latency grow until the pools run tasks on the
+ * threads that submit them.
+ * <p/>
+ * When recomputes and fetches share a pool it is one stage, named recompute, so its work is not checked twice.
+ */
+@Singleton
+public class AdmissionControl implements AdmissionControlMBean {
+    public static final int DEFAULT_LIMIT = 10000;
+
+    static final int MAX_RETRY_AFTER = 60;
+
+    /**
+     * A thread pool and how fast it has been completing tasks.
+     * <p/>
+     * A plain {@link ForkJoinPool} does not count completed tasks, so its rate is unknown and clients are told to retry
+     * after {@link #MAX_RETRY_AFTER} seconds. Use a {@link CountingForkJoinPool}.
+     */
+    static final class Stage {
+        final String name;
+        final ThreadPoolExecutor executor;
+        final ForkJoinPool pool;
+
+        private long sampledAt;
+        private long sampledCompleted;
+        private double rate;
+
+        Stage(String name, ExecutorService executor) {
+            this.name = name;
+            this.executor = executor instanceof ThreadPoolExecutor ? (ThreadPoolExecutor) executor : null;
+            this.pool = executor instanceof ForkJoinPool ? (ForkJoinPool) executor : null;
+        }
+
+        int queued() {
+            if (pool != null) {
+                return (int) Math.min(Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+            }
+            return executor == null ? 0 : executor.getQueue().size();
+        }
+
+        int active() {
+            if (pool != null) {
+                return pool.getActiveThreadCount();
+            }
+            return executor == null ? 0 : executor.getActiveCount();
+        }
+
+        /**
+         * @return -1 if the pool doesn't count them
+         */
+        private long completed() {
+            if (pool instanceof CountingForkJoinPool) {
+                return ((CountingForkJoinPool) pool).getCompletedTaskCount();
+            }
+            return executor == null ? -1 : executor.getCompletedTaskCount();
+        }
+
+        /**
+         * Tasks completed per second, averaged over the recent samples.
+         */
+        synchronized double rate() {
+            if (completed() < 0) {
+                return 0;
+            }
+
+            final long now = System.nanoTime();
+            final long elapsed = now - sampledAt;
+            if (sampledAt == 0 || elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+                final long completed = completed();
+                if (sampledAt != 0) {
+                    final double current = (completed - sampledCompleted) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+                    rate = rate == 0 ? current : (rate + current) / 2;
+                }
+                sampledAt = now;
+                sampledCompleted = completed;
+            }
+            return rate;
+        }
+    }
+
+    private final int limit;
+    private final Stage degraphmalize;
+    private final Stage recompute;
+    private final Stage fetch;
+    private final Stage[] stages;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param limit Maximal number of queued and running tasks per stage, 0 to never refuse a request
+     */
+    @Inject
+    public AdmissionControl(@Degraphmalizes ExecutorService degraphmalizeQueue,
+                            @Recomputes ExecutorService recomputeQueue,
+                            @Fetches ExecutorService fetchQueue,
+                            @Named("admissionLimit") int limit) {
+        this.limit = limit;
+        this.degraphmalize = new Stage("degraphmalize", degraphmalizeQueue);
+        this.recompute = new Stage("recompute", recomputeQueue);
+        if (fetchQueue == recomputeQueue) {
+            this.fetch = recompute;
+            this.stages = new Stage[]{degraphmalize, recompute};
+        } else {
+            this.fetch = new Stage("fetch", fetchQueue);
+            this.stages = new Stage[]{degraphmalize, recompute, fetch};
+        }
+    }
+
+    /**
+     * Accept a request, it must be followed by a call to {@link #done()}.
+     *
+     * @throws ServiceOverloadedException when there is too much work
+     */
+    public void admit() {
+        if (limit > 0) {
+            for (Stage stage : stages) {
+                check(stage.name, stage.queued() + stage.active(), stage.rate());
+            }
+
+            // requests are done at the rate the degraphmalize stage completes them
+            check("requests", inFlight.get(), degraphmalize.rate());
+        }
+
+        inFlight.incrementAndGet();
+    }
+
+    public void done() {
+        inFlight.decrementAndGet();
+    }
+
+    private void check(String stage, int work, double rate) {
+        if (work < limit) {
+            return;
+        }
+
+        rejected.incrementAndGet();
+        throw new ServiceOverloadedException(stage, work, retryAfter(work - limit + 1, rate));
+    }
+
+    /**
+     * Seconds until {@code excess} tasks are done at {@code rate} tasks per second.
+     */
+    static int retryAfter(int excess, double rate) {
+        if (rate <= 0) {
+            return MAX_RETRY_AFTER;
+        }
+        return (int) Math.min(MAX_RETRY_AFTER, Math.max(1, Math.ceil(excess / rate)));
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public int getRequestsInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getRequestsRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public int getDegraphmalizeQueued() {
+        return degraphmalize.queued();
+    }
+
+    @Override
+    public int getDegraphmalizeActive() {
+        return degraphmalize.active();
+    }
+
+    @Override
+    public int getRecomputeQueued() {
+        return recompute.queued();
+    }
+
+    @Override
+    public int getRecomputeActive() {
+        return recompute.active();
+    }
+
+    @Override
+    public int getFetchQueued() {
+        return fetch.queued();
+    }
+
+    @Override
+    public int getFetchActive() {
+        return fetch.active();
+    }
+}
@@ -0,0 +1,27 @@
+package dgm.driver.handler;
+
+/**
+ * Queue gauges of the degraphmalizer stages, and how many requests were refused.
+ */
+public interface AdmissionControlMBean {
+    /**
+     * Maximal number of queued and running tasks per stage, 0 if requests are never refused.
+     */
+    int getLimit();
+
+    int getRequestsInFlight();
+
+    long getRequestsRejected();
+
+    int getDegraphmalizeQueued();
+
+    int getDegraphmalizeActive();
+
+    int getRecomputeQueued();
+
+    int getRecomputeActive();
+
+    int getFetchQueued();
+
+    int getFetchActive();
+}
@@ -0,0 +1,80 @@
+package dgm.driver.handler;
+
+import dgm.degraphmalizr.BulkDegraphmalizer;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.google.inject.Inject;
+
+/**
+ * Starts a {@link BulkDegraphmalizer} job for a {@link BulkRequest}, or reports its progress.
+ */
+public class BulkHandler extends SimpleChannelHandler {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final BulkDegraphmalizer bulkDegraphmalizer;
+
+    @Inject
+    public BulkHandler(BulkDegraphmalizer bulkDegraphmalizer) {
+        this.bulkDegraphmalizer = bulkDegraphmalizer;
+    }
+
+    @Override
+    public final void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (!(e.getMessage() instanceof BulkRequest)) {
+            ctx.sendUpstream(e);
+            return;
+        }
+
+        final BulkRequest request = (BulkRequest) e.getMessage();
+        final HttpResponse response;
+        if (request.start) {
+            final BulkDegraphmalizer.Progress started = bulkDegraphmalizer.submit(request.indices, request.type);
+            if (started == null) {
+                response = respond(HttpResponseStatus.CONFLICT, bulkDegraphmalizer.current());
+            } else {
+                response = respond(HttpResponseStatus.ACCEPTED, started);
+            }
+        } else {
+            final BulkDegraphmalizer.Progress current = bulkDegraphmalizer.current();
+            response = respond(current == null ? HttpResponseStatus.NOT_FOUND : HttpResponseStatus.OK, current);
+        }
+
+        ctx.getChannel().write(response).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    private HttpResponse respond(HttpResponseStatus status, BulkDegraphmalizer.Progress progress) {
+        final ObjectNode n = objectMapper.createObjectNode();
+        n.put("type", "BulkProgress");
+        if (progress != null) {
+            final StringBuilder indices = new StringBuilder();
+            for (String index : progress.indices()) {
+                indices.append(indices.length() == 0 ? "" : ",").append(index);
+            }
+            n.put("indices", indices.toString());
+            n.put("sourceType", progress.type());
+            n.put("total", progress.total());
+            n.put("submitted", progress.submitted());
+            n.put("completed", progress.completed());
+            n.put("failed", progress.failed());
+            n.put("elapsedMillis", progress.elapsedMillis());
+            n.put("finished", progress.finished());
+            n.put("error", progress.error());
+        }
+
+        final HttpResponse r = new DefaultHttpResponse(HttpVersion.HTTP_1_0, status);
+        r.setContent(ChannelBuffers.copiedBuffer(n.toString(), Charsets.UTF_8));
+        return r;
+    }
+}
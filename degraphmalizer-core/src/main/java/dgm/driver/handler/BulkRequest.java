@@ -0,0 +1,21 @@
+package dgm.driver.handler;
+
+/**
+ * Request to start degraphmalizing all documents of some indices again, or to see how far that is.
+ * <p/>
+ * {@code GET /_redegraphmalize} reports the progress of the last job, {@code POST /_redegraphmalize/{index}[/{type}]}
+ * starts a new one. Several indices can be given separated by commas.
+ */
+class BulkRequest {
+    static final String PATH = "_redegraphmalize";
+
+    final boolean start;
+    final String[] indices;
+    final String type;
+
+    BulkRequest(boolean start, String[] indices, String type) {
+        this.start = start;
+        this.indices = indices;
+        this.type = type;
+    }
+}
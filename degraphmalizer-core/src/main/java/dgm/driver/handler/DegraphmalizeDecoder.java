@@ -28,6 +28,10 @@ public class DegraphmalizeDecoder extends OneToOneDecoder {
         // split url /TYPE/ID/ or fail
         final String[] components = urlDecode(request.getUri().substring(1).split("/"));
 
+        if (components[0].equals(BulkRequest.PATH)) {
+            return bulkRequest(request, components);
+        }
+
         switch (requestType){
             case DELETE:
                 if (components.length < 1 || components.length > 4) {
@@ -47,6 +51,18 @@ public class DegraphmalizeDecoder extends OneToOneDecoder {
         return new JobRequest(requestType, actionScopeFor(components), getID(components));
     }
 
+    private static BulkRequest bulkRequest(HttpRequest request, String[] components) {
+        if (HttpMethod.GET.equals(request.getMethod())) {
+            return new BulkRequest(false, null, null);
+        }
+
+        if (!HttpMethod.POST.equals(request.getMethod()) || components.length < 2 || components.length > 3 || components[1].isEmpty()) {
+            throw new InvalidRequest("POST URL " + request.getUri() + " must be of the form '/" + BulkRequest.PATH + "/{index}[/{type}]'");
+        }
+
+        return new BulkRequest(true, components[1].split(","), components.length == 3 ? components[2] : null);
+    }
+
     private static String[] urlDecode(String... components) {
         String[] result = new String[components.length];
         for (int i = 0; i < result.length; i++) {
@@ -41,6 +41,10 @@ public class DegraphmalizeResultEncoder extends OneToOneEncoder
                 final ObjectNode n = objectMapper.createObjectNode();
                 n.put("type", c.getSimpleName());
 
+                // the number of target documents this request caused to be recomputed
+                if (o instanceof DegraphmalizeResult)
+                    n.put("recomputes", ((DegraphmalizeResult) o).results().size());
+
                 final HttpResponse r = new DefaultHttpResponse(HttpVersion.HTTP_1_0, HttpResponseStatus.OK);
                 r.setContent(ChannelBuffers.copiedBuffer(n.toString(), Charsets.UTF_8));
 
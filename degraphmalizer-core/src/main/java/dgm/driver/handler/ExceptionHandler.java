@@ -1,6 +1,7 @@
 package dgm.driver.handler;
 
 import dgm.exceptions.DegraphmalizerException;
+import dgm.exceptions.ServiceOverloadedException;
 import dgm.exceptions.WrappedException;
 
 import java.io.IOException;
@@ -9,6 +10,7 @@ import java.io.StringWriter;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.*;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.slf4j.Logger;
@@ -36,6 +38,11 @@ public class ExceptionHandler extends SimpleChannelHandler {
         final HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_0, ex.httpStatusCode());
         response.setContent(ChannelBuffers.copiedBuffer(json, Charsets.UTF_8));
 
+        // tell clients that are refused when to come back
+        if (ex instanceof ServiceOverloadedException) {
+            response.setHeader(HttpHeaders.Names.RETRY_AFTER, ((ServiceOverloadedException) ex).retryAfter());
+        }
+
         logException(ex);
 
         if (c.isOpen() && c.isWritable()) {
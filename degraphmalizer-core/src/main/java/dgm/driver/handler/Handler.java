@@ -18,10 +18,12 @@ public class Handler extends SimpleChannelHandler {
     private static Logger log;
 
     private final Degraphmalizr degraphmalizr;
+    private final AdmissionControl admissionControl;
 
     @Inject
-    public Handler(Degraphmalizr degraphmalizr) {
+    public Handler(Degraphmalizr degraphmalizr, AdmissionControl admissionControl) {
         this.degraphmalizr = degraphmalizr;
+        this.admissionControl = admissionControl;
     }
 
     @Override
@@ -33,6 +35,9 @@ public class Handler extends SimpleChannelHandler {
 
         final JobRequest jobRequest = (JobRequest) e.getMessage();
 
+        // refuse the request if we can't keep up, the exception handler answers it
+        admissionControl.admit();
+
         final DegraphmalizeCallback callback = new DegraphmalizeCallback() {
             @Override
             public void started(DegraphmalizeRequest request) {
@@ -43,17 +48,25 @@ public class Handler extends SimpleChannelHandler {
             public void complete(DegraphmalizeResult result) {
                 // write completion message and close channel
                 Handler.log.debug("Completed degraphmalization for {}", result);
+                admissionControl.done();
                 ctx.getChannel().write(result).addListener(ChannelFutureListener.CLOSE);
             }
 
             @Override
             public void failed(DegraphmalizerException exception) {
+                admissionControl.done();
+
                 // send exception message upstream. We cannot simply throw the exception because this is not executed
                 // in the netty selector thread
                 ctx.sendUpstream(new DefaultExceptionEvent(ctx.getChannel(), exception));
             }
         };
 
-        degraphmalizr.degraphmalize(jobRequest.actionType(), jobRequest.actionScope(), jobRequest.id(), callback);
+        try {
+            degraphmalizr.degraphmalize(jobRequest.actionType(), jobRequest.actionScope(), jobRequest.id(), callback);
+        } catch (RuntimeException ex) {
+            admissionControl.done();
+            throw ex;
+        }
     }
 }
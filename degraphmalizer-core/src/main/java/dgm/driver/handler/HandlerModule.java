@@ -11,16 +11,32 @@ import org.jboss.netty.handler.codec.http.HttpServerCodec;
 import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
 
 import com.google.inject.*;
+import com.google.inject.name.Names;
 
 
 /**
  * This is where you configure your handlers and the pipeline
  */
 public class HandlerModule extends AbstractModule {
+    private final int admissionLimit;
+
+    public HandlerModule() {
+        this(AdmissionControl.DEFAULT_LIMIT);
+    }
+
+    /**
+     * @param admissionLimit Number of queued and running tasks per stage at which requests are refused, 0 to never refuse
+     */
+    public HandlerModule(int admissionLimit) {
+        this.admissionLimit = admissionLimit;
+    }
+
     @Override
     protected final void configure() {
         // bind to our handler
         bind(ChannelHandler.class).to(Handler.class);
+
+        bindConstant().annotatedWith(Names.named("admissionLimit")).to(admissionLimit);
     }
 
     @Provides
@@ -31,7 +47,7 @@ public class HandlerModule extends AbstractModule {
 
     @Provides
     @Inject
-    final ChannelPipeline providePipeline(ChannelHandler handler, Executor executor, Provider<Configuration> cfg) {
+    final ChannelPipeline providePipeline(ChannelHandler handler, BulkHandler bulkHandler, Executor executor, Provider<Configuration> cfg) {
         // construct empty pipeline
         final ChannelPipeline pipeline = Channels.pipeline();
 
@@ -44,6 +60,9 @@ public class HandlerModule extends AbstractModule {
         // convert degraphmalize responses into http responses
         pipeline.addLast("degraphmalize-encode", new DegraphmalizeResultEncoder());
 
+        // starts and reports bulk re-degraphmalizing
+        pipeline.addLast("redegraphmalize", bulkHandler);
+
         // does the work
         pipeline.addLast("resource", handler);
 
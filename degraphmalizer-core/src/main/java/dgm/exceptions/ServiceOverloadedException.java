@@ -0,0 +1,36 @@
+package dgm.exceptions;
+
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+
+/**
+ * A request was refused because the degraphmalizer has more work than it can handle, the client should try again later.
+ */
+public class ServiceOverloadedException extends DegraphmalizerException {
+    final String stage;
+    final int retryAfter;
+
+    public ServiceOverloadedException(String stage, int inFlight, int retryAfter) {
+        super("Too much work in " + stage + " (" + inFlight + "), retry after " + retryAfter + "s", Severity.INFO);
+        this.stage = stage;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Name of the stage that has too much work.
+     */
+    public String stage() {
+        return stage;
+    }
+
+    /**
+     * Estimated number of seconds until there is room again.
+     */
+    public int retryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpResponseStatus httpStatusCode() {
+        return HttpResponseStatus.SERVICE_UNAVAILABLE;
+    }
+}
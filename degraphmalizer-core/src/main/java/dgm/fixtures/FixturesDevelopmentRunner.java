@@ -1,8 +1,9 @@
 package dgm.fixtures;
 
-import dgm.Degraphmalizr;
 import dgm.ID;
 import dgm.configuration.*;
+import dgm.degraphmalizr.BulkDegraphmalizer;
+import dgm.degraphmalizr.recompute.TargetFingerprints;
 import dgm.trees.Pair;
 
 import java.util.HashSet;
@@ -37,6 +38,7 @@ public class FixturesDevelopmentRunner implements ConfigurationMonitor, Fixtures
     protected final Client client;
     protected final Provider<FixtureConfiguration> fixtureConfigurationProvider;
     protected final Provider<Configuration> cfg;
+    protected final TargetFingerprints fingerprints;
 
     final DeleteIndexesCommand deleteIndexesCommand;
     final DeleteTargetIndexesCommand deleteTargetIndexesCommand;
@@ -50,8 +52,9 @@ public class FixturesDevelopmentRunner implements ConfigurationMonitor, Fixtures
     private static final Logger LOG = LoggerFactory.getLogger(FixturesDevelopmentRunner.class);
 
     @Inject
-    public FixturesDevelopmentRunner(Client client, Provider<Configuration> cfgProvider, Provider<FixtureConfiguration> fixtureConfigurationProvider, Degraphmalizr degraphmalizr) {
+    public FixturesDevelopmentRunner(Client client, Provider<Configuration> cfgProvider, Provider<FixtureConfiguration> fixtureConfigurationProvider, BulkDegraphmalizer bulkDegraphmalizer, TargetFingerprints fingerprints) {
         this.client = client;
+        this.fingerprints = fingerprints;
         this.fixtureConfigurationProvider = fixtureConfigurationProvider;
         this.cfg = cfgProvider;
 
@@ -60,7 +63,7 @@ public class FixturesDevelopmentRunner implements ConfigurationMonitor, Fixtures
         createIndexesCommand = new CreateIndexesCommand(client, cfgProvider, fixtureConfigurationProvider);
         createTargetIndexesCommand = new CreateTargetIndexesCommand(client, cfgProvider, fixtureConfigurationProvider);
         insertDocumentsCommand = new InsertDocumentsCommand(client, cfgProvider, fixtureConfigurationProvider);
-        redegraphmalizeCommand = new RedegraphmalizeCommand(client, cfgProvider, fixtureConfigurationProvider, degraphmalizr);
+        redegraphmalizeCommand = new RedegraphmalizeCommand(client, cfgProvider, fixtureConfigurationProvider, bulkDegraphmalizer);
         writeResultDocumentsCommand = new WriteResultDocumentsCommand(client, cfgProvider, fixtureConfigurationProvider);
         verifyResultDocumentsCommand = new VerifyResultDocumentsCommand(client, cfgProvider, fixtureConfigurationProvider);
     }
@@ -71,10 +74,12 @@ public class FixturesDevelopmentRunner implements ConfigurationMonitor, Fixtures
         try {
             {
                 List<String> indexes = deleteIndexesCommand.execute();
+                invalidate(indexes);
                 LOG.info("Deleted indexes: {}", indexes);
             }
             {
                 List<String> indexes = deleteTargetIndexesCommand.execute();
+                invalidate(indexes);
                 LOG.info("Deleted target indexes: {}", indexes);
             }
             {
@@ -124,6 +129,11 @@ public class FixturesDevelopmentRunner implements ConfigurationMonitor, Fixtures
         }
     }
 
+    private void invalidate(List<String> deletedIndexes) {
+        for (String index : deletedIndexes) {
+            fingerprints.invalidateIndex(index);
+        }
+    }
 
     @Override
     public void configurationChanged(String change) {
@@ -4,9 +4,9 @@
  */
 package dgm.fixtures;
 
-import dgm.Degraphmalizr;
 import dgm.ID;
 import dgm.configuration.*;
+import dgm.degraphmalizr.BulkDegraphmalizer;
 import dgm.trees.Pair;
 
 import java.util.HashSet;
@@ -36,12 +36,12 @@ public class FixturesTestRunner implements ConfigurationMonitor, FixturesRunner
     private static final Logger LOG = LoggerFactory.getLogger(FixturesDevelopmentRunner.class);
 
     @Inject
-    public FixturesTestRunner(Client client, Provider<Configuration> cfgProvider, Provider<FixtureConfiguration> fixtureConfigurationProvider,  Degraphmalizr degraphmalizr) {
+    public FixturesTestRunner(Client client, Provider<Configuration> cfgProvider, Provider<FixtureConfiguration> fixtureConfigurationProvider,  BulkDegraphmalizer bulkDegraphmalizer) {
         this.client = client;
         this.cfgProvider = cfgProvider;
         this.fixtureConfigurationProvider = fixtureConfigurationProvider;
 
-        redegraphmalizeCommand = new RedegraphmalizeCommand(client, cfgProvider, fixtureConfigurationProvider, degraphmalizr);
+        redegraphmalizeCommand = new RedegraphmalizeCommand(client, cfgProvider, fixtureConfigurationProvider, bulkDegraphmalizer);
         verifyResultDocumentsCommand = new VerifyResultDocumentsCommand(client, cfgProvider, fixtureConfigurationProvider);
     }
 
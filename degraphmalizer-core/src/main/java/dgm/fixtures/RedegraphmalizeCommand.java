@@ -1,33 +1,23 @@
 package dgm.fixtures;
 
-import dgm.Degraphmalizr;
 import dgm.ID;
 import dgm.configuration.Configuration;
 import dgm.configuration.Configurations;
 import dgm.configuration.FixtureConfiguration;
 import dgm.configuration.TypeConfig;
-import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestScope;
-import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestType;
+import dgm.degraphmalizr.BulkDegraphmalizer;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeCallback;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequest;
 import dgm.degraphmalizr.degraphmalize.DegraphmalizeResult;
-import dgm.degraphmalizr.degraphmalize.LoggingDegraphmalizeCallback;
+import dgm.exceptions.DegraphmalizerException;
 import dgm.exceptions.SourceMissingException;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.*;
 
 import javax.inject.Inject;
 
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.index.query.MatchAllQueryBuilder;
-import org.elasticsearch.index.query.QueryBuilder;
-import org.elasticsearch.search.SearchHit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,52 +39,48 @@ public class RedegraphmalizeCommand implements Command<List<ID>> {
     private final Client client;
     private final Provider<Configuration> cfgProvider;
     private final Provider<FixtureConfiguration> fixtureConfigurationProvider;
-    private final Degraphmalizr degraphmalizr;
+    private final BulkDegraphmalizer bulkDegraphmalizer;
 
 
     @Inject
-    public RedegraphmalizeCommand(Client client, Provider<Configuration> cfgProvider, Provider<FixtureConfiguration> fixtureConfigurationProvider, Degraphmalizr degraphmalizr) {
+    public RedegraphmalizeCommand(Client client, Provider<Configuration> cfgProvider, Provider<FixtureConfiguration> fixtureConfigurationProvider, BulkDegraphmalizer bulkDegraphmalizer) {
         this.client = client;
         this.cfgProvider = cfgProvider;
         this.fixtureConfigurationProvider = fixtureConfigurationProvider;
-        this.degraphmalizr = degraphmalizr;
+        this.bulkDegraphmalizer = bulkDegraphmalizer;
     }
 
     @Override
     public List<ID> execute() {
-        List<ID> ids = new ArrayList<ID>();
+        final List<ID> ids = Collections.synchronizedList(new ArrayList<ID>());
         try {
-            QueryBuilder qb = new MatchAllQueryBuilder();
-
-            String[] indices = Iterables.toArray(fixtureConfigurationProvider.get().getIndexNames(), String.class);
-            SearchResponse response = client.prepareSearch()
-                .setSearchType(SearchType.QUERY_AND_FETCH)
-                .setNoFields()
-                .setIndices(indices)
-                .setQuery(qb)
-                .setSize(-1)
-                .setVersion(true)
-                .execute().actionGet();
-
-
-            for (SearchHit hit : response.getHits().getHits()) {
-                ID id = new ID(hit.getIndex(), hit.getType(), hit.getId(), hit.version());
-                LOG.debug("Re-degraphmalizing document {}", id);
-                Future<DegraphmalizeResult> futureResult = degraphmalizr.degraphmalize(DegraphmalizeRequestType.UPDATE, DegraphmalizeRequestScope.DOCUMENT, id, new LoggingDegraphmalizeCallback());
-                try {
-                    DegraphmalizeResult result = futureResult.get();
+            final String[] indices = Iterables.toArray(fixtureConfigurationProvider.get().getIndexNames(), String.class);
+
+            final DegraphmalizeCallback callback = new DegraphmalizeCallback() {
+                @Override
+                public void started(DegraphmalizeRequest request) {
+                    LOG.debug("Re-degraphmalizing document {}", request.id());
+                }
+
+                @Override
+                public void complete(DegraphmalizeResult result) {
                     LOG.debug("Re-degraphmalized document {}", result.root());
-                    ids.add(id);
-                } catch (ExecutionException ee) {
-                    Throwable cause = Throwables.getRootCause(ee);
-                    if (cause != null && cause instanceof SourceMissingException) {
-                        LOG.warn("Degraphmalize not successful {} ", ee.getMessage());
+                    ids.add(result.root());
+                }
+
+                @Override
+                public void failed(DegraphmalizerException exception) {
+                    final Throwable cause = Throwables.getRootCause(exception);
+                    if (cause instanceof SourceMissingException) {
+                        LOG.warn("Degraphmalize not successful {} ", exception.getMessage());
                     } else {
-                        LOG.warn("Degraphmalize not successful {} ", ee.getMessage(), ee);
+                        LOG.warn("Degraphmalize not successful {} ", exception.getMessage(), exception);
                     }
-
                 }
-            }
+            };
+
+            final BulkDegraphmalizer.Progress progress = bulkDegraphmalizer.run(indices, null, BulkDegraphmalizer.DEFAULT_IN_FLIGHT, callback);
+            LOG.info("Re-degraphmalized fixture documents {}", progress);
 
             LOG.info("Refreshing target indexes ");
             FixtureConfiguration fixtureConfiguration = fixtureConfigurationProvider.get();
@@ -0,0 +1,398 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.trees.Pair;
+import dgm.trees.TreeViewer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory projection of the graph topology.
+ * <p/>
+ * Every vertex gets an integer slot. Per slot we keep the decoded {@link ID}, the native Blueprints id and, for both
+ * directions, primitive arrays with the neighbour slots and the (interned) edge labels. Traversals over the projection
+ * don't touch the graph database at all, only materializing a Blueprints element is a lookup by native id.
+ * <p/>
+ * The projection is kept up to date by {@link BlueprintsSubgraphManager}, which calls {@link #refresh} with the
+ * vertices touched by each committed transaction. Rows are immutable, a refresh replaces them under a write lock.
+ */
+public final class AdjacencyProjection {
+    private static final Logger LOG = LoggerFactory.getLogger(AdjacencyProjection.class);
+
+    private static final int[] NO_SLOTS = new int[0];
+    private static final Object[] NO_EDGES = new Object[0];
+
+    /**
+     * Called for each vertex reached by {@link #bfs}.
+     */
+    public interface Visitor {
+        /**
+         * @return false to stop the traversal
+         */
+        boolean visit(int slot, int distance);
+    }
+
+    /**
+     * Neighbours of one vertex in one direction: slot, label and native edge id at the same position.
+     */
+    private static final class Row {
+        final int[] slots;
+        final int[] labels;
+        final Object[] edges;
+
+        Row(int[] slots, int[] labels, Object[] edges) {
+            this.slots = slots;
+            this.labels = labels;
+            this.edges = edges;
+        }
+    }
+
+    private static final Row EMPTY = new Row(NO_SLOTS, NO_SLOTS, NO_EDGES);
+
+    private final ObjectMapper om;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Object, Integer> slotsByNativeId = new HashMap<Object, Integer>();
+    private final Map<String, Integer> labelsByName = new HashMap<String, Integer>();
+    private final List<String> labels = new ArrayList<String>();
+
+    private Object[] nativeIds = new Object[1024];
+    private ID[] ids = new ID[1024];
+    private Row[] out = new Row[1024];
+    private Row[] in = new Row[1024];
+
+    private int[] free = new int[64];
+    private int freeCount = 0;
+    private int high = 0;
+
+    private AdjacencyProjection(ObjectMapper om) {
+        this.om = om;
+    }
+
+    /**
+     * Build a projection of all vertices and edges currently in the graph.
+     */
+    public static AdjacencyProjection load(ObjectMapper om, Graph graph) {
+        final long start = System.currentTimeMillis();
+        final AdjacencyProjection projection = new AdjacencyProjection(om);
+
+        final List<Object> all = new ArrayList<Object>();
+        for (Vertex v : graph.getVertices()) {
+            all.add(v.getId());
+        }
+        projection.refresh(graph, all);
+
+        LOG.info("Loaded adjacency projection of {} vertices in {} ms", projection.size(), System.currentTimeMillis() - start);
+        return projection;
+    }
+
+    /**
+     * Re-read the given vertices, and their incident edges, from the graph.
+     * <p/>
+     * Vertices that no longer exist are dropped, neighbours that are not yet known are added. Pass every vertex whose
+     * identifier or edges were changed by the transaction, including both endpoints of added and removed edges.
+     *
+     * @param touched Native ids of the vertices to refresh
+     */
+    public void refresh(Graph graph, Collection<?> touched) {
+        lock.writeLock().lock();
+        try {
+            final Deque<Object> pending = new ArrayDeque<Object>(touched);
+            final Set<Object> done = new HashSet<Object>();
+
+            while (!pending.isEmpty()) {
+                final Object nativeId = pending.poll();
+                if (!done.add(nativeId)) {
+                    continue;
+                }
+
+                final Vertex v = graph.getVertex(nativeId);
+                if (v == null) {
+                    release(nativeId, done, pending);
+                    continue;
+                }
+
+                final int slot = slot(nativeId, pending);
+                ids[slot] = GraphUtilities.getID(om, v);
+                out[slot] = row(v, Direction.OUT, pending);
+                in[slot] = row(v, Direction.IN, pending);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of vertices in the projection.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsByNativeId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the slot of the vertex, or -1 if it is not in the projection
+     */
+    public int slotOf(Vertex v) {
+        lock.readLock().lock();
+        try {
+            final Integer slot = slotsByNativeId.get(v.getId());
+            return slot == null ? -1 : slot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The identifier of the vertex in this slot, as it was at the last refresh.
+     */
+    public ID id(int slot) {
+        lock.readLock().lock();
+        try {
+            return ids[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Look up the vertex in this slot in the graph.
+     */
+    public Vertex vertex(Graph graph, int slot) {
+        final Object nativeId;
+        lock.readLock().lock();
+        try {
+            nativeId = nativeIds[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+        return nativeId == null ? null : graph.getVertex(nativeId);
+    }
+
+    /**
+     * Breadth first traversal from {@code root}, following edges in direction {@code d}. Each vertex is visited once,
+     * at its shortest distance from the root. The root itself is visited with distance 0.
+     *
+     * @param maxDepth Don't visit vertices further away than this, negative for no limit
+     */
+    public void bfs(int root, Direction d, int maxDepth, Visitor visitor) {
+        if (d == Direction.BOTH) {
+            throw new IllegalArgumentException("Traversal must be either IN or OUT");
+        }
+
+        lock.readLock().lock();
+        try {
+            final Row[] rows = (d == Direction.OUT) ? out : in;
+            final BitSet visited = new BitSet(high);
+
+            int[] queue = new int[16];
+            int head = 0;
+            int tail = 0;
+
+            queue[tail++] = root;
+            visited.set(root);
+            int level = 0;
+            int levelEnd = tail;
+
+            while (head < tail) {
+                if (head == levelEnd) {
+                    level++;
+                    levelEnd = tail;
+                }
+
+                final int slot = queue[head++];
+                if (!visitor.visit(slot, level)) {
+                    return;
+                }
+
+                if (maxDepth >= 0 && level >= maxDepth) {
+                    continue;
+                }
+
+                for (int next : rows[slot].slots) {
+                    if (visited.get(next)) {
+                        continue;
+                    }
+                    visited.set(next);
+
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, queue.length * 2);
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * View the graph as a tree, like {@link dgm.trees.GraphTreeViewer}, but find the children in the projection.
+     */
+    public TreeViewer<Pair<Edge, Vertex>> treeViewer(final Graph graph, final Direction d) {
+        return new TreeViewer<Pair<Edge, Vertex>>() {
+            @Override
+            public Iterable<Pair<Edge, Vertex>> children(Pair<Edge, Vertex> node) {
+                final Row row;
+                final Object[] targets;
+
+                lock.readLock().lock();
+                try {
+                    final Integer slot = slotsByNativeId.get(node.b.getId());
+                    if (slot == null) {
+                        return Collections.emptyList();
+                    }
+
+                    row = (d == Direction.OUT) ? out[slot] : in[slot];
+                    targets = new Object[row.slots.length];
+                    for (int i = 0; i < targets.length; i++) {
+                        targets[i] = nativeIds[row.slots[i]];
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+
+                final List<Pair<Edge, Vertex>> children = new ArrayList<Pair<Edge, Vertex>>(targets.length);
+                for (int i = 0; i < targets.length; i++) {
+                    final Edge e = graph.getEdge(row.edges[i]);
+                    final Vertex v = graph.getVertex(targets[i]);
+
+                    // removed after the projection was read
+                    if (e == null || v == null) {
+                        continue;
+                    }
+
+                    children.add(new Pair<Edge, Vertex>(e, v));
+                }
+                return children;
+            }
+        };
+    }
+
+    /**
+     * Labels of the edges going out of ({@link Direction#OUT}) or into ({@link Direction#IN}) this slot.
+     */
+    public List<String> labels(int slot, Direction d) {
+        lock.readLock().lock();
+        try {
+            final Row row = (d == Direction.OUT) ? out[slot] : in[slot];
+            final List<String> result = new ArrayList<String>(row.labels.length);
+            for (int label : row.labels) {
+                result.add(labels.get(label));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Row row(Vertex v, Direction d, Deque<Object> pending) {
+        int[] slots = NO_SLOTS;
+        int[] labelIds = NO_SLOTS;
+        Object[] edges = NO_EDGES;
+        int n = 0;
+
+        for (Edge e : v.getEdges(d)) {
+            if (n == slots.length) {
+                final int capacity = Math.max(4, n * 2);
+                slots = Arrays.copyOf(slots, capacity);
+                labelIds = Arrays.copyOf(labelIds, capacity);
+                edges = Arrays.copyOf(edges, capacity);
+            }
+
+            slots[n] = slot(e.getVertex(d.opposite()).getId(), pending);
+            labelIds[n] = label(e.getLabel());
+            edges[n] = e.getId();
+            n++;
+        }
+
+        if (n == 0) {
+            return EMPTY;
+        }
+
+        return new Row(Arrays.copyOf(slots, n), Arrays.copyOf(labelIds, n), Arrays.copyOf(edges, n));
+    }
+
+    private int label(String name) {
+        final Integer label = labelsByName.get(name);
+        if (label != null) {
+            return label;
+        }
+
+        labels.add(name);
+        labelsByName.put(name, labels.size() - 1);
+        return labels.size() - 1;
+    }
+
+    /**
+     * Find or allocate the slot for a vertex. Newly allocated vertices are scheduled so their own rows get loaded.
+     */
+    private int slot(Object nativeId, Deque<Object> pending) {
+        final Integer existing = slotsByNativeId.get(nativeId);
+        if (existing != null) {
+            return existing;
+        }
+
+        final int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (high == nativeIds.length) {
+                final int capacity = high * 2;
+                nativeIds = Arrays.copyOf(nativeIds, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                out = Arrays.copyOf(out, capacity);
+                in = Arrays.copyOf(in, capacity);
+            }
+            slot = high++;
+        }
+
+        slotsByNativeId.put(nativeId, slot);
+        nativeIds[slot] = nativeId;
+        out[slot] = EMPTY;
+        in[slot] = EMPTY;
+        pending.add(nativeId);
+        return slot;
+    }
+
+    private void release(Object nativeId, Set<Object> done, Deque<Object> pending) {
+        final Integer slot = slotsByNativeId.remove(nativeId);
+        if (slot == null) {
+            return;
+        }
+
+        // make sure no neighbour keeps pointing to this slot once it is reused
+        for (Row row : new Row[]{out[slot], in[slot]}) {
+            for (int neighbour : row.slots) {
+                final Object neighbourId = nativeIds[neighbour];
+                if (neighbourId != null && !done.contains(neighbourId)) {
+                    pending.add(neighbourId);
+                }
+            }
+        }
+
+        nativeIds[slot] = null;
+        ids[slot] = null;
+        out[slot] = EMPTY;
+        in[slot] = EMPTY;
+
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = slot;
+    }
+}
@@ -1,9 +1,7 @@
 package dgm.graphs;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.base.Function;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
+import com.google.common.base.Optional;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.TransactionalGraph;
@@ -14,8 +12,7 @@ import dgm.trees.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import static com.tinkerpop.blueprints.TransactionalGraph.Conclusion.FAILURE;
 import static com.tinkerpop.blueprints.TransactionalGraph.Conclusion.SUCCESS;
@@ -26,10 +23,19 @@ public class BlueprintsSubgraphManager implements SubgraphManager {
 
     private final ObjectMapper om;
     private final TransactionalGraph graph;
+    private final Optional<AdjacencyProjection> projection;
 
     public BlueprintsSubgraphManager(ObjectMapper om, TransactionalGraph graph) {
+        this(om, graph, Optional.<AdjacencyProjection>absent());
+    }
+
+    /**
+     * @param projection If present, it is refreshed with the vertices touched by each committed transaction
+     */
+    public BlueprintsSubgraphManager(ObjectMapper om, TransactionalGraph graph, Optional<AdjacencyProjection> projection) {
         this.graph = graph;
         this.om = om;
+        this.projection = projection;
     }
 
     @Override
@@ -47,30 +53,42 @@ public class BlueprintsSubgraphManager implements SubgraphManager {
 
         boolean success = false;
         try {
-            // create a list of all elements owned by any version of this subgraph
-            final Pair<List<Vertex>, List<Edge>> elementsToDelete = findOwnedElements(id);
-            List<Vertex> verticesToDelete = elementsToDelete.a;
-            List<Edge> edgesToDelete = elementsToDelete.b;
+            // find all elements owned by any version of this subgraph
+            final Set<Vertex> verticesToDelete = DeletePlan.ownedVertices(om, graph, id);
+            final Set<Edge> edgesToDelete = DeletePlan.ownedEdges(om, graph, id);
 
             // do stuff needed for central vertex...
             final Vertex center = createOrUpdateCentralVertex(id, sg);
 
             // ...and for the edges
-            final Pair<List<Vertex>, List<Edge>> nextVersionElts = createOrUpdateEdges(id, sg);
+            final Pair<List<Vertex>, List<Edge>> nextVersionElts = createOrUpdateEdges(id, center, sg, edgesToDelete);
 
             // now make sure everything we touched is not deleted
             verticesToDelete.remove(center);
             verticesToDelete.removeAll(nextVersionElts.a);
             edgesToDelete.removeAll(nextVersionElts.b);
+            final DeletePlan plan = new DeletePlan(om, id, verticesToDelete, edgesToDelete);
+
+            final Set<Object> touched = new HashSet<Object>();
+            if(projection.isPresent()) {
+                touched.addAll(plan.touched());
+                touched.add(center.getId());
+                for(Vertex v : nextVersionElts.a) {
+                    touched.add(v.getId());
+                }
+                for(Edge e : nextVersionElts.b) {
+                    touched.add(e.getVertex(Direction.OUT).getId());
+                    touched.add(e.getVertex(Direction.IN).getId());
+                }
+            }
 
-            List<Vertex> danglingVertices = findDanglingVertices(id, edgesToDelete);
-            verticesToDelete.addAll(danglingVertices);
-
-            removeGraphElements(id, verticesToDelete, edgesToDelete);
+            plan.execute(om, graph);
 
             // commit changes to graph
             success = true;
             graph.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+
+            refreshProjection(touched);
         } finally {
             // rollback if something failed
             if(! success) {
@@ -79,6 +97,12 @@ public class BlueprintsSubgraphManager implements SubgraphManager {
         }
     }
 
+    private void refreshProjection(Set<Object> touched) {
+        if(projection.isPresent()) {
+            projection.get().refresh(graph, touched);
+		}
+    }
+
     // TODO it is probably better to ignore all versions in a subgraph (ie. call getSymbolic on all edges.other())
     private boolean detectNonSymbolicTargets(Subgraph sg) {
         for(Subgraph.Edge e : sg.edges()) {
@@ -99,36 +123,24 @@ public class BlueprintsSubgraphManager implements SubgraphManager {
         return false;
     }
 
+    /**
+     * Ids of the vertices that {@link #deleteSubgraph} would remove or make symbolic, the graph is not changed.
+     */
     public List<ID> findVertexIDsAffectedByDelete(final ID id) {
-        final Pair<List<Vertex>, List<Edge>> elementsToDelete = findOwnedElements(id);
-        List<Vertex> verticesToDelete = elementsToDelete.a;
-        List<Edge> edgesToDelete = elementsToDelete.b;
-
-        List<Vertex> danglingVertices = findDanglingVertices(id, edgesToDelete);
-        verticesToDelete.addAll(danglingVertices);
-
-
-        return ImmutableList.copyOf(Lists.transform(verticesToDelete, new Function<Vertex, ID>() {
-            @Override
-            public ID apply(Vertex input) {
-                return GraphUtilities.getID(om, input);
-            }
-        }));
+        return DeletePlan.of(om, graph, id).affected();
     }
 
     @Override
-    public void deleteSubgraph(final ID id) throws DegraphmalizerException {
+    public List<ID> deleteSubgraph(final ID id) throws DegraphmalizerException {
         boolean success = false;
+        final DeletePlan plan;
+        final Set<Object> touched;
         try  {
-            // create a list of all elements owned by any version of this subgraph
-            final Pair<List<Vertex>, List<Edge>> elementsToDelete = findOwnedElements(id);
-            List<Vertex> verticesToDelete = elementsToDelete.a;
-            List<Edge> edgesToDelete = elementsToDelete.b;
-
-            List<Vertex> danglingVertices = findDanglingVertices(id, edgesToDelete);
-            verticesToDelete.addAll(danglingVertices);
+            // plan the removal of all elements owned by any version of this subgraph
+            plan = DeletePlan.of(om, graph, id);
+            touched = projection.isPresent() ? plan.touched() : Collections.emptySet();
 
-            removeGraphElements(id, verticesToDelete, edgesToDelete);
+            plan.execute(om, graph);
 
             // commit changes to graph
             success = true;
@@ -136,78 +148,9 @@ public class BlueprintsSubgraphManager implements SubgraphManager {
             // commit or rollback if something failed
             graph.stopTransaction(success ? SUCCESS : FAILURE);
         }
-    }
-
-    private List<Vertex> findDanglingVertices(ID id, List<Edge> edgesToDelete) {
-        final List<Vertex> danglingVertices = new ArrayList<Vertex>();
-
-        // handle the edges we can delete: We check if they connect vertices that can be deleted too.
-        for(Edge e: edgesToDelete) {
-            // it is possible that a vertex turned symbolic and we are the last edge pointing to it, then remove it
-            final Vertex v = e.getVertex(directionOppositeTo(getEdgeID(om, e), id));
-            if(canDeleteVertex(v, id, edgesToDelete)) {
-                danglingVertices.add(v);
-			}
-        }
-
-        return danglingVertices;
-    }
-
-    private void removeGraphElements(ID id, List<Vertex> verticesToDelete, List<Edge> edgesToDelete) {
-        // Remove the edges
-        for (Edge e: edgesToDelete) {
-            graph.removeEdge(e);
-		}
-
-        // Remove the vertices
-        for (final Vertex v: verticesToDelete) {
-            if (canDeleteVertex(v, id, edgesToDelete)) {
-                graph.removeVertex(v);
-			} else {
-                GraphUtilities.makeSymbolic(om, v);
-			}
-        }
-    }
-
-    private Pair<List<Vertex>, List<Edge>> findOwnedElements(ID id) {
-        // create a list of all elements owned by any version of this subgraph
-        final List<Vertex> vertexList = new ArrayList<Vertex>();
-        for (Vertex v : findOwnedVertices(om, graph, id)) {
-            vertexList.add(v);
-		}
-
-        final List<Edge> edgeList = new ArrayList<Edge>();
-        for (Edge e : findOwnedEdges(om, graph, id)) {
-            edgeList.add(e);
-		}
-
-        return new Pair<List<Vertex>, List<Edge>>(vertexList, edgeList);
-    }
-
-    /**
-     * A vertex can only be deleted if all edges pointed to it are owned by us and are about to be deleted also.
-     * Unless the vertex is not symbolic
-     */
-    private boolean canDeleteVertex(Vertex v, ID owner, List<Edge> edgesToDelete) {
-        for(Edge e: v.getEdges(Direction.BOTH)) {
-            // if there is one edge pointing to this vertex that isn't ours, we must keep the vertex
-            if(!onlyVersionDiffers(getOwner(om, e), owner)) {
-                return false;
-			}
-
-            // and all the other edges must be marked for deletion too!
-            if(!edgesToDelete.contains(e)) {
-                return false;
-			}
-
-            //if this vertex is not symbolic and not owned by this subgraph, we don't delete it.
-            if(! isSymbolic(om, v)) {
-				return false;
-			}
-        }
 
-        // only then can this vertex be removed
-        return true;
+        refreshProjection(touched);
+        return plan.affected();
     }
 
     private Vertex createOrUpdateCentralVertex(ID id, Subgraph sg) throws DegraphmalizerException {
@@ -230,8 +173,7 @@ public class BlueprintsSubgraphManager implements SubgraphManager {
 
         setProperties(center, sg.properties());
 
-        //if the 'center' vertex has edges, then the edge id should be updated.
-        updateEdgeIds(center, id);
+        // edge identifiers don't contain versions, so the edges of the center are left alone
 
         // update the identifier (to the latest version)
         setID(om, center, id);
@@ -240,48 +182,55 @@ public class BlueprintsSubgraphManager implements SubgraphManager {
         return center;
     }
 
-    private void updateEdgeIds(Vertex center, ID id) throws DegraphmalizerException {
-        for(Edge edge: center.getEdges(Direction.BOTH)) {
-            setEdgeId(om, updateEdgeId(edge, id), edge);
-		}
-    }
-
-    private EdgeID updateEdgeId(Edge edge, ID id) throws DegraphmalizerException {
-        final EdgeID edgeID = getEdgeID(om, edge);
-
-        if (onlyVersionDiffers(edgeID.head(), id)) {
-            return new EdgeID(edgeID.tail(), edgeID.label(), id);
-		}
-
-        if (onlyVersionDiffers(edgeID.tail(), id)) {
-            return new EdgeID(id, edgeID.label(), edgeID.head());
-		}
-
-        throw new IllegalArgumentException("id:" + id + " is not part of edge id:" + edgeID);
-    }
-
     /**
      * This method iterates over the edges declared in the subgraph.
      * if The edge does not exist in the graph yet, create the target (symbolic) Vertex and the edge.
      * If it does exist check if the existing is owned by this subgraph. if not so: Error Error Error!!!
      * If so: update the properties of that edge.
+     * <p/>
+     * The edges of a previous version of the subgraph are owned by it, so they are looked up in one map of the owned
+     * edges and the other edges of the center are never read. An edge that is not in the map gets one index lookup, it
+     * may exist with another owner. The targets of the new edges are resolved in one batch.
+     *
+     * @param owned Edges owned by any version of this subgraph
      * @return A pair of lists that contain all Edges and All vertices that will be part of the new subgraph.
      */
-    private Pair<List<Vertex>, List<Edge>> createOrUpdateEdges(ID id, Subgraph sg) {
+    private Pair<List<Vertex>, List<Edge>> createOrUpdateEdges(ID id, Vertex center, Subgraph sg, Set<Edge> owned) {
         List<Vertex> vertexList = new ArrayList<Vertex>();
         List<Edge> edgeList = new ArrayList<Edge>();
 
+        // edge identifiers don't contain versions, so they are keyed by label, direction and symbolic endpoints
+        final Map<String, Edge> existing = new HashMap<String, Edge>();
+        for (Edge edge : owned) {
+            existing.put(String.valueOf(edge.getProperty(IDENTIFIER)), edge);
+        }
+
+        final List<ID> targets = new ArrayList<ID>();
         for (Subgraph.Edge e : sg.edges()) {
             final EdgeID edgeId = Subgraphs.edgeID(id, e);
-            Edge edge = findEdge(om, graph, edgeId);
+            final String key = getStringRepresentation(om, edgeId);
+            if (!existing.containsKey(key)) {
+                final Edge edge = findEdge(om, graph, edgeId);
+                if (edge != null) {
+                    existing.put(key, edge);
+                } else {
+                    targets.add(e.other());
+                }
+            }
+        }
+        final Map<ID, Vertex> resolved = resolveVertices(om, graph, targets);
 
+        for (Subgraph.Edge e : sg.edges()) {
+            final EdgeID edgeId = Subgraphs.edgeID(id, e);
+            Edge edge = existing.get(getStringRepresentation(om, edgeId));
             if (edge != null) {
                 //check if this edge belongs to this subgraph.
                 edgeConsistencyCheck(id, edgeId, edge);
 			} else {
-                final Pair<Edge, Vertex> pair = createEdgeAndVertex(id, edgeId);
+                final Pair<Edge, Vertex> pair = createEdgeAndVertex(id, center, edgeId, resolved);
                 vertexList.add(pair.b);
                 edge = pair.a;
+                existing.put(getStringRepresentation(om, edgeId), edge);
             }
 
             // claim edge
@@ -292,16 +241,23 @@ public class BlueprintsSubgraphManager implements SubgraphManager {
         return new Pair<List<Vertex>, List<Edge>>(vertexList, edgeList);
     }
 
-    private Pair<Edge, Vertex> createEdgeAndVertex(ID centralVertex, EdgeID edgeId) {
-        final ID other = getOppositeId(edgeId, centralVertex);
+    /**
+     * @param resolved Vertices of the symbolic targets, a vertex created here is added to it
+     */
+    private Pair<Edge, Vertex> createEdgeAndVertex(ID centralVertex, Vertex center, EdgeID edgeId, Map<ID, Vertex> resolved) {
+        final ID other = getSymbolicID(getOppositeId(edgeId, centralVertex));
 
         // we either resolve the symbolic vertex, or create one to represent it
-        Vertex v = resolveVertex(om, graph, other);
+        Vertex v = resolved.get(other);
         if (v == null) {
             v = createVertex(om, graph, other);
+            resolved.put(other, v);
 		}
 
-        final Edge edge = createEdge(om, graph, createOppositeId(edgeId, centralVertex, getID(om, v)));
+        final EdgeID created = createOppositeId(edgeId, centralVertex, getID(om, v));
+        final Edge edge = edgeId.tail().equals(centralVertex)
+                ? createEdge(om, graph, center, created, v)
+                : createEdge(om, graph, v, created, center);
         return new Pair<Edge,Vertex>(edge, v);
     }
 
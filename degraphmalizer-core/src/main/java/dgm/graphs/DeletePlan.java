@@ -0,0 +1,133 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import dgm.ID;
+
+import java.util.*;
+
+import static dgm.GraphUtilities.*;
+
+/**
+ * The graph elements to remove when (a previous version of) a subgraph is deleted or replaced.
+ * <p/>
+ * Everything is computed in one pass over the owned elements, before the graph is changed. The owned edges are kept in
+ * a hash set, so deciding whether a vertex can go is linear in its degree instead of in the size of the subgraph.
+ */
+final class DeletePlan {
+    final Set<Edge> edges;
+    final Set<Vertex> remove = new LinkedHashSet<Vertex>();
+    final Set<Vertex> makeSymbolic = new LinkedHashSet<Vertex>();
+
+    private final List<ID> affected;
+
+    /**
+     * Plan the removal of all elements owned by any version of {@code owner}.
+     */
+    static DeletePlan of(ObjectMapper om, Graph graph, ID owner) {
+        return new DeletePlan(om, owner, ownedVertices(om, graph, owner), ownedEdges(om, graph, owner));
+    }
+
+    static Set<Vertex> ownedVertices(ObjectMapper om, Graph graph, ID owner) {
+        final Set<Vertex> vertices = new LinkedHashSet<Vertex>();
+        for (Vertex v : findOwnedVertices(om, graph, owner)) {
+            vertices.add(v);
+        }
+        return vertices;
+    }
+
+    static Set<Edge> ownedEdges(ObjectMapper om, Graph graph, ID owner) {
+        final Set<Edge> edges = new LinkedHashSet<Edge>();
+        for (Edge e : findOwnedEdges(om, graph, owner)) {
+            edges.add(e);
+        }
+        return edges;
+    }
+
+    /**
+     * @param owned Vertices owned by {@code owner} to remove
+     * @param edges Edges owned by {@code owner} to remove
+     */
+    DeletePlan(ObjectMapper om, ID owner, Set<Vertex> owned, Set<Edge> edges) {
+        this.edges = edges;
+
+        // owned vertices go when none of their edges remain, otherwise they stay as a symbolic vertex
+        for (Vertex v : owned) {
+            if (onlyEdgesIn(v, edges)) {
+                remove.add(v);
+            } else {
+                makeSymbolic.add(v);
+            }
+        }
+
+        // a symbolic vertex at the other end of a removed edge goes when that was the last edge pointing to it
+        for (Edge e : edges) {
+            final Vertex v = e.getVertex(directionOppositeTo(getEdgeID(om, e), owner));
+            if (!owned.contains(v) && !remove.contains(v) && onlyEdgesIn(v, edges) && isSymbolic(om, v)) {
+                remove.add(v);
+            }
+        }
+
+        final ImmutableList.Builder<ID> ids = ImmutableList.builder();
+        for (Vertex v : owned) {
+            ids.add(GraphUtilities.getID(om, v));
+        }
+        for (Vertex v : remove) {
+            if (!owned.contains(v)) {
+                ids.add(GraphUtilities.getID(om, v));
+            }
+        }
+        this.affected = ids.build();
+    }
+
+    private static boolean onlyEdgesIn(Vertex v, Set<Edge> edges) {
+        for (Edge e : v.getEdges(Direction.BOTH)) {
+            if (!edges.contains(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ids of the vertices that are removed or made symbolic, as they were before the plan is executed.
+     */
+    List<ID> affected() {
+        return affected;
+    }
+
+    /**
+     * Native ids of the vertices and of the endpoints of the edges, these must be collected before anything is removed.
+     */
+    Set<Object> touched() {
+        final Set<Object> touched = new HashSet<Object>();
+        for (Vertex v : remove) {
+            touched.add(v.getId());
+        }
+        for (Vertex v : makeSymbolic) {
+            touched.add(v.getId());
+        }
+        for (Edge e : edges) {
+            touched.add(e.getVertex(Direction.OUT).getId());
+            touched.add(e.getVertex(Direction.IN).getId());
+        }
+        return touched;
+    }
+
+    void execute(ObjectMapper om, Graph graph) {
+        for (Edge e : edges) {
+            graph.removeEdge(e);
+        }
+        for (Vertex v : remove) {
+            graph.removeVertex(v);
+        }
+        for (Vertex v : makeSymbolic) {
+            GraphUtilities.makeSymbolic(om, v);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import dgm.EdgeID;
+import dgm.GraphUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the identifiers of edges created before they were version independent.
+ * <p/>
+ * Edge identifiers used to contain the versioned ids of both endpoints, and were rewritten for every incident edge when
+ * a new version of a vertex was committed. Now they contain the symbolic ids, see
+ * {@link GraphUtilities#getStringRepresentation}, and edges with an old identifier can't be found until they are
+ * migrated. Running the migration on a graph that is up to date changes nothing.
+ * <p/>
+ * Without the migration an old graph gets a second edge for every edge that is committed again, so {@link #isNeeded}
+ * is checked before the graph is used.
+ */
+public class EdgeIdentifierMigration {
+    private static final Logger LOG = LoggerFactory.getLogger(EdgeIdentifierMigration.class);
+
+    public static final int BATCH_SIZE = 1000;
+
+    private final ObjectMapper om;
+    private final TransactionalGraph graph;
+
+    @Inject
+    public EdgeIdentifierMigration(ObjectMapper om, TransactionalGraph graph) {
+        this.om = om;
+        this.graph = graph;
+    }
+
+    /**
+     * Whether the graph has edge identifiers of the old form, judged by the first edge with an identifier.
+     * <p/>
+     * Edges are read in store order, so that is one of the oldest edges, and reading it is cheap enough for every
+     * start. An old graph that was partly migrated by hand may be missed.
+     */
+    public boolean isNeeded() {
+        for (Edge e : graph.getEdges()) {
+            final String identifier = identifier(e);
+            if (identifier != null) {
+                return !identifier.equals(e.getProperty(GraphUtilities.IDENTIFIER));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of edges that got a new identifier
+     */
+    public long migrate() {
+        return migrate(BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize Number of rewritten edges per transaction
+     * @return The number of edges that got a new identifier
+     */
+    public long migrate(int batchSize) {
+        // collect the stale edges first, so we don't iterate the graph while committing transactions
+        final List<Object> stale = new ArrayList<Object>();
+        long edges = 0;
+        for (Edge e : graph.getEdges()) {
+            edges++;
+            final String identifier = identifier(e);
+            if (identifier != null && !identifier.equals(e.getProperty(GraphUtilities.IDENTIFIER))) {
+                stale.add(e.getId());
+            }
+        }
+        LOG.info("{} of {} edges have an identifier to migrate", stale.size(), edges);
+
+        long migrated = 0;
+        boolean success = false;
+        try {
+            for (Object id : stale) {
+                final Edge e = graph.getEdge(id);
+                final String identifier = e == null ? null : identifier(e);
+                if (identifier == null) {
+                    continue;
+                }
+
+                e.setProperty(GraphUtilities.IDENTIFIER, identifier);
+                migrated++;
+
+                if (migrated % batchSize == 0) {
+                    graph.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+                    LOG.info("Migrated {} of {} edge identifiers", migrated, stale.size());
+                }
+            }
+            success = true;
+        } finally {
+            graph.stopTransaction(success ? TransactionalGraph.Conclusion.SUCCESS : TransactionalGraph.Conclusion.FAILURE);
+        }
+
+        LOG.info("Migrated {} edge identifiers", migrated);
+        return migrated;
+    }
+
+    private String identifier(Edge e) {
+        final EdgeID edgeID = GraphUtilities.getEdgeID(om, e);
+        return edgeID == null ? null : GraphUtilities.getStringRepresentation(om, edgeID);
+    }
+}
@@ -0,0 +1,311 @@
+package dgm.graphs;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A compact binary copy of the graph, to bring up a new degraphmalizer without degraphmalizing every source document.
+ * <p/>
+ * The file is written and read in one pass. After a header come the vertices, each with all its properties (so its
+ * identifiers and owners), then the edges with their properties. Vertices are numbered in the order they are written
+ * and edges refer to their endpoints by those numbers. Property names and labels are written once and then referred to
+ * by number, and numbers are variable length. The file ends with the number of vertices and edges and a CRC32 of
+ * everything before it, a truncated or damaged file is refused when it is read.
+ * <p/>
+ * Property values can be strings, booleans, ints, longs, doubles and byte arrays, which covers everything
+ * {@link GraphUtilities} and {@link dgm.PropertyCodec} store. Vertices without an identifier, like the neo4j reference
+ * node, and their edges are left out.
+ */
+public final class GraphFile {
+    static final int MAGIC = 0x44474d47; // DGMG
+    static final int VERSION = 1;
+
+    // records
+    static final byte NAME = 1;
+    static final byte VERTEX = 2;
+    static final byte EDGE = 3;
+    static final byte END = 4;
+
+    // property values
+    static final byte STRING = 1;
+    static final byte BOOLEAN = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte BYTES = 6;
+
+    /**
+     * Receives the elements of a graph file, in the order they were written.
+     */
+    public interface Visitor {
+        /**
+         * @param vertex Number of the vertex, the vertices are numbered from 0
+         */
+        void vertex(long vertex, Map<String, Object> properties) throws IOException;
+
+        void edge(long tail, String label, long head, Map<String, Object> properties) throws IOException;
+    }
+
+    private GraphFile() {
+    }
+
+    /**
+     * Write all vertices and edges of {@code graph} to {@code out}, the stream is not closed.
+     *
+     * @return The number of vertices and edges written
+     */
+    public static long[] write(Graph graph, OutputStream out) throws IOException {
+        final CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(out), new CRC32());
+        final DataOutputStream data = new DataOutputStream(checked);
+        final Map<String, Integer> names = new HashMap<String, Integer>();
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+
+        // element id -> number of the vertex in the file
+        final Map<Object, Long> numbers = new HashMap<Object, Long>();
+        for (Vertex v : graph.getVertices()) {
+            if (v.getProperty(GraphUtilities.IDENTIFIER) == null) {
+                continue;
+            }
+
+            writeNames(data, names, v.getPropertyKeys());
+            data.writeByte(VERTEX);
+            writeProperties(data, names, v);
+            numbers.put(v.getId(), (long) numbers.size());
+        }
+
+        long edges = 0;
+        for (Edge e : graph.getEdges()) {
+            final Long tail = numbers.get(e.getVertex(Direction.OUT).getId());
+            final Long head = numbers.get(e.getVertex(Direction.IN).getId());
+            if (tail == null || head == null) {
+                continue;
+            }
+
+            writeNames(data, names, Collections.singleton(e.getLabel()));
+            writeNames(data, names, e.getPropertyKeys());
+            data.writeByte(EDGE);
+            writeVarLong(data, tail);
+            writeVarLong(data, names.get(e.getLabel()));
+            writeVarLong(data, head);
+            writeProperties(data, names, e);
+            edges++;
+        }
+
+        data.writeByte(END);
+        writeVarLong(data, numbers.size());
+        writeVarLong(data, edges);
+        data.writeLong(checked.getChecksum().getValue());
+        data.flush();
+
+        return new long[]{numbers.size(), edges};
+    }
+
+    /**
+     * Read a graph file written by {@link #write}, the stream is not closed.
+     * <p/>
+     * The checksum can only be checked at the end, so {@code visitor} has seen all elements when the file turns out
+     * to be damaged.
+     *
+     * @return The number of vertices and edges read
+     * @throws IOException When the file is not a graph file, or is truncated or damaged
+     */
+    public static long[] read(InputStream in, Visitor visitor) throws IOException {
+        final CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(in), new CRC32());
+        final DataInputStream data = new DataInputStream(checked);
+        final List<String> names = new ArrayList<String>();
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a graph file");
+        }
+
+        final int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Can't read version " + version + " of the graph file format, only " + VERSION);
+        }
+
+        long vertices = 0;
+        long edges = 0;
+        while (true) {
+            final byte record = data.readByte();
+            switch (record) {
+                case NAME:
+                    names.add(readString(data));
+                    break;
+                case VERTEX:
+                    visitor.vertex(vertices++, readProperties(data, names));
+                    break;
+                case EDGE:
+                    final long tail = readVarLong(data);
+                    final String label = name(names, readVarLong(data));
+                    final long head = readVarLong(data);
+                    if (tail >= vertices || head >= vertices) {
+                        throw new IOException("Edge " + edges + " refers to a vertex that is not in the file");
+                    }
+                    visitor.edge(tail, label, head, readProperties(data, names));
+                    edges++;
+                    break;
+                case END:
+                    if (readVarLong(data) != vertices || readVarLong(data) != edges) {
+                        throw new IOException("Graph file is damaged, the number of elements doesn't match");
+                    }
+                    final long checksum = checked.getChecksum().getValue();
+                    if (data.readLong() != checksum) {
+                        throw new IOException("Graph file is damaged, the checksum doesn't match");
+                    }
+                    if (data.read() != -1) {
+                        throw new IOException("Graph file has data after the end");
+                    }
+                    return new long[]{vertices, edges};
+                default:
+                    throw new IOException("Graph file is damaged, unknown record " + record);
+            }
+        }
+    }
+
+    private static void writeNames(DataOutputStream data, Map<String, Integer> names, Iterable<String> keys) throws IOException {
+        for (String key : keys) {
+            if (!names.containsKey(key)) {
+                names.put(key, names.size());
+                data.writeByte(NAME);
+                writeString(data, key);
+            }
+        }
+    }
+
+    private static String name(List<String> names, long n) throws IOException {
+        if (n < 0 || n >= names.size()) {
+            throw new IOException("Graph file is damaged, unknown name " + n);
+        }
+        return names.get((int) n);
+    }
+
+    private static void writeProperties(DataOutputStream data, Map<String, Integer> names, Element element) throws IOException {
+        final Set<String> keys = element.getPropertyKeys();
+        writeVarLong(data, keys.size());
+        for (String key : keys) {
+            writeVarLong(data, names.get(key));
+            writeValue(data, key, element.getProperty(key));
+        }
+    }
+
+    private static Map<String, Object> readProperties(DataInputStream data, List<String> names) throws IOException {
+        final long count = readVarLong(data);
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        for (long i = 0; i < count; i++) {
+            final String key = name(names, readVarLong(data));
+            properties.put(key, readValue(data));
+        }
+        return properties;
+    }
+
+    private static void writeValue(DataOutputStream data, String key, Object value) throws IOException {
+        if (value instanceof String) {
+            data.writeByte(STRING);
+            writeString(data, (String) value);
+        } else if (value instanceof Boolean) {
+            data.writeByte(BOOLEAN);
+            data.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            data.writeByte(INT);
+            writeVarLong(data, zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            data.writeByte(LONG);
+            writeVarLong(data, zigzag((Long) value));
+        } else if (value instanceof Double) {
+            data.writeByte(DOUBLE);
+            data.writeDouble((Double) value);
+        } else if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            data.writeByte(BYTES);
+            writeVarLong(data, bytes.length);
+            data.write(bytes);
+        } else {
+            throw new IOException("Can't write property " + key + " of type "
+                    + (value == null ? null : value.getClass().getSimpleName()));
+        }
+    }
+
+    private static Object readValue(DataInputStream data) throws IOException {
+        final byte type = data.readByte();
+        switch (type) {
+            case STRING:
+                return readString(data);
+            case BOOLEAN:
+                return data.readBoolean();
+            case INT:
+                return (int) unzigzag(readVarLong(data));
+            case LONG:
+                return unzigzag(readVarLong(data));
+            case DOUBLE:
+                return data.readDouble();
+            case BYTES:
+                return readBytes(data);
+            default:
+                throw new IOException("Graph file is damaged, unknown property type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        final byte[] bytes = s.getBytes("UTF-8");
+        writeVarLong(data, bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        return new String(readBytes(data), "UTF-8");
+    }
+
+    private static byte[] readBytes(DataInputStream data) throws IOException {
+        final long length = readVarLong(data);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Graph file is damaged, value of " + length + " bytes");
+        }
+        final byte[] bytes = new byte[(int) length];
+        data.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Seven bits per byte, the high bit is set when more bytes follow.
+     */
+    static void writeVarLong(DataOutput data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = data.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Graph file is damaged, number too long");
+    }
+
+    // small negative numbers get a short encoding too
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -0,0 +1,152 @@
+package dgm.graphs;
+
+import com.google.inject.Inject;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Brings the key indices of a graph created by an older version of the degraphmalizer in line with
+ * {@link GraphUtilities#VERTEX_KEYS} and {@link GraphUtilities#EDGE_KEYS}.
+ * <p/>
+ * Vertices get the {@link GraphUtilities#KEY_INDEX_TYPE} key that types in an index are found by, and the key indices
+ * nothing looks elements up by are dropped, so writes don't have to maintain them. Dropping an index stops indexing
+ * the key, the entries already in the neo4j auto index stay there but are never read. Running the migration on a graph
+ * that is up to date changes nothing.
+ * <p/>
+ * Without the migration the old vertices can't be found by index and type, so {@link #isNeeded} is checked before the
+ * graph is used.
+ */
+public class KeyIndexMigration {
+    private static final Logger LOG = LoggerFactory.getLogger(KeyIndexMigration.class);
+
+    public static final int BATCH_SIZE = 1000;
+
+    private final TransactionalGraph graph;
+
+    @Inject
+    public KeyIndexMigration(TransactionalGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Whether the graph has vertices without the {@link GraphUtilities#KEY_INDEX_TYPE} key, judged by the first vertex
+     * that has an index and type.
+     * <p/>
+     * Vertices are read in store order, so that is one of the oldest vertices, and reading it is cheap enough for
+     * every start.
+     */
+    public boolean isNeeded() {
+        for (Vertex v : graph.getVertices()) {
+            if (indexType(v) != null) {
+                return v.getProperty(GraphUtilities.KEY_INDEX_TYPE) == null;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of vertices that got the composite key
+     */
+    public long migrate() {
+        return migrate(BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize Number of updated vertices per transaction
+     * @return The number of vertices that got the composite key
+     */
+    public long migrate(int batchSize) {
+        final long migrated = addIndexTypeKeys(batchSize);
+        dropUnusedKeyIndices();
+        return migrated;
+    }
+
+    long addIndexTypeKeys(int batchSize) {
+        // collect the vertices first, so we don't iterate the graph while committing transactions
+        final List<Object> stale = new ArrayList<Object>();
+        for (Vertex v : graph.getVertices()) {
+            if (v.getProperty(GraphUtilities.KEY_INDEX_TYPE) == null && indexType(v) != null) {
+                stale.add(v.getId());
+            }
+        }
+        LOG.info("{} vertices need the {} key", stale.size(), GraphUtilities.KEY_INDEX_TYPE);
+
+        long migrated = 0;
+        boolean success = false;
+        try {
+            for (Object id : stale) {
+                final Vertex v = graph.getVertex(id);
+                final String indexType = v == null ? null : indexType(v);
+                if (indexType == null) {
+                    continue;
+                }
+
+                v.setProperty(GraphUtilities.KEY_INDEX_TYPE, indexType);
+                migrated++;
+
+                if (migrated % batchSize == 0) {
+                    graph.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+                    LOG.info("Added the {} key to {} of {} vertices", new Object[]{GraphUtilities.KEY_INDEX_TYPE, migrated, stale.size()});
+                }
+            }
+            success = true;
+        } finally {
+            graph.stopTransaction(success ? TransactionalGraph.Conclusion.SUCCESS : TransactionalGraph.Conclusion.FAILURE);
+        }
+
+        return migrated;
+    }
+
+    /**
+     * @return The keys of which the index was dropped, vertex keys first
+     */
+    public List<String> dropUnusedKeyIndices() {
+        final List<String> dropped = new ArrayList<String>();
+        if (!(graph instanceof KeyIndexableGraph)) {
+            return dropped;
+        }
+
+        final KeyIndexableGraph g = (KeyIndexableGraph) graph;
+        boolean success = false;
+        try {
+            drop(g, Vertex.class, GraphUtilities.VERTEX_KEYS, dropped);
+            drop(g, Edge.class, GraphUtilities.EDGE_KEYS, dropped);
+            success = true;
+        } finally {
+            graph.stopTransaction(success ? TransactionalGraph.Conclusion.SUCCESS : TransactionalGraph.Conclusion.FAILURE);
+        }
+
+        return dropped;
+    }
+
+    private static <T extends Element> void drop(KeyIndexableGraph g, Class<T> kind, Set<String> used, List<String> dropped) {
+        // copy, dropping changes the set of indexed keys
+        for (String key : new ArrayList<String>(g.getIndexedKeys(kind))) {
+            if (!used.contains(key)) {
+                g.dropKeyIndex(key, kind);
+                dropped.add(key);
+                LOG.info("Dropped the {} index on {}", kind.getSimpleName().toLowerCase(), key);
+            }
+        }
+    }
+
+    private static String indexType(Vertex v) {
+        final Object index = v.getProperty(GraphUtilities.KEY_INDEX);
+        final Object type = v.getProperty(GraphUtilities.KEY_TYPE);
+        if (index == null || type == null) {
+            return null;
+        }
+
+        return GraphUtilities.indexType(String.valueOf(index), String.valueOf(type));
+    }
+}
@@ -0,0 +1,104 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import dgm.ID;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ids of a set of vertices, split into partitions by the hash of the symbolic id.
+ * <p/>
+ * The vertices are read in one pass, after that the partitions are plain lists of ids. So they can be consumed
+ * concurrently, and consumers can change the graph without invalidating the (lazy) iterator of the scan. A document
+ * always ends up in the same partition, whatever its version. Works on any graph, only the vertex iterable differs.
+ */
+public final class VertexPartitions {
+    private final List<List<ID>> partitions;
+    private final int size;
+
+    private VertexPartitions(List<List<ID>> partitions, int size) {
+        this.partitions = partitions;
+        this.size = size;
+    }
+
+    /**
+     * Partition the vertices of all types in {@code index}.
+     */
+    public static VertexPartitions inIndex(ObjectMapper om, Graph graph, String index, int count) {
+        return of(om, GraphUtilities.findVerticesInIndex(graph, index), count);
+    }
+
+    /**
+     * Partition the vertices of {@code type} in {@code index}.
+     */
+    public static VertexPartitions inIndex(ObjectMapper om, Graph graph, String index, String type, int count) {
+        return of(om, GraphUtilities.findVerticesInIndex(graph, index, type), count);
+    }
+
+    /**
+     * Partition {@code vertices} into {@code count} partitions, vertices without an id are skipped.
+     */
+    public static VertexPartitions of(ObjectMapper om, Iterable<Vertex> vertices, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Need at least one partition, not " + count);
+        }
+
+        final List<List<ID>> partitions = new ArrayList<List<ID>>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(new ArrayList<ID>());
+        }
+
+        int size = 0;
+        for (Vertex v : vertices) {
+            final ID id = GraphUtilities.getID(om, v);
+            if (id == null) {
+                continue;
+            }
+
+            partitions.get(partitionOf(id, count)).add(id);
+            size++;
+        }
+
+        final ImmutableList.Builder<List<ID>> b = ImmutableList.builder();
+        for (List<ID> partition : partitions) {
+            b.add(ImmutableList.copyOf(partition));
+        }
+
+        return new VertexPartitions(b.build(), size);
+    }
+
+    /**
+     * The partition {@code id} is in when there are {@code count} partitions.
+     */
+    public static int partitionOf(ID id, int count) {
+        // spread the bits, the hash of similar ids differs in the low bits only
+        int h = GraphUtilities.getSymbolicID(id).hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return (h & Integer.MAX_VALUE) % count;
+    }
+
+    public List<List<ID>> partitions() {
+        return partitions;
+    }
+
+    public List<ID> partition(int i) {
+        return partitions.get(i);
+    }
+
+    public int count() {
+        return partitions.size();
+    }
+
+    /**
+     * The number of ids in all partitions.
+     */
+    public int size() {
+        return size;
+    }
+}
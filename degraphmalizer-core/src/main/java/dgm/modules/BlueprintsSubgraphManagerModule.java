@@ -1,20 +1,46 @@
 package dgm.modules;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
 import com.google.inject.*;
 import com.tinkerpop.blueprints.TransactionalGraph;
+import dgm.graphs.AdjacencyProjection;
 import dgm.graphs.BlueprintsSubgraphManager;
 import dgm.SubgraphManager;
 
 public class BlueprintsSubgraphManagerModule extends AbstractModule
 {
+    private final boolean projection;
+
+    public BlueprintsSubgraphManagerModule()
+    {
+        this(false);
+    }
+
+    /**
+     * @param projection Keep an in-memory {@link AdjacencyProjection} of the graph for traversals
+     */
+    public BlueprintsSubgraphManagerModule(boolean projection)
+    {
+        this.projection = projection;
+    }
+
     @Override
     protected void configure()
     {}
 
     @Provides @Inject @Singleton
-    final SubgraphManager provideSubgraphManager(ObjectMapper om, TransactionalGraph G)
+    final Optional<AdjacencyProjection> provideProjection(ObjectMapper om, TransactionalGraph G)
+    {
+        if (!projection)
+            return Optional.absent();
+
+        return Optional.of(AdjacencyProjection.load(om, G));
+    }
+
+    @Provides @Inject @Singleton
+    final SubgraphManager provideSubgraphManager(ObjectMapper om, TransactionalGraph G, Optional<AdjacencyProjection> projection)
     {
-        return new BlueprintsSubgraphManager(om, G);
+        return new BlueprintsSubgraphManager(om, G, projection);
     }
 }
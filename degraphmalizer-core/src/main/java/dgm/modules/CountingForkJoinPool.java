@@ -0,0 +1,105 @@
+package dgm.modules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ForkJoinPool} that counts the tasks it completed, like {@link java.util.concurrent.ThreadPoolExecutor} does.
+ * <p/>
+ * Only tasks given to the {@link java.util.concurrent.ExecutorService} methods are counted, {@link ForkJoinTask}s
+ * forked inside the pool are not.
+ */
+public class CountingForkJoinPool extends ForkJoinPool
+{
+    private final AtomicLong completed = new AtomicLong();
+
+    public CountingForkJoinPool(int parallelism, ForkJoinWorkerThreadFactory factory)
+    {
+        super(parallelism, factory, null, false);
+    }
+
+    /**
+     * Number of tasks that finished, normally or with an exception.
+     */
+    public long getCompletedTaskCount()
+    {
+        return completed.get();
+    }
+
+    private Runnable counting(final Runnable task)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    completed.incrementAndGet();
+                }
+            }
+        };
+    }
+
+    private <T> Callable<T> counting(final Callable<T> task)
+    {
+        return new Callable<T>()
+        {
+            @Override
+            public T call() throws Exception
+            {
+                try
+                {
+                    return task.call();
+                }
+                finally
+                {
+                    completed.incrementAndGet();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        super.execute(counting(task));
+    }
+
+    @Override
+    public ForkJoinTask<?> submit(Runnable task)
+    {
+        return super.submit(counting(task));
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(Runnable task, T result)
+    {
+        return super.submit(counting(task), result);
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(Callable<T> task)
+    {
+        return super.submit(counting(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+    {
+        final List<Callable<T>> counted = new ArrayList<Callable<T>>(tasks.size());
+        for (Callable<T> task : tasks)
+            counted.add(counting(task));
+        return super.invokeAll(counted);
+    }
+}
@@ -1,18 +1,74 @@
 package dgm.modules;
 
 import dgm.Degraphmalizr;
+import dgm.configuration.ConfigurationChangeMonitor;
+import dgm.configuration.ConfigurationMonitor;
+import dgm.degraphmalizr.BulkDegraphmalizer;
 import dgm.degraphmalizr.Degraphmalizer;
+import dgm.degraphmalizr.SelectiveReindexer;
 import dgm.degraphmalizr.recompute.Recomputer;
 import dgm.degraphmalizr.recompute.RecomputerFactoryImpl;
+import dgm.degraphmalizr.recompute.TargetFingerprints;
+import dgm.degraphmalizr.recompute.TransformCache;
 
-import com.google.inject.AbstractModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.name.Names;
 
-public class DegraphmalizerModule extends AbstractModule
+public class DegraphmalizerModule extends ServiceModule
 {
+    public static final int DEFAULT_FINGERPRINTS = 100000;
+    public static final int DEFAULT_TRANSFORM_CACHE_MB = 64;
+    public static final double DEFAULT_REINDEX_RATE = 50;
+
+    private final int fingerprints;
+    private final int transformCacheMB;
+    private final double reindexRate;
+
+    public DegraphmalizerModule()
+    {
+        this(DEFAULT_FINGERPRINTS, DEFAULT_TRANSFORM_CACHE_MB, DEFAULT_REINDEX_RATE);
+    }
+
+    /**
+     * @param fingerprints Number of target documents to remember a fingerprint for, 0 to always write targets
+     * @param transformCacheMB Megabytes of transformed documents to remember, 0 to always run the transform
+     * @param reindexRate Source documents per second to recompute after a type's configuration changed, 0 to not recompute
+     */
+    public DegraphmalizerModule(int fingerprints, int transformCacheMB, double reindexRate)
+    {
+        this.fingerprints = fingerprints;
+        this.transformCacheMB = transformCacheMB;
+        this.reindexRate = reindexRate;
+    }
+
     @Override
     protected final void configure() {
         bind(Degraphmalizr.class).to(Degraphmalizer.class).asEagerSingleton();
         bind(Recomputer.class).to(RecomputerFactoryImpl.class).asEagerSingleton();
         bind(ServiceRunner.class).asEagerSingleton();
+
+        // forget transformed documents when the configuration is reloaded
+        multiBind(ConfigurationMonitor.class).to(TransformCache.class);
+
+        // recompute the targets of changed types in the background
+        bindConstant().annotatedWith(Names.named("reindexRate")).to(reindexRate);
+        multiBind(ConfigurationChangeMonitor.class).to(SelectiveReindexer.class);
+        bindService(SelectiveReindexer.class);
+
+        bindService(BulkDegraphmalizer.class);
+    }
+
+    @Provides @Singleton
+    final TargetFingerprints provideTargetFingerprints()
+    {
+        return new TargetFingerprints(fingerprints);
+    }
+
+    @Provides @Singleton
+    final TransformCache provideTransformCache(ObjectMapper objectMapper)
+    {
+        return new TransformCache(objectMapper, transformCacheMB * 1024L * 1024L);
     }
 }
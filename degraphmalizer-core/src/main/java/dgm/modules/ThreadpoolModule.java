@@ -11,12 +11,11 @@ import dgm.modules.elasticsearch.DocumentProvider;
 import dgm.modules.elasticsearch.QueryFunction;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ThreadpoolModule extends AbstractModule
 {
-    private static final int MINTHREADPOOLSIZE = 4;
-    private static final int MAXTHREADPOOLSIZE = 64;
-    private static final int QUEUELIMIT = 65536;
+    private static final int THREADPOOLSIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
 
 
     @Override
@@ -35,35 +34,53 @@ public class ThreadpoolModule extends AbstractModule
         final ThreadFactory namedThreadFactory = new ThreadFactoryBuilder()
                 .setNameFormat("degraphmalizer").build();
 
-        return Executors.newSingleThreadExecutor(namedThreadFactory);
+        // a plain thread pool executor, so admission control can see the queue
+        return new ThreadPoolExecutor(1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                namedThreadFactory);
     }
 
+    /**
+     * Recomputes and the fetches they do share one work stealing pool. A recompute waiting for its fetches runs them
+     * itself instead of blocking a thread, and blocking reads from elasticsearch let the pool add threads (see
+     * {@link DocumentProvider}), so the pool does not deadlock or run jobs on the submitting thread when it is busy.
+     */
     @Provides
     @Singleton
-    @Recomputes
-    final ExecutorService provideRecomputesExecutor()
+    final ForkJoinPool provideRecomputePool()
     {
-        final ThreadFactory namedThreadFactory = new ThreadFactoryBuilder()
-                .setNameFormat("recomputer-%d").build();
+        final ForkJoinPool.ForkJoinWorkerThreadFactory namedThreadFactory = new ForkJoinPool.ForkJoinWorkerThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+            {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("recomputer-" + count.getAndIncrement());
+                return thread;
+            }
+        };
 
-        return new ThreadPoolExecutor(MINTHREADPOOLSIZE, MAXTHREADPOOLSIZE,
-                60L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(QUEUELIMIT),
-                namedThreadFactory,new ThreadPoolExecutor.CallerRunsPolicy());
+        // counts completed tasks for admission control
+        return new CountingForkJoinPool(THREADPOOLSIZE, namedThreadFactory);
     }
 
     @Provides
     @Singleton
-    @Fetches
-    final ExecutorService provideFetchesExecutor()
+    @Recomputes
+    final ExecutorService provideRecomputesExecutor(ForkJoinPool pool)
     {
-        final ThreadFactory namedThreadFactory = new ThreadFactoryBuilder()
-                .setNameFormat("fetcher-%d").build();
+        return pool;
+    }
 
-        return new ThreadPoolExecutor(MINTHREADPOOLSIZE, MAXTHREADPOOLSIZE,
-                60L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(QUEUELIMIT),
-                namedThreadFactory,new ThreadPoolExecutor.CallerRunsPolicy());
+    @Provides
+    @Singleton
+    @Fetches
+    final ExecutorService provideFetchesExecutor(ForkJoinPool pool)
+    {
+        return pool;
     }
 
-}
\ No newline at end of file
+}
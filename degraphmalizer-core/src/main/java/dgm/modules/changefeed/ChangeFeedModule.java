@@ -0,0 +1,31 @@
+package dgm.modules.changefeed;
+
+import dgm.modules.ServiceModule;
+
+import com.google.inject.name.Names;
+
+/**
+ * Poll the source indices for changed documents, next to the documents pushed over HTTP
+ */
+public class ChangeFeedModule extends ServiceModule {
+    public static final String DEFAULT_CHECKPOINTS = "data/changefeed.properties";
+
+    private final String timestampField;
+    private final String checkpoints;
+
+    /**
+     * @param timestampField Date field of the source documents that changes on every update, e.g. {@code _timestamp}
+     * @param checkpoints    File to keep the position in each source index in
+     */
+    public ChangeFeedModule(String timestampField, String checkpoints) {
+        this.timestampField = timestampField;
+        this.checkpoints = checkpoints;
+    }
+
+    @Override
+    protected void configure() {
+        bindConstant().annotatedWith(Names.named("changeFeedField")).to(timestampField);
+        bindConstant().annotatedWith(Names.named("changeFeedCheckpoints")).to(checkpoints);
+        bindService(ChangeFeedService.class);
+    }
+}
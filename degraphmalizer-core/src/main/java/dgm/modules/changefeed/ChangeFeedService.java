@@ -0,0 +1,307 @@
+package dgm.modules.changefeed;
+
+import dgm.Degraphmalizr;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.Service;
+import dgm.configuration.Configuration;
+import dgm.configuration.IndexConfig;
+import dgm.configuration.TypeConfig;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestScope;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestType;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeResult;
+import dgm.degraphmalizr.degraphmalize.LoggingDegraphmalizeCallback;
+import dgm.degraphmalizr.recompute.RecomputeResult;
+import dgm.exceptions.DegraphmalizerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+import org.nnsoft.guice.sli4j.core.InjectLogger;
+import org.slf4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Provider;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Polls every configured source index and type for documents changed since the last poll, and degraphmalizes them.
+ * <p/>
+ * Changed documents are found with a range on a timestamp field, in batches sorted on that field and the uid (see
+ * {@link Checkpoints}). A batch is first deduplicated: only the highest version of a document is kept, and documents of
+ * which the graph already has a later version are skipped. The rest of the batch is submitted to the degraphmalizer at
+ * once. When all of them are done the position is moved past the batch, but not past the first document that failed,
+ * so it is read again on the next poll. Documents that were also pushed over HTTP are processed again, the fingerprints of the targets keep that from
+ * writing them twice.
+ */
+class ChangeFeedService implements Service {
+    static final int BATCH_SIZE = 500;
+    static final long POLL_INTERVAL_MS = 5000;
+    static final int MAX_ATTEMPTS = 5;
+
+    // unique for each document of an index, so documents with the same timestamp are always read in the same order
+    static final String UID = "_uid";
+
+    @InjectLogger
+    Logger log;
+
+    private final Client client;
+    private final Graph graph;
+    private final ObjectMapper objectMapper;
+    private final Degraphmalizr degraphmalizr;
+    private final Provider<Configuration> cfgProvider;
+    private final String field;
+    private final Checkpoints checkpoints;
+
+    // failed polls per (symbolic id of a) document
+    private final Map<ID, Integer> attempts = new HashMap<ID, Integer>();
+
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("changefeed").setDaemon(true).build());
+
+    @Inject
+    ChangeFeedService(Client client, Graph graph, ObjectMapper objectMapper, Degraphmalizr degraphmalizr,
+                      Provider<Configuration> cfgProvider, @Named("changeFeedField") String field,
+                      @Named("changeFeedCheckpoints") String checkpoints) throws IOException {
+        this.client = client;
+        this.graph = graph;
+        this.objectMapper = objectMapper;
+        this.degraphmalizr = degraphmalizr;
+        this.cfgProvider = cfgProvider;
+        this.field = field;
+        this.checkpoints = new Checkpoints(new File(checkpoints));
+    }
+
+    @Override
+    public void start() {
+        poller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    poll();
+                } catch (Exception e) {
+                    // don't let the executor cancel the next polls
+                    log.error("Polling for changed documents failed", e);
+                }
+            }
+        }, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        poller.shutdownNow();
+        try {
+            checkpoints.store();
+        } catch (IOException e) {
+            log.error("Could not store change feed positions", e);
+        }
+    }
+
+    private void poll() throws IOException, InterruptedException {
+        for (Map.Entry<String, Set<String>> source : sources().entrySet()) {
+            for (String type : source.getValue()) {
+                // read until this source is drained
+                while (!Thread.currentThread().isInterrupted() && pollBatch(source.getKey(), type)) {
+                    checkpoints.store();
+                }
+            }
+        }
+    }
+
+    /**
+     * A changed document found by a poll.
+     */
+    static final class Change {
+        final ID id;
+        final long timestamp;
+
+        Change(ID id, long timestamp) {
+            this.id = id;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * @return true if a full batch was read and processed, so there may be more
+     */
+    private boolean pollBatch(String index, String type) throws InterruptedException {
+        final Checkpoints.Position position = checkpoints.get(index, type);
+        final List<Change> changes = search(index, type, position);
+        if (changes.isEmpty()) {
+            return false;
+        }
+
+        // when the position was held at a failure, wait for the next poll before trying again
+        return process(index, type, position, changes) == BATCH_SIZE;
+    }
+
+    /**
+     * The next batch of changed documents after {@code position}, in timestamp and uid order.
+     */
+    List<Change> search(String index, String type, Checkpoints.Position position) {
+        final FilterBuilder after = position.uid.isEmpty()
+                ? FilterBuilders.rangeFilter(field).gte(position.timestamp)
+                : FilterBuilders.orFilter(
+                        FilterBuilders.rangeFilter(field).gt(position.timestamp),
+                        FilterBuilders.andFilter(
+                                FilterBuilders.termFilter(field, position.timestamp),
+                                FilterBuilders.rangeFilter(UID).gt(position.uid)));
+
+        final SearchResponse response = client.prepareSearch(index)
+                .setTypes(type)
+                .setQuery(QueryBuilders.constantScoreQuery(after))
+                .addSort(field, SortOrder.ASC)
+                .addSort(UID, SortOrder.ASC)
+                .setSize(BATCH_SIZE)
+                .setNoFields()
+                .setVersion(true)
+                .execute().actionGet();
+
+        final List<Change> changes = new ArrayList<Change>();
+        for (SearchHit hit : response.getHits().getHits()) {
+            changes.add(new Change(new ID(hit.getIndex(), hit.getType(), hit.getId(), hit.version()),
+                    ((Number) hit.getSortValues()[0]).longValue()));
+        }
+        return changes;
+    }
+
+    /**
+     * Degraphmalize a batch of changes and move the position past them, but not past the first change that failed.
+     * <p/>
+     * A change only succeeded when its degraphmalize and all the recomputes it caused succeeded, so the targets were
+     * written. A document that keeps failing is given up on after {@link #MAX_ATTEMPTS} polls, so it doesn't stop the
+     * feed for good.
+     *
+     * @return The number of changes the position moved past
+     */
+    int process(String index, String type, Checkpoints.Position position, List<Change> changes) throws InterruptedException {
+        final Map<ID, ID> latest = new LinkedHashMap<ID, ID>();
+        for (Change change : changes) {
+            final ID symbolic = GraphUtilities.getSymbolicID(change.id);
+            final ID seen = latest.get(symbolic);
+            if (seen == null || seen.version() < change.id.version()) {
+                latest.put(symbolic, change.id);
+            }
+        }
+
+        final Map<ID, Future<DegraphmalizeResult>> results = new LinkedHashMap<ID, Future<DegraphmalizeResult>>();
+        final Set<ID> failed = new HashSet<ID>();
+        for (Map.Entry<ID, ID> e : latest.entrySet()) {
+            // the graph having this version doesn't mean the targets were written, only a newer version is proof
+            if (isOutdated(e.getValue())) {
+                continue;
+            }
+
+            try {
+                results.put(e.getKey(), degraphmalizr.degraphmalize(DegraphmalizeRequestType.UPDATE, DegraphmalizeRequestScope.DOCUMENT, e.getValue(), new LoggingDegraphmalizeCallback()));
+            } catch (DegraphmalizerException ex) {
+                log.warn("Could not degraphmalize {}: {}", e.getValue(), ex.getMessage());
+                failed.add(e.getKey());
+            }
+        }
+
+        for (Map.Entry<ID, Future<DegraphmalizeResult>> result : results.entrySet()) {
+            if (!succeeded(result.getValue())) {
+                failed.add(result.getKey());
+            }
+        }
+
+        // give up on documents that failed too often
+        for (ID symbolic : latest.keySet()) {
+            if (!failed.contains(symbolic)) {
+                attempts.remove(symbolic);
+                continue;
+            }
+
+            final Integer before = attempts.get(symbolic);
+            final int attempt = before == null ? 1 : before + 1;
+            if (attempt < MAX_ATTEMPTS) {
+                attempts.put(symbolic, attempt);
+            } else {
+                log.error("Degraphmalizing {} from the change feed failed {} times, skipping it", latest.get(symbolic), attempt);
+                attempts.remove(symbolic);
+                failed.remove(symbolic);
+            }
+        }
+
+        int done = 0;
+        Checkpoints.Position next = position;
+        for (Change change : changes) {
+            if (failed.contains(GraphUtilities.getSymbolicID(change.id))) {
+                break;
+            }
+            next = next.after(change.timestamp, change.id.type(), change.id.id());
+            done++;
+        }
+
+        checkpoints.put(index, type, next);
+        log.info("Change feed for /{}/{} read {} documents, degraphmalized {}, {} failed, now at {}",
+                new Object[]{index, type, changes.size(), results.size(), failed.size(), next});
+
+        return done;
+    }
+
+    /**
+     * Wait for a degraphmalize and the recomputes it caused.
+     */
+    private boolean succeeded(Future<DegraphmalizeResult> result) throws InterruptedException {
+        try {
+            for (Future<RecomputeResult> recompute : result.get().results()) {
+                recompute.get();
+            }
+            return true;
+        } catch (ExecutionException e) {
+            log.debug("Degraphmalize from change feed failed: {}", e.getCause().getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * True if the graph already has a later version of the document, that version has a later timestamp.
+     */
+    private boolean isOutdated(ID id) {
+        final Vertex v = GraphUtilities.resolveVertex(objectMapper, graph, id);
+        if (v == null) {
+            return false;
+        }
+
+        final ID known = GraphUtilities.getID(objectMapper, v);
+        return known != null && known.version() > id.version();
+    }
+
+    Checkpoints checkpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * The source index and types of the current configuration.
+     */
+    private Map<String, Set<String>> sources() {
+        final Map<String, Set<String>> sources = new TreeMap<String, Set<String>>();
+        for (IndexConfig i : cfgProvider.get().indices().values()) {
+            for (TypeConfig t : i.types().values()) {
+                Set<String> types = sources.get(t.sourceIndex());
+                if (types == null) {
+                    types = new TreeSet<String>();
+                    sources.put(t.sourceIndex(), types);
+                }
+                types.add(t.sourceType());
+            }
+        }
+        return sources;
+    }
+}
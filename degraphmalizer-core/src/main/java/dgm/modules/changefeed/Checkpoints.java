@@ -0,0 +1,129 @@
+package dgm.modules.changefeed;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Position of the change feed in each source index and type, kept in a properties file.
+ * <p/>
+ * Documents are read in the order of their timestamp and then their {@code _uid}, which is unique, so the order is the
+ * same in every poll. A position is the timestamp and uid of the last document read, the next poll starts after it. A
+ * document that is changed again gets a later timestamp and is read again, without moving the other documents.
+ */
+class Checkpoints {
+    static final class Position {
+        final long timestamp;
+
+        // the _uid of the last document read with this timestamp, empty if none was read yet
+        final String uid;
+
+        Position(long timestamp, String uid) {
+            this.timestamp = timestamp;
+            this.uid = uid;
+        }
+
+        /**
+         * The position after reading a document of this type.
+         */
+        Position after(long timestamp, String type, String id) {
+            return new Position(timestamp, uid(type, id));
+        }
+
+        /**
+         * The {@code _uid} elasticsearch keeps for a document.
+         */
+        static String uid(String type, String id) {
+            return type + '#' + id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Position)) return false;
+
+            final Position other = (Position) o;
+            return timestamp == other.timestamp && uid.equals(other.uid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (timestamp ^ (timestamp >>> 32)) + uid.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + "," + uid;
+        }
+    }
+
+    static final Position START = new Position(0, "");
+
+    private final File file;
+    private final Map<String, Position> positions = new HashMap<String, Position>();
+
+    Checkpoints(File file) throws IOException {
+        this.file = file;
+
+        if (!file.exists()) {
+            return;
+        }
+
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        for (String key : properties.stringPropertyNames()) {
+            final String[] value = properties.getProperty(key).split(",", 2);
+
+            // positions written with a count of documents read instead of a uid read that timestamp again
+            final String uid = value.length > 1 && value[1].indexOf('#') >= 0 ? value[1] : "";
+            positions.put(key, new Position(Long.parseLong(value[0]), uid));
+        }
+    }
+
+    synchronized Position get(String index, String type) {
+        final Position p = positions.get(key(index, type));
+        return p == null ? START : p;
+    }
+
+    synchronized void put(String index, String type, Position position) {
+        positions.put(key(index, type), position);
+    }
+
+    /**
+     * Write the positions, replacing the file only when writing succeeded.
+     */
+    synchronized void store() throws IOException {
+        final Properties properties = new Properties();
+        for (Map.Entry<String, Position> e : positions.entrySet()) {
+            properties.setProperty(e.getKey(), e.getValue().toString());
+        }
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can not create directory " + parent);
+        }
+
+        final File tmp = new File(file.getPath() + ".tmp");
+        final OutputStream out = new FileOutputStream(tmp);
+        try {
+            properties.store(out, "degraphmalizer change feed positions");
+        } finally {
+            out.close();
+        }
+
+        if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("Can not replace " + file);
+        }
+    }
+
+    private static String key(String index, String type) {
+        return index + '/' + type;
+    }
+}
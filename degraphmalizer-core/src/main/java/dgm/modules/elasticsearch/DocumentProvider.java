@@ -7,7 +7,9 @@ package dgm.modules.elasticsearch;
 import dgm.ID;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
+import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.client.Client;
 import org.nnsoft.guice.sli4j.core.InjectLogger;
@@ -48,8 +50,33 @@ public class DocumentProvider {
     class DocumentLoader extends CacheLoader<ID, GetResponse> {
         @Override
         public GetResponse load(ID id) throws Exception {
-            // query ES for the document
-            return searchIndex.prepareGet(id.index(), id.type(), id.id()).execute().actionGet();
+            // query ES for the document, telling a fork join pool we are waiting so it can start another thread
+            final Blocker blocker = new Blocker(searchIndex.prepareGet(id.index(), id.type(), id.id()).execute());
+            ForkJoinPool.managedBlock(blocker);
+            return blocker.future.actionGet();
+        }
+    }
+
+    static class Blocker implements ForkJoinPool.ManagedBlocker {
+        final ListenableActionFuture<GetResponse> future;
+
+        Blocker(ListenableActionFuture<GetResponse> future) {
+            this.future = future;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // rethrown by actionGet
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return future.isDone();
         }
     }
 }
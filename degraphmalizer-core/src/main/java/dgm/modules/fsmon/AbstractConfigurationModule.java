@@ -3,6 +3,7 @@ package dgm.modules.fsmon;
 import dgm.configuration.Configuration;
 import dgm.configuration.Configurations;
 import dgm.configuration.javascript.JavascriptConfiguration;
+import dgm.configuration.javascript.ScriptCache;
 import dgm.modules.ServiceModule;
 
 import java.io.IOException;
@@ -26,9 +27,11 @@ abstract class AbstractConfigurationModule extends ServiceModule {
 
     final String scriptFolder;
     final List<URL> libraries;
+    final ScriptCache scriptCache;
 
-    AbstractConfigurationModule(String scriptFolder, String... libraries) throws IOException {
+    AbstractConfigurationModule(String scriptFolder, ScriptCache scriptCache, String... libraries) throws IOException {
         this.scriptFolder = scriptFolder;
+        this.scriptCache = scriptCache;
         LOG.info("Loading script {} libraries {}", scriptFolder, Arrays.asList(libraries));
         if (libraries.length == 0) {
             this.libraries = Configurations.list("classpath:lib", Configurations.JS);
@@ -43,14 +46,25 @@ abstract class AbstractConfigurationModule extends ServiceModule {
         // bind paths
         bind(String.class).annotatedWith(Names.named("scriptFolder")).toInstance(scriptFolder);
         bind(new TypeLiteral<List<URL>>(){}).annotatedWith(Names.named("libraryFiles")).toInstance(libraries);
+        bind(ScriptCache.class).toInstance(scriptCache);
 
         configureModule();
     }
 
     protected abstract void configureModule();
 
-    static Configuration createConfiguration(ObjectMapper om, String scriptFolder, List<URL> libraries) throws IOException {
-        return new JavascriptConfiguration(om, scriptFolder, libraries.toArray(new URL[libraries.size()]));
+    static Configuration createConfiguration(ObjectMapper om, String scriptFolder, ScriptCache scriptCache, List<URL> libraries) throws IOException {
+        return new JavascriptConfiguration(om, scriptFolder, scriptCache, libraries.toArray(new URL[libraries.size()]));
+    }
+
+    /**
+     * Read only the changed index of a configuration again, or everything if the configuration can't do that.
+     */
+    static Configuration reloadConfiguration(ObjectMapper om, Configuration previous, String index, String scriptFolder, ScriptCache scriptCache, List<URL> libraries) throws IOException {
+        if (previous instanceof JavascriptConfiguration) {
+            return ((JavascriptConfiguration) previous).reload(om, scriptFolder, index, libraries.toArray(new URL[libraries.size()]));
+        }
+        return createConfiguration(om, scriptFolder, scriptCache, libraries);
     }
 
 }
@@ -1,6 +1,7 @@
 package dgm.modules.fsmon;
 
 import dgm.configuration.*;
+import dgm.configuration.javascript.ScriptCache;
 import dgm.exceptions.ConfigurationException;
 
 import java.io.IOException;
@@ -26,64 +27,61 @@ class ConfigurationReloader implements FilesystemMonitor, Provider<Configuration
     private static final Logger LOG = LoggerFactory.getLogger(ConfigurationReloader.class);
 
 
-    private final CachedProvider<Configuration> cachedProvider;
+    private final String scriptFolder;
+
+    private final List<URL> libraries;
+
+    private final ScriptCache scriptCache;
+
+    // the current configuration, replaced as a whole so requests keep the snapshot they started with
+    private final AtomicReference<Configuration> configuration;
 
     private final ConfigurationMonitor configurationMonitor;
 
+    private final Set<ConfigurationChangeMonitor> changeMonitors;
+
     private final static ObjectMapper OM = new ObjectMapper();
 
+    /**
+     * When loading the configuration this will throw an exception with an invalid configuration, but only on startup.
+     * When already running with a configuration this will LOG an error message trying to load an invalid configuration, but
+     * will continue to run with the previous valid configuration.
+     */
     @Inject
     public ConfigurationReloader(Set<ConfigurationMonitor> configurationMonitors,
+                                 Set<ConfigurationChangeMonitor> changeMonitors,
                                  final @Named("scriptFolder") String scriptFolder,
-                                 final @Named("libraryFiles") List<URL> libraries) throws IOException {
+                                 final @Named("libraryFiles") List<URL> libraries,
+                                 ScriptCache scriptCache) throws IOException {
         LOG.info("Starting with {} {} ", scriptFolder, libraries);
 
-
         configurationMonitor = new CompositeConfigurationMonitor(configurationMonitors);
+        this.changeMonitors = changeMonitors;
+        this.scriptFolder = scriptFolder;
+        this.libraries = libraries;
+        this.scriptCache = scriptCache;
 
-        /**
-         * When loading the configuration this will throw an exception with an invalid configuration, but only on startup.
-         * When already running with a configuration this will LOG an error message trying to load an invalid configuration, but
-         * will continue to run with the previous valid configuration.
-         */
-        final Provider<Configuration> confLoader = new Provider<Configuration>() {
-            private final AtomicReference<Configuration> configuration =
-                new AtomicReference<Configuration>(AbstractConfigurationModule.createConfiguration(OM, scriptFolder, libraries));
-
-            @Override
-            public Configuration get() {
-                try {
-                    final Configuration d = configuration.getAndSet(null);
-                    if (d == null)
-                        return AbstractConfigurationModule.createConfiguration(OM, scriptFolder, libraries);
-
-                    return d;
-                } catch (ConfigurationException ce) {
-                    LOG.info("Failed to load configuration, {}", ce.getMessage());
-                    return null;
-                } catch (Exception e) {
-                    LOG.info("Unknown Exception while loading configuration, {}", e);
-                    return null;
-                }
-            }
-        };
-
-        this.cachedProvider = new CachedProvider<Configuration>(confLoader);
+        configuration = new AtomicReference<Configuration>(AbstractConfigurationModule.createConfiguration(OM, scriptFolder, scriptCache, libraries));
     }
 
     @Override
     public void directoryChanged(String directory) {
         LOG.info("Filesystem change detected for directory (target-index) {}", directory);
 
-        // try to reload the configuration
-        if (!cachedProvider.invalidate()) {
+        final Configuration previous = configuration.get();
+
+        // try to reload the changed index
+        final Configuration reloaded = reload(previous, directory);
+        if (reloaded == null) {
             LOG.info("Failed to reload configuration");
+        } else {
+            configuration.set(reloaded);
         }
 
         // print configuration if debugging is enabled
         if (LOG.isDebugEnabled()) {
             // get new config
-            final Configuration cfg = cachedProvider.get();
+            final Configuration cfg = configuration.get();
             for (final IndexConfig i : cfg.indices().values()) {
                 for (final TypeConfig t : i.types().values()) {
                     LOG.debug("Found target configuration /{}/{} --> /{}/{}",
@@ -94,11 +92,32 @@ class ConfigurationReloader implements FilesystemMonitor, Provider<Configuration
 
         // notify all configuration listeners
         configurationMonitor.configurationChanged(directory);
+
+        if (reloaded != null && !changeMonitors.isEmpty()) {
+            final ConfigurationChange change = ConfigurationChange.between(previous, reloaded);
+            for (ConfigurationChangeMonitor m : changeMonitors) {
+                m.configurationChanged(change);
+            }
+        }
+    }
+
+    /**
+     * @return the new configuration, or null if it could not be loaded
+     */
+    private Configuration reload(Configuration previous, String index) {
+        try {
+            return AbstractConfigurationModule.reloadConfiguration(OM, previous, index, scriptFolder, scriptCache, libraries);
+        } catch (ConfigurationException ce) {
+            LOG.info("Failed to load configuration, {}", ce.getMessage());
+            return null;
+        } catch (Exception e) {
+            LOG.info("Unknown Exception while loading configuration, {}", e);
+            return null;
+        }
     }
 
     @Override
     public Configuration get() {
-        return cachedProvider.get();
-
+        return configuration.get();
     }
 }
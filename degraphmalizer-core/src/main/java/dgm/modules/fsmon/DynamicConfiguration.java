@@ -1,10 +1,13 @@
 package dgm.modules.fsmon;
 
 import dgm.configuration.Configuration;
+import dgm.configuration.ConfigurationChangeMonitor;
 import dgm.configuration.ConfigurationMonitor;
+import dgm.configuration.javascript.ScriptCache;
 
 import java.io.IOException;
 
+import com.google.inject.multibindings.Multibinder;
 import org.nnsoft.guice.sli4j.core.InjectLogger;
 import org.slf4j.Logger;
 
@@ -34,7 +37,11 @@ class LoggingFilesystemMonitor implements FilesystemMonitor {
  */
 public class DynamicConfiguration extends AbstractConfigurationModule {
     public DynamicConfiguration(String scriptFolder, String... libraries) throws IOException {
-        super(scriptFolder, libraries);
+        this(scriptFolder, ScriptCache.NONE, libraries);
+    }
+
+    public DynamicConfiguration(String scriptFolder, ScriptCache scriptCache, String... libraries) throws IOException {
+        super(scriptFolder, scriptCache, libraries);
     }
 
     @Override
@@ -49,6 +56,9 @@ public class DynamicConfiguration extends AbstractConfigurationModule {
         // we need at least one binding to configuration monitor or guice complains
         multiBind(ConfigurationMonitor.class).to(LoggingConfigurationMonitor.class);
 
+        // the differences between configurations are only needed by whoever wants to act on them
+        Multibinder.newSetBinder(binder(), ConfigurationChangeMonitor.class);
+
         bind(Configuration.class).toProvider(ConfigurationReloader.class);
     }
 }
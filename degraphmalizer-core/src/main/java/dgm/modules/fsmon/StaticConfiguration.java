@@ -1,6 +1,7 @@
 package dgm.modules.fsmon;
 
 import dgm.configuration.Configuration;
+import dgm.configuration.javascript.ScriptCache;
 
 import java.io.IOException;
 
@@ -14,9 +15,13 @@ public class StaticConfiguration extends AbstractConfigurationModule {
     private Configuration configuration;
 
     public StaticConfiguration(String scriptFolder, String... libraries) throws IOException {
-        super(scriptFolder, libraries);
+        this(scriptFolder, ScriptCache.NONE, libraries);
+    }
+
+    public StaticConfiguration(String scriptFolder, ScriptCache scriptCache, String... libraries) throws IOException {
+        super(scriptFolder, scriptCache, libraries);
         try {
-            configuration = createConfiguration(new ObjectMapper(), scriptFolder, this.libraries);
+            configuration = createConfiguration(new ObjectMapper(), scriptFolder, scriptCache, this.libraries);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -13,8 +13,7 @@ import dgm.Service;
 import dgm.modules.ServiceModule;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
 
 
 class Neo4jService implements Service
@@ -45,32 +44,24 @@ public class CommonNeo4j extends ServiceModule
     protected void configure()
     {
         bindService(Neo4jService.class);
+        bindService(GraphWarmupService.class);
     }
 
     @Provides @Singleton
-    final TransactionalGraph provideGraph(@Neo4jDataDir String dataDir) throws IOException
+    final TransactionalGraph provideGraph(@Neo4jDataDir String dataDir, GraphStoreProfile profile) throws IOException
     {
-        // manually set the cache provider
-        final Map<String, String> settings = new HashMap<String, String>();
-        settings.put("cache_type", "soft");
-
-        // See http://docs.neo4j.org/chunked/stable/configuration-logical-logs.html for valid values
-        settings.put("keep_logical_logs", "2 days");
-
-        final Neo4jGraph graph = new Neo4jGraph(dataDir, settings);
-
-        // quickly get vertices by ID
-        final String[] props = new String[] {
-                GraphUtilities.OWNER, GraphUtilities.SYMBOLIC_OWNER,
-                GraphUtilities.IDENTIFIER, GraphUtilities.SYMBOLIC_IDENTIFER,
-                GraphUtilities.KEY_INDEX, GraphUtilities.KEY_TYPE,
-                GraphUtilities.KEY_ID, GraphUtilities.KEY_VERSION };
-
-        for(String prop : props)
-        {
-            graph.createKeyIndex(prop, Vertex.class);
-            graph.createKeyIndex(prop, Edge.class);
-        }
+        final Neo4jGraph graph = new Neo4jGraph(dataDir, profile.settings());
+
+        // quickly get vertices and edges by ID, only new keys so a restart doesn't start a transaction for each of them
+        final Set<String> vertexKeys = graph.getIndexedKeys(Vertex.class);
+        for(String key : GraphUtilities.VERTEX_KEYS)
+            if(!vertexKeys.contains(key))
+                graph.createKeyIndex(key, Vertex.class);
+
+        final Set<String> edgeKeys = graph.getIndexedKeys(Edge.class);
+        for(String key : GraphUtilities.EDGE_KEYS)
+            if(!edgeKeys.contains(key))
+                graph.createKeyIndex(key, Edge.class);
 
         graph.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
 
@@ -0,0 +1,126 @@
+package dgm.modules.neo4j;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import dgm.GraphUtilities;
+import dgm.graphs.GraphFile;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.index.impl.lucene.LuceneIndexImplementation;
+import org.neo4j.index.lucene.unsafe.batchinsert.LuceneBatchInserterIndexProvider;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserterIndex;
+import org.neo4j.unsafe.batchinsert.BatchInserterIndexProvider;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads a {@link GraphFile} into a new graph database, without transactions.
+ * <p/>
+ * The neo4j batch inserter writes the store files directly, and the key indices of
+ * {@link GraphUtilities#VERTEX_KEYS} and {@link GraphUtilities#EDGE_KEYS} are filled the same way. Vertex {@code n} of
+ * the file becomes node {@code n + 1}, node 0 is the reference node. When the graph database is opened normally the
+ * key indices are known and nothing is indexed again.
+ * <p/>
+ * The batch inserter is not safe when something goes wrong, a directory an import failed in should be removed.
+ */
+public final class GraphImport {
+    private static final Logger log = LoggerFactory.getLogger(GraphImport.class);
+
+    // as the neo4j auto indexers name them
+    static final String NODE_AUTO_INDEX = "node_auto_index";
+    static final String RELATIONSHIP_AUTO_INDEX = "relationship_auto_index";
+
+    // as Neo4jGraph keeps its key indices
+    static final String INDEXED_KEYS = ":indexed_keys";
+
+    private GraphImport() {
+    }
+
+    /**
+     * @param dataDir Directory of the graph database, must not exist or be empty
+     * @return The number of vertices and edges imported
+     */
+    public static long[] load(InputStream in, String dataDir) throws IOException {
+        final String[] existing = new File(dataDir).list();
+        if (existing != null && existing.length > 0) {
+            throw new IOException("Can only import a graph into an empty directory, " + dataDir + " is not");
+        }
+
+        final long started = System.currentTimeMillis();
+        final long[] counts;
+
+        final BatchInserter inserter = BatchInserters.inserter(dataDir);
+        final BatchInserterIndexProvider indices = new LuceneBatchInserterIndexProvider(inserter);
+        try {
+            final BatchInserterIndex nodeIndex = indices.nodeIndex(NODE_AUTO_INDEX, LuceneIndexImplementation.EXACT_CONFIG);
+            final BatchInserterIndex relationshipIndex = indices.relationshipIndex(RELATIONSHIP_AUTO_INDEX, LuceneIndexImplementation.EXACT_CONFIG);
+
+            counts = GraphFile.read(in, new GraphFile.Visitor() {
+                @Override
+                public void vertex(long vertex, Map<String, Object> properties) {
+                    final long node = vertex + 1;
+                    inserter.createNode(node, properties);
+                    nodeIndex.add(node, keys(properties, GraphUtilities.VERTEX_KEYS));
+                }
+
+                @Override
+                public void edge(long tail, String label, long head, Map<String, Object> properties) {
+                    final long relationship = inserter.createRelationship(tail + 1, head + 1, DynamicRelationshipType.withName(label), properties);
+                    relationshipIndex.add(relationship, keys(properties, GraphUtilities.EDGE_KEYS));
+                }
+            });
+        } finally {
+            indices.shutdown();
+            inserter.shutdown();
+        }
+
+        markKeyIndices(dataDir);
+
+        log.info("Imported {} vertices and {} edges in {} ms", new Object[]{counts[0], counts[1], System.currentTimeMillis() - started});
+        return counts;
+    }
+
+    private static Map<String, Object> keys(Map<String, Object> properties, Set<String> keys) {
+        final Map<String, Object> indexed = new HashMap<String, Object>();
+        for (String key : keys) {
+            final Object value = properties.get(key);
+            if (value != null) {
+                indexed.put(key, value);
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Record the key indices the way {@link Neo4jGraph} does, so it doesn't index all elements again when it creates
+     * them.
+     */
+    private static void markKeyIndices(String dataDir) {
+        final Neo4jGraph graph = new Neo4jGraph(dataDir);
+        try {
+            final PropertyContainer properties = ((GraphDatabaseAPI) graph.getRawGraph()).getNodeManager().getGraphProperties();
+            final Transaction tx = graph.getRawGraph().beginTx();
+            try {
+                properties.setProperty(Vertex.class.getSimpleName() + INDEXED_KEYS, GraphUtilities.VERTEX_KEYS.toArray(new String[0]));
+                properties.setProperty(Edge.class.getSimpleName() + INDEXED_KEYS, GraphUtilities.EDGE_KEYS.toArray(new String[0]));
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+        } finally {
+            graph.shutdown();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package dgm.modules.neo4j;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tuning of the embedded graph database.
+ * <p/>
+ * Every setting has a default and can be overridden with a property of the same name, e.g. through a
+ * {@link dgm.modules.property.PropertiesModule}. Memory mapped buffer sizes are given like neo4j wants them
+ * ({@code 250M}), when they are not set neo4j divides the available memory itself.
+ */
+@Singleton
+public class GraphStoreProfile
+{
+    public static final String CACHE_TYPE = "graphdb.cache_type";
+    public static final String KEEP_LOGICAL_LOGS = "graphdb.keep_logical_logs";
+    public static final String USE_MEMORY_MAPPED_BUFFERS = "graphdb.use_memory_mapped_buffers";
+    public static final String NODES_MAPPED_MEMORY = "graphdb.nodes.mapped_memory";
+    public static final String RELATIONSHIPS_MAPPED_MEMORY = "graphdb.relationships.mapped_memory";
+    public static final String PROPERTIES_MAPPED_MEMORY = "graphdb.properties.mapped_memory";
+    public static final String STRINGS_MAPPED_MEMORY = "graphdb.strings.mapped_memory";
+    public static final String ARRAYS_MAPPED_MEMORY = "graphdb.arrays.mapped_memory";
+    public static final String WARMUP = "graphdb.warmup";
+    public static final String WARMUP_LIMIT = "graphdb.warmup.limit";
+
+    @Inject(optional = true) @Named(CACHE_TYPE)
+    String cacheType = "soft";
+
+    // See http://docs.neo4j.org/chunked/stable/configuration-logical-logs.html for valid values
+    @Inject(optional = true) @Named(KEEP_LOGICAL_LOGS)
+    String keepLogicalLogs = "2 days";
+
+    @Inject(optional = true) @Named(USE_MEMORY_MAPPED_BUFFERS)
+    String useMemoryMappedBuffers;
+
+    @Inject(optional = true) @Named(NODES_MAPPED_MEMORY)
+    String nodesMappedMemory;
+
+    @Inject(optional = true) @Named(RELATIONSHIPS_MAPPED_MEMORY)
+    String relationshipsMappedMemory;
+
+    @Inject(optional = true) @Named(PROPERTIES_MAPPED_MEMORY)
+    String propertiesMappedMemory;
+
+    @Inject(optional = true) @Named(STRINGS_MAPPED_MEMORY)
+    String stringsMappedMemory;
+
+    @Inject(optional = true) @Named(ARRAYS_MAPPED_MEMORY)
+    String arraysMappedMemory;
+
+    @Inject(optional = true) @Named(WARMUP)
+    String warmup = "false";
+
+    @Inject(optional = true) @Named(WARMUP_LIMIT)
+    String warmupLimit = "100000";
+
+    /**
+     * The neo4j settings of this profile.
+     */
+    public Map<String, String> settings()
+    {
+        final Map<String, String> settings = new HashMap<String, String>();
+        settings.put("cache_type", cacheType);
+        settings.put("keep_logical_logs", keepLogicalLogs);
+        put(settings, "use_memory_mapped_buffers", useMemoryMappedBuffers);
+        put(settings, "neostore.nodestore.db.mapped_memory", nodesMappedMemory);
+        put(settings, "neostore.relationshipstore.db.mapped_memory", relationshipsMappedMemory);
+        put(settings, "neostore.propertystore.db.mapped_memory", propertiesMappedMemory);
+        put(settings, "neostore.propertystore.db.strings.mapped_memory", stringsMappedMemory);
+        put(settings, "neostore.propertystore.db.arrays.mapped_memory", arraysMappedMemory);
+        return settings;
+    }
+
+    private static void put(Map<String, String> settings, String key, String value)
+    {
+        if (value != null && !value.isEmpty())
+            settings.put(key, value);
+    }
+
+    /**
+     * Whether {@link GraphWarmupService} reads the store before the server starts.
+     */
+    public boolean warmup()
+    {
+        return Boolean.parseBoolean(warmup);
+    }
+
+    /**
+     * Maximal number of vertices {@link GraphWarmupService} visits. They are taken in store order, so with a limit
+     * smaller than the graph these are the oldest vertices rather than the most used ones.
+     */
+    public int warmupLimit()
+    {
+        return Integer.parseInt(warmupLimit);
+    }
+}
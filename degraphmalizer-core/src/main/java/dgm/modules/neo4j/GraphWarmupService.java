@@ -0,0 +1,110 @@
+package dgm.modules.neo4j;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import dgm.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+
+/**
+ * Reads the graph store before the server accepts requests, so the first requests after a restart don't all wait for
+ * the disk.
+ * <p/>
+ * For up to {@link GraphStoreProfile#warmupLimit()} vertices it reads the identifiers, looks them up in the index the
+ * subgraph manager uses to find vertices, and reads the identifiers of their edges. That brings the node, property and
+ * relationship stores and the lucene index into the caches. Only runs when {@link GraphStoreProfile#warmup()} is set.
+ * <p/>
+ * The store doesn't know which vertices are used most, so the vertices are taken in store order, which is roughly the
+ * order they were created in. When the limit is smaller than the graph the oldest vertices are warmed up, not
+ * necessarily the ones requests will need.
+ * <p/>
+ * {@link #start()} returns when the warmup is done, and services are started before the server.
+ */
+public class GraphWarmupService implements Service
+{
+    private static final Logger log = LoggerFactory.getLogger(GraphWarmupService.class);
+
+    private final Graph graph;
+    private final ObjectMapper om;
+    private final GraphStoreProfile profile;
+
+    // vertices and edges visited by the last warmup
+    private volatile long[] visited = {0, 0};
+
+    @Inject
+    public GraphWarmupService(Graph graph, ObjectMapper om, GraphStoreProfile profile)
+    {
+        this.graph = graph;
+        this.om = om;
+        this.profile = profile;
+    }
+
+    @Override
+    public void start()
+    {
+        if (!profile.warmup())
+            return;
+
+        try
+        {
+            final long started = System.currentTimeMillis();
+            visited = warmup(profile.warmupLimit());
+            log.info("Warmed up graph store with {} vertices and {} edges in {} ms",
+                    new Object[]{visited[0], visited[1], System.currentTimeMillis() - started});
+        }
+        catch (RuntimeException e)
+        {
+            // a cold store is slow, but it works
+            log.warn("Failed to warm up graph store: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The number of vertices and edges the last warmup visited
+     */
+    long[] visited()
+    {
+        return visited.clone();
+    }
+
+    /**
+     * @return The number of vertices and edges visited
+     */
+    long[] warmup(int limit)
+    {
+        long vertices = 0;
+        long edges = 0;
+
+        final Iterator<Vertex> vi = graph.getVertices().iterator();
+        while (vi.hasNext() && vertices < limit)
+        {
+            final Vertex v = vi.next();
+
+            // e.g. the neo4j reference node
+            if (v.getProperty(GraphUtilities.SYMBOLIC_IDENTIFER) == null)
+                continue;
+
+            GraphUtilities.resolveVertex(om, graph, GraphUtilities.getID(om, v));
+            vertices++;
+
+            for (Edge e : v.getEdges(Direction.OUT))
+            {
+                e.getProperty(GraphUtilities.IDENTIFIER);
+                edges++;
+            }
+        }
+
+        return new long[]{vertices, edges};
+    }
+
+    @Override
+    public void stop()
+    {}
+}
@@ -0,0 +1,207 @@
+package dgm.streaming.blueprints;
+
+import dgm.streaming.command.GraphCommand;
+import dgm.streaming.command.GraphCommands;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Hands {@link GraphCommand}s from the graph to its listeners without ever making the graph wait.
+ * <p/>
+ * The graph only puts a command in a bounded buffer, and if the buffer is full the command is dropped. A dispatcher
+ * thread moves commands from the buffer to a bounded queue per listener, and listeners are called from a small pool
+ * with all commands that are waiting for them, after merging repeated property changes. A listener whose queue fills
+ * up loses its oldest commands or is disconnected, depending on its {@link OverflowPolicy}. The same goes for a full
+ * buffer: every listener misses the command, and the {@link OverflowPolicy#DISCONNECT} listeners are disconnected by
+ * the dispatcher thread.
+ */
+public final class GraphCommandDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(GraphCommandDispatcher.class);
+
+    public static final int DEFAULT_BUFFER = 8192;
+    public static final int DEFAULT_LISTENER_QUEUE = 1024;
+
+    private static final int DELIVERY_THREADS = 2;
+
+    private final BlockingQueue<GraphCommand> buffer;
+    private final int listenerQueue;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final ExecutorService delivery = Executors.newFixedThreadPool(DELIVERY_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("graph-listeners-%d").setDaemon(true).build());
+    private final Thread dispatcher;
+
+    /**
+     * A listener and the commands waiting for it.
+     */
+    private final class Subscription implements Runnable {
+        final GraphCommandListener listener;
+        final OverflowPolicy policy;
+        final BlockingQueue<GraphCommand> queue = new ArrayBlockingQueue<GraphCommand>(listenerQueue);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        // set when a command didn't even make it into the buffer
+        final AtomicBoolean missed = new AtomicBoolean();
+
+        Subscription(GraphCommandListener listener, OverflowPolicy policy) {
+            this.listener = listener;
+            this.policy = policy;
+        }
+
+        /**
+         * @return false if the listener must be disconnected
+         */
+        boolean offer(GraphCommand command) {
+            while (!queue.offer(command)) {
+                if (policy == OverflowPolicy.DISCONNECT) {
+                    return false;
+                }
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+            return true;
+        }
+
+        void schedule() {
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                delivery.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                final List<GraphCommand> commands = new ArrayList<GraphCommand>(queue.size());
+                queue.drainTo(commands);
+                for (GraphCommand command : GraphCommands.coalesce(commands)) {
+                    listener.commandCreated(command);
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Graph command listener {} failed", listener, e);
+            } finally {
+                scheduled.set(false);
+            }
+
+            // commands may have arrived while we were busy
+            schedule();
+        }
+    }
+
+    public GraphCommandDispatcher() {
+        this(DEFAULT_BUFFER, DEFAULT_LISTENER_QUEUE);
+    }
+
+    public GraphCommandDispatcher(int bufferSize, int listenerQueue) {
+        this.buffer = new ArrayBlockingQueue<GraphCommand>(bufferSize);
+        this.listenerQueue = listenerQueue;
+
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "graph-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Called by the graph, never blocks.
+     */
+    public void publish(GraphCommand command) {
+        if (!buffer.offer(command)) {
+            dropped.incrementAndGet();
+
+            // closing a listener may take a while, leave it to the dispatcher thread
+            for (Subscription s : subscriptions) {
+                if (s.policy == OverflowPolicy.DISCONNECT) {
+                    s.missed.set(true);
+                }
+            }
+        }
+    }
+
+    public void addListener(GraphCommandListener listener, OverflowPolicy policy) {
+        subscriptions.add(new Subscription(listener, policy));
+    }
+
+    public void removeListener(GraphCommandListener listener) {
+        for (Subscription s : subscriptions) {
+            if (s.listener == listener) {
+                subscriptions.remove(s);
+            }
+        }
+    }
+
+    public List<GraphCommandListener> listeners() {
+        final List<GraphCommandListener> listeners = new ArrayList<GraphCommandListener>(subscriptions.size());
+        for (Subscription s : subscriptions) {
+            listeners.add(s.listener);
+        }
+        return listeners;
+    }
+
+    /**
+     * Number of commands that didn't reach a listener because the buffer or a listener queue was full.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public void shutdown() {
+        dispatcher.interrupt();
+        delivery.shutdownNow();
+    }
+
+    private void dispatch() {
+        final List<GraphCommand> batch = new ArrayList<GraphCommand>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.drainTo(batch);
+
+            for (Subscription s : subscriptions) {
+                if (s.missed.get()) {
+                    disconnect(s);
+                    continue;
+                }
+                for (GraphCommand command : batch) {
+                    if (!s.offer(command)) {
+                        disconnect(s);
+                        break;
+                    }
+                }
+                s.schedule();
+            }
+            batch.clear();
+        }
+    }
+
+    private void disconnect(Subscription s) {
+        subscriptions.remove(s);
+        LOG.info("Disconnecting graph command listener {}, it can't keep up", s.listener);
+
+        if (s.listener instanceof Closeable) {
+            try {
+                ((Closeable) s.listener).close();
+            } catch (IOException e) {
+                LOG.warn("Could not close graph command listener {}", s.listener, e);
+            }
+        }
+    }
+}
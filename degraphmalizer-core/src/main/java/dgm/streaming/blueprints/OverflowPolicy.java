@@ -0,0 +1,16 @@
+package dgm.streaming.blueprints;
+
+/**
+ * What to do with a {@link GraphCommandListener} that can't keep up with the graph
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the oldest commands the listener didn't get yet, or the newest when the graph's buffer is full
+     */
+    DROP,
+
+    /**
+     * Remove the listener, and close it if it is {@link java.io.Closeable}, as soon as it misses a command
+     */
+    DISCONNECT
+}
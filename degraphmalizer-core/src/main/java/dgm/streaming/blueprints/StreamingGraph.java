@@ -1,5 +1,6 @@
 package dgm.streaming.blueprints;
 
+import dgm.PropertyCodec;
 import dgm.streaming.command.GraphCommand;
 
 import java.util.*;
@@ -10,11 +11,16 @@ import static dgm.streaming.command.GraphCommandBuilder.*;
 
 public final class StreamingGraph implements Graph {
 
-    private final List<GraphCommandListener> graphCommandListeners = new ArrayList<GraphCommandListener>();
+    private final GraphCommandDispatcher dispatcher;
     private final Graph wrapped;
 
     public StreamingGraph(Graph wrapped) {
+        this(wrapped, new GraphCommandDispatcher());
+    }
+
+    public StreamingGraph(Graph wrapped, GraphCommandDispatcher dispatcher) {
         this.wrapped = wrapped;
+        this.dispatcher = dispatcher;
     }
 
     @Override
@@ -108,30 +114,35 @@ public final class StreamingGraph implements Graph {
 
     @Override
     public void shutdown() {
+        dispatcher.shutdown();
         wrapped.shutdown();
     }
 
     public void addGraphCommandListener(GraphCommandListener graphCommandListener) {
-        graphCommandListeners.add(graphCommandListener);
+        addGraphCommandListener(graphCommandListener, OverflowPolicy.DROP);
+    }
+
+    public void addGraphCommandListener(GraphCommandListener graphCommandListener, OverflowPolicy policy) {
+        dispatcher.addListener(graphCommandListener, policy);
     }
 
     public void removeGraphCommandListener(GraphCommandListener graphCommandListener) {
-        graphCommandListeners.remove(graphCommandListener);
+        dispatcher.removeListener(graphCommandListener);
     }
 
     public List<GraphCommandListener> findListeners(GraphCommandListenerFilter filter) {
         List<GraphCommandListener> found = new ArrayList<GraphCommandListener>();
-        for (GraphCommandListener listener : graphCommandListeners) {
+        for (GraphCommandListener listener : dispatcher.listeners()) {
             if (filter.matches(listener)) found.add(listener);
         }
         return Collections.unmodifiableList(found);
     }
 
+    /**
+     * Listeners are called asynchronously, so a slow listener doesn't slow down the graph.
+     */
     protected void notifyGraphCommandListeners(GraphCommand graphCommand) {
-        //simple way to get a consistent view on a possibly changing collection
-        for (GraphCommandListener listener : Collections.unmodifiableList(graphCommandListeners)) {
-            listener.commandCreated(graphCommand);
-        }
+        dispatcher.publish(graphCommand);
     }
 
     public interface GraphCommandListenerFilter
@@ -184,7 +195,8 @@ public final class StreamingGraph implements Graph {
 
         @Override
         public void setProperty(String key, Object value) {
-            notifyGraphCommandListeners(updateNodeCommand(node(wrapped.getId().toString()).set(key, value)).build());
+            // clients get the value itself, not the encoded bytes
+            notifyGraphCommandListeners(updateNodeCommand(node(wrapped.getId().toString()).set(key, PropertyCodec.scalar(value))).build());
             wrapped.setProperty(key, value);
         }
 
@@ -241,7 +253,7 @@ public final class StreamingGraph implements Graph {
 
         @Override
         public void setProperty(String key, Object value) {
-            NodeBuilder edgeBuilder = node(wrapped.getId().toString()).set(key, value);
+            NodeBuilder edgeBuilder = node(wrapped.getId().toString()).set(key, PropertyCodec.scalar(value));
             notifyGraphCommandListeners(updateEdgeCommand(edgeBuilder).build());
             wrapped.setProperty(key, value);
         }
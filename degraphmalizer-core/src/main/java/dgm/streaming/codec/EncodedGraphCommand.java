@@ -0,0 +1,22 @@
+package dgm.streaming.codec;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * A {@link dgm.streaming.command.GraphCommand} that was already serialized, including the line terminator. It can be
+ * written to any number of channels, each gets its own view on the same read-only bytes.
+ */
+public final class EncodedGraphCommand {
+    private final ChannelBuffer content;
+
+    EncodedGraphCommand(ChannelBuffer content) {
+        this.content = content;
+    }
+
+    /**
+     * A view on the encoded command with its own reader index.
+     */
+    public ChannelBuffer content() {
+        return content.duplicate();
+    }
+}
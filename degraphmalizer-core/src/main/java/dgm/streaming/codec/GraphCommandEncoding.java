@@ -0,0 +1,69 @@
+package dgm.streaming.codec;
+
+import dgm.streaming.command.GraphCommand;
+import dgm.streaming.command.GraphNode;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Serializes {@link GraphCommand}s for the streaming clients.
+ * <p/>
+ * The same command is usually sent to every connected client, so the encoded form is remembered for as long as the
+ * command object is in use and only the first client pays for serializing it.
+ */
+public final class GraphCommandEncoding {
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    // appended to each command for Gephi, the same bytes the AddCRLFDecoder appends
+    private static final byte[] TERMINATOR = new byte[]{10, 13};
+
+    // weak keys compare on identity, commands are not equal to anything but themselves anyway
+    private static final LoadingCache<GraphCommand, EncodedGraphCommand> ENCODED = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(10000)
+            .build(new CacheLoader<GraphCommand, EncodedGraphCommand>() {
+                @Override
+                public EncodedGraphCommand load(GraphCommand command) throws IOException {
+                    final byte[] json = toJson(command);
+                    final byte[] bytes = new byte[json.length + TERMINATOR.length];
+                    System.arraycopy(json, 0, bytes, 0, json.length);
+                    System.arraycopy(TERMINATOR, 0, bytes, json.length, TERMINATOR.length);
+                    return new EncodedGraphCommand(ChannelBuffers.unmodifiableBuffer(ChannelBuffers.wrappedBuffer(bytes)));
+                }
+            });
+
+    private GraphCommandEncoding() {}
+
+    public static EncodedGraphCommand encode(GraphCommand command) throws IOException {
+        try {
+            return ENCODED.get(command);
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    /**
+     * The command as JSON: {@code {"<type>": {"<name>": {properties}, ...}}}
+     */
+    public static byte[] toJson(GraphCommand command) throws IOException {
+        final Map<String, Object> nodes = new LinkedHashMap<String, Object>();
+        for (GraphNode graphNode : command.getNodes()) {
+            nodes.put(graphNode.getName(), graphNode.getProperties());
+        }
+
+        final Map<String, Object> json = new LinkedHashMap<String, Object>(1);
+        json.put(command.getCommandType().toString(), nodes);
+
+        return OM.writeValueAsBytes(json);
+    }
+}
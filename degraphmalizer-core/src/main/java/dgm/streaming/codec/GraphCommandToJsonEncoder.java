@@ -1,19 +1,16 @@
 package dgm.streaming.codec;
 
 import dgm.streaming.command.GraphCommand;
-import dgm.streaming.command.GraphNode;
 
 import java.io.IOException;
-import java.io.StringWriter;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
+/**
+ * Encodes a {@link GraphCommand} as JSON, passing the {@link EncodedGraphCommand} on to {@link ToHttpChunkEncoder}.
+ */
 public class GraphCommandToJsonEncoder extends OneToOneEncoder {
 
     @Override
@@ -22,27 +19,7 @@ public class GraphCommandToJsonEncoder extends OneToOneEncoder {
         if (!(msg instanceof GraphCommand)) {
             return msg;
         } else {
-            GraphCommand graphCommand = (GraphCommand) msg;
-            return encodeGraphCommand(graphCommand);
-        }
-    }
-
-    private String encodeGraphCommand(final GraphCommand graphCommand) throws IOException
-    {
-        Map<String, Object> json = new HashMap<String, Object>();
-        Map<String, Object> nodes = new HashMap<String, Object>();
-
-        for (GraphNode graphNode : graphCommand.getNodes()) {
-            nodes.put(graphNode.getName(), graphNode.getProperties());
+            return GraphCommandEncoding.encode((GraphCommand) msg);
         }
-
-        json.put(graphCommand.getCommandType().toString(), nodes);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        StringWriter writer = new StringWriter();
-
-        objectMapper.writeValue(writer, json);
-
-        return writer.toString();
     }
 }
@@ -13,6 +13,11 @@ public class ToHttpChunkEncoder extends OneToOneEncoder {
 
     @Override
     protected final Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
+        // already encoded and terminated, share the bytes instead of copying them for every channel
+        if (msg instanceof EncodedGraphCommand) {
+            return new DefaultHttpChunk(((EncodedGraphCommand) msg).content());
+        }
+
         if (!(msg instanceof ChannelBuffer)) {
             return msg;
         }
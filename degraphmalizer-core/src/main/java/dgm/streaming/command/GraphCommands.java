@@ -0,0 +1,62 @@
+package dgm.streaming.command;
+
+import java.util.*;
+
+/**
+ * Utilities for sequences of {@link GraphCommand}s
+ */
+public final class GraphCommands {
+    private GraphCommands() {}
+
+    /**
+     * Merge repeated property changes of the same node or edge into the first of them, so a client that fell behind
+     * only sees the latest values. Changes are never merged across another command for the same node or edge, so the
+     * result has the same effect as the input.
+     */
+    public static List<GraphCommand> coalesce(List<GraphCommand> commands) {
+        final List<GraphCommand> result = new ArrayList<GraphCommand>(commands.size());
+
+        // position in the result of the last change of each node or edge that can still be merged into
+        final Map<String, Integer> mergeable = new HashMap<String, Integer>();
+
+        for (GraphCommand command : commands) {
+            if (isChange(command) && command.getNodes().size() == 1) {
+                final GraphNode node = command.getNodes().get(0);
+                final String key = command.getCommandType() + node.getName();
+                final Integer i = mergeable.get(key);
+
+                if (i != null) {
+                    result.set(i, merge(result.get(i), node));
+                    continue;
+                }
+
+                mergeable.put(key, result.size());
+                result.add(command);
+                continue;
+            }
+
+            // anything else happening to an element ends the changes that can be merged
+            for (GraphNode node : command.getNodes()) {
+                mergeable.remove(GraphCommandType.ChangeNode + node.getName());
+                mergeable.remove(GraphCommandType.ChangeEdge + node.getName());
+            }
+            result.add(command);
+        }
+
+        return result;
+    }
+
+    private static boolean isChange(GraphCommand command) {
+        return command.getCommandType() == GraphCommandType.ChangeNode || command.getCommandType() == GraphCommandType.ChangeEdge;
+    }
+
+    private static GraphCommand merge(GraphCommand earlier, GraphNode later) {
+        final GraphNode node = earlier.getNodes().get(0);
+
+        // later values win, removed properties (null) included
+        final Map<String, Object> properties = new HashMap<String, Object>(node.getProperties());
+        properties.putAll(later.getProperties());
+
+        return new GraphCommand(earlier.getCommandType(), Collections.singletonList(new GraphNode(node.getName(), properties)));
+    }
+}
@@ -2,8 +2,11 @@ package dgm.streaming.requestmapper;
 
 import org.jboss.netty.channel.group.ChannelGroup;
 import dgm.streaming.blueprints.GraphCommandListener;
+import dgm.streaming.codec.GraphCommandEncoding;
 import dgm.streaming.command.GraphCommand;
 
+import java.io.IOException;
+
 /**
  * @author Ernst Bunders
  */
@@ -16,6 +19,11 @@ public class ToChannelGroupListener implements GraphCommandListener {
 
     @Override
     public final void commandCreated(GraphCommand graphCommand) {
-        channelGroup.write(graphCommand);
+        // encode once for all channels in the group
+        try {
+            channelGroup.write(GraphCommandEncoding.encode(graphCommand));
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not encode " + graphCommand, e);
+        }
     }
 }
@@ -3,11 +3,14 @@ package dgm.streaming.requestmapper.handlers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import dgm.streaming.blueprints.GraphCommandListener;
+import dgm.streaming.blueprints.OverflowPolicy;
 import dgm.streaming.blueprints.StreamingGraph;
 import dgm.streaming.command.GraphCommand;
 import dgm.streaming.requestmapper.HttpRequestMapper;
 import dgm.streaming.requestmapper.RequestHandlerException;
 
+import java.io.Closeable;
+
 /**
  * @author Ernst Bunders
  */
@@ -22,7 +25,8 @@ public class GlobalCommandStreamRequestHandler implements HttpRequestMapper.Requ
 
     @Override
     public final void handleRequest(HttpRequest request, Channel channel) throws RequestHandlerException {
-        streamingGraph.addGraphCommandListener(new ChannelpushingGraphCommandListener(channel));
+        // a client that missed commands shows a wrong graph, better to drop it so it reconnects
+        streamingGraph.addGraphCommandListener(new ChannelpushingGraphCommandListener(channel), OverflowPolicy.DISCONNECT);
     }
 
     @Override
@@ -30,7 +34,7 @@ public class GlobalCommandStreamRequestHandler implements HttpRequestMapper.Requ
         return PATH_REGEX;
     }
 
-    public final class ChannelpushingGraphCommandListener implements GraphCommandListener {
+    public final class ChannelpushingGraphCommandListener implements GraphCommandListener, Closeable {
         private final Channel channel;
 
         private ChannelpushingGraphCommandListener(Channel channel) {
@@ -46,5 +50,10 @@ public class GlobalCommandStreamRequestHandler implements HttpRequestMapper.Requ
             return channel;
         }
 
+        @Override
+        public void close() {
+            channel.close();
+        }
+
     }
 }
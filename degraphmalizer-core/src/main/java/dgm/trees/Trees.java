@@ -8,6 +8,8 @@ import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
 
 import com.google.common.base.Function;
@@ -89,6 +91,10 @@ public final class Trees {
 
     /**
      * In parallel, map a function over a tree
+     * <p/>
+     * When called from a task running in the {@link ForkJoinPool} given as executor, the jobs are forked instead of
+     * submitted. Waiting for a forked job then runs it (or other queued jobs) on the waiting thread, so nested calls
+     * cannot starve the pool.
      *
      * @param executor Where to submit the jobs to
      * @param fn       The function applied to every node in the tree
@@ -106,16 +112,21 @@ public final class Trees {
         final Function<A, Future<B>> toJob = new Function<A, Future<B>>() {
             @Override
             public Future<B> apply(final A a) {
-                return executor.submit(new Callable<B>() {
+                final Callable<B> job = new Callable<B>() {
                     @Override
                     public B call() throws Exception {
                         return fn.apply(a);
                     }
-                });
+                };
+
+                if (executor instanceof ForkJoinPool && ForkJoinTask.getPool() == executor) {
+                    return ForkJoinTask.adapt(job).fork();
+                }
+                return executor.submit(job);
             }
         };
 
-        // get automatically waits for jobs to finish
+        // get automatically waits for jobs to finish, and runs forked jobs that did not start yet
         final Function<Future<B>, B> waitDone = new Function<Future<B>, B>() {
             @Override
             public B apply(final Future<B> b) {
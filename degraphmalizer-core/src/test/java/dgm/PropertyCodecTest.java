@@ -0,0 +1,68 @@
+package dgm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+import static dgm.GraphUtilities.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+@Test
+public class PropertyCodecTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    public void testScalarsAreStoredNatively() throws IOException
+    {
+        assertThat(PropertyCodec.encode(om.readTree("3"))).isEqualTo(3);
+        assertThat(PropertyCodec.encode(om.readTree("30000000000"))).isEqualTo(30000000000L);
+        assertThat(PropertyCodec.encode(om.readTree("1.5"))).isEqualTo(1.5);
+        assertThat(PropertyCodec.encode(om.readTree("true"))).isEqualTo(Boolean.TRUE);
+        assertThat(PropertyCodec.encode(om.readTree("\"3\""))).isEqualTo("3");
+        assertThat(PropertyCodec.encode(om.readTree("{\"a\":[1,2]}"))).isInstanceOf(byte[].class);
+    }
+
+    public void testRoundTrip() throws IOException
+    {
+        final Vertex v = new TinkerGraph().addVertex(null);
+        for (String json : new String[]{"3", "30000000000", "1.5", "true", "\"3\"", "\"abc\"", "null", "[1,\"a\",{}]", "{\"a\":{\"b\":[true]}}"})
+        {
+            final JsonNode value = om.readTree(json);
+            setProperty(v, "p", value);
+            assertThat(getProperty(om, v, "p").equals(value)).isTrue();
+        }
+
+        setProperty(v, "p", om.readTree("42"));
+        assertThat(PropertyCodec.scalar(v.getProperty("p"))).isEqualTo(42);
+        setProperty(v, "p", om.readTree("\"42\""));
+        assertThat(PropertyCodec.scalar(v.getProperty("p"))).isEqualTo("42");
+        setProperty(v, "p", om.readTree("[1]"));
+        assertThat(PropertyCodec.scalar(v.getProperty("p")).equals(om.readTree("[1]"))).isTrue();
+    }
+
+    public void testReadsTextProperties() throws IOException
+    {
+        // as written before the codec existed
+        final Vertex v = new TinkerGraph().addVertex(null);
+        v.setProperty("number", "3");
+        v.setProperty("object", "{\"a\":2}");
+        v.setProperty("text", "abc");
+
+        assertThat(getProperty(om, v, "number").equals(om.readTree("3"))).isTrue();
+        assertThat(getProperty(om, v, "object").equals(om.readTree("{\"a\":2}"))).isTrue();
+        assertThat(getProperty(om, v, "text").equals(om.readTree("\"abc\""))).isTrue();
+        assertThat(getProperty(om, v, "number").intValue()).isEqualTo(3);
+
+        // writing one property converts the others
+        setProperty(v, "other", om.readTree("\"3\""));
+        assertThat(v.getProperty("number")).isEqualTo(3);
+        assertThat(v.getProperty(PROPERTY_CODEC)).isEqualTo(PropertyCodec.VERSION);
+        assertThat(getProperty(om, v, "object").equals(om.readTree("{\"a\":2}"))).isTrue();
+        assertThat(getProperty(om, v, "text").equals(om.readTree("\"abc\""))).isTrue();
+        assertThat(getProperty(om, v, "other").equals(om.readTree("\"3\""))).isTrue();
+    }
+}
@@ -0,0 +1,75 @@
+package dgm.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+import dgm.configuration.TypeFingerprint.Part;
+import dgm.configuration.javascript.JavascriptConfiguration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ConfigurationChangeTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    File folder;
+
+    @BeforeMethod
+    public void createFolder()
+    {
+        folder = Files.createTempDir();
+    }
+
+    @Test
+    public void testChangedTypes() throws IOException
+    {
+        write("target", "a", "function(doc) { return doc; }");
+        write("target", "b", "function(doc) { return doc; }");
+        write("gone", "c", "function(doc) { return doc; }");
+        final Configuration before = load();
+
+        write("target", "a", "function(doc) { return { changed: true }; }");
+        new File(folder, "gone").listFiles()[0].delete();
+        new File(folder, "gone").delete();
+        write("other", "d", "function(doc) { return doc; }");
+        final Configuration after = load();
+
+        final ConfigurationChange change = ConfigurationChange.between(before, after);
+        final Map<TypeConfig, Set<Part>> changed = change.typesChanged();
+        assertThat(changed).hasSize(2);
+
+        for (Map.Entry<TypeConfig, Set<Part>> e : changed.entrySet())
+        {
+            if (e.getKey().name().equals("a"))
+                assertThat(e.getValue()).containsOnly(Part.TRANSFORM);
+            else
+                assertThat(e.getKey().name()).isEqualTo("d");
+        }
+
+        assertThat(Iterables.getOnlyElement(change.typesRemoved()).name()).isEqualTo("c");
+        assertThat(change.indexesAdded()).containsOnly("other");
+        assertThat(change.indexesRemoved()).containsOnly("gone");
+        assertThat(change.indexesChanged()).containsOnly("target");
+    }
+
+    private Configuration load() throws IOException
+    {
+        return new JavascriptConfiguration(om, "file:" + folder.getAbsolutePath());
+    }
+
+    private void write(String index, String type, String transform) throws IOException
+    {
+        final File dir = new File(folder, index);
+        dir.mkdirs();
+        Files.write("({ sourceIndex: 'source', sourceType: '" + type + "', transform: " + transform + " })",
+                new File(dir, type + ".conf.js"), Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package dgm.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import dgm.configuration.javascript.JavascriptConfiguration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class RoutingTableTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    File folder;
+
+    @BeforeMethod
+    public void createFolder()
+    {
+        folder = Files.createTempDir();
+    }
+
+    @Test
+    public void testConfigsPerSourceIndexAndType() throws IOException
+    {
+        write("first", "a", "source", "x", "");
+        write("second", "b", "source", "x", ", walks: { up: { direction: 'OUT', maxDistance: 3, properties: {} } }");
+        write("second", "c", "source", "y", "");
+        write("second", "d", "other", "x", "");
+        final JavascriptConfiguration cfg = load();
+        final RoutingTable routing = cfg.routing();
+
+        final List<TypeConfig> x = routing.configsFor("source", "x");
+        assertThat(x).hasSize(2);
+        assertThat(names(x)).containsOnly("a", "b");
+        assertThat(routing.configsFor("source", "x")).isSameAs(x);
+
+        assertThat(names(routing.configsFor("source", "y"))).containsOnly("c");
+        assertThat(names(routing.configsFor("source", null))).containsOnly("a", "b", "c");
+        assertThat(routing.configsFor("source", "z")).isEmpty();
+        assertThat(routing.configsFor("unknown", null)).isEmpty();
+
+        final TypeConfig b = cfg.indices().get("second").types().get("b");
+        assertThat(routing.maximalWalkDepth(b)).isEqualTo(3);
+        assertThat(routing.maximalWalkDepth(cfg.indices().get("first").types().get("a"))).isEqualTo(0);
+    }
+
+    @Test
+    public void testReloadBuildsNewTable() throws IOException
+    {
+        write("first", "a", "source", "x", "");
+        final JavascriptConfiguration before = load();
+
+        write("second", "b", "source", "x", "");
+        final JavascriptConfiguration after = before.reload(om, "file:" + folder.getAbsolutePath(), "second");
+
+        assertThat(after.routing()).isNotSameAs(before.routing());
+        assertThat(names(after.routing().configsFor("source", "x"))).containsOnly("a", "b");
+        assertThat(names(before.routing().configsFor("source", "x"))).containsOnly("a");
+    }
+
+    private static String[] names(List<TypeConfig> configs)
+    {
+        final String[] names = new String[configs.size()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = configs.get(i).name();
+        return names;
+    }
+
+    private JavascriptConfiguration load() throws IOException
+    {
+        return new JavascriptConfiguration(om, "file:" + folder.getAbsolutePath());
+    }
+
+    private void write(String index, String type, String sourceIndex, String sourceType, String rest) throws IOException
+    {
+        final File dir = new File(folder, index);
+        dir.mkdirs();
+        Files.write("({ sourceIndex: '" + sourceIndex + "', sourceType: '" + sourceType + "'" + rest + " })",
+                new File(dir, type + ".conf.js"), Charsets.UTF_8);
+    }
+}
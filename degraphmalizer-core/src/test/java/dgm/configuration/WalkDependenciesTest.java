@@ -0,0 +1,56 @@
+package dgm.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Direction;
+import dgm.configuration.javascript.JavascriptConfiguration;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class WalkDependenciesTest
+{
+    WalkDependencies dependencies;
+
+    @BeforeClass
+    public void loadConfiguration() throws IOException
+    {
+        final Configuration cfg = new JavascriptConfiguration(new ObjectMapper(), "classpath:walk-dependencies");
+        dependencies = Configurations.dependencies(cfg);
+
+        // computed once per configuration
+        assertThat(Configurations.dependencies(cfg)).isSameAs(dependencies);
+    }
+
+    @Test
+    public void testTraversalDepth()
+    {
+        // OUT walks of length 2 are found traversing IN, IN walks of length 1 traversing OUT
+        assertThat(dependencies.depth(Direction.IN)).isEqualTo(2);
+        assertThat(dependencies.depth(Direction.OUT)).isEqualTo(1);
+    }
+
+    @Test
+    public void testDependents()
+    {
+        final List<TypeConfig> up = dependencies.dependents("deps-index", "up", Direction.IN, 2);
+        assertThat(up).hasSize(1);
+        assertThat(up.get(0).sourceType()).isEqualTo("up");
+
+        // too far away
+        assertThat(dependencies.dependents("deps-index", "up", Direction.IN, 3)).isEmpty();
+
+        // wrong direction, an OUT walk doesn't see documents downstream
+        assertThat(dependencies.dependents("deps-index", "up", Direction.OUT, 1)).isEmpty();
+
+        assertThat(dependencies.dependents("deps-index", "down", Direction.OUT, 1)).hasSize(1);
+        assertThat(dependencies.dependents("deps-index", "down", Direction.IN, 1)).isEmpty();
+
+        // no walks at all
+        assertThat(dependencies.dependents("deps-index", "plain", Direction.IN, 1)).isEmpty();
+        assertThat(dependencies.dependents("deps-index", "plain", Direction.OUT, 1)).isEmpty();
+    }
+}
@@ -0,0 +1,78 @@
+package dgm.configuration.javascript;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import dgm.configuration.IndexConfig;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class JavascriptConfigurationReloadTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    File folder;
+
+    @BeforeMethod
+    public void createFolder()
+    {
+        folder = Files.createTempDir();
+    }
+
+    @Test
+    public void testOnlyChangedIndexIsCompiled() throws IOException
+    {
+        write("changed", "a", "function(doc) { return doc; }");
+        write("same", "b", "function(doc) { return doc; }");
+        final JavascriptConfiguration before = new JavascriptConfiguration(om, directory());
+        final IndexConfig changed = before.indices().get("changed");
+        final IndexConfig same = before.indices().get("same");
+
+        write("changed", "a", "function(doc) { return { changed: true }; }");
+        final JavascriptConfiguration after = before.reload(om, directory(), "changed");
+
+        assertThat(after).isNotSameAs(before);
+        assertThat(after.indices().get("same")).isSameAs(same);
+        assertThat(after.indices().get("changed")).isNotSameAs(changed);
+        assertThat(after.indices().get("changed").types().get("a").fingerprint())
+                .isNotEqualTo(changed.types().get("a").fingerprint());
+
+        // the old snapshot is left alone
+        assertThat(before.indices().get("changed")).isSameAs(changed);
+    }
+
+    @Test
+    public void testAddedAndRemovedIndex() throws IOException
+    {
+        write("gone", "a", "function(doc) { return doc; }");
+        final JavascriptConfiguration before = new JavascriptConfiguration(om, directory());
+
+        write("added", "b", "function(doc) { return doc; }");
+        final JavascriptConfiguration added = before.reload(om, directory(), "added");
+        assertThat(added.indices().keySet()).containsOnly("gone", "added");
+
+        new File(new File(folder, "gone"), "a.conf.js").delete();
+        new File(folder, "gone").delete();
+        final JavascriptConfiguration removed = added.reload(om, directory(), "gone");
+        assertThat(removed.indices().keySet()).containsOnly("added");
+        assertThat(added.indices().keySet()).containsOnly("gone", "added");
+    }
+
+    private String directory()
+    {
+        return "file:" + folder.getAbsolutePath();
+    }
+
+    private void write(String index, String type, String transform) throws IOException
+    {
+        final File dir = new File(folder, index);
+        dir.mkdirs();
+        Files.write("({ sourceIndex: 'source', sourceType: '" + type + "', transform: " + transform + " })",
+                new File(dir, type + ".conf.js"), Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package dgm.configuration.javascript;
+
+import dgm.configuration.TypeFingerprint;
+import dgm.configuration.TypeFingerprint.Part;
+import org.testng.annotations.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class JavascriptFingerprintsTest
+{
+    static final String CONFIG =
+            "// helpers\n" +
+            "var upper = function(s) { return s.toUpperCase(); };\n" +
+            "({\n" +
+            "    sourceIndex: 'source',\n" +
+            "    sourceType: 'doc',\n" +
+            "    filter: function(doc) { return doc.published; },\n" +
+            "    extract: function(doc, subgraph) { subgraph.setProperty('x', doc.x); },\n" +
+            "    transform: function(doc) { return { title: upper(doc.title) }; },\n" +
+            "    walks: { 'up': { direction: 'OUT', properties: {} } }\n" +
+            "})\n";
+
+    @Test
+    public void testSameSource()
+    {
+        assertThat(fingerprint(CONFIG).changedSince(fingerprint(CONFIG))).isEmpty();
+        assertThat(fingerprint(CONFIG)).isEqualTo(fingerprint(CONFIG));
+    }
+
+    @Test
+    public void testOnlyChangedPart()
+    {
+        final TypeFingerprint before = fingerprint(CONFIG);
+
+        final TypeFingerprint transform = fingerprint(CONFIG.replace("title: upper", "name: upper"));
+        assertThat(transform.changedSince(before)).containsOnly(Part.TRANSFORM);
+        assertThat(transform.get(Part.EXTRACT)).isEqualTo(before.get(Part.EXTRACT));
+
+        final TypeFingerprint extract = fingerprint(CONFIG.replace("'x', doc.x", "'y', doc.y"));
+        assertThat(extract.changedSince(before)).containsOnly(Part.EXTRACT);
+
+        final TypeFingerprint walks = fingerprint(CONFIG.replace("'OUT'", "'IN'"));
+        assertThat(walks.changedSince(before)).containsOnly(Part.WALKS);
+    }
+
+    @Test
+    public void testEverythingElseChangesAllParts()
+    {
+        final TypeFingerprint before = fingerprint(CONFIG);
+
+        // a helper may be used by any part
+        assertThat(fingerprint(CONFIG.replace("toUpperCase", "toLowerCase")).changedSince(before)).containsOnly(Part.values());
+        assertThat(fingerprint(CONFIG.replace("sourceType: 'doc'", "sourceType: 'other'")).changedSince(before)).containsOnly(Part.values());
+        assertThat(JavascriptFingerprints.of("other-libraries", "index", "type", CONFIG, "test.conf.js").changedSince(before)).containsOnly(Part.values());
+        assertThat(fingerprint(CONFIG).changedSince(null)).containsOnly(Part.values());
+    }
+
+    private static TypeFingerprint fingerprint(String source)
+    {
+        return JavascriptFingerprints.of("libraries", "index", "type", source, "test.conf.js");
+    }
+}
@@ -0,0 +1,106 @@
+package dgm.configuration.javascript;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ScriptCacheTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    File folder;
+    File cacheFolder;
+
+    @BeforeMethod
+    public void createFolders()
+    {
+        folder = Files.createTempDir();
+        cacheFolder = new File(Files.createTempDir(), "jscache");
+    }
+
+    @Test
+    public void testCompiledScriptIsStoredAndLoaded() throws IOException
+    {
+        assertThat(run(new ScriptCache(cacheFolder), "6 * 7")).isEqualTo(42.0);
+        assertThat(cacheFolder.list()).hasSize(1);
+
+        // a new cache finds the classes of the first one
+        assertThat(run(new ScriptCache(cacheFolder), "6 * 7")).isEqualTo(42.0);
+        assertThat(cacheFolder.list()).hasSize(1);
+
+        assertThat(run(new ScriptCache(cacheFolder), "6 * 8")).isEqualTo(48.0);
+        assertThat(cacheFolder.list()).hasSize(2);
+    }
+
+    @Test
+    public void testUnreadableCacheFileIsReplaced() throws IOException
+    {
+        run(new ScriptCache(cacheFolder), "6 * 7");
+        final File cached = cacheFolder.listFiles()[0];
+        Files.write("garbage", cached, Charsets.UTF_8);
+
+        assertThat(run(new ScriptCache(cacheFolder), "6 * 7")).isEqualTo(42.0);
+        assertThat(cached.length()).isGreaterThan(7);
+    }
+
+    @Test
+    public void testIndicesShareCompiledLibraries() throws IOException
+    {
+        final File lib = new File(cacheFolder.getParentFile(), "twice.js");
+        Files.write("function twice(x) { return x * 2; }", lib, Charsets.UTF_8);
+        write("a", "function(doc) { return { value: twice(doc.value) }; }");
+        write("b", "function(doc) { return { value: twice(twice(doc.value)) }; }");
+
+        final URL library = lib.toURI().toURL();
+        final JavascriptConfiguration first = new JavascriptConfiguration(om, "file:" + folder.getAbsolutePath(), new ScriptCache(cacheFolder), library);
+        final JavascriptConfiguration second = new JavascriptConfiguration(om, "file:" + folder.getAbsolutePath(), new ScriptCache(cacheFolder), library);
+
+        for (JavascriptConfiguration cfg : new JavascriptConfiguration[]{first, second})
+        {
+            assertThat(transform(cfg, "a")).isEqualTo(42);
+            assertThat(transform(cfg, "b")).isEqualTo(84);
+        }
+
+        // the library and both configuration files
+        assertThat(cacheFolder.list()).hasSize(3);
+    }
+
+    private double run(ScriptCache cache, String source) throws IOException
+    {
+        try
+        {
+            final Context cx = Context.enter();
+            final Scriptable scope = cx.initStandardObjects();
+            return Context.toNumber(cache.compile(cx, source, "test.js").exec(cx, scope));
+        }
+        finally
+        {
+            Context.exit();
+        }
+    }
+
+    private int transform(JavascriptConfiguration cfg, String index) throws IOException
+    {
+        final JsonNode result = cfg.indices().get(index).types().get("t").transform(om.readTree("{\"value\": 21}"));
+        return result.get("value").asInt();
+    }
+
+    private void write(String index, String transform) throws IOException
+    {
+        final File dir = new File(folder, index);
+        dir.mkdirs();
+        Files.write("({ sourceIndex: 'source', sourceType: 't', transform: " + transform + " })",
+                new File(dir, "t.conf.js"), Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,179 @@
+package dgm.degraphmalizr;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.inject.Provider;
+import com.google.inject.util.Providers;
+import dgm.Degraphmalizr;
+import dgm.ID;
+import dgm.configuration.Configuration;
+import dgm.configuration.IndexConfig;
+import dgm.configuration.RoutingTable;
+import dgm.degraphmalizr.degraphmalize.*;
+import dgm.degraphmalizr.recompute.RecomputeResult;
+import dgm.degraphmalizr.recompute.TargetFingerprints;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class BulkDegraphmalizerTest
+{
+    /**
+     * Keeps every document in flight until the test completes it.
+     */
+    static class PendingDegraphmalizr implements Degraphmalizr
+    {
+        final BlockingQueue<Map.Entry<ID, DegraphmalizeCallback>> pending = new LinkedBlockingQueue<Map.Entry<ID, DegraphmalizeCallback>>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public Future<DegraphmalizeResult> degraphmalize(DegraphmalizeRequestType requestType, DegraphmalizeRequestScope requestScope, ID id, DegraphmalizeCallback callback)
+        {
+            final int n = inFlight.incrementAndGet();
+            if (n > maxInFlight.get())
+                maxInFlight.set(n);
+            pending.add(new AbstractMap.SimpleImmutableEntry<ID, DegraphmalizeCallback>(id, callback));
+            return SettableFuture.create();
+        }
+
+        @Override
+        public void degraphmalizeAll(List<ID> ids, DegraphmalizeCallback callback)
+        {
+            for (ID id : ids)
+                degraphmalize(DegraphmalizeRequestType.UPDATE, DegraphmalizeRequestScope.DOCUMENT, id, callback);
+        }
+
+        /**
+         * @return false if nothing was in flight
+         */
+        boolean completeOne() throws InterruptedException
+        {
+            final Map.Entry<ID, DegraphmalizeCallback> p = pending.poll(100, TimeUnit.MILLISECONDS);
+            if (p == null)
+                return false;
+            inFlight.decrementAndGet();
+            p.getValue().complete(new DegraphmalizeResult(p.getKey(), Collections.<Future<RecomputeResult>>emptyList()));
+            return true;
+        }
+    }
+
+    /**
+     * A configuration without indices, so there are no targets.
+     */
+    public static Provider<Configuration> noConfiguration()
+    {
+        return Providers.<Configuration>of(new Configuration()
+        {
+            @Override
+            public Map<String, ? extends IndexConfig> indices()
+            {
+                return Collections.emptyMap();
+            }
+
+            @Override
+            public RoutingTable routing()
+            {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Reads the ids from a list instead of elasticsearch.
+     */
+    static class ListBulkDegraphmalizer extends BulkDegraphmalizer
+    {
+        final List<List<ID>> pages;
+
+        ListBulkDegraphmalizer(Degraphmalizr degraphmalizr, List<List<ID>> pages)
+        {
+            super(null, degraphmalizr, noConfiguration(), new TargetFingerprints(0));
+            this.pages = pages;
+        }
+
+        @Override
+        Iterator<List<ID>> scroll(Progress progress)
+        {
+            return pages.iterator();
+        }
+    }
+
+    PendingDegraphmalizr degraphmalizr;
+    BulkDegraphmalizer bulk;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        degraphmalizr = new PendingDegraphmalizr();
+        final List<List<ID>> pages = new ArrayList<List<ID>>();
+        for (int p = 0; p < 5; p++)
+        {
+            final List<ID> page = new ArrayList<ID>();
+            for (int i = 0; i < 4; i++)
+                page.add(new ID("i", "t", "d" + p + "-" + i, 1));
+            pages.add(page);
+        }
+        bulk = new ListBulkDegraphmalizer(degraphmalizr, pages);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        bulk.stop();
+    }
+
+    @Test
+    public void testBoundsDocumentsInFlight() throws Exception
+    {
+        final int inFlight = 3;
+        final Future<BulkDegraphmalizer.Progress> job = Executors.newSingleThreadExecutor().submit(new Callable<BulkDegraphmalizer.Progress>()
+        {
+            @Override
+            public BulkDegraphmalizer.Progress call() throws Exception
+            {
+                return bulk.run(new String[]{"i"}, null, inFlight, new LoggingDegraphmalizeCallback());
+            }
+        });
+
+        // reading stops when the bound is reached
+        while (degraphmalizr.pending.size() < inFlight)
+            Thread.sleep(10);
+        Thread.sleep(200);
+        assertThat(degraphmalizr.pending).hasSize(inFlight);
+
+        while (!job.isDone())
+            degraphmalizr.completeOne();
+
+        final BulkDegraphmalizer.Progress progress = job.get();
+        assertThat(degraphmalizr.maxInFlight.get()).isEqualTo(inFlight);
+        assertThat(progress.submitted()).isEqualTo(20);
+        assertThat(progress.completed()).isEqualTo(20);
+        assertThat(progress.finished()).isTrue();
+        assertThat(progress.error()).isNull();
+    }
+
+    @Test
+    public void testOneJobAtATime() throws InterruptedException
+    {
+        final BulkDegraphmalizer.Progress first = bulk.submit(new String[]{"i"}, null);
+        assertThat(first).isNotNull();
+
+        // still running, the documents are in flight
+        assertThat(bulk.submit(new String[]{"i"}, "t")).isNull();
+        assertThat(bulk.current()).isSameAs(first);
+
+        while (!first.finished())
+            degraphmalizr.completeOne();
+        assertThat(first.completed()).isEqualTo(20);
+
+        final BulkDegraphmalizer.Progress second = bulk.submit(new String[]{"i"}, "t");
+        assertThat(second).isNotNull().isNotSameAs(first);
+        assertThat(bulk.current()).isSameAs(second);
+    }
+}
@@ -0,0 +1,185 @@
+package dgm.degraphmalizr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
+import com.google.inject.Provider;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import dgm.Degraphmalizr;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.configuration.Configuration;
+import dgm.configuration.ConfigurationChange;
+import dgm.configuration.TypeFingerprint.Part;
+import dgm.configuration.javascript.JavascriptConfiguration;
+import dgm.degraphmalizr.degraphmalize.*;
+import dgm.degraphmalizr.recompute.RecomputeCallback;
+import dgm.degraphmalizr.recompute.RecomputeRequest;
+import dgm.degraphmalizr.recompute.RecomputeResult;
+import dgm.degraphmalizr.recompute.Recomputer;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SelectiveReindexerTest
+{
+    static final String IDENTITY = "function(doc) { return doc; }";
+    static final String NO_EXTRACT = "function(doc, subgraph) { }";
+
+    final ObjectMapper om = new ObjectMapper();
+
+    /**
+     * Records the degraphmalized documents, they complete right away.
+     */
+    static class RecordingDegraphmalizr implements Degraphmalizr
+    {
+        final List<ID> degraphmalized = new CopyOnWriteArrayList<ID>();
+
+        @Override
+        public Future<DegraphmalizeResult> degraphmalize(DegraphmalizeRequestType requestType, DegraphmalizeRequestScope requestScope, ID id, DegraphmalizeCallback callback)
+        {
+            assertThat(requestType).isEqualTo(DegraphmalizeRequestType.UPDATE);
+            degraphmalized.add(id);
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public void degraphmalizeAll(List<ID> ids, DegraphmalizeCallback callback)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Records the recomputed sources, and counts down when the fence type is recomputed.
+     */
+    static class RecordingRecomputer implements Recomputer
+    {
+        final List<ID> recomputed = new CopyOnWriteArrayList<ID>();
+        final CountDownLatch fenced = new CountDownLatch(1);
+
+        @Override
+        public RecomputeResult recompute(RecomputeRequest request, RecomputeCallback callback)
+        {
+            if (request.config.name().equals("fence"))
+                fenced.countDown();
+            else
+                recomputed.add(request.root.id());
+            return null;
+        }
+    }
+
+    File folder;
+    Configuration current;
+    RecordingDegraphmalizr degraphmalizr;
+    RecordingRecomputer recomputer;
+    SelectiveReindexer reindexer;
+
+    @BeforeMethod
+    public void setUp() throws IOException
+    {
+        folder = Files.createTempDir();
+
+        final Graph graph = new TinkerGraph();
+        for (ID id : new ID[]{new ID("source", "a", "1", 1), new ID("source", "a", "2", 1), new ID("source", "b", "1", 1),
+                new ID("source", "fence", "1", 1)})
+            GraphUtilities.createVertex(om, graph, id);
+
+        // only known as the target of an edge, there is no document to recompute
+        GraphUtilities.createVertex(om, graph, new ID("source", "a", "3", 0));
+
+        degraphmalizr = new RecordingDegraphmalizr();
+        recomputer = new RecordingRecomputer();
+        reindexer = new SelectiveReindexer(graph, om, degraphmalizr, recomputer, new Provider<Configuration>()
+        {
+            @Override
+            public Configuration get()
+            {
+                return current;
+            }
+        }, 1000);
+        reindexer.log = LoggerFactory.getLogger(SelectiveReindexerTest.class);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        reindexer.stop();
+    }
+
+    @Test
+    public void testTransformChangedRecomputesOnlyThatType() throws Exception
+    {
+        write("a", NO_EXTRACT, IDENTITY);
+        write("b", NO_EXTRACT, IDENTITY);
+        write("fence", NO_EXTRACT, IDENTITY);
+        final Configuration before = load();
+
+        write("a", NO_EXTRACT, "function(doc) { return { changed: true }; }");
+        current = load();
+
+        reindexer.configurationChanged(ConfigurationChange.between(before, current));
+        awaitFence();
+
+        assertThat(recomputer.recomputed).containsOnly(new ID("source", "a", "1", 1), new ID("source", "a", "2", 1));
+        assertThat(degraphmalizr.degraphmalized).isEmpty();
+    }
+
+    @Test
+    public void testExtractChangedDegraphmalizesAgain() throws Exception
+    {
+        write("a", NO_EXTRACT, IDENTITY);
+        write("b", NO_EXTRACT, IDENTITY);
+        write("fence", NO_EXTRACT, IDENTITY);
+        final Configuration before = load();
+
+        write("a", "function(doc, subgraph) { subgraph.setProperty('changed', true); }", IDENTITY);
+        current = load();
+
+        reindexer.configurationChanged(ConfigurationChange.between(before, current));
+        awaitFence();
+
+        assertThat(degraphmalizr.degraphmalized).containsOnly(new ID("source", "a", "1", 1), new ID("source", "a", "2", 1));
+        assertThat(recomputer.recomputed).isEmpty();
+    }
+
+    /**
+     * Types are done one after the other on a single thread, once the fence type is recomputed everything scheduled
+     * before it is done.
+     */
+    private void awaitFence() throws InterruptedException
+    {
+        final ConfigurationChange fence = new ConfigurationChange();
+        fence.typeChanged(current.indices().get("target").types().get("fence"), EnumSet.of(Part.TRANSFORM));
+        reindexer.configurationChanged(fence);
+
+        assertThat(recomputer.fenced.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private Configuration load() throws IOException
+    {
+        return new JavascriptConfiguration(om, "file:" + folder.getAbsolutePath());
+    }
+
+    private void write(String type, String extract, String transform) throws IOException
+    {
+        final File dir = new File(folder, "target");
+        dir.mkdirs();
+        Files.write("({ sourceIndex: 'source', sourceType: '" + type + "', extract: " + extract + ", transform: " + transform + " })",
+                new File(dir, type + ".conf.js"), Charsets.UTF_8);
+    }
+}
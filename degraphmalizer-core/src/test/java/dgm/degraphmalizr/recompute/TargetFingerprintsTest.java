@@ -0,0 +1,126 @@
+package dgm.degraphmalizr.recompute;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
+import dgm.ID;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TargetFingerprintsTest
+{
+    static final Map<String, Long> NONE = Collections.emptyMap();
+
+    final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    public void testFingerprintIgnoresFieldOrder() throws IOException
+    {
+        final long a = TargetFingerprints.fingerprint(om.readTree("{\"a\":1,\"b\":{\"c\":[1,2],\"d\":\"x\"}}"));
+        final long b = TargetFingerprints.fingerprint(om.readTree("{\"b\":{\"d\":\"x\",\"c\":[1,2]},\"a\":1}"));
+
+        assertThat(a).isEqualTo(b);
+    }
+
+    @Test
+    public void testFingerprintSeesChanges() throws IOException
+    {
+        final long a = TargetFingerprints.fingerprint(om.readTree("{\"a\":[1,2]}"));
+
+        assertThat(TargetFingerprints.fingerprint(om.readTree("{\"a\":[2,1]}"))).isNotEqualTo(a);
+        assertThat(TargetFingerprints.fingerprint(om.readTree("{\"a\":[1,2,null]}"))).isNotEqualTo(a);
+        assertThat(TargetFingerprints.fingerprint(om.readTree("{\"a\":[\"1\",2]}"))).isNotEqualTo(a);
+        assertThat(TargetFingerprints.fingerprint(om.readTree("{\"b\":[1,2]}"))).isNotEqualTo(a);
+    }
+
+    @Test
+    public void testRememberAndInvalidate()
+    {
+        final TargetFingerprints fingerprints = new TargetFingerprints(100);
+        final ID target = new ID("target", "type", "1", 3);
+
+        assertThat(fingerprints.isUnchanged(target, 42)).isFalse();
+
+        fingerprints.put(target, 42, NONE);
+
+        // versions are ignored
+        assertThat(fingerprints.isUnchanged(new ID("target", "type", "1", 0), 42)).isTrue();
+        assertThat(fingerprints.isUnchanged(target, 43)).isFalse();
+
+        fingerprints.invalidate(target);
+        assertThat(fingerprints.isUnchanged(target, 42)).isFalse();
+
+        fingerprints.put(target, 42, NONE);
+        fingerprints.invalidateIndex("other");
+        assertThat(fingerprints.isUnchanged(target, 42)).isTrue();
+        fingerprints.invalidateIndex("target");
+        assertThat(fingerprints.isUnchanged(target, 42)).isFalse();
+    }
+
+    @Test
+    public void testExpires()
+    {
+        final AtomicLong now = new AtomicLong();
+        final TargetFingerprints fingerprints = new TargetFingerprints(100, 1, TimeUnit.MINUTES, new Ticker()
+        {
+            @Override
+            public long read()
+            {
+                return now.get();
+            }
+        });
+        final ID target = new ID("target", "type", "1", 1);
+
+        fingerprints.put(target, 42, NONE);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertThat(fingerprints.isUnchanged(target, 42)).isTrue();
+
+        // someone else may have deleted the target by now
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(fingerprints.isUnchanged(target, 42)).isFalse();
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        final TargetFingerprints fingerprints = new TargetFingerprints(0);
+        final ID target = new ID("target", "type", "1", 1);
+
+        fingerprints.put(target, 42, NONE);
+        assertThat(fingerprints.isUnchanged(target, 42)).isFalse();
+    }
+
+    @Test
+    public void testChangedProperties()
+    {
+        final TargetFingerprints fingerprints = new TargetFingerprints(100);
+        final ID target = new ID("target", "type", "1", 1);
+
+        final Map<String, Long> properties = new HashMap<String, Long>();
+        properties.put("a", 1L);
+        properties.put("b", 2L);
+
+        // nothing known, so everything changed
+        assertThat(fingerprints.changedProperties(target, properties)).containsOnly("a", "b");
+
+        fingerprints.put(target, 42, properties);
+        assertThat(fingerprints.changedProperties(target, properties)).isEmpty();
+
+        final Map<String, Long> update = new HashMap<String, Long>();
+        update.put("b", 3L);
+        assertThat(fingerprints.changedProperties(target, update)).containsOnly("b");
+
+        // after a partial update the document as a whole is unknown, but the other properties are still known
+        fingerprints.putProperties(target, update);
+        assertThat(fingerprints.isUnchanged(target, 42)).isFalse();
+        assertThat(fingerprints.changedProperties(target, update)).isEmpty();
+        assertThat(fingerprints.changedProperties(target, properties)).containsOnly("b");
+    }
+}
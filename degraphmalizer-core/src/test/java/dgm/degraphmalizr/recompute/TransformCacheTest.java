@@ -0,0 +1,170 @@
+package dgm.degraphmalizr.recompute;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dgm.ID;
+import dgm.Subgraph;
+import dgm.configuration.IndexConfig;
+import dgm.configuration.TypeConfig;
+import dgm.configuration.TypeFingerprint;
+import dgm.configuration.WalkConfig;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TransformCacheTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    public void testTransformOncePerVersion() throws IOException
+    {
+        final TransformCache cache = new TransformCache(om, 1024 * 1024);
+        final CountingConfig config = new CountingConfig("a");
+        final JsonNode document = om.readTree("{\"a\":1}");
+
+        final JsonNode first = cache.transform(config, id(1), document);
+        final JsonNode second = cache.transform(config, id(1), document);
+
+        assertThat(config.calls).isEqualTo(1);
+        assertThat(second.equals(first)).isTrue();
+
+        // callers add walk results to the document, that must not end up in the cache
+        ((ObjectNode) second).put("walk", 2);
+        assertThat(cache.transform(config, id(1), document).equals(first)).isTrue();
+
+        // a new version of the source, or a document without version, is transformed again
+        cache.transform(config, id(2), document);
+        cache.transform(config, id(0), document);
+        assertThat(config.calls).isEqualTo(3);
+    }
+
+    @Test
+    public void testConfigurationChanges() throws IOException
+    {
+        final TransformCache cache = new TransformCache(om, 1024 * 1024);
+        final CountingConfig config = new CountingConfig("a");
+        final JsonNode document = om.readTree("{\"a\":1}");
+
+        cache.transform(config, id(1), document);
+
+        // a configuration with different code doesn't see the old result
+        final CountingConfig changed = new CountingConfig("b");
+        cache.transform(changed, id(1), document);
+        assertThat(changed.calls).isEqualTo(1);
+
+        cache.configurationChanged("index");
+        assertThat(cache.size()).isEqualTo(0);
+        cache.transform(config, id(1), document);
+        assertThat(config.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void testDisabled() throws IOException
+    {
+        final TransformCache cache = new TransformCache(om, 0);
+        final CountingConfig config = new CountingConfig("a");
+        final JsonNode document = om.readTree("{\"a\":1}");
+
+        cache.transform(config, id(1), document);
+        cache.transform(config, id(1), document);
+        assertThat(config.calls).isEqualTo(2);
+    }
+
+    private static ID id(long version)
+    {
+        return new ID("index", "type", "1", version);
+    }
+
+    /**
+     * Copies the document and counts how often it was asked to.
+     */
+    static class CountingConfig implements TypeConfig
+    {
+        final TypeFingerprint fingerprint;
+        int calls = 0;
+
+        CountingConfig(String transform)
+        {
+            this.fingerprint = new TypeFingerprint("common", "filter", "extract", transform, "walks");
+        }
+
+        @Override
+        public JsonNode transform(JsonNode document)
+        {
+            calls++;
+            return document.deepCopy();
+        }
+
+        @Override
+        public TypeFingerprint fingerprint()
+        {
+            return fingerprint;
+        }
+
+        @Override
+        public String name()
+        {
+            return "type";
+        }
+
+        @Override
+        public Subgraph extract(JsonNode document)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean filter(JsonNode document)
+        {
+            return true;
+        }
+
+        @Override
+        public IndexConfig index()
+        {
+            return null;
+        }
+
+        @Override
+        public String targetIndex()
+        {
+            return "target";
+        }
+
+        @Override
+        public String targetType()
+        {
+            return "type";
+        }
+
+        @Override
+        public String sourceIndex()
+        {
+            return "index";
+        }
+
+        @Override
+        public String sourceType()
+        {
+            return "type";
+        }
+
+        @Override
+        public Map<String, WalkConfig> walks()
+        {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Integer maximalWalkDepth()
+        {
+            return 0;
+        }
+    }
+}
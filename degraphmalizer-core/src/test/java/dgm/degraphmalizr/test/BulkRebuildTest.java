@@ -0,0 +1,152 @@
+package dgm.degraphmalizr.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.tinkerpop.blueprints.Graph;
+import dgm.Degraphmalizr;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.degraphmalizr.BulkDegraphmalizer;
+import dgm.degraphmalizr.degraphmalize.*;
+import dgm.degraphmalizr.recompute.RecomputeResult;
+import dgm.modules.BlueprintsSubgraphManagerModule;
+import dgm.modules.DegraphmalizerModule;
+import dgm.modules.ServiceRunner;
+import dgm.modules.ThreadpoolModule;
+import dgm.modules.fsmon.StaticConfiguration;
+import dgm.modules.neo4j.CommonNeo4j;
+import dgm.modules.neo4j.EphemeralEmbeddedNeo4J;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.nnsoft.guice.sli4j.slf4j.Slf4jLoggingModule;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Rebuilding target documents that were deleted behind the degraphmalizer's back.
+ */
+public class BulkRebuildTest
+{
+    static final String SOURCE = "test-index";
+    static final String TARGET = "test-target";
+    static final String TYPE = "test-type";
+
+    final ObjectMapper om = new ObjectMapper();
+
+    InMemoryClient es;
+    Graph graph;
+    Degraphmalizr degraphmalizr;
+    BulkDegraphmalizer bulk;
+    ServiceRunner services;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        es = new InMemoryClient();
+        final Injector injector = Guice.createInjector(
+                new BlueprintsSubgraphManagerModule(),
+                new DegraphmalizerModule(),
+                new ThreadpoolModule(),
+                new CommonNeo4j(),
+                new EphemeralEmbeddedNeo4J(),
+                new StaticConfiguration("classpath:conf"),
+                new Slf4jLoggingModule(),
+                new AbstractModule()
+                {
+                    @Override
+                    protected void configure()
+                    {
+                        bind(Client.class).toInstance(es.client);
+                    }
+                });
+        degraphmalizr = injector.getInstance(Degraphmalizr.class);
+        graph = injector.getInstance(Graph.class);
+        bulk = injector.getInstance(BulkDegraphmalizer.class);
+        services = injector.getInstance(ServiceRunner.class);
+        services.startServices();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        services.stopServices();
+    }
+
+    private void degraphmalize(ID id) throws Exception
+    {
+        final DegraphmalizeResult result = degraphmalizr.degraphmalize(DegraphmalizeRequestType.UPDATE,
+                DegraphmalizeRequestScope.DOCUMENT, id, new LoggingDegraphmalizeCallback()).get();
+        for (Future<RecomputeResult> recompute : result.results())
+            recompute.get();
+    }
+
+    @Test
+    public void testDoesNotWaitForRecomputes() throws Exception
+    {
+        final List<ID> ids = new ArrayList<ID>();
+        for (String id : Arrays.asList("1", "2", "3"))
+            ids.add(new ID(SOURCE, TYPE, id, es.put(SOURCE, TYPE, id, ImmutableMap.<String, Object>of("cheese", "gouda"))));
+
+        final CountDownLatch done = new CountDownLatch(ids.size());
+        final List<ID> completed = new CopyOnWriteArrayList<ID>();
+        es.holdWrites();
+        degraphmalizr.degraphmalizeAll(ids, new LoggingDegraphmalizeCallback()
+        {
+            @Override
+            public void complete(DegraphmalizeResult result)
+            {
+                completed.add(result.root());
+                done.countDown();
+            }
+        });
+
+        // all documents are in the graph while the first target is still being written
+        for (ID id : ids)
+        {
+            final long until = System.currentTimeMillis() + 10000;
+            while (GraphUtilities.findVertex(om, graph, id) == null && System.currentTimeMillis() < until)
+                Thread.sleep(10);
+            assertThat(GraphUtilities.findVertex(om, graph, id)).isNotNull();
+        }
+        assertThat(completed).isEmpty();
+
+        es.releaseWrites();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(completed).containsOnly(ids.toArray());
+        for (ID id : ids)
+            assertThat(es.get(TARGET, TYPE, id.id())).isNotNull();
+    }
+
+    @Test
+    public void testBulkRewritesDeletedTargets() throws Exception
+    {
+        final ID id = new ID(SOURCE, TYPE, "1", es.put(SOURCE, TYPE, "1", ImmutableMap.<String, Object>of("cheese", "gouda")));
+        degraphmalize(id);
+        assertThat(es.get(TARGET, TYPE, "1")).isNotNull();
+
+        // the target index is lost, degraphmalizing the document again writes nothing, the target looks unchanged
+        es.remove(TARGET, TYPE, "1");
+        degraphmalize(id);
+        assertThat(es.requests(IndexRequest.class, "1")).hasSize(1);
+        assertThat(es.get(TARGET, TYPE, "1")).isNull();
+
+        final BulkDegraphmalizer.Progress progress = bulk.run(new String[]{SOURCE}, null, 4, new LoggingDegraphmalizeCallback());
+        assertThat(progress.completed()).isEqualTo(1);
+        assertThat(es.requests(IndexRequest.class, "1")).hasSize(2);
+        assertThat(es.get(TARGET, TYPE, "1").get("cheese")).isEqualTo("gouda");
+    }
+}
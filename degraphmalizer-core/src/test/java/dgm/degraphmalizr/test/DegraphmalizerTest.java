@@ -287,14 +287,16 @@ public class DegraphmalizerTest {
     public static ObjectNode toJSON(ObjectMapper objectMapper, RecomputeResult success) throws InterruptedException, ExecutionException {
         final ObjectNode n = objectMapper.createObjectNode();
 
-        // write targetID using index reponse
-        final IndexResponse ir = success.indexResponse();
-        final ObjectNode targetID = objectMapper.createObjectNode();
-        targetID.put("index", ir.index());
-        targetID.put("type", ir.type());
-        targetID.put("id", ir.id());
-        targetID.put("version", ir.version());
-        n.put("targetID", targetID);
+        // write targetID using index reponse, there is none if the target was already up to date or partially updated
+        if (success.indexResponse() != null) {
+            final IndexResponse ir = success.indexResponse();
+            final ObjectNode targetID = objectMapper.createObjectNode();
+            targetID.put("index", ir.index());
+            targetID.put("type", ir.type());
+            targetID.put("id", ir.id());
+            targetID.put("version", ir.version());
+            n.put("targetID", targetID);
+        }
 
         // write dictionary of properties and their values
         final ObjectNode properties = objectMapper.createObjectNode();
@@ -0,0 +1,279 @@
+package dgm.degraphmalizr.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteRequestBuilder;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetRequestBuilder;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateRequestBuilder;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.internal.InternalClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.engine.DocumentMissingException;
+import org.elasticsearch.index.get.GetField;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Keeps documents in memory and answers the get, index, update, delete and scan requests of the degraphmalizer, so it
+ * can be tested without elasticsearch. The requests are recorded.
+ * <p/>
+ * An update applies the {@code fields} script parameter the way the update script of the recomputer does.
+ */
+class InMemoryClient implements InvocationHandler
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    final Client client = (Client) Proxy.newProxyInstance(Client.class.getClassLoader(), new Class<?>[]{InternalClient.class}, this);
+
+    final List<ActionRequest> requests = new CopyOnWriteArrayList<ActionRequest>();
+
+    private final Map<String, Map<String, Object>> documents = new HashMap<String, Map<String, Object>>();
+    private final Map<String, Long> versions = new HashMap<String, Long>();
+
+    // index and update requests wait for this, when set
+    private volatile CountDownLatch writes;
+
+    // the hits each scroll has left
+    private final Map<String, InternalSearchHit[]> scrolls = new HashMap<String, InternalSearchHit[]>();
+
+    private static String key(String index, String type, String id)
+    {
+        return index + "/" + type + "/" + id;
+    }
+
+    /**
+     * @return The new version of the document
+     */
+    synchronized long put(String index, String type, String id, Map<String, Object> source)
+    {
+        final String key = key(index, type, id);
+        documents.put(key, new HashMap<String, Object>(source));
+        final Long version = versions.get(key);
+        final long next = version == null ? 1 : version + 1;
+        versions.put(key, next);
+        return next;
+    }
+
+    /**
+     * Let index and update requests wait until {@link #releaseWrites}.
+     */
+    void holdWrites()
+    {
+        writes = new CountDownLatch(1);
+    }
+
+    void releaseWrites()
+    {
+        writes.countDown();
+    }
+
+    synchronized Map<String, Object> get(String index, String type, String id)
+    {
+        return documents.get(key(index, type, id));
+    }
+
+    synchronized void remove(String index, String type, String id)
+    {
+        documents.remove(key(index, type, id));
+    }
+
+    /**
+     * The recorded requests of {@code kind} for a document.
+     */
+    <T extends ActionRequest> List<T> requests(Class<T> kind, String id)
+    {
+        final List<T> found = new ArrayList<T>();
+        for (ActionRequest request : requests)
+        {
+            if (kind.isInstance(request) && id.equals(id(request)))
+                found.add(kind.cast(request));
+        }
+        return found;
+    }
+
+    private static String id(ActionRequest request)
+    {
+        if (request instanceof GetRequest)
+            return ((GetRequest) request).id();
+        if (request instanceof IndexRequest)
+            return ((IndexRequest) request).id();
+        if (request instanceof UpdateRequest)
+            return ((UpdateRequest) request).id();
+        if (request instanceof DeleteRequest)
+            return ((DeleteRequest) request).id();
+        return null;
+    }
+
+    /**
+     * The parameters of the update script, the request has no accessor for them.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> scriptParams(UpdateRequest request)
+    {
+        try
+        {
+            final Field f = UpdateRequest.class.getDeclaredField("scriptParams");
+            f.setAccessible(true);
+            return (Map<String, Object>) f.get(request);
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        final String name = method.getName();
+        if (name.equals("prepareGet"))
+            return new GetRequestBuilder(client, (String) args[0]).setType((String) args[1]).setId((String) args[2]);
+        if (name.equals("prepareIndex"))
+            return new IndexRequestBuilder(client, (String) args[0]).setType((String) args[1]).setId((String) args[2]);
+        if (name.equals("prepareUpdate"))
+            return new UpdateRequestBuilder(client, (String) args[0], (String) args[1], (String) args[2]);
+        if (name.equals("prepareDelete"))
+            return new DeleteRequestBuilder(client, (String) args[0]).setType((String) args[1]).setId((String) args[2]);
+        if (name.equals("prepareSearch"))
+            return new SearchRequestBuilder(client).setIndices((String[]) args[0]);
+        if (name.equals("prepareSearchScroll"))
+            return new SearchScrollRequestBuilder(client, (String) args[0]);
+
+        // what the request builders call
+        if (args != null && args.length == 2 && args[0] instanceof ActionRequest && args[1] instanceof ActionListener)
+        {
+            final ActionRequest request = (ActionRequest) args[0];
+            final ActionListener<Object> listener = (ActionListener<Object>) args[1];
+            requests.add(request);
+
+            final CountDownLatch held = writes;
+            if (held != null && (request instanceof IndexRequest || request instanceof UpdateRequest))
+                held.await();
+
+            final Object response;
+            try
+            {
+                response = execute(request);
+            }
+            catch (RuntimeException e)
+            {
+                listener.onFailure(e);
+                return null;
+            }
+            listener.onResponse(response);
+            return null;
+        }
+
+        if (name.equals("threadPool") || name.equals("settings") || name.equals("close"))
+            return null;
+        if (name.equals("toString"))
+            return "InMemoryClient";
+
+        throw new UnsupportedOperationException(name);
+    }
+
+    private synchronized Object execute(ActionRequest request) throws Exception
+    {
+        if (request instanceof GetRequest)
+        {
+            final GetRequest r = (GetRequest) request;
+            final String key = key(r.index(), r.type(), r.id());
+            final Map<String, Object> source = documents.get(key);
+            final GetResult result = source == null
+                    ? new GetResult(r.index(), r.type(), r.id(), -1, false, null, Collections.<String, GetField>emptyMap())
+                    : new GetResult(r.index(), r.type(), r.id(), versions.get(key), true, new BytesArray(om.writeValueAsBytes(source)), Collections.<String, GetField>emptyMap());
+
+            final Constructor<GetResponse> c = GetResponse.class.getDeclaredConstructor(GetResult.class);
+            c.setAccessible(true);
+            return c.newInstance(result);
+        }
+
+        if (request instanceof IndexRequest)
+        {
+            final IndexRequest r = (IndexRequest) request;
+            return new IndexResponse(r.index(), r.type(), r.id(), put(r.index(), r.type(), r.id(), r.sourceAsMap()));
+        }
+
+        if (request instanceof UpdateRequest)
+        {
+            final UpdateRequest r = (UpdateRequest) request;
+            final Map<String, Object> source = documents.get(key(r.index(), r.type(), r.id()));
+            if (source == null)
+                throw new DocumentMissingException(new ShardId(r.index(), 0), r.type(), r.id());
+
+            final Map<String, Object> updated = new HashMap<String, Object>(source);
+            updated.putAll((Map<String, Object>) scriptParams(r).get("fields"));
+            return new UpdateResponse(r.index(), r.type(), r.id(), put(r.index(), r.type(), r.id(), updated));
+        }
+
+        if (request instanceof DeleteRequest)
+        {
+            final DeleteRequest r = (DeleteRequest) request;
+            final String key = key(r.index(), r.type(), r.id());
+            final boolean notFound = documents.remove(key) == null;
+            final Long version = versions.get(key);
+            return new DeleteResponse(r.index(), r.type(), r.id(), version == null ? -1 : version, notFound);
+        }
+
+        // a scan returns no hits, the first scroll returns all of them
+        if (request instanceof SearchRequest)
+        {
+            final SearchRequest r = (SearchRequest) request;
+            final List<InternalSearchHit> hits = new ArrayList<InternalSearchHit>();
+            for (Map.Entry<String, Map<String, Object>> e : documents.entrySet())
+            {
+                final String[] key = e.getKey().split("/");
+                if (!Arrays.asList(r.indices()).contains(key[0]) || (r.types().length > 0 && !Arrays.asList(r.types()).contains(key[1])))
+                    continue;
+
+                final InternalSearchHit hit = new InternalSearchHit(hits.size(), key[2], key[1], null, null);
+                hit.shard(new SearchShardTarget("node", key[0], 0));
+                hit.version(versions.get(e.getKey()));
+                hits.add(hit);
+            }
+
+            final String scrollId = "scroll-" + scrolls.size();
+            scrolls.put(scrollId, hits.toArray(new InternalSearchHit[hits.size()]));
+            return searchResponse(scrollId, new InternalSearchHit[0], hits.size());
+        }
+
+        if (request instanceof SearchScrollRequest)
+        {
+            final InternalSearchHit[] hits = scrolls.put(((SearchScrollRequest) request).scrollId(), new InternalSearchHit[0]);
+            return searchResponse(((SearchScrollRequest) request).scrollId(), hits, hits.length);
+        }
+
+        throw new UnsupportedOperationException(request.getClass().getSimpleName());
+    }
+
+    private static SearchResponse searchResponse(String scrollId, InternalSearchHit[] hits, long total)
+    {
+        final InternalSearchResponse response = new InternalSearchResponse(new InternalSearchHits(hits, total, 0), null, false);
+        return new SearchResponse(response, scrollId, 1, 1, 0, new ShardSearchFailure[0]);
+    }
+}
@@ -0,0 +1,153 @@
+package dgm.degraphmalizr.test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import dgm.Degraphmalizr;
+import dgm.ID;
+import dgm.degraphmalizr.degraphmalize.*;
+import dgm.degraphmalizr.recompute.RecomputeResult;
+import dgm.modules.BlueprintsSubgraphManagerModule;
+import dgm.modules.DegraphmalizerModule;
+import dgm.modules.ServiceRunner;
+import dgm.modules.ThreadpoolModule;
+import dgm.modules.fsmon.StaticConfiguration;
+import dgm.modules.neo4j.CommonNeo4j;
+import dgm.modules.neo4j.EphemeralEmbeddedNeo4J;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
+import org.nnsoft.guice.sli4j.slf4j.Slf4jLoggingModule;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Recomputing a document because a neighbour changed, against documents kept in memory.
+ * <p/>
+ * Document 1234 has children 1, 2 and 3, so when a child changes only its {@code nodes-in} walk can differ.
+ */
+public class WalkRecomputeTest
+{
+    static final String SOURCE = "test-index";
+    static final String TARGET = "test-target";
+    static final String TYPE = "test-type";
+
+    InMemoryClient es;
+    Degraphmalizr degraphmalizr;
+    ServiceRunner services;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        es = new InMemoryClient();
+        final Injector injector = Guice.createInjector(
+                new BlueprintsSubgraphManagerModule(),
+                new DegraphmalizerModule(),
+                new ThreadpoolModule(),
+                new CommonNeo4j(),
+                new EphemeralEmbeddedNeo4J(),
+                new StaticConfiguration("classpath:conf"),
+                new Slf4jLoggingModule(),
+                new AbstractModule()
+                {
+                    @Override
+                    protected void configure()
+                    {
+                        bind(Client.class).toInstance(es.client);
+                    }
+                });
+        degraphmalizr = injector.getInstance(Degraphmalizr.class);
+        services = injector.getInstance(ServiceRunner.class);
+        services.startServices();
+
+        degraphmalize(index("1234", ImmutableMap.<String, Object>of("children", Arrays.asList(1, 2, 3))));
+        for (String child : Arrays.asList("1", "2", "3"))
+            degraphmalize(index(child, ImmutableMap.<String, Object>of("cheese", "gouda")));
+        es.requests.clear();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        services.stopServices();
+    }
+
+    private ID index(String id, Map<String, Object> source)
+    {
+        return new ID(SOURCE, TYPE, id, es.put(SOURCE, TYPE, id, source));
+    }
+
+    private void degraphmalize(ID id) throws Exception
+    {
+        final DegraphmalizeResult result = degraphmalizr.degraphmalize(DegraphmalizeRequestType.UPDATE,
+                DegraphmalizeRequestScope.DOCUMENT, id, new LoggingDegraphmalizeCallback()).get();
+        for (Future<RecomputeResult> recompute : result.results())
+            recompute.get();
+    }
+
+    private List<UpdateRequest> updates(String id)
+    {
+        return es.requests(UpdateRequest.class, id);
+    }
+
+    private List<IndexRequest> writes(String id)
+    {
+        return es.requests(IndexRequest.class, id);
+    }
+
+    @Test
+    public void testRewritesOnlyAffectedWalks() throws Exception
+    {
+        final Object nodesOut = es.get(TARGET, TYPE, "1234").get("nodes-out");
+        assertThat(es.get(TARGET, TYPE, "1234").get("nodes-in").toString()).doesNotContain("brie");
+
+        degraphmalize(index("1", ImmutableMap.<String, Object>of("cheese", "brie")));
+
+        // the parent is updated, not written again
+        assertThat(writes("1234")).isEmpty();
+        assertThat(updates("1234")).hasSize(1);
+        final Map<?, ?> fields = (Map<?, ?>) InMemoryClient.scriptParams(updates("1234").get(0)).get("fields");
+        assertThat(fields.keySet()).containsOnly("nodes-in", "_fromSource");
+
+        final Map<String, Object> target = es.get(TARGET, TYPE, "1234");
+        assertThat(target.get("nodes-in").toString()).contains("brie");
+        assertThat(target.get("nodes-out")).isEqualTo(nodesOut);
+    }
+
+    @Test
+    public void testUnchangedWalkResultIsNotWritten() throws Exception
+    {
+        // a new version of a child with the same content
+        degraphmalize(index("1", ImmutableMap.<String, Object>of("cheese", "gouda")));
+
+        assertThat(writes("1")).hasSize(1);
+        assertThat(updates("1234")).isEmpty();
+        assertThat(writes("1234")).isEmpty();
+    }
+
+    @Test
+    public void testMissingTargetIsComputedCompletely() throws Exception
+    {
+        es.remove(TARGET, TYPE, "1234");
+
+        degraphmalize(index("1", ImmutableMap.<String, Object>of("cheese", "brie")));
+
+        // the update finds no document, so the whole target is written
+        assertThat(updates("1234")).hasSize(1);
+        assertThat(writes("1234")).hasSize(1);
+
+        final Map<String, Object> target = es.get(TARGET, TYPE, "1234");
+        assertThat(target.get("children")).isEqualTo(Arrays.asList(1, 2, 3));
+        assertThat(target.get("nodes-in").toString()).contains("brie");
+        assertThat(target.get("nodes-out")).isNotNull();
+    }
+}
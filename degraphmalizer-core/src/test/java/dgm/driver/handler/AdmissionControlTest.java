@@ -0,0 +1,277 @@
+package dgm.driver.handler;
+
+import dgm.exceptions.ServiceOverloadedException;
+import dgm.modules.CountingForkJoinPool;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public class AdmissionControlTest
+{
+    ThreadPoolExecutor degraphmalize;
+    ExecutorService recompute;
+    ExecutorService fetch;
+    CountDownLatch release;
+
+    @BeforeMethod
+    public void createPools()
+    {
+        degraphmalize = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        recompute = Executors.newCachedThreadPool();
+        fetch = Executors.newCachedThreadPool();
+        release = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void stopPools()
+    {
+        release.countDown();
+        degraphmalize.shutdownNow();
+        recompute.shutdownNow();
+        fetch.shutdownNow();
+    }
+
+    @Test
+    public void testRefusesWhenStageIsFull() throws InterruptedException
+    {
+        final AdmissionControl admission = new AdmissionControl(degraphmalize, recompute, fetch, 3);
+
+        // one running, one queued
+        block(2);
+        awaitRunning();
+        admission.admit();
+        admission.done();
+
+        block(1);
+        try
+        {
+            admission.admit();
+            fail("Expected the request to be refused");
+        }
+        catch (ServiceOverloadedException e)
+        {
+            assertThat(e.stage()).isEqualTo("degraphmalize");
+            assertThat(e.retryAfter()).isGreaterThanOrEqualTo(1).isLessThanOrEqualTo(AdmissionControl.MAX_RETRY_AFTER);
+            assertThat(e.httpStatusCode().getCode()).isEqualTo(503);
+        }
+        assertThat(admission.getRequestsRejected()).isEqualTo(1);
+        assertThat(admission.getDegraphmalizeQueued()).isEqualTo(2);
+        assertThat(admission.getDegraphmalizeActive()).isEqualTo(1);
+
+        release.countDown();
+        degraphmalize.shutdown();
+        degraphmalize.awaitTermination(10, TimeUnit.SECONDS);
+        admission.admit();
+    }
+
+    @Test
+    public void testRefusesTooManyRequestsInFlight()
+    {
+        final AdmissionControl admission = new AdmissionControl(degraphmalize, recompute, fetch, 2);
+        admission.admit();
+        admission.admit();
+        assertThat(admission.getRequestsInFlight()).isEqualTo(2);
+
+        try
+        {
+            admission.admit();
+            fail("Expected the request to be refused");
+        }
+        catch (ServiceOverloadedException e)
+        {
+            assertThat(e.stage()).isEqualTo("requests");
+        }
+
+        admission.done();
+        admission.admit();
+        assertThat(admission.getRequestsInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNoLimit()
+    {
+        final AdmissionControl admission = new AdmissionControl(degraphmalize, recompute, fetch, 0);
+        block(5);
+        for (int i = 0; i < 100; i++)
+            admission.admit();
+    }
+
+    @Test
+    public void testForkJoinPoolStage() throws InterruptedException
+    {
+        final ForkJoinPool pool = new ForkJoinPool(1);
+        try
+        {
+            final AdmissionControl admission = new AdmissionControl(degraphmalize, pool, pool, 3);
+            for (int i = 0; i < 3; i++)
+            {
+                pool.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            release.await();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+
+            try
+            {
+                admission.admit();
+                fail("Expected the request to be refused");
+            }
+            catch (ServiceOverloadedException e)
+            {
+                assertThat(e.stage()).isEqualTo("recompute");
+            }
+
+            release.countDown();
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+            admission.admit();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSharedPoolRateFromCompletedTasks() throws Exception
+    {
+        final CountingForkJoinPool pool = new CountingForkJoinPool(1, ForkJoinPool.defaultForkJoinWorkerThreadFactory);
+        try
+        {
+            final AdmissionControl admission = new AdmissionControl(degraphmalize, pool, pool, 3);
+
+            // tasks that submit themselves again, so the queue stays just as long while the pool is busy
+            for (int i = 0; i < 20; i++)
+            {
+                pool.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            Thread.sleep(5);
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        if (release.getCount() > 0)
+                            pool.execute(this);
+                    }
+                });
+            }
+
+            refusal(admission);
+            Thread.sleep(1500);
+            final ServiceOverloadedException e = refusal(admission);
+
+            // one stage for recomputes and fetches, with the rate the pool completes tasks at
+            assertThat(e.stage()).isEqualTo("recompute");
+            assertThat(e.retryAfter()).isLessThan(AdmissionControl.MAX_RETRY_AFTER);
+            assertThat(admission.getRequestsRejected()).isEqualTo(2);
+            assertThat(pool.getCompletedTaskCount()).isGreaterThan(0);
+        }
+        finally
+        {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCountsCompletedTasks() throws Exception
+    {
+        final CountingForkJoinPool pool = new CountingForkJoinPool(2, ForkJoinPool.defaultForkJoinWorkerThreadFactory);
+        try
+        {
+            final Callable<Integer> task = new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                {
+                    return 1;
+                }
+            };
+            pool.submit(task).get();
+            for (Future<Integer> f : pool.invokeAll(Arrays.asList(task, task)))
+                f.get();
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+
+            assertThat(pool.getCompletedTaskCount()).isEqualTo(3);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private ServiceOverloadedException refusal(AdmissionControl admission)
+    {
+        try
+        {
+            admission.admit();
+        }
+        catch (ServiceOverloadedException e)
+        {
+            return e;
+        }
+        throw new AssertionError("Expected the request to be refused");
+    }
+
+    @Test
+    public void testRetryAfter()
+    {
+        assertThat(AdmissionControl.retryAfter(10, 0)).isEqualTo(AdmissionControl.MAX_RETRY_AFTER);
+        assertThat(AdmissionControl.retryAfter(10, 100)).isEqualTo(1);
+        assertThat(AdmissionControl.retryAfter(100, 10)).isEqualTo(10);
+        assertThat(AdmissionControl.retryAfter(100000, 10)).isEqualTo(AdmissionControl.MAX_RETRY_AFTER);
+    }
+
+    private void awaitRunning() throws InterruptedException
+    {
+        for (int i = 0; i < 100 && degraphmalize.getActiveCount() == 0; i++)
+            Thread.sleep(10);
+    }
+
+    private void block(int tasks)
+    {
+        for (int i = 0; i < tasks; i++)
+        {
+            degraphmalize.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+    }
+}
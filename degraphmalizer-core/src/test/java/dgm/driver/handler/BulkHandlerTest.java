@@ -0,0 +1,115 @@
+package dgm.driver.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import dgm.ID;
+import dgm.degraphmalizr.BulkDegraphmalizer;
+import dgm.degraphmalizr.BulkDegraphmalizerTest;
+import dgm.degraphmalizr.degraphmalize.JobRequest;
+import dgm.degraphmalizr.recompute.TargetFingerprints;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.internal.InternalClient;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.http.*;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class BulkHandlerTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    /**
+     * A client whose searches never return, so a started job keeps running.
+     */
+    static Client unresponsiveClient()
+    {
+        return (Client) Proxy.newProxyInstance(Client.class.getClassLoader(), new Class<?>[]{InternalClient.class}, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                if (method.getName().equals("prepareSearch"))
+                    return new SearchRequestBuilder((Client) proxy).setIndices((String[]) args[0]);
+                return null;
+            }
+        });
+    }
+
+    BulkDegraphmalizer bulk;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        bulk = new BulkDegraphmalizer(unresponsiveClient(), null, BulkDegraphmalizerTest.noConfiguration(), new TargetFingerprints(0));
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        bulk.stop();
+    }
+
+    private DecoderEmbedder<Object> pipeline()
+    {
+        return new DecoderEmbedder<Object>(new DegraphmalizeDecoder(), new BulkHandler(bulk));
+    }
+
+    private HttpResponse request(HttpMethod method, String uri)
+    {
+        final DecoderEmbedder<Object> embedder = pipeline();
+        embedder.offer(new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri));
+        return (HttpResponse) embedder.poll();
+    }
+
+    private JsonNode json(HttpResponse response) throws IOException
+    {
+        return om.readTree(response.getContent().toString(Charsets.UTF_8));
+    }
+
+    @Test
+    public void testDocumentRequestsPassThrough()
+    {
+        final DecoderEmbedder<Object> embedder = pipeline();
+        embedder.offer(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/i/t/d/1"));
+
+        final Object decoded = embedder.poll();
+        assertThat(decoded).isInstanceOf(JobRequest.class);
+        assertThat(((JobRequest) decoded).id()).isEqualTo(new ID("i", "t", "d", 1));
+    }
+
+    @Test
+    public void testProgressBeforeAnyJob() throws IOException
+    {
+        final HttpResponse response = request(HttpMethod.GET, "/_redegraphmalize");
+        assertThat(response.getStatus()).isEqualTo(HttpResponseStatus.NOT_FOUND);
+        assertThat(json(response).get("type").asText()).isEqualTo("BulkProgress");
+    }
+
+    @Test
+    public void testSecondJobConflicts() throws IOException
+    {
+        final HttpResponse started = request(HttpMethod.POST, "/_redegraphmalize/a,b/t");
+        assertThat(started.getStatus()).isEqualTo(HttpResponseStatus.ACCEPTED);
+        assertThat(json(started).get("indices").asText()).isEqualTo("a,b");
+        assertThat(json(started).get("sourceType").asText()).isEqualTo("t");
+
+        // the first job can't read its indices, so it is still running
+        final HttpResponse conflict = request(HttpMethod.POST, "/_redegraphmalize/c");
+        assertThat(conflict.getStatus()).isEqualTo(HttpResponseStatus.CONFLICT);
+        assertThat(json(conflict).get("indices").asText()).isEqualTo("a,b");
+
+        final HttpResponse progress = request(HttpMethod.GET, "/_redegraphmalize");
+        assertThat(progress.getStatus()).isEqualTo(HttpResponseStatus.OK);
+        assertThat(json(progress).get("indices").asText()).isEqualTo("a,b");
+    }
+}
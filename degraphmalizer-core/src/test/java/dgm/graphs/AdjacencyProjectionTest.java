@@ -0,0 +1,167 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.SubgraphManager;
+import dgm.exceptions.DegraphmalizerException;
+import dgm.trees.Pair;
+import dgm.trees.TreeEntry;
+import dgm.trees.Trees;
+import org.testng.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AdjacencyProjectionTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    LocalGraph lg;
+    AdjacencyProjection projection;
+    SubgraphManager sgm;
+
+    @BeforeMethod
+    public void clearGraph()
+    {
+        lg = LocalGraph.localNode();
+        projection = AdjacencyProjection.load(om, lg.G);
+        sgm = new BlueprintsSubgraphManager(om, lg.G, Optional.of(projection));
+    }
+
+    @AfterMethod
+    public void shutdownGraph()
+    {
+        lg.G.shutdown();
+    }
+
+    @Test
+    public void testProjectionFollowsCommits() throws DegraphmalizerException
+    {
+        commit("a", 1, "b");
+        commit("b", 1, "c");
+        commit("c", 1);
+
+        assertThat(projection.size()).isEqualTo(3);
+        assertConsistent("a");
+        assertConsistent("c");
+
+        assertThat(distances("a", Direction.OUT)).isEqualTo(map(id("a", 1), 0, id("b", 1), 1, id("c", 1), 2));
+
+        // rewire b, c is no longer reachable from a
+        commit("b", 2, "d");
+
+        assertThat(distances("a", Direction.OUT)).isEqualTo(map(id("a", 1), 0, id("b", 2), 1, id("d", 0), 2));
+        assertThat(distances("c", Direction.IN)).isEqualTo(map(id("c", 1), 0));
+        assertConsistent("a");
+        assertConsistent("b");
+        assertConsistent("c");
+    }
+
+    @Test
+    public void testProjectionFollowsDeletes() throws DegraphmalizerException
+    {
+        commit("a", 1, "b");
+        commit("b", 1);
+        commit("c", 1, "b");
+
+        sgm.deleteSubgraph(id("a", 1));
+
+        assertThat(distances("b", Direction.IN)).isEqualTo(map(id("b", 1), 0, id("c", 1), 1));
+        assertConsistent("b");
+
+        // a fresh projection must agree with the incrementally updated one
+        final AdjacencyProjection fresh = AdjacencyProjection.load(om, lg.G);
+        assertThat(fresh.size()).isEqualTo(projection.size());
+    }
+
+    @Test
+    public void testDepthLimit() throws DegraphmalizerException
+    {
+        commit("a", 1, "b");
+        commit("b", 1, "c");
+        commit("c", 1);
+
+        final Map<ID, Integer> found = new HashMap<ID, Integer>();
+        projection.bfs(projection.slotOf(vertex("a")), Direction.OUT, 1, new AdjacencyProjection.Visitor()
+        {
+            @Override
+            public boolean visit(int slot, int distance)
+            {
+                found.put(projection.id(slot), distance);
+                return true;
+            }
+        });
+
+        assertThat(found).isEqualTo(map(id("a", 1), 0, id("b", 1), 1));
+    }
+
+    /**
+     * The projection and a traversal of the graph itself must see the same tree.
+     */
+    private void assertConsistent(String name)
+    {
+        for (Direction d : new Direction[]{Direction.IN, Direction.OUT})
+        {
+            final Map<ID, Integer> expected = new HashMap<ID, Integer>();
+            for (TreeEntry<Pair<Edge, Vertex>> e : Trees.bfsWalk(GraphUtilities.childrenFrom(vertex(name), d)))
+                expected.put(GraphUtilities.getID(om, e.getValue().b), e.getDistance());
+
+            assertThat(distances(name, d)).isEqualTo(expected);
+
+            final Map<ID, Integer> viewed = new HashMap<ID, Integer>();
+            for (TreeEntry<Pair<Edge, Vertex>> e : Trees.bfsWalk(GraphUtilities.childrenFrom(vertex(name), projection.treeViewer(lg.G, d))))
+                viewed.put(GraphUtilities.getID(om, e.getValue().b), e.getDistance());
+
+            assertThat(viewed).isEqualTo(expected);
+        }
+    }
+
+    private Map<ID, Integer> distances(String name, Direction d)
+    {
+        final Map<ID, Integer> found = new HashMap<ID, Integer>();
+        projection.bfs(projection.slotOf(vertex(name)), d, -1, new AdjacencyProjection.Visitor()
+        {
+            @Override
+            public boolean visit(int slot, int distance)
+            {
+                found.put(projection.id(slot), distance);
+                return true;
+            }
+        });
+        return found;
+    }
+
+    private void commit(String name, long version, String... targets) throws DegraphmalizerException
+    {
+        final MutableSubgraph sg = new MutableSubgraph();
+        for (String target : targets)
+            sg.beginEdge("link", id(target, 0), dgm.Subgraph.Direction.OUTWARDS);
+
+        sgm.commitSubgraph(id(name, version), sg);
+    }
+
+    private Vertex vertex(String name)
+    {
+        return GraphUtilities.resolveVertex(om, lg.G, id(name, 0));
+    }
+
+    private static ID id(String name, long version)
+    {
+        return new ID("index", "type", name, version);
+    }
+
+    private static Map<ID, Integer> map(Object... kv)
+    {
+        final Map<ID, Integer> m = new HashMap<ID, Integer>();
+        for (int i = 0; i < kv.length; i += 2)
+            m.put((ID) kv[i], (Integer) kv[i + 1]);
+        return m;
+    }
+}
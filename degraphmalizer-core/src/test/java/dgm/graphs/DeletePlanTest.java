@@ -0,0 +1,100 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.ID;
+import dgm.Subgraph;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static dgm.GraphUtilities.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DeletePlanTest
+{
+    final ObjectMapper om = new ObjectMapper();
+    LocalGraph lg;
+
+    @BeforeMethod
+    public void clearGraph()
+    {
+        lg = LocalGraph.localNode();
+    }
+
+    @AfterMethod
+    public void shutdownGraph()
+    {
+        lg.G.shutdown();
+    }
+
+    static ID id(String id, int version)
+    {
+        return new ID("i", "t", id, version);
+    }
+
+    private void commit(ID id, ID... targets)
+    {
+        final MutableSubgraph sg = new MutableSubgraph();
+        for (ID target : targets)
+            sg.beginEdge("label", target, Subgraph.Direction.OUTWARDS);
+        lg.sgm.commitSubgraph(id, sg);
+    }
+
+    @Test
+    public void testDeleteHubKeepsItSymbolic()
+    {
+        // many documents point to the hub
+        for (int i = 0; i < 50; i++)
+            commit(id("source" + i, 1), id("hub", 0));
+
+        commit(id("hub", 3), id("a", 0), id("b", 0));
+
+        final DeletePlan plan = DeletePlan.of(om, lg.G, id("hub", 3));
+        assertThat(plan.edges).hasSize(2);
+        assertThat(plan.remove).hasSize(2);
+        assertThat(plan.makeSymbolic).hasSize(1);
+        lg.G.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+
+        final List<ID> affected = lg.sgm.deleteSubgraph(id("hub", 3));
+        assertThat(affected).containsOnly(id("hub", 3), id("a", 0), id("b", 0));
+
+        final Vertex hub = resolveVertex(om, lg.G, id("hub", 0));
+        assertThat(hub).isNotNull();
+        assertThat(isSymbolic(om, hub)).isTrue();
+        assertThat(resolveVertex(om, lg.G, id("a", 0))).isNull();
+        assertThat(resolveVertex(om, lg.G, id("b", 0))).isNull();
+        assertThat(lg.G.getEdges()).hasSize(50);
+    }
+
+    @Test
+    public void testSharedTargetIsKept()
+    {
+        commit(id("x", 1), id("shared", 0), id("own", 0));
+        commit(id("y", 1), id("shared", 0));
+
+        final List<ID> affected = lg.sgm.deleteSubgraph(id("x", 1));
+        assertThat(affected).containsOnly(id("x", 1), id("own", 0));
+
+        assertThat(resolveVertex(om, lg.G, id("x", 0))).isNull();
+        assertThat(resolveVertex(om, lg.G, id("own", 0))).isNull();
+        assertThat(resolveVertex(om, lg.G, id("shared", 0))).isNotNull();
+        assertThat(lg.G.getEdges()).hasSize(1);
+    }
+
+    @Test
+    public void testNewVersionRemovesDroppedEdges()
+    {
+        commit(id("x", 1), id("a", 0), id("b", 0));
+        commit(id("x", 2), id("b", 0), id("c", 0));
+
+        assertThat(resolveVertex(om, lg.G, id("a", 0))).isNull();
+        assertThat(resolveVertex(om, lg.G, id("b", 0))).isNotNull();
+        assertThat(resolveVertex(om, lg.G, id("c", 0))).isNotNull();
+        assertThat(lg.G.getEdges()).hasSize(2);
+        assertThat(lg.G.getVertices()).hasSize(3);
+    }
+}
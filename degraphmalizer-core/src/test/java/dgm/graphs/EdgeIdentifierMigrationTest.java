@@ -0,0 +1,101 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import dgm.EdgeID;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.Subgraph;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static dgm.GraphUtilities.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class EdgeIdentifierMigrationTest
+{
+    final ObjectMapper om = new ObjectMapper();
+    LocalGraph lg;
+
+    @BeforeMethod
+    public void clearGraph()
+    {
+        lg = LocalGraph.localNode();
+    }
+
+    @AfterMethod
+    public void shutdownGraph()
+    {
+        lg.G.shutdown();
+    }
+
+    private Edge commitEdge(ID id, ID other)
+    {
+        final MutableSubgraph sg = new MutableSubgraph();
+        sg.beginEdge("label", other, Subgraph.Direction.OUTWARDS);
+        lg.sgm.commitSubgraph(id, sg);
+        return findEdge(om, lg.G, new EdgeID(id, "label", other));
+    }
+
+    @Test
+    public void testNewVersionKeepsEdgeIdentifiers()
+    {
+        final ID other = new ID("a", "b", "target", 0);
+        final Edge edge = commitEdge(new ID("a", "b", "hub", 1), other);
+        final Object identifier = edge.getProperty(IDENTIFIER);
+
+        // another document points to the hub, committing a new hub version must not touch that edge
+        final MutableSubgraph sg = new MutableSubgraph();
+        sg.beginEdge("other", new ID("a", "b", "hub", 0), Subgraph.Direction.OUTWARDS);
+        lg.sgm.commitSubgraph(new ID("a", "b", "source", 1), sg);
+        final Edge incoming = findEdge(om, lg.G, new EdgeID(new ID("a", "b", "source", 1), "other", new ID("a", "b", "hub", 1)));
+        final Object incomingIdentifier = incoming.getProperty(IDENTIFIER);
+
+        final Edge updated = commitEdge(new ID("a", "b", "hub", 2), other);
+
+        assertThat(updated.getId()).isEqualTo(edge.getId());
+        assertThat(updated.getProperty(IDENTIFIER)).isEqualTo(identifier);
+        assertThat(lg.G.getEdge(incoming.getId()).getProperty(IDENTIFIER)).isEqualTo(incomingIdentifier);
+
+        // the versions are still read from the vertices
+        assertThat(getEdgeID(om, updated).tail().version()).isEqualTo(2);
+        assertThat(lg.G.getEdges()).hasSize(2);
+    }
+
+    @Test
+    public void testUpToDateGraphNeedsNoMigration()
+    {
+        final EdgeIdentifierMigration migration = new EdgeIdentifierMigration(om, lg.G);
+        assertThat(migration.isNeeded()).isFalse();
+
+        commitEdge(new ID("a", "b", "c", 1), new ID("a", "b", "d", 0));
+        assertThat(migration.isNeeded()).isFalse();
+    }
+
+    @Test
+    public void testMigratesVersionedIdentifiers()
+    {
+        final ID id = new ID("a", "b", "c", 3);
+        final ID other = new ID("a", "b", "d", 0);
+        final Edge edge = commitEdge(id, other);
+        final Object identifier = edge.getProperty(IDENTIFIER);
+
+        // the format of older graphs
+        edge.setProperty(IDENTIFIER, toJSON(om, id).toString() + "--label->" + toJSON(om, other).toString());
+        lg.G.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+        assertThat(findEdge(om, lg.G, new EdgeID(id, "label", other))).isNull();
+
+        final EdgeIdentifierMigration migration = new EdgeIdentifierMigration(om, lg.G);
+        assertThat(migration.isNeeded()).isTrue();
+        assertThat(migration.migrate(1)).isEqualTo(1);
+        assertThat(migration.isNeeded()).isFalse();
+        assertThat(migration.migrate(1)).isEqualTo(0);
+
+        final Edge migrated = findEdge(om, lg.G, new EdgeID(id, "label", other));
+        assertThat(migrated).isNotNull();
+        assertThat(migrated.getProperty(IDENTIFIER)).isEqualTo(identifier);
+        assertThat(GraphUtilities.getEdgeID(om, migrated).tail()).isEqualTo(id);
+    }
+}
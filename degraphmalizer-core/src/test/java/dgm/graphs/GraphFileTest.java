@@ -0,0 +1,118 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import dgm.ID;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static dgm.GraphUtilities.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+@Test
+public class GraphFileTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    static class Collector implements GraphFile.Visitor
+    {
+        final List<Map<String, Object>> vertices = new ArrayList<Map<String, Object>>();
+        final List<Object[]> edges = new ArrayList<Object[]>();
+
+        @Override
+        public void vertex(long vertex, Map<String, Object> properties)
+        {
+            assertThat(vertex).isEqualTo(vertices.size());
+            vertices.add(properties);
+        }
+
+        @Override
+        public void edge(long tail, String label, long head, Map<String, Object> properties)
+        {
+            edges.add(new Object[]{tail, label, head, properties});
+        }
+    }
+
+    private byte[] write(Graph graph) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GraphFile.write(graph, out);
+        return out.toByteArray();
+    }
+
+    public void testRoundTrip() throws IOException
+    {
+        final Graph graph = new TinkerGraph();
+        final Vertex a = createVertex(om, graph, new ID("a", "b", "c", 1));
+        final Vertex b = createVertex(om, graph, new ID("a", "b", "d", 0));
+        setOwner(om, a, new ID("a", "b", "c", 1));
+        setProperty(a, "object", om.readTree("{\"x\":[1,2]}"));
+        setProperty(a, "number", om.readTree("-3"));
+        a.setProperty("long", Long.MIN_VALUE);
+        a.setProperty("flag", true);
+        a.setProperty("double", 1.5);
+        final Edge e = graph.addEdge(null, a, b, "label");
+        e.setProperty(IDENTIFIER, "edge");
+        // no identifier, left out with its edges
+        graph.addEdge(null, a, graph.addVertex(null), "other");
+
+        final byte[] bytes = write(graph);
+        final Collector c = new Collector();
+        assertThat(GraphFile.read(new ByteArrayInputStream(bytes), c)).isEqualTo(new long[]{2, 1});
+
+        assertThat(c.vertices).hasSize(2);
+        final int ia = c.vertices.get(0).get(IDENTIFIER).equals(a.getProperty(IDENTIFIER)) ? 0 : 1;
+        final Map<String, Object> pa = c.vertices.get(ia);
+        assertThat(pa.keySet()).isEqualTo(a.getPropertyKeys());
+        for (String key : a.getPropertyKeys())
+        {
+            if (a.getProperty(key) instanceof byte[])
+                assertThat((byte[]) pa.get(key)).isEqualTo((byte[]) a.getProperty(key));
+            else
+                assertThat(pa.get(key)).isEqualTo(a.getProperty(key));
+        }
+
+        assertThat(c.edges).hasSize(1);
+        assertThat(c.edges.get(0)[0]).isEqualTo((long) ia);
+        assertThat(c.edges.get(0)[1]).isEqualTo("label");
+        assertThat(c.edges.get(0)[2]).isEqualTo((long) (1 - ia));
+        assertThat(((Map<?, ?>) c.edges.get(0)[3]).get(IDENTIFIER)).isEqualTo("edge");
+    }
+
+    public void testRefusesDamagedFile() throws IOException
+    {
+        final Graph graph = new TinkerGraph();
+        createVertex(om, graph, new ID("a", "b", "c", 1));
+        final byte[] bytes = write(graph);
+
+        final byte[] damaged = bytes.clone();
+        damaged[damaged.length / 2] ^= 0x01;
+        assertFails(damaged);
+
+        final byte[] truncated = new byte[bytes.length - 3];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertFails(truncated);
+    }
+
+    private void assertFails(byte[] bytes)
+    {
+        try
+        {
+            GraphFile.read(new ByteArrayInputStream(bytes), new Collector());
+        }
+        catch (IOException e)
+        {
+            return;
+        }
+        throw new AssertionError("Damaged graph file was read");
+    }
+}
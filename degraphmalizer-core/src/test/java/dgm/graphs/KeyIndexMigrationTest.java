@@ -0,0 +1,89 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import dgm.ID;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static dgm.GraphUtilities.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class KeyIndexMigrationTest
+{
+    final ObjectMapper om = new ObjectMapper();
+    LocalGraph lg;
+
+    @BeforeMethod
+    public void clearGraph()
+    {
+        lg = LocalGraph.localNode();
+    }
+
+    @AfterMethod
+    public void shutdownGraph()
+    {
+        lg.G.shutdown();
+    }
+
+    @Test
+    public void testOnlyDeclaredKeysAreIndexed()
+    {
+        final Neo4jGraph graph = (Neo4jGraph) lg.G;
+        assertThat(graph.getIndexedKeys(Vertex.class)).isEqualTo(VERTEX_KEYS);
+        assertThat(graph.getIndexedKeys(Edge.class)).isEqualTo(EDGE_KEYS);
+    }
+
+    @Test
+    public void testFindsVerticesOfTypeInIndex()
+    {
+        createVertex(om, lg.G, new ID("a", "b", "1", 1));
+        createVertex(om, lg.G, new ID("a", "b", "2", 1));
+        createVertex(om, lg.G, new ID("a", "c", "3", 1));
+        createVertex(om, lg.G, new ID("x", "b", "4", 1));
+        lg.G.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+
+        assertThat(findVerticesInIndex(lg.G, "a", "b")).hasSize(2);
+        assertThat(findVerticesInIndex(lg.G, "a")).hasSize(3);
+    }
+
+    @Test
+    public void testNewStoreNeedsNoMigration()
+    {
+        final KeyIndexMigration migration = new KeyIndexMigration(lg.G);
+        assertThat(migration.isNeeded()).isFalse();
+
+        createVertex(om, lg.G, new ID("a", "b", "1", 1));
+        lg.G.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+        assertThat(migration.isNeeded()).isFalse();
+    }
+
+    @Test
+    public void testMigratesOldStore()
+    {
+        final Neo4jGraph graph = (Neo4jGraph) lg.G;
+        final ID id = new ID("a", "b", "c", 1);
+
+        // the keys and vertices of older graphs
+        graph.createKeyIndex(KEY_TYPE, Vertex.class);
+        graph.createKeyIndex(KEY_VERSION, Vertex.class);
+        graph.createKeyIndex(KEY_INDEX, Edge.class);
+        createVertex(om, graph, id).removeProperty(KEY_INDEX_TYPE);
+        graph.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+        assertThat(findVerticesInIndex(graph, "a", "b")).isEmpty();
+
+        final KeyIndexMigration migration = new KeyIndexMigration(graph);
+        assertThat(migration.isNeeded()).isTrue();
+        assertThat(migration.migrate(1)).isEqualTo(1);
+        assertThat(migration.isNeeded()).isFalse();
+        assertThat(migration.migrate(1)).isEqualTo(0);
+
+        assertThat(getID(om, findVerticesInIndex(graph, "a", "b").iterator().next())).isEqualTo(id);
+        assertThat(graph.getIndexedKeys(Vertex.class)).isEqualTo(VERTEX_KEYS);
+        assertThat(graph.getIndexedKeys(Edge.class)).isEqualTo(EDGE_KEYS);
+    }
+}
@@ -2,14 +2,21 @@ package dgm.graphs;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tinkerpop.blueprints.*;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import dgm.*;
 import dgm.exceptions.DegraphmalizerException;
 import org.fest.assertions.Assertions;
 import org.testng.annotations.*;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.testng.Assert.fail;
 
 
 public class NewSubgraphManagerTest
@@ -179,6 +186,132 @@ public class NewSubgraphManagerTest
     }
 
 
+    @Test
+    public void testResolveVerticesInBatches() throws DegraphmalizerException
+    {
+        final ObjectMapper om = new ObjectMapper();
+        final List<ID> ids = new ArrayList<ID>();
+        for (int i = 0; i < 600; i++)
+        {
+            final ID id = new ID("a", "b", "v" + i, 0);
+            GraphUtilities.createVertex(om, lg.G, id);
+            ids.add(new ID("a", "b", "v" + i, 3));
+        }
+        lg.G.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+
+        ids.add(new ID("a", "b", "missing", 0));
+        final Map<ID, Vertex> resolved = GraphUtilities.resolveVertices(om, lg.G, ids);
+
+        assertThat(resolved).hasSize(600);
+        assertThat(GraphUtilities.getID(om, resolved.get(new ID("a", "b", "v42", 0))).id()).isEqualTo("v42");
+    }
+
+    @Test
+    public void testCommitManyEdgesToExistingTargets() throws DegraphmalizerException
+    {
+        final ID hub = new ID("a", "b", "hub", 1);
+        final ID shared = new ID("a", "b", "shared", 0);
+
+        final MutableSubgraph other = new MutableSubgraph();
+        other.beginEdge("label", shared, Subgraph.Direction.OUTWARDS);
+        lg.sgm.commitSubgraph(new ID("a", "b", "other", 1), other);
+
+        final MutableSubgraph sg = new MutableSubgraph();
+        sg.beginEdge("label", shared, Subgraph.Direction.OUTWARDS);
+        sg.beginEdge("label", shared, Subgraph.Direction.INWARDS);
+        for (int i = 0; i < 100; i++)
+            sg.beginEdge("label", new ID("a", "b", "t" + i, 0), Subgraph.Direction.OUTWARDS);
+        lg.sgm.commitSubgraph(hub, sg);
+
+        // hub, other, shared and the targets
+        assertThat(lg.G.getVertices()).hasSize(103);
+        assertThat(lg.G.getEdges()).hasSize(103);
+
+        // committing the same edges again changes nothing
+        lg.sgm.commitSubgraph(new ID("a", "b", "hub", 2), sg);
+        assertThat(lg.G.getVertices()).hasSize(103);
+        assertThat(lg.G.getEdges()).hasSize(103);
+    }
+
+    @Test
+    public void testBatchResolvingDependsOnTheIndex()
+    {
+        final ObjectMapper om = new ObjectMapper();
+        assertThat(GraphUtilities.batchIndexOf(lg.G, GraphUtilities.SYMBOLIC_IDENTIFER)).isNotNull();
+        assertThat(GraphUtilities.batchIndexOf(lg.G, "notIndexed")).isNull();
+
+        // graphs without such an index resolve one id at a time
+        final Graph tg = new TinkerGraph();
+        assertThat(GraphUtilities.batchIndexOf(tg, GraphUtilities.SYMBOLIC_IDENTIFER)).isNull();
+        GraphUtilities.createVertex(om, tg, new ID("a", "b", "c", 0));
+        final List<ID> ids = new ArrayList<ID>();
+        ids.add(new ID("a", "b", "c", 2));
+        ids.add(new ID("a", "b", "missing", 0));
+        assertThat(GraphUtilities.resolveVertices(om, tg, ids)).hasSize(1);
+    }
+
+    @Test
+    public void testSameEdgeTwiceInSubgraph() throws DegraphmalizerException
+    {
+        final MutableSubgraph sg = new MutableSubgraph();
+        sg.beginEdge("label", new ID("a", "b", "target", 0), Subgraph.Direction.OUTWARDS);
+        sg.beginEdge("label", new ID("a", "b", "target", 0), Subgraph.Direction.OUTWARDS);
+        lg.sgm.commitSubgraph(new ID("a", "b", "source", 1), sg);
+
+        assertThat(lg.G.getVertices()).hasSize(2);
+        assertThat(lg.G.getEdges()).hasSize(1);
+    }
+
+    @Test
+    public void testCommitDoesNotReadForeignEdgesOfTheCenter() throws DegraphmalizerException
+    {
+        final ObjectMapper om = new ObjectMapper();
+        final ID hub = new ID("a", "b", "hub", 0);
+
+        final MutableSubgraph own = new MutableSubgraph();
+        own.beginEdge("label", new ID("a", "b", "target", 0), Subgraph.Direction.OUTWARDS);
+        lg.sgm.commitSubgraph(new ID("a", "b", "hub", 1), own);
+
+        // other documents point to the hub
+        for (int i = 0; i < 100; i++)
+        {
+            final MutableSubgraph sg = new MutableSubgraph();
+            sg.beginEdge("label", hub, Subgraph.Direction.OUTWARDS);
+            lg.sgm.commitSubgraph(new ID("a", "b", "other" + i, 1), sg);
+        }
+
+        final Set<Object> foreign = new HashSet<Object>();
+        for (Edge e : lg.G.getVertices(GraphUtilities.SYMBOLIC_IDENTIFER, GraphUtilities.toJSON(om, hub).toString()).iterator().next().getEdges(Direction.IN))
+            foreign.add(e.getId());
+        assertThat(foreign).hasSize(100);
+
+        final ReadRecordingGraph recording = new ReadRecordingGraph(lg.G);
+        final SubgraphManager sgm = new BlueprintsSubgraphManager(om, recording.graph);
+
+        final MutableSubgraph next = new MutableSubgraph();
+        next.beginEdge("label", new ID("a", "b", "target", 0), Subgraph.Direction.OUTWARDS);
+        next.beginEdge("label", new ID("a", "b", "new", 0), Subgraph.Direction.OUTWARDS);
+        sgm.commitSubgraph(new ID("a", "b", "hub", 2), next);
+
+        // the edge to the existing target, and the new one
+        assertThat(recording.edgesRead).hasSize(2);
+        for (Object id : recording.edgesRead)
+            assertThat(foreign).excludes(id);
+
+        // an edge of another document is still found, and can't be claimed
+        final MutableSubgraph claim = new MutableSubgraph();
+        claim.beginEdge("label", new ID("a", "b", "other0", 0), Subgraph.Direction.INWARDS);
+        try
+        {
+            sgm.commitSubgraph(new ID("a", "b", "hub", 3), claim);
+            fail("The edge of another document was claimed");
+        }
+        catch (RuntimeException e)
+        {
+            assertThat(e.getMessage()).contains("already owned by");
+        }
+    }
+
     // add the edge to the subgraph, the other side of the edge will be made symbolic
     protected void addEdgeToSubgraph(MutableSubgraph sg, ID sg_id, EdgeID edge_id)
     {
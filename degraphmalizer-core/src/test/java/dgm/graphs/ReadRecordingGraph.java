@@ -0,0 +1,89 @@
+package dgm.graphs;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Wraps a graph and records the ids of the edges that were used through it, so a test can check which edges an
+ * operation reads.
+ * <p/>
+ * Vertices, edges and iterables of them are wrapped, the wrappers are unwrapped again when they are passed back to the
+ * graph or compared.
+ */
+class ReadRecordingGraph
+{
+    final TransactionalGraph graph;
+
+    /**
+     * Native ids of the edges a method was called on.
+     */
+    final Set<Object> edgesRead = new CopyOnWriteArraySet<Object>();
+
+    ReadRecordingGraph(TransactionalGraph graph)
+    {
+        this.graph = (TransactionalGraph) wrap(graph, TransactionalGraph.class);
+    }
+
+    private Object wrap(Object value, Class<?> type)
+    {
+        if (value == null || !(type == TransactionalGraph.class || type == Vertex.class || type == Edge.class
+                || type == Iterable.class || type == Iterator.class))
+            return value;
+
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new Recording(value));
+    }
+
+    private static Object unwrap(Object value)
+    {
+        if (value != null && Proxy.isProxyClass(value.getClass()) && Proxy.getInvocationHandler(value) instanceof Recording)
+            return ((Recording) Proxy.getInvocationHandler(value)).target;
+        return value;
+    }
+
+    private class Recording implements InvocationHandler
+    {
+        final Object target;
+
+        Recording(Object target)
+        {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            if (target instanceof Edge)
+                edgesRead.add(((Edge) target).getId());
+
+            if (args != null)
+            {
+                for (int i = 0; i < args.length; i++)
+                    args[i] = unwrap(args[i]);
+            }
+
+            final Object result;
+            try
+            {
+                result = method.invoke(target, args);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+
+            // the elements of an iterator are erased to Object
+            if (method.getName().equals("next"))
+                return wrap(result, result instanceof Edge ? Edge.class : Vertex.class);
+            return wrap(result, method.getReturnType());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package dgm.graphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import dgm.ID;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static dgm.GraphUtilities.createVertex;
+import static org.fest.assertions.Assertions.assertThat;
+
+@Test
+public class VertexPartitionsTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    public void testPartitionsTypeInIndex()
+    {
+        final Graph graph = new TinkerGraph();
+        for (int i = 0; i < 100; i++)
+            createVertex(om, graph, new ID("a", "b", "v" + i, 1));
+        createVertex(om, graph, new ID("a", "c", "other", 1));
+        createVertex(om, graph, new ID("x", "b", "other", 1));
+        // no id, e.g. the neo4j reference node
+        graph.addVertex(null);
+
+        final VertexPartitions partitions = VertexPartitions.inIndex(om, graph, "a", "b", 4);
+        assertThat(partitions.count()).isEqualTo(4);
+        assertThat(partitions.size()).isEqualTo(100);
+
+        final Set<ID> ids = new HashSet<ID>();
+        for (int i = 0; i < partitions.count(); i++)
+        {
+            final List<ID> partition = partitions.partition(i);
+            // a hash spreads the ids
+            assertThat(partition).isNotEmpty();
+            for (ID id : partition)
+            {
+                assertThat(VertexPartitions.partitionOf(id, 4)).isEqualTo(i);
+                assertThat(id.type()).isEqualTo("b");
+            }
+            ids.addAll(partition);
+        }
+        assertThat(ids).hasSize(100);
+
+        assertThat(VertexPartitions.inIndex(om, graph, "a", 3).size()).isEqualTo(101);
+    }
+
+    public void testVersionsOfDocumentShareAPartition()
+    {
+        for (int i = 0; i < 20; i++)
+        {
+            final int partition = VertexPartitions.partitionOf(new ID("a", "b", "v" + i, 1), 7);
+            assertThat(VertexPartitions.partitionOf(new ID("a", "b", "v" + i, 2), 7)).isEqualTo(partition);
+            assertThat(VertexPartitions.partitionOf(new ID("a", "b", "v" + i, 0), 7)).isEqualTo(partition);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNeedsAPartition()
+    {
+        VertexPartitions.of(om, new TinkerGraph().getVertices(), 0);
+    }
+}
@@ -0,0 +1,183 @@
+package dgm.modules.changefeed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import dgm.Degraphmalizr;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeCallback;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestScope;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeRequestType;
+import dgm.degraphmalizr.degraphmalize.DegraphmalizeResult;
+import dgm.degraphmalizr.recompute.RecomputeResult;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ChangeFeedServiceTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    /**
+     * Degraphmalizes by recording the request, documents in {@code failing} fail to write their targets.
+     */
+    static class FakeDegraphmalizr implements Degraphmalizr
+    {
+        final List<ID> requested = new ArrayList<ID>();
+        final Set<String> failing = new HashSet<String>();
+
+        @Override
+        public Future<DegraphmalizeResult> degraphmalize(DegraphmalizeRequestType requestType, DegraphmalizeRequestScope requestScope, ID id, DegraphmalizeCallback callback)
+        {
+            requested.add(id);
+            final List<Future<RecomputeResult>> recomputes = new ArrayList<Future<RecomputeResult>>();
+            if (failing.contains(id.id()))
+                recomputes.add(Futures.<RecomputeResult>immediateFailedFuture(new RuntimeException("target write failed")));
+            return Futures.immediateFuture(new DegraphmalizeResult(id, recomputes));
+        }
+
+        @Override
+        public void degraphmalizeAll(List<ID> ids, DegraphmalizeCallback callback)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    Graph graph;
+    FakeDegraphmalizr degraphmalizr;
+    ChangeFeedService service;
+
+    @BeforeMethod
+    public void setUp() throws IOException
+    {
+        graph = new TinkerGraph();
+        degraphmalizr = new FakeDegraphmalizr();
+        final File checkpoints = new File(Files.createTempDir(), "changefeed.properties");
+        service = new ChangeFeedService(null, graph, om, degraphmalizr, null, "_timestamp", checkpoints.getPath());
+        service.log = LoggerFactory.getLogger(ChangeFeedServiceTest.class);
+    }
+
+    private List<ChangeFeedService.Change> changes(String... ids)
+    {
+        final List<ChangeFeedService.Change> changes = new ArrayList<ChangeFeedService.Change>();
+        for (int i = 0; i < ids.length; i++)
+            changes.add(new ChangeFeedService.Change(new ID("i", "t", ids[i], 1), 100 + i));
+        return changes;
+    }
+
+    private Checkpoints.Position position()
+    {
+        return service.checkpoints().get("i", "t");
+    }
+
+    @Test
+    public void testHoldsPositionAtFirstFailure() throws InterruptedException
+    {
+        degraphmalizr.failing.add("b");
+        final List<ChangeFeedService.Change> changes = changes("a", "b", "c");
+
+        assertThat(service.process("i", "t", Checkpoints.START, changes)).isEqualTo(1);
+        assertThat(position()).isEqualTo(new Checkpoints.Position(100, "t#a"));
+        assertThat(degraphmalizr.requested).hasSize(3);
+
+        // the next poll reads b and c again
+        degraphmalizr.failing.clear();
+        assertThat(service.process("i", "t", position(), changes.subList(1, 3))).isEqualTo(2);
+        assertThat(position()).isEqualTo(new Checkpoints.Position(102, "t#c"));
+    }
+
+    /**
+     * The changes the feed's search finds in an index of id -> {timestamp, version}, like elasticsearch would.
+     */
+    private static List<ChangeFeedService.Change> search(Map<String, long[]> index, Checkpoints.Position position, int size)
+    {
+        final List<ChangeFeedService.Change> found = new ArrayList<ChangeFeedService.Change>();
+        for (Map.Entry<String, long[]> e : index.entrySet())
+        {
+            final long timestamp = e.getValue()[0];
+            if (timestamp > position.timestamp || timestamp == position.timestamp && Checkpoints.Position.uid("t", e.getKey()).compareTo(position.uid) > 0)
+                found.add(new ChangeFeedService.Change(new ID("i", "t", e.getKey(), e.getValue()[1]), timestamp));
+        }
+
+        Collections.sort(found, new Comparator<ChangeFeedService.Change>()
+        {
+            @Override
+            public int compare(ChangeFeedService.Change a, ChangeFeedService.Change b)
+            {
+                final int byTimestamp = Long.valueOf(a.timestamp).compareTo(b.timestamp);
+                return byTimestamp != 0 ? byTimestamp : a.id.id().compareTo(b.id.id());
+            }
+        });
+        return found.subList(0, Math.min(size, found.size()));
+    }
+
+    @Test
+    public void testTiedDocumentMovesBetweenPolls() throws InterruptedException
+    {
+        final Map<String, long[]> index = new HashMap<String, long[]>();
+        index.put("a", new long[]{100, 1});
+        index.put("b", new long[]{100, 1});
+        index.put("c", new long[]{100, 1});
+
+        assertThat(service.process("i", "t", position(), search(index, position(), 2))).isEqualTo(2);
+        assertThat(position()).isEqualTo(new Checkpoints.Position(100, "t#b"));
+
+        // a is changed again, so only c still has the timestamp of the position
+        index.put("a", new long[]{200, 2});
+
+        assertThat(service.process("i", "t", position(), search(index, position(), 2))).isEqualTo(2);
+        assertThat(position()).isEqualTo(new Checkpoints.Position(200, "t#a"));
+        assertThat(degraphmalizr.requested).containsOnly(new ID("i", "t", "a", 1), new ID("i", "t", "b", 1),
+                new ID("i", "t", "c", 1), new ID("i", "t", "a", 2));
+
+        assertThat(search(index, position(), 2)).isEmpty();
+    }
+
+    @Test
+    public void testGivesUpOnDocumentThatKeepsFailing() throws InterruptedException
+    {
+        degraphmalizr.failing.add("a");
+        final List<ChangeFeedService.Change> changes = changes("a", "b");
+
+        for (int i = 1; i < ChangeFeedService.MAX_ATTEMPTS; i++)
+        {
+            assertThat(service.process("i", "t", Checkpoints.START, changes)).isEqualTo(0);
+            assertThat(position()).isEqualTo(Checkpoints.START);
+        }
+
+        assertThat(service.process("i", "t", Checkpoints.START, changes)).isEqualTo(2);
+        assertThat(position()).isEqualTo(new Checkpoints.Position(101, "t#b"));
+    }
+
+    @Test
+    public void testOnlySkipsDocumentsWithNewerVersionInGraph() throws InterruptedException
+    {
+        // the graph has version 1 of a, but its targets may not have been written
+        GraphUtilities.createVertex(om, graph, new ID("i", "t", "a", 1));
+        GraphUtilities.createVertex(om, graph, new ID("i", "t", "b", 2));
+
+        assertThat(service.process("i", "t", Checkpoints.START, changes("a", "b"))).isEqualTo(2);
+        assertThat(degraphmalizr.requested).containsOnly(new ID("i", "t", "a", 1));
+    }
+
+    @Test
+    public void testDegraphmalizesLatestVersionOnce() throws InterruptedException
+    {
+        final List<ChangeFeedService.Change> changes = new ArrayList<ChangeFeedService.Change>();
+        changes.add(new ChangeFeedService.Change(new ID("i", "t", "a", 1), 100));
+        changes.add(new ChangeFeedService.Change(new ID("i", "t", "a", 2), 101));
+
+        assertThat(service.process("i", "t", Checkpoints.START, changes)).isEqualTo(2);
+        assertThat(degraphmalizr.requested).containsOnly(new ID("i", "t", "a", 2));
+    }
+}
@@ -0,0 +1,48 @@
+package dgm.modules.changefeed;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CheckpointsTest
+{
+    @Test
+    public void testAfter()
+    {
+        assertThat(Checkpoints.START.after(12, "t", "a")).isEqualTo(new Checkpoints.Position(12, "t#a"));
+        assertThat(new Checkpoints.Position(12, "t#a").after(12, "t", "b")).isEqualTo(new Checkpoints.Position(12, "t#b"));
+    }
+
+    @Test
+    public void testStoreAndLoad() throws IOException
+    {
+        final File file = new File(Files.createTempDir(), "sub/changefeed.properties");
+
+        final Checkpoints checkpoints = new Checkpoints(file);
+        assertThat(checkpoints.get("index", "type")).isEqualTo(Checkpoints.START);
+
+        checkpoints.put("index", "type", new Checkpoints.Position(1234567890123L, "type#a,b"));
+        checkpoints.store();
+        checkpoints.store();
+
+        final Checkpoints loaded = new Checkpoints(file);
+        assertThat(loaded.get("index", "type")).isEqualTo(new Checkpoints.Position(1234567890123L, "type#a,b"));
+        assertThat(loaded.get("index", "other")).isEqualTo(Checkpoints.START);
+    }
+
+    @Test
+    public void testLoadCountOfDocumentsRead() throws IOException
+    {
+        final File file = File.createTempFile("changefeed", ".properties");
+        file.deleteOnExit();
+        Files.write("index/type=1234,3\n", file, Charsets.ISO_8859_1);
+
+        // the documents with that timestamp are read again
+        assertThat(new Checkpoints(file).get("index", "type")).isEqualTo(new Checkpoints.Position(1234, ""));
+    }
+}
@@ -0,0 +1,91 @@
+package dgm.modules.neo4j;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import dgm.EdgeID;
+import dgm.ID;
+import dgm.Subgraph;
+import dgm.SubgraphManager;
+import dgm.graphs.GraphFile;
+import dgm.graphs.MutableSubgraph;
+import dgm.modules.BlueprintsSubgraphManagerModule;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static dgm.GraphUtilities.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+@Test
+public class GraphImportTest
+{
+    final ObjectMapper om = new ObjectMapper();
+
+    public void testImportIntoNewStore() throws IOException
+    {
+        final ID id = new ID("a", "b", "c", 2);
+        final ID other = new ID("a", "b", "d", 0);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Injector injector = Guice.createInjector(new BlueprintsSubgraphManagerModule(),
+                new CommonNeo4j(), new EphemeralEmbeddedNeo4J());
+        final TransactionalGraph source = injector.getInstance(TransactionalGraph.class);
+        try
+        {
+            final MutableSubgraph sg = new MutableSubgraph();
+            sg.beginEdge("label", other, Subgraph.Direction.OUTWARDS).property("weight", om.readTree("3"));
+            sg.property("title", om.readTree("\"title\""));
+            injector.getInstance(SubgraphManager.class).commitSubgraph(id, sg);
+
+            assertThat(GraphFile.write(source, out)).isEqualTo(new long[]{2, 1});
+        }
+        finally
+        {
+            source.shutdown();
+        }
+
+        final File dir = Files.createTempDir();
+        assertThat(GraphImport.load(new ByteArrayInputStream(out.toByteArray()), dir.getAbsolutePath())).isEqualTo(new long[]{2, 1});
+
+        final Neo4jGraph graph = new Neo4jGraph(dir.getAbsolutePath());
+        try
+        {
+            assertThat(graph.getIndexedKeys(Vertex.class)).isEqualTo(VERTEX_KEYS);
+            assertThat(graph.getIndexedKeys(Edge.class)).isEqualTo(EDGE_KEYS);
+
+            final Vertex v = findVertex(om, graph, id);
+            assertThat(v).isNotNull();
+            assertThat(resolveVertex(om, graph, other)).isNotNull();
+            assertThat(getProperty(om, v, "title").textValue()).isEqualTo("title");
+            assertThat(getOwner(om, v)).isEqualTo(id);
+            assertThat(findOwnedVertices(om, graph, id)).hasSize(1);
+            assertThat(findVerticesInIndex(graph, "a", "b")).hasSize(2);
+
+            final Edge e = findEdge(om, graph, new EdgeID(id, "label", other));
+            assertThat(e).isNotNull();
+            assertThat(getProperty(om, e, "weight").intValue()).isEqualTo(3);
+            assertThat(findOwnedEdges(om, graph, id)).hasSize(1);
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testOnlyIntoEmptyDirectory() throws IOException
+    {
+        final File dir = Files.createTempDir();
+        Files.touch(new File(dir, "something"));
+        GraphImport.load(new ByteArrayInputStream(new byte[0]), dir.getAbsolutePath());
+    }
+}
@@ -0,0 +1,79 @@
+package dgm.modules.neo4j;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.modules.property.PropertiesModule;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@Test
+public class GraphStoreProfileTest
+{
+    public void testDefaults()
+    {
+        final GraphStoreProfile profile = Guice.createInjector().getInstance(GraphStoreProfile.class);
+        final Map<String, String> settings = profile.settings();
+
+        assertThat(settings.get("cache_type")).isEqualTo("soft");
+        assertThat(settings.get("keep_logical_logs")).isEqualTo("2 days");
+        assertThat(settings.containsKey("neostore.nodestore.db.mapped_memory")).isFalse();
+        assertThat(profile.warmup()).isFalse();
+    }
+
+    public void testWarmupWithProperties() throws IOException
+    {
+        final File config = File.createTempFile("graphstore", ".properties");
+        config.deleteOnExit();
+        Files.write("graphdb.cache_type=weak\n" +
+                "graphdb.nodes.mapped_memory=10M\n" +
+                "graphdb.warmup=true\n" +
+                "graphdb.warmup.limit=3\n", config, Charsets.UTF_8);
+
+        final Injector injector = Guice.createInjector(new PropertiesModule(config.getAbsolutePath()),
+                new CommonNeo4j(), new EphemeralEmbeddedNeo4J());
+
+        final GraphStoreProfile profile = injector.getInstance(GraphStoreProfile.class);
+        assertThat(profile.settings().get("cache_type")).isEqualTo("weak");
+        assertThat(profile.settings().get("neostore.nodestore.db.mapped_memory")).isEqualTo("10M");
+        assertThat(profile.warmup()).isTrue();
+
+        final TransactionalGraph graph = injector.getInstance(TransactionalGraph.class);
+        try
+        {
+            final ObjectMapper om = new ObjectMapper();
+            Vertex previous = null;
+            for (int i = 0; i < 5; i++)
+            {
+                final Vertex v = GraphUtilities.createVertex(om, graph, new ID("a", "b", "v" + i, 1));
+                if (previous != null)
+                {
+                    final Edge e = graph.addEdge(null, previous, v, "next");
+                    e.setProperty(GraphUtilities.IDENTIFIER, "e" + i);
+                }
+                previous = v;
+            }
+            graph.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+
+            final long[] visited = injector.getInstance(GraphWarmupService.class).warmup(profile.warmupLimit());
+            assertThat(visited[0]).isEqualTo(3);
+            assertThat(visited[1]).isEqualTo(3);
+        }
+        finally
+        {
+            graph.shutdown();
+        }
+    }
+}
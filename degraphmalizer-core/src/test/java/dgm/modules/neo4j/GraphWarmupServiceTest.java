@@ -0,0 +1,125 @@
+package dgm.modules.neo4j;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import dgm.GraphUtilities;
+import dgm.ID;
+import dgm.Service;
+import dgm.modules.ServiceRunner;
+import dgm.modules.property.PropertiesModule;
+import org.nnsoft.guice.sli4j.slf4j.Slf4jLoggingModule;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@Test
+public class GraphWarmupServiceTest
+{
+    private Injector injector(String properties) throws IOException
+    {
+        final File config = File.createTempFile("graphstore", ".properties");
+        config.deleteOnExit();
+        Files.write(properties, config, Charsets.UTF_8);
+
+        return Guice.createInjector(new PropertiesModule(config.getAbsolutePath()), new Slf4jLoggingModule(),
+                new CommonNeo4j(), new EphemeralEmbeddedNeo4J());
+    }
+
+    private void createChain(TransactionalGraph graph, int length)
+    {
+        final ObjectMapper om = new ObjectMapper();
+        Vertex previous = null;
+        for (int i = 0; i < length; i++)
+        {
+            final Vertex v = GraphUtilities.createVertex(om, graph, new ID("a", "b", "v" + i, 1));
+            if (previous != null)
+            {
+                final Edge e = graph.addEdge(null, previous, v, "next");
+                e.setProperty(GraphUtilities.IDENTIFIER, "e" + i);
+            }
+            previous = v;
+        }
+        graph.stopTransaction(TransactionalGraph.Conclusion.SUCCESS);
+    }
+
+    /**
+     * The instance the service runner starts, the service binding is a singleton but the class itself isn't.
+     */
+    private GraphWarmupService warmupService(Injector injector)
+    {
+        for (Service service : injector.getInstance(Key.get(new TypeLiteral<Set<Service>>() {})))
+        {
+            if (service instanceof GraphWarmupService)
+                return (GraphWarmupService) service;
+        }
+        throw new AssertionError("GraphWarmupService is not bound as a service");
+    }
+
+    public void testDoneWhenServicesAreStarted() throws IOException
+    {
+        final Injector injector = injector("graphdb.warmup=true\ngraphdb.warmup.limit=3\n");
+        createChain(injector.getInstance(TransactionalGraph.class), 5);
+
+        final ServiceRunner services = injector.getInstance(ServiceRunner.class);
+        services.startServices();
+        try
+        {
+            // the server is only started after this, so requests find a warm store
+            final long[] visited = warmupService(injector).visited();
+            assertThat(visited[0]).isEqualTo(3);
+            assertThat(visited[1]).isEqualTo(3);
+        }
+        finally
+        {
+            services.stopServices();
+        }
+    }
+
+    public void testLimitLargerThanGraph() throws IOException
+    {
+        final Injector injector = injector("graphdb.warmup=true\ngraphdb.warmup.limit=100\n");
+        createChain(injector.getInstance(TransactionalGraph.class), 5);
+
+        final ServiceRunner services = injector.getInstance(ServiceRunner.class);
+        services.startServices();
+        try
+        {
+            final long[] visited = warmupService(injector).visited();
+            assertThat(visited[0]).isEqualTo(5);
+            assertThat(visited[1]).isEqualTo(4);
+        }
+        finally
+        {
+            services.stopServices();
+        }
+    }
+
+    public void testOffByDefault() throws IOException
+    {
+        final Injector injector = injector("");
+        createChain(injector.getInstance(TransactionalGraph.class), 2);
+
+        final ServiceRunner services = injector.getInstance(ServiceRunner.class);
+        services.startServices();
+        try
+        {
+            assertThat(warmupService(injector).visited()[0]).isEqualTo(0);
+        }
+        finally
+        {
+            services.stopServices();
+        }
+    }
+}
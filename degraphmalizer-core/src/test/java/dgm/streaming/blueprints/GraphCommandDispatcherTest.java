@@ -0,0 +1,143 @@
+package dgm.streaming.blueprints;
+
+import dgm.streaming.command.GraphCommand;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static dgm.streaming.command.GraphCommandBuilder.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class GraphCommandDispatcherTest
+{
+    GraphCommandDispatcher dispatcher;
+
+    @AfterMethod
+    public void shutdown()
+    {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testDelivery() throws InterruptedException
+    {
+        dispatcher = new GraphCommandDispatcher();
+        final Recorder recorder = new Recorder(3);
+        dispatcher.addListener(recorder, OverflowPolicy.DROP);
+
+        dispatcher.publish(addNodeCommand(node("a")).build());
+        dispatcher.publish(addNodeCommand(node("b")).build());
+        dispatcher.publish(addEdgeCommand(edge("e", "a", "b", true)).build());
+
+        assertThat(recorder.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(recorder.commands.get(2).getNodes().get(0).getName()).isEqualTo("e");
+    }
+
+    @Test
+    public void testSlowListenerDoesNotBlock() throws InterruptedException
+    {
+        dispatcher = new GraphCommandDispatcher(16, 4);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Blocking slow = new Blocking(release);
+        dispatcher.addListener(slow, OverflowPolicy.DISCONNECT);
+
+        // returns right away, even though the listener is stuck on the first command
+        for (int i = 0; i < 1000; i++)
+            dispatcher.publish(addNodeCommand(node("n" + i)).build());
+
+        // the listener can't keep up and gets disconnected
+        assertThat(slow.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatcher.listeners()).isEmpty();
+        release.countDown();
+    }
+
+    @Test
+    public void testBufferOverflowFollowsPolicy() throws InterruptedException
+    {
+        // listener queues are large enough, only the buffer overflows
+        dispatcher = new GraphCommandDispatcher(1, 1 << 16);
+        final Recorder dropping = new Recorder(1);
+        final Disconnecting disconnecting = new Disconnecting();
+        dispatcher.addListener(dropping, OverflowPolicy.DROP);
+        dispatcher.addListener(disconnecting, OverflowPolicy.DISCONNECT);
+
+        for (int i = 0; dispatcher.dropped() == 0 && i < 1000000; i++)
+            dispatcher.publish(addNodeCommand(node("n" + i)).build());
+        assertThat(dispatcher.dropped()).isGreaterThan(0);
+
+        // a listener that must see every command is disconnected, the other one just misses some
+        dispatcher.publish(addNodeCommand(node("last")).build());
+        assertThat(disconnecting.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatcher.listeners()).containsOnly(dropping);
+        assertThat(dropping.done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    static class Recorder implements GraphCommandListener
+    {
+        final List<GraphCommand> commands = new CopyOnWriteArrayList<GraphCommand>();
+        final CountDownLatch done;
+
+        Recorder(int expected)
+        {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void commandCreated(GraphCommand graphCommand)
+        {
+            commands.add(graphCommand);
+            done.countDown();
+        }
+    }
+
+    static class Disconnecting implements GraphCommandListener, Closeable
+    {
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void commandCreated(GraphCommand graphCommand)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+            closed.countDown();
+        }
+    }
+
+    static class Blocking implements GraphCommandListener, Closeable
+    {
+        final CountDownLatch release;
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        Blocking(CountDownLatch release)
+        {
+            this.release = release;
+        }
+
+        @Override
+        public void commandCreated(GraphCommand graphCommand)
+        {
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            closed.countDown();
+        }
+    }
+}
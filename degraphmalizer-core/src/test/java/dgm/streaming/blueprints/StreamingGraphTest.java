@@ -0,0 +1,72 @@
+package dgm.streaming.blueprints;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import dgm.streaming.codec.GraphCommandEncoding;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.Charset;
+
+import static dgm.GraphUtilities.setProperty;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StreamingGraphTest
+{
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    final ObjectMapper om = new ObjectMapper();
+
+    GraphCommandDispatcher dispatcher;
+
+    @AfterMethod
+    public void shutdown()
+    {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testObjectPropertiesAreSentAsJson() throws Exception
+    {
+        dispatcher = new GraphCommandDispatcher();
+        final StreamingGraph graph = new StreamingGraph(new TinkerGraph(), dispatcher);
+
+        final GraphCommandDispatcherTest.Recorder recorder = new GraphCommandDispatcherTest.Recorder(1);
+        graph.addGraphCommandListener(recorder);
+
+        final Vertex a = graph.addVertex("a");
+        final Vertex b = graph.addVertex("b");
+        final Edge e = graph.addEdge("e", a, b, "label");
+
+        // stored as Smile bytes
+        setProperty(graph.getVertices().iterator().next(), "p", om.readTree("{\"a\":[1,2]}"));
+        setProperty(e, "weight", om.readTree("[3]"));
+
+        // the dispatcher may coalesce the commands, so look for the values instead of counting commands
+        final String json = json(recorder, "weight");
+        assertThat(json).contains("\"p\":{\"a\":[1,2]}");
+        assertThat(json).contains("\"weight\":[3]");
+    }
+
+    /**
+     * All commands received until one of them contains {@code property}, as JSON
+     */
+    String json(GraphCommandDispatcherTest.Recorder recorder, String property) throws Exception
+    {
+        final long deadline = System.currentTimeMillis() + 5000;
+        final StringBuilder json = new StringBuilder();
+        int seen = 0;
+        while (json.indexOf("\"" + property + "\"") < 0 && System.currentTimeMillis() < deadline)
+        {
+            if (seen == recorder.commands.size())
+            {
+                Thread.sleep(10);
+                continue;
+            }
+            json.append(new String(GraphCommandEncoding.toJson(recorder.commands.get(seen++)), UTF8));
+        }
+        return json.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package dgm.streaming.codec;
+
+import dgm.streaming.command.GraphCommand;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.testng.annotations.Test;
+
+import java.nio.charset.Charset;
+
+import static dgm.streaming.command.GraphCommandBuilder.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class GraphCommandEncodingTest
+{
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testEncodedOnce() throws Exception
+    {
+        final GraphCommand command = addNodeCommand(node("a").set("label", "A")).build();
+
+        final EncodedGraphCommand encoded = GraphCommandEncoding.encode(command);
+        assertThat(GraphCommandEncoding.encode(command)).isSameAs(encoded);
+
+        // a command with the same content is another command
+        assertThat(GraphCommandEncoding.encode(addNodeCommand(node("a").set("label", "A")).build())).isNotSameAs(encoded);
+
+        final String json = new String(GraphCommandEncoding.toJson(command), UTF8);
+        assertThat(json).startsWith("{\"an\":{\"a\":{");
+        assertThat(json).contains("\"label\":\"A\"");
+        assertThat(encoded.content().toString(UTF8)).isEqualTo(json + "\n\r");
+    }
+
+    @Test
+    public void testViewsAreIndependent() throws Exception
+    {
+        final EncodedGraphCommand encoded = GraphCommandEncoding.encode(deleteNodeCommand("a").build());
+
+        final ChannelBuffer first = encoded.content();
+        first.skipBytes(first.readableBytes());
+
+        assertThat(encoded.content().readableBytes()).isGreaterThan(0);
+    }
+
+    @Test
+    public void testPipelineSharesBytes() throws Exception
+    {
+        final GraphCommand command = deleteEdgeCommand("e").build();
+
+        final Object encoded = new GraphCommandToJsonEncoder().encode(null, null, command);
+        assertThat(encoded).isSameAs(GraphCommandEncoding.encode(command));
+
+        // the string and line terminator encoders leave it alone, the chunk encoder wraps it
+        assertThat(new AddCRLFDecoder().encode(null, null, encoded)).isSameAs(encoded);
+        final Object chunk = new ToHttpChunkEncoder().encode(null, null, encoded);
+        assertThat(((HttpChunk) chunk).getContent().toString(UTF8)).isEqualTo("{\"de\":{\"e\":{}}}\n\r");
+    }
+}
@@ -0,0 +1,42 @@
+package dgm.streaming.command;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static dgm.streaming.command.GraphCommandBuilder.*;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class GraphCommandsTest
+{
+    @Test
+    public void testRepeatedChangesAreMerged()
+    {
+        final List<GraphCommand> result = GraphCommands.coalesce(Arrays.asList(
+                updateNodeCommand(node("a").set("x", 1).set("y", 1)).build(),
+                updateNodeCommand(node("b").set("x", 1)).build(),
+                updateNodeCommand(node("a").set("x", 2).set("z", null)).build()));
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getNodes().get(0).getName()).isEqualTo("a");
+        assertThat(result.get(0).getNodes().get(0).getProperties().get("x")).isEqualTo(2);
+        assertThat(result.get(0).getNodes().get(0).getProperties().get("y")).isEqualTo(1);
+        assertThat(result.get(0).getNodes().get(0).getProperties().containsKey("z")).isTrue();
+        assertThat(result.get(1).getNodes().get(0).getName()).isEqualTo("b");
+    }
+
+    @Test
+    public void testNotMergedAcrossOtherCommands()
+    {
+        final List<GraphCommand> result = GraphCommands.coalesce(Arrays.asList(
+                updateNodeCommand(node("a").set("x", 1)).build(),
+                deleteNodeCommand("a").build(),
+                addNodeCommand(node("a")).build(),
+                updateNodeCommand(node("a").set("x", 2)).build(),
+                updateEdgeCommand(node("a").set("x", 3)).build()));
+
+        assertThat(result).hasSize(5);
+        assertThat(result.get(3).getNodes().get(0).getProperties().get("x")).isEqualTo(2);
+    }
+}
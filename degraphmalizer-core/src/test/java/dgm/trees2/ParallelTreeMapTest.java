@@ -0,0 +1,86 @@
+package dgm.trees2;
+
+import dgm.trees.*;
+
+import java.util.concurrent.*;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@Test
+public class ParallelTreeMapTest {
+    ForkJoinPool pool;
+
+    @BeforeMethod
+    public void createPool() {
+        // a single thread, so a job waiting for other jobs must run them itself
+        pool = new ForkJoinPool(1);
+    }
+
+    @AfterMethod
+    public void stopPool() {
+        pool.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    static Tree<Integer> tree(int value, Tree<Integer>... children) {
+        return new ImmutableTree<Integer>(new TreeEntry<Integer>(value, 0), children);
+    }
+
+    static int sum(Tree<Integer> tree) {
+        int sum = 0;
+        for (TreeEntry<Integer> e : Trees.bfsWalk(tree)) {
+            sum += e.getValue();
+        }
+        return sum;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testNestedMapsDoNotStarveThePool() throws Exception {
+        final Tree<Integer> inner = tree(1, tree(2), tree(3, tree(4)));
+        final Tree<Integer> outer = tree(10, tree(20), tree(30));
+
+        // every node of the outer tree maps the inner tree in the same pool, and waits for it
+        final Function<Integer, Integer> nested = new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer a) {
+                try {
+                    return sum(Trees.pmap(pool, new Function<Integer, Integer>() {
+                        @Override
+                        public Integer apply(Integer b) {
+                            return a * b;
+                        }
+                    }, inner));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        final Future<Integer> result = pool.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return sum(Trees.pmap(pool, nested, outer));
+            }
+        });
+
+        assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo((10 + 20 + 30) * (1 + 2 + 3 + 4));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testMapOutsideThePool() throws Exception {
+        final Tree<Integer> doubled = Trees.pmap(pool, new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer a) {
+                return 2 * a;
+            }
+        }, tree(1, tree(2), tree(3)));
+
+        assertThat(sum(doubled)).isEqualTo(12);
+    }
+}
@@ -0,0 +1,18 @@
+({
+    sourceIndex: "deps-index",
+    sourceType: "down",
+
+    "walks":{
+        "children":{
+            "direction": "IN",
+            "maxDistance": 1,
+            "properties": {
+                "child-count": {
+                    reduce: (function(tree) {
+                        return 1;
+                    })
+                }
+            }
+        }
+    }
+})
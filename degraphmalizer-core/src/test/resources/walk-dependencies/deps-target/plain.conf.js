@@ -0,0 +1,4 @@
+({
+    sourceIndex: "deps-index",
+    sourceType: "plain"
+})
@@ -0,0 +1,18 @@
+({
+    sourceIndex: "deps-index",
+    sourceType: "up",
+
+    "walks":{
+        "parents":{
+            "direction": "OUT",
+            "maxDistance": 2,
+            "properties": {
+                "parent-count": {
+                    reduce: (function(tree) {
+                        return 1;
+                    })
+                }
+            }
+        }
+    }
+})